@@ -0,0 +1,226 @@
+package com.githubchangesfrequency.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.domain.RetainedCheckpoint;
+import com.githubchangesfrequency.domain.ScanCheckpoint;
+import com.githubchangesfrequency.repository.CommitDiffStatRepository;
+import com.githubchangesfrequency.repository.RepositoryChangeRepository;
+import com.githubchangesfrequency.repository.RetainedCheckpointRepository;
+import com.githubchangesfrequency.repository.ScanCheckpointRepository;
+import com.githubchangesfrequency.service.AuthorStatsService;
+import com.githubchangesfrequency.service.BlobDiffCache;
+import com.githubchangesfrequency.service.ChangeHistoryRecorder;
+import com.githubchangesfrequency.service.ChurnIndexService;
+import com.githubchangesfrequency.service.CommitDiffEngine;
+import com.githubchangesfrequency.service.CommitStatIndex;
+import com.githubchangesfrequency.service.GitChangeScannerService;
+import com.githubchangesfrequency.service.GitChangeScannerServiceIncr;
+import com.githubchangesfrequency.service.JGitStorageTuning;
+import com.githubchangesfrequency.service.MirrorCloneManager;
+import com.githubchangesfrequency.service.RepositoryLockManager;
+import com.githubchangesfrequency.service.ScanMetrics;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanProgressListener;
+import com.githubchangesfrequency.service.WorkLeaseManager;
+
+/**
+ * Full and incremental scans of synthetic repositories through the real scanner services,
+ * mirror manager and diff engine. Persistence is stubbed and the history, churn and author
+ * steps are disabled, so what is measured is open + walk + diff; every commit is diffed on
+ * every invocation since the stubbed stat index never has a row.
+ *
+ * Throughput mode reports {@code commits} per second next to scans per second, SampleTime
+ * the latency distribution of one scan; the default {@code -prof gc} adds the allocation rate.
+ * {@code diffCache=cold} runs with an almost empty blob-pair cache, {@code warm} with the
+ * production default (after the first invocation most pairs are then cache hits).
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="-prof gc ScanBenchmark.fullScan -p shape=LINEAR"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ScanBenchmark {
+
+    @Param({"LINEAR", "MERGES", "BINARY", "RENAMES"})
+    public SyntheticRepo.Shape shape;
+
+    @Param({"500"})
+    public int commits;
+
+    /** commits between the incremental checkpoint and the tip (on the first-parent chain) */
+    @Param({"50"})
+    public int newCommits;
+
+    @Param({"EXACT", "FAST"})
+    public String mode;
+
+    @Param({"cold"})
+    public String diffCache;
+
+    @Param({"42"})
+    public long seed;
+
+    private File cloneBase;
+    private String repoUrl;
+    private ScanOptions options;
+    private CommitDiffEngine diffEngine;
+    private GitChangeScannerService fullScanner;
+    private GitChangeScannerServiceIncr incrementalScanner;
+
+    private String checkpointSha;
+    private int historyCommits;
+    private int incrementalCommits;
+
+    /** Commits scanned, reported by JMH as a rate alongside the scan rate. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Commits {
+        public long commits;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commits = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File source = SyntheticRepo.obtain(shape, commits, seed);
+        repoUrl = source.toURI().toString();
+        cloneBase = Files.createTempDirectory("gcf-bench-clones").toFile();
+        options = "FAST".equals(mode)
+                ? new ScanOptions(List.of(), List.of(), true, 256 * 1024, true, 200, SupportedAlgorithm.HISTOGRAM)
+                : ScanOptions.DEFAULT;
+
+        // production pack cache settings (see application.properties)
+        JGitStorageTuning storage = new JGitStorageTuning(DataSize.ofMegabytes(256), DataSize.ofKilobytes(64), false,
+                256, DataSize.ofMegabytes(64), DataSize.ofMegabytes(50), true, true);
+        BlobDiffCache blobCache = new BlobDiffCache("warm".equals(diffCache) ? 200_000 : 0, "", 0);
+        // metrics stay on, as in production; one series, like git.metrics.repoTag=false
+        ScanMetrics metrics = new ScanMetrics(new SimpleMeterRegistry(), blobCache, false, DataSize.ofKilobytes(64));
+        MirrorCloneManager cloneManager = new MirrorCloneManager(new RepositoryLockManager(cloneBase.getPath()),
+                storage, metrics, cloneBase.getPath(), Duration.ofDays(1), false);
+
+        PlatformTransactionManager txManager = stub(PlatformTransactionManager.class);
+        diffEngine = new CommitDiffEngine(blobCache, 0);
+        CommitStatIndex statIndex = new CommitStatIndex(stub(CommitDiffStatRepository.class), diffEngine, txManager);
+        ChangeHistoryRecorder history = new ChangeHistoryRecorder(new JdbcTemplate(), txManager, false, false, 1000);
+        ChurnIndexService churn = new ChurnIndexService(null, diffEngine, txManager, false, 1);
+        AuthorStatsService authors = new AuthorStatsService(null, null, null, statIndex, txManager, false);
+
+        fullScanner = new GitChangeScannerService(stub(RepositoryChangeRepository.class), statIndex, cloneManager,
+                history, authors, metrics, WorkLeaseManager.disabled(), txManager);
+
+        // every incremental run starts from the same checkpoint, with its branch totals retained
+        try (var clone = cloneManager.open(repoUrl, ScanProgressListener.NONE)) {
+            Repository repository = clone.getRepository();
+            ObjectId tip = repository.resolve(clone.resolveBranchRef(SyntheticRepo.BRANCH));
+            try (RevWalk walk = new RevWalk(repository)) {
+                RevCommit c = walk.parseCommit(tip);
+                for (int i = 0; i < newCommits && c.getParentCount() > 0; i++) {
+                    c = walk.parseCommit(c.getParent(0));
+                }
+                checkpointSha = c.getName();
+                historyCommits = count(walk, walk.parseCommit(tip), null);
+                incrementalCommits = count(walk, walk.parseCommit(tip), c);
+            }
+        }
+        // as CloneCacheManager leaves a fresh clone: repacked with its commit-graph and bitmaps
+        try (Git git = Git.open(cloneManager.mirrorDir(repoUrl))) {
+            git.gc().call();
+        }
+        ScanCheckpointRepository checkpoints = stub(ScanCheckpointRepository.class);
+        when(checkpoints.findByRepoUrlAndBranchNameAndDiffProfile(anyString(), anyString(), any())).thenAnswer(inv ->
+                Optional.of(new ScanCheckpoint(repoUrl, SyntheticRepo.BRANCH, inv.getArgument(2), checkpointSha, Instant.EPOCH)));
+        RetainedCheckpointRepository retained = stub(RetainedCheckpointRepository.class);
+        when(retained.findByRepoUrlAndBranchNameAndDiffProfileOrderByCreatedAtDesc(anyString(), anyString(), any()))
+                .thenAnswer(inv -> List.of(new RetainedCheckpoint(repoUrl, SyntheticRepo.BRANCH, inv.getArgument(2),
+                        checkpointSha, 0, 0, Instant.EPOCH)));
+        incrementalScanner = new GitChangeScannerServiceIncr(stub(RepositoryChangeRepository.class), checkpoints,
+                retained, statIndex, cloneManager, history, churn, authors, metrics,
+                WorkLeaseManager.disabled(), txManager, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        diffEngine.shutdown();
+        FileUtils.delete(cloneBase, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+    }
+
+    @Benchmark
+    public RepositoryChange fullScan(Commits counter) throws Exception {
+        RepositoryChange change = fullScanner.scanRepository(repoUrl, SyntheticRepo.BRANCH, options, ScanProgressListener.NONE);
+        counter.commits += historyCommits;
+        return change;
+    }
+
+    @Benchmark
+    public RepositoryChange incrementalScan(Commits counter) throws Exception {
+        RepositoryChange change = incrementalScanner.scanRepositoryIncremental(repoUrl, SyntheticRepo.BRANCH, options,
+                ScanProgressListener.NONE);
+        counter.commits += incrementalCommits;
+        return change;
+    }
+
+    private static int count(RevWalk walk, RevCommit from, RevCommit exclude) throws IOException {
+        walk.reset();
+        walk.markStart(from);
+        if (exclude != null) walk.markUninteresting(exclude);
+        int n = 0;
+        while (walk.next() != null) n++;
+        walk.reset();
+        return n;
+    }
+
+    // stub-only mocks keep no invocation history, so they add no allocation per scan
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
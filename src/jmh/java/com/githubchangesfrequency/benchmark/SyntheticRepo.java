@@ -0,0 +1,270 @@
+package com.githubchangesfrequency.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FileUtils;
+
+/**
+ * Bare repositories with a known shape, written object by object with fixed authors, dates and
+ * a seeded random source, so the same parameters always give the same commits (and SHAs).
+ * Generated repos are kept under {@code <tmpdir>/gcf-bench} and reused across runs.
+ */
+public final class SyntheticRepo {
+
+    public enum Shape {
+        /** one commit after another, each editing a few text files */
+        LINEAR,
+        /** short feature branches merged back every few commits */
+        MERGES,
+        /** linear, plus binary assets of up to 1 MB added and replaced every fifth commit */
+        BINARY,
+        /** linear, plus every twentieth commit moving a large share of the files */
+        RENAMES
+    }
+
+    static final String BRANCH = "main";
+
+    private static final String[] AUTHORS = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+    private static final Instant EPOCH = Instant.parse("2020-01-01T00:00:00Z");
+    private static final int INITIAL_FILES = 400;
+    private static final int INITIAL_LINES = 60;
+
+    private final ObjectInserter inserter;
+    private final Random random;
+    private final Shape shape;
+
+    // current main-line tree: text files as lines, binary files as blob ids
+    private final TreeMap<String, List<String>> text = new TreeMap<>();
+    private final TreeMap<String, ObjectId> binary = new TreeMap<>();
+    private int commitCount;
+    private int generation;
+
+    private SyntheticRepo(Repository repo, Shape shape, long seed) {
+        this.inserter = repo.newObjectInserter();
+        this.random = new Random(seed);
+        this.shape = shape;
+    }
+
+    /**
+     * The bare repository for these parameters, generated on first use.
+     */
+    static File obtain(Shape shape, int commits, long seed) throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "gcf-bench/" + shape + "-" + commits + "-" + seed + ".git");
+        File done = new File(dir, "synthetic-complete");
+        if (done.exists()) {
+            return dir;
+        }
+        FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+        try (Repository repo = new FileRepositoryBuilder().setGitDir(dir).setBare().build()) {
+            repo.create(true);
+            SyntheticRepo generator = new SyntheticRepo(repo, shape, seed);
+            ObjectId tip = generator.generate(commits);
+            RefUpdate update = repo.updateRef(Constants.R_HEADS + BRANCH);
+            update.setNewObjectId(tip);
+            update.forceUpdate();
+            repo.updateRef(Constants.HEAD).link(Constants.R_HEADS + BRANCH);
+            Git.wrap(repo).gc().call();
+        } catch (Exception e) {
+            throw new IOException("Cannot generate " + dir, e);
+        }
+        Files.createFile(done.toPath());
+        return dir;
+    }
+
+    private ObjectId generate(int commits) throws IOException {
+        for (int i = 0; i < INITIAL_FILES; i++) {
+            text.put(String.format("src/m%02d/File%03d.java", i % 20, i), lines(INITIAL_LINES));
+        }
+        ObjectId head = commit(tree(), "initial import");
+        while (commitCount < commits) {
+            if (shape == Shape.MERGES && commitCount % 6 == 1 && commits - commitCount >= 6) {
+                head = featureBranch(head);
+                continue;
+            }
+            editText(1 + random.nextInt(5));
+            if (shape == Shape.BINARY && commitCount % 5 == 0) {
+                binary.put("assets/blob" + random.nextInt(12) + ".bin", blob(binaryContent(64 * 1024 + random.nextInt(960 * 1024))));
+            }
+            if (shape == Shape.RENAMES && commitCount % 20 == 0) {
+                renameStorm();
+            }
+            head = commit(tree(), "change " + commitCount, head);
+        }
+        inserter.flush();
+        return head;
+    }
+
+    // 2-3 commits on a side branch adding their own module, 1-2 on main meanwhile, then the merge
+    private ObjectId featureBranch(ObjectId forkPoint) throws IOException {
+        String module = "features/f" + commitCount + "/";
+        TreeMap<String, List<String>> sideFiles = new TreeMap<>();
+        TreeMap<String, List<String>> mainText = new TreeMap<>(text);
+
+        ObjectId side = forkPoint;
+        int sideCommits = 2 + random.nextInt(2);
+        for (int i = 0; i < sideCommits; i++) {
+            sideFiles.put(module + "Part" + i + ".java", lines(20 + random.nextInt(40)));
+            for (Map.Entry<String, List<String>> e : sideFiles.entrySet()) {
+                if (random.nextBoolean()) edit(e.getValue());
+            }
+            text.putAll(sideFiles);
+            side = commit(tree(), "feature " + module + " " + i, side);
+            text.clear();
+            text.putAll(mainText);
+        }
+
+        ObjectId main = forkPoint;
+        int mainCommits = 1 + random.nextInt(2);
+        for (int i = 0; i < mainCommits; i++) {
+            editText(1 + random.nextInt(3));
+            main = commit(tree(), "change " + commitCount, main);
+        }
+
+        text.putAll(sideFiles);
+        return commit(tree(), "merge " + module, main, side);
+    }
+
+    private void editText(int files) {
+        List<String> paths = new ArrayList<>(text.keySet());
+        for (int i = 0; i < files; i++) {
+            String path = paths.get(random.nextInt(paths.size()));
+            int roll = random.nextInt(40);
+            if (roll == 0 && text.size() > INITIAL_FILES / 2) {
+                text.remove(path);
+            } else if (roll == 1) {
+                text.put(path.replace(".java", "Extra" + commitCount + ".java"), lines(10 + random.nextInt(50)));
+            } else if (text.containsKey(path)) {
+                edit(text.get(path));
+            }
+        }
+    }
+
+    // move every file of a third of the modules to a new module, touching a few of them
+    private void renameStorm() {
+        generation++;
+        Map<String, String> moved = new TreeMap<>();
+        for (String path : text.keySet()) {
+            String module = path.substring(0, path.indexOf('/', 4));
+            if (Math.floorMod(module.hashCode(), 3) == generation % 3) {
+                moved.put(path, module + "g" + generation + path.substring(module.length()));
+            }
+        }
+        for (Map.Entry<String, String> e : moved.entrySet()) {
+            List<String> content = text.remove(e.getKey());
+            if (random.nextInt(4) == 0) edit(content);
+            text.put(e.getValue(), content);
+        }
+    }
+
+    private void edit(List<String> lines) {
+        int changes = 1 + random.nextInt(6);
+        for (int i = 0; i < changes; i++) {
+            int at = lines.isEmpty() ? 0 : random.nextInt(lines.size());
+            switch (random.nextInt(3)) {
+                case 0 -> lines.add(at, line());
+                case 1 -> {
+                    if (!lines.isEmpty()) lines.remove(at);
+                }
+                default -> {
+                    if (!lines.isEmpty()) lines.set(at, line());
+                }
+            }
+        }
+    }
+
+    private List<String> lines(int n) {
+        List<String> lines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) lines.add(line());
+        return lines;
+    }
+
+    private String line() {
+        return "    int v" + random.nextInt(100_000) + " = compute(" + random.nextInt(1000) + ", \"" + Long.toHexString(random.nextLong()) + "\");";
+    }
+
+    private byte[] binaryContent(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        data[0] = 0; // detected as binary by its first bytes
+        return data;
+    }
+
+    private ObjectId blob(byte[] data) throws IOException {
+        return inserter.insert(Constants.OBJ_BLOB, data);
+    }
+
+    private ObjectId tree() throws IOException {
+        Dir root = new Dir();
+        for (Map.Entry<String, List<String>> e : text.entrySet()) {
+            root.put(e.getKey(), blob((String.join("\n", e.getValue()) + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        for (Map.Entry<String, ObjectId> e : binary.entrySet()) {
+            root.put(e.getKey(), e.getValue());
+        }
+        return root.write(inserter);
+    }
+
+    private ObjectId commit(ObjectId tree, String message, ObjectId... parents) throws IOException {
+        String name = AUTHORS[random.nextInt(AUTHORS.length)];
+        PersonIdent ident = new PersonIdent(name, name + "@example.com",
+                EPOCH.plusSeconds(3600L * commitCount), ZoneOffset.UTC);
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(tree);
+        commit.setParentIds(parents);
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage(message + "\n");
+        commitCount++;
+        return inserter.insert(commit);
+    }
+
+    private static final class Dir {
+        final TreeMap<String, Object> entries = new TreeMap<>();
+
+        void put(String path, ObjectId blob) {
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                entries.put(path, blob);
+            } else {
+                ((Dir) entries.computeIfAbsent(path.substring(0, slash), k -> new Dir())).put(path.substring(slash + 1), blob);
+            }
+        }
+
+        ObjectId write(ObjectInserter inserter) throws IOException {
+            // git orders tree entries as if directory names ended in '/'
+            List<Map.Entry<String, Object>> sorted = new ArrayList<>(entries.entrySet());
+            sorted.sort(Comparator.comparing(e -> e.getValue() instanceof Dir ? e.getKey() + "/" : e.getKey()));
+            TreeFormatter formatter = new TreeFormatter();
+            for (Map.Entry<String, Object> e : sorted) {
+                if (e.getValue() instanceof Dir dir) {
+                    formatter.append(e.getKey(), FileMode.TREE, dir.write(inserter));
+                } else {
+                    formatter.append(e.getKey(), FileMode.REGULAR_FILE, (ObjectId) e.getValue());
+                }
+            }
+            return inserter.insert(formatter);
+        }
+    }
+}
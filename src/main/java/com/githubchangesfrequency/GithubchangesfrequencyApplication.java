@@ -1,12 +1,21 @@
 package com.githubchangesfrequency;
 
+import com.githubchangesfrequency.cli.ScanCommand;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class GithubchangesfrequencyApplication {
 
 	public static void main(String[] args) {
+		if (args.length > 0 && ScanCommand.NAME.equals(args[0])) {
+			// headless scan: same services, no web server or MySQL (see ScanCommand)
+			SpringApplication app = new SpringApplication(GithubchangesfrequencyApplication.class);
+			app.setAdditionalProfiles(ScanCommand.PROFILE);
+			System.exit(SpringApplication.exit(app.run(args)));
+		}
 		SpringApplication.run(GithubchangesfrequencyApplication.class, args);
 	}
 
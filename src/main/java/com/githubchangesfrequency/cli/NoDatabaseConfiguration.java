@@ -0,0 +1,147 @@
+package com.githubchangesfrequency.cli;
+
+import com.githubchangesfrequency.repository.AuthorIdentityRepository;
+import com.githubchangesfrequency.repository.AuthorRollupRepository;
+import com.githubchangesfrequency.repository.AuthorRollupStateRepository;
+import com.githubchangesfrequency.repository.ChangeRollupRepository;
+import com.githubchangesfrequency.repository.ChurnIndexSnapshotRepository;
+import com.githubchangesfrequency.repository.CommitDiffStatRepository;
+import com.githubchangesfrequency.repository.RepoScanDefaultsRepository;
+import com.githubchangesfrequency.repository.RepositoryChangeRepository;
+import com.githubchangesfrequency.repository.RetainedCheckpointRepository;
+import com.githubchangesfrequency.repository.ScanCheckpointRepository;
+import com.githubchangesfrequency.repository.TrackedBranchRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Persistence for the headless scan when it runs without a database (the default; the
+ * "cli-h2" profile brings the in-memory or file database back). application-cli.properties
+ * excludes the DataSource and JPA auto-configuration, and this supplies what the scan path and
+ * the scheduled services (created eagerly even under lazy initialization) still inject: every
+ * repository, storing nothing and finding nothing, a transaction manager whose transactions do
+ * nothing, and a JdbcTemplate that fails if anything does reach for the
+ * database. Everything the scan writes that way (history rows, rollups, leases) is switched
+ * off in the same properties file.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile(ScanCommand.PROFILE + " & !" + ScanCommand.DATABASE_PROFILE)
+public class NoDatabaseConfiguration {
+
+    @Bean
+    RepositoryChangeRepository repositoryChangeRepository() {
+        return noOp(RepositoryChangeRepository.class);
+    }
+
+    @Bean
+    CommitDiffStatRepository commitDiffStatRepository() {
+        return noOp(CommitDiffStatRepository.class);
+    }
+
+    @Bean
+    AuthorRollupRepository authorRollupRepository() {
+        return noOp(AuthorRollupRepository.class);
+    }
+
+    @Bean
+    AuthorRollupStateRepository authorRollupStateRepository() {
+        return noOp(AuthorRollupStateRepository.class);
+    }
+
+    @Bean
+    AuthorIdentityRepository authorIdentityRepository() {
+        return noOp(AuthorIdentityRepository.class);
+    }
+
+    @Bean
+    ChangeRollupRepository changeRollupRepository() {
+        return noOp(ChangeRollupRepository.class);
+    }
+
+    @Bean
+    ChurnIndexSnapshotRepository churnIndexSnapshotRepository() {
+        return noOp(ChurnIndexSnapshotRepository.class);
+    }
+
+    @Bean
+    RepoScanDefaultsRepository repoScanDefaultsRepository() {
+        return noOp(RepoScanDefaultsRepository.class);
+    }
+
+    @Bean
+    RetainedCheckpointRepository retainedCheckpointRepository() {
+        return noOp(RetainedCheckpointRepository.class);
+    }
+
+    @Bean
+    ScanCheckpointRepository scanCheckpointRepository() {
+        return noOp(ScanCheckpointRepository.class);
+    }
+
+    @Bean
+    TrackedBranchRepository trackedBranchRepository() {
+        return noOp(TrackedBranchRepository.class);
+    }
+
+    @Bean
+    PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    @Bean
+    JdbcTemplate jdbcTemplate() {
+        // no DataSource: any statement throws "No DataSource set"
+        return new JdbcTemplate() {
+            @Override
+            public void afterPropertiesSet() {
+            }
+        };
+    }
+
+    // saves hand back what they were given; finders find nothing
+    @SuppressWarnings("unchecked")
+    static <T> T noOp(Class<T> repository) {
+        return (T) Proxy.newProxyInstance(repository.getClassLoader(), new Class<?>[] {repository}, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("toString") && method.getParameterCount() == 0) return "no-op " + repository.getSimpleName();
+            if (name.equals("hashCode") && method.getParameterCount() == 0) return System.identityHashCode(proxy);
+            if (name.equals("equals") && method.getParameterCount() == 1) return proxy == args[0];
+            if (name.startsWith("save") && args != null && args.length == 1) return args[0];
+            Class<?> type = method.getReturnType();
+            if (type == Optional.class) return Optional.empty();
+            if (type == Set.class) return Set.of();
+            if (Iterable.class.isAssignableFrom(type) || type == Collection.class) return List.of();
+            if (type == Stream.class) return Stream.empty();
+            if (type == boolean.class) return false;
+            if (type == long.class) return 0L;
+            if (type == int.class) return 0;
+            return null;
+        });
+    }
+}
@@ -0,0 +1,124 @@
+package com.githubchangesfrequency.cli;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.service.GitChangeScannerService;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanProgressListener;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.lib.Constants;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Headless scan for CI pipelines:
+ * {@code java -jar githubchangesfrequency.war scan <repo path or url> [--branch=main] [--include=glob ...]}.
+ * The other options are those of the scan endpoints ({@code --exclude}, {@code --skipBinary},
+ * {@code --maxBlobSize}, {@code --detectRenames=false}, {@code --renameLimit}, {@code --diffAlgorithm}).
+ * Without {@code --branch} the checkout's HEAD is scanned (for a url, the remote's default branch).
+ *
+ * Runs under the "cli" profile (application-cli.properties): no web server, beans created on
+ * first use, no database ({@link NoDatabaseConfiguration}), and a local checkout read in place
+ * rather than mirrored. Adding the "cli-h2" profile ({@code --spring.profiles.active=cli-h2})
+ * brings back an H2 database, to keep the commit stat index between runs in a file.
+ * The result is printed to stdout as one JSON object; logs go to stderr. Exit code 0 on
+ * success, 1 if the scan failed, 2 on bad arguments.
+ *
+ * Nothing here is decided at runtime beyond the profile, so the mode also runs from an AOT
+ * build ({@code mvn -Pcli-aot package}, then {@code -Dspring.aot.enabled=true}). For a CDS
+ * archive, train with {@code -XX:ArchiveClassesAtExit} and {@code -Dspring.context.exit=onRefresh},
+ * which stops before the scan; CDS only reads plain jars, so run from the unpacked war with
+ * WEB-INF/classes jarred up rather than from the war itself.
+ */
+@Component
+@Profile(ScanCommand.PROFILE)
+public class ScanCommand implements ApplicationRunner, ExitCodeGenerator {
+
+    public static final String NAME = "scan";
+    public static final String PROFILE = "cli";
+    public static final String DATABASE_PROFILE = "cli-h2";
+
+    private static final String USAGE = "Usage: scan <repo path or url> [--branch=<branch>] [--include=<glob>]... "
+            + "[--exclude=<glob>]... [--skipBinary] [--maxBlobSize=<bytes>] [--detectRenames=false] "
+            + "[--renameLimit=<n>] [--diffAlgorithm=HISTOGRAM|MYERS]";
+
+    private final GitChangeScannerService scanner;
+    private final JsonMapper jsonMapper;
+    private int exitCode;
+
+    public ScanCommand(GitChangeScannerService scanner, JsonMapper jsonMapper) {
+        this.scanner = scanner;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> positional = args.getNonOptionArgs();
+        if (positional.size() != 2 || !NAME.equals(positional.get(0))) {
+            System.err.println(USAGE);
+            exitCode = 2;
+            return;
+        }
+        ScanOptions options;
+        try {
+            options = options(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            exitCode = 2;
+            return;
+        }
+
+        try {
+            // no --branch: whatever the checkout has checked out (detached in most CI jobs)
+            RepositoryChange result = scanner.scanRepository(repo(positional.get(1)), value(args, "branch", Constants.HEAD),
+                    options, ScanProgressListener.NONE);
+            System.out.println(jsonMapper.writeValueAsString(result));
+        } catch (Exception e) {
+            System.err.println("Scan failed: " + e.getMessage());
+            exitCode = 1;
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    // local paths are scanned in place; absolute so "." and "./" are the same repo
+    private static String repo(String arg) {
+        File file = new File(arg);
+        return file.isDirectory() ? file.getAbsoluteFile().toPath().normalize().toString() : arg;
+    }
+
+    private static ScanOptions options(ApplicationArguments args) {
+        try {
+            return new ScanOptions(args.getOptionValues("include"), args.getOptionValues("exclude"),
+                    flag(args, "skipBinary", false),
+                    Long.parseLong(value(args, "maxBlobSize", "0")),
+                    flag(args, "detectRenames", true),
+                    Integer.parseInt(value(args, "renameLimit", "0")),
+                    SupportedAlgorithm.valueOf(value(args, "diffAlgorithm", "HISTOGRAM").toUpperCase()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + e.getMessage());
+        }
+    }
+
+    private static String value(ApplicationArguments args, String name, String defaultValue) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(values.size() - 1);
+    }
+
+    // --name alone is true, --name=false is false
+    private static boolean flag(ApplicationArguments args, String name, boolean defaultValue) {
+        if (!args.containsOption(name)) return defaultValue;
+        String value = value(args, name, "true");
+        return value.isEmpty() || Boolean.parseBoolean(value);
+    }
+}
@@ -0,0 +1,44 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+
+/**
+ * Interned commit author: rollup rows refer to the id instead of repeating email and name.
+ * Authors are identified by lower-cased email; the name is the last one seen.
+ */
+@Entity
+@Table(name = "author_identity", uniqueConstraints = @UniqueConstraint(name = "uk_author_email", columnNames = "email"))
+public class AuthorIdentity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "email", nullable = false)
+    private String email;
+
+    @Column(name = "name")
+    private String name;
+
+    public AuthorIdentity() {}
+
+    public AuthorIdentity(String email, String name) {
+        this.email = email;
+        this.name = name;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+}
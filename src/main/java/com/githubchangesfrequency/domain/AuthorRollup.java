@@ -0,0 +1,104 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Commits and lines of one author on one branch in one time bucket (by author date).
+ * Only buckets the author was active in have a row. Profile as in {@link CommitChange}.
+ */
+@Entity
+@Table(name = "author_rollup",
+    uniqueConstraints = @UniqueConstraint(name = "uk_author_rollup",
+        columnNames = {"repo_url", "branch_name", "diff_profile", "granularity", "bucket_start", "author_id"}))
+public class AuthorRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false)
+    private String repoUrl;
+
+    @Column(name = "branch_name", nullable = false)
+    private String branchName;
+
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    private String diffProfile;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 8)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDate bucketStart;
+
+    @Column(name = "author_id", nullable = false)
+    private long authorId;
+
+    @Column(name = "commit_count", nullable = false)
+    private long commitCount;
+
+    @Column(name = "lines_added", nullable = false)
+    private long linesAdded;
+
+    @Column(name = "lines_deleted", nullable = false)
+    private long linesDeleted;
+
+    public AuthorRollup() {}
+
+    public AuthorRollup(String repoUrl, String branchName, String diffProfile, RollupGranularity granularity,
+                        LocalDate bucketStart, long authorId) {
+        this.repoUrl = repoUrl;
+        this.branchName = branchName;
+        this.diffProfile = diffProfile;
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+        this.authorId = authorId;
+    }
+
+    public void add(long commits, long added, long deleted) {
+        this.commitCount += commits;
+        this.linesAdded += added;
+        this.linesDeleted += deleted;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getBranchName() {
+		return branchName;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public RollupGranularity getGranularity() {
+		return granularity;
+	}
+
+	public LocalDate getBucketStart() {
+		return bucketStart;
+	}
+
+	public long getAuthorId() {
+		return authorId;
+	}
+
+	public long getCommitCount() {
+		return commitCount;
+	}
+
+	public long getLinesAdded() {
+		return linesAdded;
+	}
+
+	public long getLinesDeleted() {
+		return linesDeleted;
+	}
+}
@@ -0,0 +1,74 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * The commit a branch's author rollups are up to date with.
+ */
+@Entity
+@Table(name = "author_rollup_state",
+    uniqueConstraints = @UniqueConstraint(name = "uk_author_rollup_state", columnNames = {"repo_url", "branch_name", "diff_profile"}))
+public class AuthorRollupState {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false)
+    private String repoUrl;
+
+    @Column(name = "branch_name", nullable = false)
+    private String branchName;
+
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    private String diffProfile;
+
+    @Column(name = "commit_sha", nullable = false, length = 64)
+    private String commitSha;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Version
+    private long version;
+
+    public AuthorRollupState() {}
+
+    public AuthorRollupState(String repoUrl, String branchName, String diffProfile) {
+        this.repoUrl = repoUrl;
+        this.branchName = branchName;
+        this.diffProfile = diffProfile;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getBranchName() {
+		return branchName;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public String getCommitSha() {
+		return commitSha;
+	}
+
+	public void setCommitSha(String commitSha) {
+		this.commitSha = commitSha;
+	}
+
+	public Instant getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(Instant updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+}
@@ -0,0 +1,91 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Commit and line totals of one repository per time bucket, kept up to date as commits are
+ * recorded so frequency queries never touch commit_change. Profile as in {@link CommitChange}.
+ */
+@Entity
+@Table(name = "change_rollup",
+    uniqueConstraints = @UniqueConstraint(name = "uk_change_rollup",
+        columnNames = {"repo_url", "diff_profile", "granularity", "bucket_start"}))
+public class ChangeRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false)
+    private String repoUrl;
+
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    private String diffProfile;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 8)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDate bucketStart;
+
+    @Column(name = "commit_count", nullable = false)
+    private long commitCount;
+
+    @Column(name = "lines_added", nullable = false)
+    private long linesAdded;
+
+    @Column(name = "lines_deleted", nullable = false)
+    private long linesDeleted;
+
+    public ChangeRollup() {}
+
+    public ChangeRollup(String repoUrl, String diffProfile, RollupGranularity granularity, LocalDate bucketStart) {
+        this.repoUrl = repoUrl;
+        this.diffProfile = diffProfile;
+        this.granularity = granularity;
+        this.bucketStart = bucketStart;
+    }
+
+    public void add(long commits, long added, long deleted) {
+        this.commitCount += commits;
+        this.linesAdded += added;
+        this.linesDeleted += deleted;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public RollupGranularity getGranularity() {
+		return granularity;
+	}
+
+	public LocalDate getBucketStart() {
+		return bucketStart;
+	}
+
+	public long getCommitCount() {
+		return commitCount;
+	}
+
+	public long getLinesAdded() {
+		return linesAdded;
+	}
+
+	public long getLinesDeleted() {
+		return linesDeleted;
+	}
+
+	public long getTotalChanges() {
+		return linesAdded + linesDeleted;
+	}
+}
@@ -0,0 +1,99 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Serialized churn index of one branch, valid for the history up to {@code commitSha}. Advanced
+ * together with the branch's ScanCheckpoint by incremental scans; profile as in CommitChange.
+ */
+@Entity
+@Table(name = "churn_index",
+    uniqueConstraints = @UniqueConstraint(name = "uk_churn_index", columnNames = {"repo_url", "branch_name", "diff_profile"}))
+public class ChurnIndexSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false)
+    private String repoUrl;
+
+    @Column(name = "branch_name", nullable = false)
+    private String branchName;
+
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    private String diffProfile;
+
+    @Column(name = "commit_sha", nullable = false, length = 64)
+    private String commitSha;
+
+    @Column(name = "path_count", nullable = false)
+    private int pathCount;
+
+    // deflated path table and counters
+    @Lob
+    @Column(name = "index_data", nullable = false, length = 1 << 30)
+    private byte[] data;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Version
+    private long version;
+
+    public ChurnIndexSnapshot() {}
+
+    public ChurnIndexSnapshot(String repoUrl, String branchName, String diffProfile) {
+        this.repoUrl = repoUrl;
+        this.branchName = branchName;
+        this.diffProfile = diffProfile;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getBranchName() {
+		return branchName;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public String getCommitSha() {
+		return commitSha;
+	}
+
+	public void setCommitSha(String commitSha) {
+		this.commitSha = commitSha;
+	}
+
+	public int getPathCount() {
+		return pathCount;
+	}
+
+	public void setPathCount(int pathCount) {
+		this.pathCount = pathCount;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public void setData(byte[] data) {
+		this.data = data;
+	}
+
+	public Instant getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(Instant updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+}
@@ -0,0 +1,81 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * One commit of a scanned repository with its diff stats, for time-based queries. Written once
+ * per (repo, commit, profile) by ChangeHistoryRecorder through JDBC batches; the default
+ * profile is stored as an empty string so the unique key also holds for it.
+ */
+@Entity
+@Table(name = "commit_change",
+    uniqueConstraints = @UniqueConstraint(name = "uk_commit_change", columnNames = {"repo_url", "commit_sha", "diff_profile"}),
+    indexes = @Index(name = "idx_commit_change_time", columnList = "repo_url, diff_profile, commit_time"))
+public class CommitChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false)
+    private String repoUrl;
+
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    private String diffProfile;
+
+    @Column(name = "commit_sha", nullable = false, length = 64)
+    private String commitSha;
+
+    @Column(name = "commit_time", nullable = false)
+    private Instant commitTime;
+
+    @Column(name = "author_name")
+    private String authorName;
+
+    @Column(name = "author_email")
+    private String authorEmail;
+
+    @Column(name = "lines_added", nullable = false)
+    private long linesAdded;
+
+    @Column(name = "lines_deleted", nullable = false)
+    private long linesDeleted;
+
+    public CommitChange() {}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public String getCommitSha() {
+		return commitSha;
+	}
+
+	public Instant getCommitTime() {
+		return commitTime;
+	}
+
+	public String getAuthorName() {
+		return authorName;
+	}
+
+	public String getAuthorEmail() {
+		return authorEmail;
+	}
+
+	public long getLinesAdded() {
+		return linesAdded;
+	}
+
+	public long getLinesDeleted() {
+		return linesDeleted;
+	}
+}
@@ -0,0 +1,129 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Diff stats of one commit against its first parent. A commit SHA pins its parent and both trees,
+ * so the row is valid for every repository and branch that contains the commit. Stats computed
+ * with non-default scan options (path filters) carry that options profile and a separate key.
+ */
+@Entity
+@Table(name = "commit_diff_stat")
+public class CommitDiffStat implements Persistable<String> {
+
+    // commit SHA, or "<sha>:<profile>" for non-default scan options
+    @Id
+    @Column(name = "stat_key", nullable = false, length = 96)
+    private String statKey;
+
+    @Column(name = "commit_sha", nullable = false, length = 64)
+    private String commitSha;
+
+    @Column(name = "diff_profile", length = 32)
+    private String diffProfile;
+
+    @Column(name = "parent_sha", length = 64)
+    private String parentSha;
+
+    @Column(name = "lines_added", nullable = false)
+    private long linesAdded;
+
+    @Column(name = "lines_deleted", nullable = false)
+    private long linesDeleted;
+
+    // fast-mode shortcuts taken for this commit
+    @Column(name = "binary_files")
+    private int binaryFiles;
+
+    @Column(name = "oversized_files")
+    private int oversizedFiles;
+
+    @Column(name = "rename_limit_exceeded")
+    private boolean renameLimitExceeded;
+
+    // assigned ids: lets save() insert directly (and batch) instead of merging with a select first
+    @Transient
+    private boolean isNew = true;
+
+    public CommitDiffStat() {}
+
+    public CommitDiffStat(String commitSha, String diffProfile, String parentSha, long linesAdded, long linesDeleted) {
+        this.statKey = key(commitSha, diffProfile);
+        this.commitSha = commitSha;
+        this.diffProfile = diffProfile;
+        this.parentSha = parentSha;
+        this.linesAdded = linesAdded;
+        this.linesDeleted = linesDeleted;
+    }
+
+	public static String key(String commitSha, String diffProfile) {
+		return diffProfile == null ? commitSha : commitSha + ":" + diffProfile;
+	}
+
+	@Override
+	public String getId() {
+		return statKey;
+	}
+
+	@Override
+	public boolean isNew() {
+		return isNew;
+	}
+
+	@PostLoad
+	@PostPersist
+	void markNotNew() {
+		this.isNew = false;
+	}
+
+	public String getCommitSha() {
+		return commitSha;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public String getParentSha() {
+		return parentSha;
+	}
+
+	public long getLinesAdded() {
+		return linesAdded;
+	}
+
+	public long getLinesDeleted() {
+		return linesDeleted;
+	}
+
+	public int getBinaryFiles() {
+		return binaryFiles;
+	}
+
+	public void setBinaryFiles(int binaryFiles) {
+		this.binaryFiles = binaryFiles;
+	}
+
+	public int getOversizedFiles() {
+		return oversizedFiles;
+	}
+
+	public void setOversizedFiles(int oversizedFiles) {
+		this.oversizedFiles = oversizedFiles;
+	}
+
+	public boolean isRenameLimitExceeded() {
+		return renameLimitExceeded;
+	}
+
+	public void setRenameLimitExceeded(boolean renameLimitExceeded) {
+		this.renameLimitExceeded = renameLimitExceeded;
+	}
+
+	@Override
+	public String toString() {
+		return "CommitDiffStat [commitSha=" + commitSha + ", diffProfile=" + diffProfile + ", parentSha=" + parentSha + ", linesAdded=" + linesAdded
+				+ ", linesDeleted=" + linesDeleted + "]";
+	}
+}
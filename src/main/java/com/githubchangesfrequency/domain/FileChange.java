@@ -0,0 +1,87 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * One changed file of a {@link CommitChange}. Only written when per-file history is enabled
+ * (git.history.fileRows); commit_time is copied from the commit so range queries need no join.
+ */
+@Entity
+@Table(name = "file_change",
+    indexes = @Index(name = "idx_file_change_commit", columnList = "repo_url, diff_profile, commit_sha"))
+public class FileChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false)
+    private String repoUrl;
+
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    private String diffProfile;
+
+    @Column(name = "commit_sha", nullable = false, length = 64)
+    private String commitSha;
+
+    @Column(name = "commit_time", nullable = false)
+    private Instant commitTime;
+
+    @Column(name = "path", nullable = false, length = 1024)
+    private String path;
+
+    // renames and copies only
+    @Column(name = "old_path", length = 1024)
+    private String oldPath;
+
+    @Column(name = "change_type", nullable = false, length = 8)
+    private String changeType;
+
+    @Column(name = "lines_added", nullable = false)
+    private long linesAdded;
+
+    @Column(name = "lines_deleted", nullable = false)
+    private long linesDeleted;
+
+    public FileChange() {}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public String getCommitSha() {
+		return commitSha;
+	}
+
+	public Instant getCommitTime() {
+		return commitTime;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getOldPath() {
+		return oldPath;
+	}
+
+	public String getChangeType() {
+		return changeType;
+	}
+
+	public long getLinesAdded() {
+		return linesAdded;
+	}
+
+	public long getLinesDeleted() {
+		return linesDeleted;
+	}
+}
@@ -0,0 +1,75 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Per-repository default path globs, applied to every scan of the repo. Globs are stored one
+ * per line.
+ */
+@Entity
+@Table(name = "repo_scan_defaults", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"repo_url"})
+})
+public class RepoScanDefaults {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false, length = 1024)
+    private String repoUrl;
+
+    @Column(name = "include_paths", length = 4000)
+    private String includePaths;
+
+    @Column(name = "exclude_paths", length = 4000)
+    private String excludePaths;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    public RepoScanDefaults() {}
+
+    public RepoScanDefaults(String repoUrl) {
+        this.repoUrl = repoUrl;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getIncludePaths() {
+		return includePaths;
+	}
+
+	public void setIncludePaths(String includePaths) {
+		this.includePaths = includePaths;
+	}
+
+	public String getExcludePaths() {
+		return excludePaths;
+	}
+
+	public void setExcludePaths(String excludePaths) {
+		this.excludePaths = excludePaths;
+	}
+
+	public Instant getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(Instant updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "RepoScanDefaults [id=" + id + ", repoUrl=" + repoUrl + ", includePaths=" + includePaths
+				+ ", excludePaths=" + excludePaths + ", updatedAt=" + updatedAt + "]";
+	}
+}
@@ -4,19 +4,67 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "repository_change")
+@Table(name = "repository_change", indexes = {
+    @Index(name = "idx_repository_change_tip", columnList = "repo_url, branch_name, tip_commit, diff_profile")
+})
 public class RepositoryChange {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @Column(name = "repo_url")
     private String repoUrl;
+    @Column(name = "branch_name")
     private String branchName;
     private long linesAdded;
     private long linesDeleted;
     private long totalChanges;
     private Instant scannedAt;
 
+    // branch tip the totals were computed at
+    @Column(name = "tip_commit", length = 64)
+    private String tipCommit;
+
+    // incremental runs: the checkpoint the walk stopped at; null when the whole history was counted
+    @Column(name = "base_commit", length = 64)
+    private String baseCommit;
+
+    // ScanOptions profile (path filters); null for default options
+    @Column(name = "diff_profile", length = 32)
+    private String diffProfile;
+
+    // fast-mode shortcuts taken (all zero for exact scans)
+    @Column(name = "binary_files")
+    private Long binaryFiles;
+    @Column(name = "oversized_files")
+    private Long oversizedFiles;
+    @Column(name = "rename_limit_commits")
+    private Long renameLimitCommits;
+
+    // incremental runs: cumulative totals of the branch at the tip
+    @Column(name = "branch_lines_added")
+    private Long branchLinesAdded;
+    @Column(name = "branch_lines_deleted")
+    private Long branchLinesDeleted;
+
+    // incremental runs after a history rewrite: commits of the old checkpoint dropped from the branch
+    @Column(name = "dropped_commits")
+    private Long droppedCommits;
+    @Column(name = "dropped_lines_added")
+    private Long droppedLinesAdded;
+    @Column(name = "dropped_lines_deleted")
+    private Long droppedLinesDeleted;
+
+    // milliseconds per scan phase up to the save, e.g. "open=2,fetch=840,resolve=1,walk=35,diff=1210,..."
+    @Column(name = "phase_millis", length = 512)
+    private String phaseMillis;
+    @Column(name = "scan_millis")
+    private Long scanMillis;
+
+    // the fetch before this scan failed: counts are as of the mirror's last successful fetch
+    @Column(name = "fetch_error", length = 512)
+    private String fetchError;
+
     // constructors, getters, setters
 
     public RepositoryChange() {}
@@ -30,6 +78,150 @@ public class RepositoryChange {
         this.scannedAt = scannedAt;
     }
 
-    // getters and setters...
-    // (omit for brevity in this snippet; generate using IDE)
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getBranchName() {
+		return branchName;
+	}
+
+	public long getLinesAdded() {
+		return linesAdded;
+	}
+
+	public long getLinesDeleted() {
+		return linesDeleted;
+	}
+
+	public long getTotalChanges() {
+		return totalChanges;
+	}
+
+	public Instant getScannedAt() {
+		return scannedAt;
+	}
+
+	public String getTipCommit() {
+		return tipCommit;
+	}
+
+	public void setTipCommit(String tipCommit) {
+		this.tipCommit = tipCommit;
+	}
+
+	public String getBaseCommit() {
+		return baseCommit;
+	}
+
+	public void setBaseCommit(String baseCommit) {
+		this.baseCommit = baseCommit;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public void setDiffProfile(String diffProfile) {
+		this.diffProfile = diffProfile;
+	}
+
+	public Long getBinaryFiles() {
+		return binaryFiles;
+	}
+
+	public void setBinaryFiles(Long binaryFiles) {
+		this.binaryFiles = binaryFiles;
+	}
+
+	public Long getOversizedFiles() {
+		return oversizedFiles;
+	}
+
+	public void setOversizedFiles(Long oversizedFiles) {
+		this.oversizedFiles = oversizedFiles;
+	}
+
+	public Long getRenameLimitCommits() {
+		return renameLimitCommits;
+	}
+
+	public void setRenameLimitCommits(Long renameLimitCommits) {
+		this.renameLimitCommits = renameLimitCommits;
+	}
+
+	public Long getBranchLinesAdded() {
+		return branchLinesAdded;
+	}
+
+	public void setBranchLinesAdded(Long branchLinesAdded) {
+		this.branchLinesAdded = branchLinesAdded;
+	}
+
+	public Long getBranchLinesDeleted() {
+		return branchLinesDeleted;
+	}
+
+	public void setBranchLinesDeleted(Long branchLinesDeleted) {
+		this.branchLinesDeleted = branchLinesDeleted;
+	}
+
+	public Long getDroppedCommits() {
+		return droppedCommits;
+	}
+
+	public void setDroppedCommits(Long droppedCommits) {
+		this.droppedCommits = droppedCommits;
+	}
+
+	public Long getDroppedLinesAdded() {
+		return droppedLinesAdded;
+	}
+
+	public void setDroppedLinesAdded(Long droppedLinesAdded) {
+		this.droppedLinesAdded = droppedLinesAdded;
+	}
+
+	public Long getDroppedLinesDeleted() {
+		return droppedLinesDeleted;
+	}
+
+	public void setDroppedLinesDeleted(Long droppedLinesDeleted) {
+		this.droppedLinesDeleted = droppedLinesDeleted;
+	}
+
+	public String getPhaseMillis() {
+		return phaseMillis;
+	}
+
+	public void setPhaseMillis(String phaseMillis) {
+		this.phaseMillis = phaseMillis;
+	}
+
+	public Long getScanMillis() {
+		return scanMillis;
+	}
+
+	public void setScanMillis(Long scanMillis) {
+		this.scanMillis = scanMillis;
+	}
+
+	public String getFetchError() {
+		return fetchError;
+	}
+
+	public void setFetchError(String fetchError) {
+		this.fetchError = fetchError;
+	}
+
+	@Override
+	public String toString() {
+		return "RepositoryChange [id=" + id + ", repoUrl=" + repoUrl + ", branchName=" + branchName + ", linesAdded="
+				+ linesAdded + ", linesDeleted=" + linesDeleted + ", totalChanges=" + totalChanges + ", scannedAt="
+				+ scannedAt + ", tipCommit=" + tipCommit + ", baseCommit=" + baseCommit + ", diffProfile=" + diffProfile + "]";
+	}
 }
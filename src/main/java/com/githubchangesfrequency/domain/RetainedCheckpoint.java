@@ -0,0 +1,85 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * An earlier incremental-scan checkpoint of a branch with the branch's cumulative totals at
+ * that commit. The last few are kept per branch so that after a force-push whose old tip has
+ * been pruned, a scan can restart from the newest one still in the rewritten history.
+ * Profile as in {@link CommitChange}.
+ */
+@Entity
+@Table(name = "scan_checkpoint_history",
+    indexes = @Index(name = "idx_checkpoint_history_branch", columnList = "repo_url, branch_name, diff_profile, created_at"))
+public class RetainedCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false, length = 1024)
+    private String repoUrl;
+
+    @Column(name = "branch_name", nullable = false, length = 255)
+    private String branchName;
+
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    private String diffProfile;
+
+    @Column(name = "commit_sha", nullable = false, length = 64)
+    private String commitSha;
+
+    @Column(name = "branch_lines_added", nullable = false)
+    private long branchLinesAdded;
+
+    @Column(name = "branch_lines_deleted", nullable = false)
+    private long branchLinesDeleted;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public RetainedCheckpoint() {}
+
+    public RetainedCheckpoint(String repoUrl, String branchName, String diffProfile, String commitSha,
+                              long branchLinesAdded, long branchLinesDeleted, Instant createdAt) {
+        this.repoUrl = repoUrl;
+        this.branchName = branchName;
+        this.diffProfile = diffProfile;
+        this.commitSha = commitSha;
+        this.branchLinesAdded = branchLinesAdded;
+        this.branchLinesDeleted = branchLinesDeleted;
+        this.createdAt = createdAt;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getBranchName() {
+		return branchName;
+	}
+
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
+	public String getCommitSha() {
+		return commitSha;
+	}
+
+	public long getBranchLinesAdded() {
+		return branchLinesAdded;
+	}
+
+	public long getBranchLinesDeleted() {
+		return branchLinesDeleted;
+	}
+
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+}
@@ -0,0 +1,27 @@
+package com.githubchangesfrequency.domain;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Time bucket sizes of {@link ChangeRollup}. Buckets are UTC calendar days, ISO weeks
+ * (starting Monday) and calendar months, each identified by its first day.
+ */
+public enum RollupGranularity {
+    DAY, WEEK, MONTH;
+
+    public LocalDate bucketStart(Instant time) {
+        return bucketStart(LocalDate.ofInstant(time, ZoneOffset.UTC));
+    }
+
+    public LocalDate bucketStart(LocalDate date) {
+        return switch (this) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+}
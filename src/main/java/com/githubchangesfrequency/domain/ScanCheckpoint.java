@@ -3,9 +3,16 @@ package com.githubchangesfrequency.domain;
 import jakarta.persistence.*;
 import java.time.Instant;
 
+import org.hibernate.annotations.ColumnDefault;
+
+/**
+ * Last commit an incremental scan of a branch processed, one per diff profile so that scans with
+ * different options each advance their own. Profile as in {@link CommitChange}; rows from
+ * before profiles were tracked get the default profile (see ScanCheckpointMigration).
+ */
 @Entity
 @Table(name = "scan_checkpoint", uniqueConstraints = {
-    @UniqueConstraint(columnNames = {"repo_url", "branch_name"})
+    @UniqueConstraint(name = "uk_scan_checkpoint_profile", columnNames = {"repo_url", "branch_name", "diff_profile"})
 })
 public class ScanCheckpoint {
 
@@ -19,6 +26,10 @@ public class ScanCheckpoint {
     @Column(name = "branch_name", nullable = false, length = 255)
     private String branchName;
 
+    @Column(name = "diff_profile", nullable = false, length = 32)
+    @ColumnDefault("''")
+    private String diffProfile;
+
     @Column(name = "last_processed_commit", length = 64)
     private String lastProcessedCommit;
 
@@ -27,9 +38,11 @@ public class ScanCheckpoint {
 
     public ScanCheckpoint() {}
 
-    public ScanCheckpoint(String repoUrl, String branchName, String lastProcessedCommit, Instant updatedAt) {
+    public ScanCheckpoint(String repoUrl, String branchName, String diffProfile, String lastProcessedCommit,
+                          Instant updatedAt) {
         this.repoUrl = repoUrl;
         this.branchName = branchName;
+        this.diffProfile = diffProfile;
         this.lastProcessedCommit = lastProcessedCommit;
         this.updatedAt = updatedAt;
     }
@@ -58,6 +71,10 @@ public class ScanCheckpoint {
 		this.branchName = branchName;
 	}
 
+	public String getDiffProfile() {
+		return diffProfile;
+	}
+
 	public String getLastProcessedCommit() {
 		return lastProcessedCommit;
 	}
@@ -77,7 +94,7 @@ public class ScanCheckpoint {
 	@Override
 	public String toString() {
 		return "ScanCheckpoint [id=" + id + ", repoUrl=" + repoUrl + ", branchName=" + branchName
-				+ ", lastProcessedCommit=" + lastProcessedCommit + ", updatedAt=" + updatedAt + "]";
+				+ ", diffProfile=" + diffProfile + ", lastProcessedCommit=" + lastProcessedCommit + ", updatedAt=" + updatedAt + "]";
 	}
 
 	
@@ -0,0 +1,125 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A repo/branch the background refresher keeps scanned. The refresher compares the remote tip
+ * with {@code lastSeenTip} and only fetches and scans when it moved.
+ */
+@Entity
+@Table(name = "tracked_branch",
+    uniqueConstraints = @UniqueConstraint(name = "uk_tracked_branch", columnNames = {"repo_url", "branch_name"}),
+    indexes = @Index(name = "idx_tracked_branch_due", columnList = "enabled, next_check_at"))
+public class TrackedBranch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "repo_url", nullable = false, length = 1024)
+    private String repoUrl;
+
+    @Column(name = "branch_name", nullable = false)
+    private String branchName;
+
+    @Column(name = "enabled", nullable = false)
+    private boolean enabled = true;
+
+    @Column(name = "next_check_at", nullable = false)
+    private Instant nextCheckAt;
+
+    // remote tip of the last successful scan
+    @Column(name = "last_seen_tip", length = 64)
+    private String lastSeenTip;
+
+    @Column(name = "last_checked_at")
+    private Instant lastCheckedAt;
+
+    @Column(name = "last_scanned_at")
+    private Instant lastScannedAt;
+
+    @Column(name = "consecutive_failures", nullable = false)
+    private int consecutiveFailures;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    @Version
+    private long version;
+
+    public TrackedBranch() {}
+
+    public TrackedBranch(String repoUrl, String branchName, Instant nextCheckAt) {
+        this.repoUrl = repoUrl;
+        this.branchName = branchName;
+        this.nextCheckAt = nextCheckAt;
+    }
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getBranchName() {
+		return branchName;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Instant getNextCheckAt() {
+		return nextCheckAt;
+	}
+
+	public void setNextCheckAt(Instant nextCheckAt) {
+		this.nextCheckAt = nextCheckAt;
+	}
+
+	public String getLastSeenTip() {
+		return lastSeenTip;
+	}
+
+	public void setLastSeenTip(String lastSeenTip) {
+		this.lastSeenTip = lastSeenTip;
+	}
+
+	public Instant getLastCheckedAt() {
+		return lastCheckedAt;
+	}
+
+	public void setLastCheckedAt(Instant lastCheckedAt) {
+		this.lastCheckedAt = lastCheckedAt;
+	}
+
+	public Instant getLastScannedAt() {
+		return lastScannedAt;
+	}
+
+	public void setLastScannedAt(Instant lastScannedAt) {
+		this.lastScannedAt = lastScannedAt;
+	}
+
+	public int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	public void setConsecutiveFailures(int consecutiveFailures) {
+		this.consecutiveFailures = consecutiveFailures;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+}
@@ -0,0 +1,82 @@
+package com.githubchangesfrequency.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Which node may scan a repo right now (see WorkLeaseManager). Rows are written with plain
+ * conditional updates, never through the persistence context; the entity defines the table
+ * and is the read-only view returned by /api/leases.
+ *
+ * A released lease keeps its owner with {@code expiresAt} set to the release time, so the node
+ * that last scanned the repo (and has its mirror) is preferred for the next background refresh.
+ */
+@Entity
+@Table(name = "work_lease", indexes = @Index(name = "idx_work_lease_owner", columnList = "owner"))
+public class WorkLease {
+
+    // sha-256 of the repo url: the url itself is too long for a primary key
+    @Id
+    @Column(name = "lease_key", length = 64)
+    private String leaseKey;
+
+    @Column(name = "repo_url", nullable = false, length = 1024)
+    private String repoUrl;
+
+    @Column(name = "owner", length = 128)
+    private String owner;
+
+    // incremented on every claim, so a node that lost its lease cannot renew or release the new holder's
+    @Column(name = "fencing_token", nullable = false)
+    private long fencingToken;
+
+    @Column(name = "acquired_at")
+    private Instant acquiredAt;
+
+    @Column(name = "heartbeat_at")
+    private Instant heartbeatAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public WorkLease() {}
+
+    public WorkLease(String leaseKey, String repoUrl, String owner, long fencingToken, Instant acquiredAt,
+                     Instant heartbeatAt, Instant expiresAt) {
+        this.leaseKey = leaseKey;
+        this.repoUrl = repoUrl;
+        this.owner = owner;
+        this.fencingToken = fencingToken;
+        this.acquiredAt = acquiredAt;
+        this.heartbeatAt = heartbeatAt;
+        this.expiresAt = expiresAt;
+    }
+
+	public String getLeaseKey() {
+		return leaseKey;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public long getFencingToken() {
+		return fencingToken;
+	}
+
+	public Instant getAcquiredAt() {
+		return acquiredAt;
+	}
+
+	public Instant getHeartbeatAt() {
+		return heartbeatAt;
+	}
+
+	public Instant getExpiresAt() {
+		return expiresAt;
+	}
+}
@@ -0,0 +1,11 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.AuthorIdentity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AuthorIdentityRepository extends JpaRepository<AuthorIdentity, Long> {
+    List<AuthorIdentity> findByEmailIn(Collection<String> emails);
+}
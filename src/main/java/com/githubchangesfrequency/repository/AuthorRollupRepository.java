@@ -0,0 +1,26 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.AuthorRollup;
+import com.githubchangesfrequency.domain.RollupGranularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface AuthorRollupRepository extends JpaRepository<AuthorRollup, Long> {
+    List<AuthorRollup> findByRepoUrlAndBranchNameAndDiffProfileAndGranularityAndBucketStartIn(
+            String repoUrl, String branchName, String diffProfile, RollupGranularity granularity,
+            Collection<LocalDate> bucketStarts);
+
+    List<AuthorRollup> findByRepoUrlAndBranchNameAndDiffProfileAndGranularityAndBucketStartBetween(
+            String repoUrl, String branchName, String diffProfile, RollupGranularity granularity,
+            LocalDate from, LocalDate to);
+
+    // bulk delete: a rebuild should not load every row first
+    @Modifying
+    @Query("delete from AuthorRollup r where r.repoUrl = ?1 and r.branchName = ?2 and r.diffProfile = ?3")
+    int deleteBranch(String repoUrl, String branchName, String diffProfile);
+}
@@ -0,0 +1,10 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.AuthorRollupState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface AuthorRollupStateRepository extends JpaRepository<AuthorRollupState, Long> {
+    Optional<AuthorRollupState> findByRepoUrlAndBranchNameAndDiffProfile(String repoUrl, String branchName, String diffProfile);
+}
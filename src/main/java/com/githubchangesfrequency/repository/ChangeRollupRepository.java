@@ -0,0 +1,13 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.ChangeRollup;
+import com.githubchangesfrequency.domain.RollupGranularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ChangeRollupRepository extends JpaRepository<ChangeRollup, Long> {
+    List<ChangeRollup> findByRepoUrlAndDiffProfileAndGranularityAndBucketStartBetweenOrderByBucketStart(
+            String repoUrl, String diffProfile, RollupGranularity granularity, LocalDate from, LocalDate to);
+}
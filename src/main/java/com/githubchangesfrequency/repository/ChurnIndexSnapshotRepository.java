@@ -0,0 +1,10 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.ChurnIndexSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface ChurnIndexSnapshotRepository extends JpaRepository<ChurnIndexSnapshot, Long> {
+    Optional<ChurnIndexSnapshot> findByRepoUrlAndBranchNameAndDiffProfile(String repoUrl, String branchName, String diffProfile);
+}
@@ -0,0 +1,7 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.CommitDiffStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CommitDiffStatRepository extends JpaRepository<CommitDiffStat, String> {
+}
@@ -0,0 +1,10 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.RepoScanDefaults;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface RepoScanDefaultsRepository extends JpaRepository<RepoScanDefaults, Long> {
+    Optional<RepoScanDefaults> findByRepoUrl(String repoUrl);
+}
@@ -3,7 +3,16 @@ package com.githubchangesfrequency.repository;
 import com.githubchangesfrequency.domain.RepositoryChange;
 import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.List;
+import java.util.Optional;
 
 public interface RepositoryChangeRepository extends JpaRepository<RepositoryChange, Long> {
     List<RepositoryChange> findByRepoUrlAndBranchNameOrderByScannedAtDesc(String repoUrl, String branchName);
+
+    // latest whole-history result computed at this tip (a null profile matches default options)
+    Optional<RepositoryChange> findFirstByRepoUrlAndBranchNameAndTipCommitAndDiffProfileAndBaseCommitIsNullOrderByScannedAtDesc(
+            String repoUrl, String branchName, String tipCommit, String diffProfile);
+
+    // latest result of any kind computed at this tip
+    Optional<RepositoryChange> findFirstByRepoUrlAndBranchNameAndTipCommitAndDiffProfileOrderByScannedAtDesc(
+            String repoUrl, String branchName, String tipCommit, String diffProfile);
 }
@@ -0,0 +1,11 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.RetainedCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface RetainedCheckpointRepository extends JpaRepository<RetainedCheckpoint, Long> {
+    List<RetainedCheckpoint> findByRepoUrlAndBranchNameAndDiffProfileOrderByCreatedAtDesc(
+            String repoUrl, String branchName, String diffProfile);
+}
@@ -7,5 +7,5 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.Optional;
 
 public interface ScanCheckpointRepository extends JpaRepository<ScanCheckpoint, Long> {
-    Optional<ScanCheckpoint> findByRepoUrlAndBranchName(String repoUrl, String branchName);
+    Optional<ScanCheckpoint> findByRepoUrlAndBranchNameAndDiffProfile(String repoUrl, String branchName, String diffProfile);
 }
@@ -0,0 +1,17 @@
+package com.githubchangesfrequency.repository;
+
+import com.githubchangesfrequency.domain.TrackedBranch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface TrackedBranchRepository extends JpaRepository<TrackedBranch, Long> {
+    Optional<TrackedBranch> findByRepoUrlAndBranchName(String repoUrl, String branchName);
+
+    List<TrackedBranch> findByRepoUrlOrderByBranchName(String repoUrl);
+
+    // due checks, oldest first; bounded so one tick never loads the whole registry
+    List<TrackedBranch> findTop500ByEnabledTrueAndNextCheckAtLessThanEqualOrderByNextCheckAt(Instant now);
+}
@@ -0,0 +1,26 @@
+package com.githubchangesfrequency.service;
+
+import java.util.List;
+
+/**
+ * One author's totals over a queried range plus the non-empty buckets they come from.
+ */
+public record AuthorActivity(String email, String name, long commits, long linesAdded, long linesDeleted,
+                             List<FrequencyBucket> buckets) {
+
+    static AuthorActivity of(String email, String name, List<FrequencyBucket> buckets) {
+        long commits = 0;
+        long added = 0;
+        long deleted = 0;
+        for (FrequencyBucket b : buckets) {
+            commits += b.commits();
+            added += b.linesAdded();
+            deleted += b.linesDeleted();
+        }
+        return new AuthorActivity(email, name, commits, added, deleted, buckets);
+    }
+
+    public long getTotalChanges() {
+        return linesAdded + linesDeleted;
+    }
+}
@@ -0,0 +1,134 @@
+package com.githubchangesfrequency.service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import com.githubchangesfrequency.domain.RollupGranularity;
+
+/**
+ * Per-author, per-bucket totals of one scan, before they are merged into author_rollup.
+ * Authors are interned to small ints (by lower-cased email) and each (author, granularity,
+ * bucket) is packed into one long key of an open-addressing table whose counters sit in
+ * parallel primitive arrays, so years of history for hundreds of authors stay a few arrays.
+ */
+final class AuthorSeries {
+
+    private static final RollupGranularity[] GRANULARITIES = RollupGranularity.values();
+    private static final long EMPTY = -1L;
+
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private final List<String> emails = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    private long[] keys = newKeys(1024);
+    private long[] commits = new long[1024];
+    private long[] added = new long[1024];
+    private long[] deleted = new long[1024];
+    private int size;
+
+    @FunctionalInterface
+    interface BucketVisitor {
+        void visit(int author, RollupGranularity granularity, LocalDate bucketStart,
+                   long commits, long linesAdded, long linesDeleted);
+    }
+
+    /** Count a commit for its author in the bucket of its author date, at every granularity. */
+    public void add(RevCommit commit, CommitStats stats) {
+        PersonIdent ident = commit.getAuthorIdent();
+        int author = intern(ident);
+        LocalDate date = LocalDate.ofInstant(ident.getWhenAsInstant(), ZoneOffset.UTC);
+        for (RollupGranularity g : GRANULARITIES) {
+            int slot = slot(pack(author, g, g.bucketStart(date)));
+            commits[slot]++;
+            added[slot] += stats.linesAdded();
+            deleted[slot] += stats.linesDeleted();
+        }
+    }
+
+    public int authorCount() {
+        return emails.size();
+    }
+
+    public String email(int author) {
+        return emails.get(author);
+    }
+
+    public String name(int author) {
+        return names.get(author);
+    }
+
+    public void forEach(BucketVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key == EMPTY) continue;
+            visitor.visit((int) (key >>> 34), GRANULARITIES[(int) (key >>> 32) & 3],
+                    LocalDate.ofEpochDay((int) key), commits[i], added[i], deleted[i]);
+        }
+    }
+
+    private int intern(PersonIdent ident) {
+        String email = ident.getEmailAddress();
+        String key = email == null || email.isBlank() ? ident.getName() : email.toLowerCase(Locale.ROOT);
+        Integer id = authorIds.get(key);
+        if (id == null) {
+            id = emails.size();
+            authorIds.put(key, id);
+            emails.add(key);
+            names.add(ident.getName());
+        }
+        return id;
+    }
+
+    // author (30 bits) | granularity (2 bits) | epoch day (32 bits, two's complement)
+    private static long pack(int author, RollupGranularity granularity, LocalDate bucketStart) {
+        return ((long) author << 34) | ((long) granularity.ordinal() << 32) | (bucketStart.toEpochDay() & 0xFFFFFFFFL);
+    }
+
+    private int slot(long key) {
+        if (size * 2 >= keys.length) grow();
+        int mask = keys.length - 1;
+        int i = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        size++;
+        return i;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCommits = commits;
+        long[] oldAdded = added;
+        long[] oldDeleted = deleted;
+        int n = oldKeys.length * 2;
+        keys = newKeys(n);
+        commits = new long[n];
+        added = new long[n];
+        deleted = new long[n];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = slot(oldKeys[i]);
+            commits[slot] = oldCommits[i];
+            added[slot] = oldAdded[i];
+            deleted[slot] = oldDeleted[i];
+        }
+    }
+
+    private static long[] newKeys(int n) {
+        long[] k = new long[n];
+        Arrays.fill(k, EMPTY);
+        return k;
+    }
+}
@@ -0,0 +1,262 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.githubchangesfrequency.domain.AuthorIdentity;
+import com.githubchangesfrequency.domain.AuthorRollup;
+import com.githubchangesfrequency.domain.AuthorRollupState;
+import com.githubchangesfrequency.domain.RollupGranularity;
+import com.githubchangesfrequency.repository.AuthorIdentityRepository;
+import com.githubchangesfrequency.repository.AuthorRollupRepository;
+import com.githubchangesfrequency.repository.AuthorRollupStateRepository;
+
+/**
+ * Per-author commit and line totals of a branch by day, week and month. After each scan the
+ * commits between the last merged tip and the new one are aggregated in an {@link AuthorSeries}
+ * and added to the author_rollup rows; if the last merged tip is gone from the branch's
+ * history the branch's rows are rebuilt. Per-commit stats are reused from the scan that
+ * triggered the update, or read from {@link CommitStatIndex}.
+ */
+@Service
+public class AuthorStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthorStatsService.class);
+
+    private static final int LOOKUP_CHUNK = 1000;
+    private static final int LOCK_STRIPES = 64;
+
+    private final AuthorRollupRepository rollupRepo;
+    private final AuthorRollupStateRepository stateRepo;
+    private final AuthorIdentityRepository authorRepo;
+    private final CommitStatIndex statIndex;
+    private final TransactionTemplate writeTx;
+    private final boolean enabled;
+
+    // the rollup read-modify-write of one branch must not interleave within this JVM
+    private final ReentrantLock[] branchLocks = new ReentrantLock[LOCK_STRIPES];
+
+    private record BucketKey(long authorId, LocalDate start) {}
+
+    public AuthorStatsService(AuthorRollupRepository rollupRepo,
+                              AuthorRollupStateRepository stateRepo,
+                              AuthorIdentityRepository authorRepo,
+                              CommitStatIndex statIndex,
+                              PlatformTransactionManager txManager,
+                              @Value("${git.authors.enabled:true}") boolean enabled) {
+        this.rollupRepo = rollupRepo;
+        this.stateRepo = stateRepo;
+        this.authorRepo = authorRepo;
+        this.statIndex = statIndex;
+        this.writeTx = new TransactionTemplate(txManager);
+        this.writeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        for (int i = 0; i < LOCK_STRIPES; i++) branchLocks[i] = new ReentrantLock();
+    }
+
+    /**
+     * Bring the branch's author rollups up to {@code tip}. {@code known} are stats the caller
+     * already has (the scan's own commits); any other commit is looked up in the index.
+     */
+    public void update(Repository repository, String repoUrl, String branch, ScanOptions options,
+                       ObjectId tip, List<CommitStats> known) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        String profile = ChangeHistoryRecorder.profileKey(options.profile());
+        ReentrantLock lock = branchLocks[Math.floorMod((repoUrl + "|" + branch).hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            Optional<AuthorRollupState> state = stateRepo.findByRepoUrlAndBranchNameAndDiffProfile(repoUrl, branch, profile);
+            if (state.isPresent() && state.get().getCommitSha().equals(tip.getName())) {
+                return;
+            }
+
+            boolean rebuild;
+            List<RevCommit> commits = new ArrayList<>();
+            try (RevWalk revWalk = new RevWalk(repository)) {
+                RevCommit tipCommit = revWalk.parseCommit(tip);
+                RevCommit base = state.isPresent() ? parseIfPresent(revWalk, state.get().getCommitSha()) : null;
+                rebuild = base == null || !revWalk.isMergedInto(base, tipCommit);
+                revWalk.reset();
+                revWalk.markStart(tipCommit);
+                if (!rebuild) revWalk.markUninteresting(base);
+                for (RevCommit commit : revWalk) {
+                    commits.add(commit);
+                }
+            }
+
+            List<CommitStats> stats = statsFor(repository, commits, known, options);
+            AuthorSeries series = new AuthorSeries();
+            for (int i = 0; i < commits.size(); i++) {
+                series.add(commits.get(i), stats.get(i));
+            }
+
+            try {
+                writeTx.executeWithoutResult(status -> {
+                    if (rebuild) rollupRepo.deleteBranch(repoUrl, branch, profile);
+                    long[] authorIds = authorIds(series);
+                    merge(repoUrl, branch, profile, series, authorIds, rebuild);
+                    AuthorRollupState s = state.orElseGet(() -> new AuthorRollupState(repoUrl, branch, profile));
+                    s.setCommitSha(tip.getName());
+                    s.setUpdatedAt(Instant.now());
+                    stateRepo.save(s);
+                });
+            } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+                // another node merged first; the next scan starts from whatever it stored
+                log.debug("Author stats for {} {} updated concurrently: {}", repoUrl, branch, e.getMessage());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Authors active on the branch in [from, to], most commits first, each with its non-empty
+     * buckets. Reads only author_rollup rows of the requested granularity and range.
+     */
+    public List<AuthorActivity> activity(String repoUrl, String branch, ScanOptions options,
+                                         RollupGranularity granularity, LocalDate from, LocalDate to, int limit) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        List<AuthorRollup> rows = rollupRepo.findByRepoUrlAndBranchNameAndDiffProfileAndGranularityAndBucketStartBetween(
+                repoUrl, branch, ChangeHistoryRecorder.profileKey(options.profile()), granularity,
+                granularity.bucketStart(from), granularity.bucketStart(to));
+
+        Map<Long, List<FrequencyBucket>> byAuthor = new HashMap<>();
+        for (AuthorRollup r : rows) {
+            byAuthor.computeIfAbsent(r.getAuthorId(), k -> new ArrayList<>())
+                    .add(new FrequencyBucket(r.getBucketStart(), r.getCommitCount(), r.getLinesAdded(), r.getLinesDeleted()));
+        }
+        Map<Long, AuthorIdentity> identities = new HashMap<>();
+        for (AuthorIdentity a : authorRepo.findAllById(byAuthor.keySet())) {
+            identities.put(a.getId(), a);
+        }
+
+        List<AuthorActivity> result = new ArrayList<>(byAuthor.size());
+        for (Map.Entry<Long, List<FrequencyBucket>> e : byAuthor.entrySet()) {
+            AuthorIdentity a = identities.get(e.getKey());
+            List<FrequencyBucket> buckets = e.getValue();
+            buckets.sort(Comparator.comparing(FrequencyBucket::bucketStart));
+            result.add(AuthorActivity.of(a != null ? a.getEmail() : null, a != null ? a.getName() : null, buckets));
+        }
+        result.sort(Comparator.comparingLong(AuthorActivity::commits)
+                .thenComparingLong(AuthorActivity::getTotalChanges).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private List<CommitStats> statsFor(Repository repository, List<RevCommit> commits, List<CommitStats> known,
+                                       ScanOptions options) throws IOException {
+        Map<ObjectId, CommitStats> byId = new HashMap<>();
+        for (CommitStats s : known) byId.put(s.commitId(), s);
+        List<RevCommit> missing = new ArrayList<>();
+        for (RevCommit c : commits) {
+            if (!byId.containsKey(c)) missing.add(c);
+        }
+        if (!missing.isEmpty()) {
+            for (CommitStats s : statIndex.statsFor(repository, missing, options, ScanProgressListener.NONE)) {
+                byId.put(s.commitId(), s);
+            }
+        }
+        List<CommitStats> stats = new ArrayList<>(commits.size());
+        for (RevCommit c : commits) stats.add(byId.get(c));
+        return stats;
+    }
+
+    private static RevCommit parseIfPresent(RevWalk revWalk, String sha) {
+        try {
+            return revWalk.parseCommit(ObjectId.fromString(sha));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // database ids of the series' authors, creating identities not seen before
+    private long[] authorIds(AuthorSeries series) {
+        Map<String, Integer> byEmail = new HashMap<>();
+        for (int a = 0; a < series.authorCount(); a++) {
+            byEmail.put(truncate(series.email(a)), a);
+        }
+        long[] ids = new long[series.authorCount()];
+        List<String> emails = new ArrayList<>(byEmail.keySet());
+        Set<String> found = new HashSet<>();
+        for (int from = 0; from < emails.size(); from += LOOKUP_CHUNK) {
+            for (AuthorIdentity identity : authorRepo.findByEmailIn(emails.subList(from, Math.min(from + LOOKUP_CHUNK, emails.size())))) {
+                ids[byEmail.get(identity.getEmail())] = identity.getId();
+                found.add(identity.getEmail());
+            }
+        }
+        List<AuthorIdentity> created = new ArrayList<>();
+        for (String email : emails) {
+            if (!found.contains(email)) {
+                created.add(new AuthorIdentity(email, truncate(series.name(byEmail.get(email)))));
+            }
+        }
+        for (AuthorIdentity identity : authorRepo.saveAll(created)) {
+            ids[byEmail.get(identity.getEmail())] = identity.getId();
+        }
+        return ids;
+    }
+
+    private void merge(String repoUrl, String branch, String profile, AuthorSeries series, long[] authorIds,
+                       boolean fresh) {
+        Map<RollupGranularity, Map<BucketKey, long[]>> deltas = new HashMap<>();
+        series.forEach((author, g, start, commits, added, deleted) ->
+                deltas.computeIfAbsent(g, k -> new HashMap<>())
+                        .put(new BucketKey(authorIds[author], start), new long[] {commits, added, deleted}));
+
+        List<AuthorRollup> changed = new ArrayList<>();
+        for (Map.Entry<RollupGranularity, Map<BucketKey, long[]>> byGranularity : deltas.entrySet()) {
+            RollupGranularity g = byGranularity.getKey();
+            Map<BucketKey, AuthorRollup> existing = new HashMap<>();
+            if (!fresh) {
+                List<LocalDate> starts = new ArrayList<>(new HashSet<>(
+                        byGranularity.getValue().keySet().stream().map(BucketKey::start).toList()));
+                for (int from = 0; from < starts.size(); from += LOOKUP_CHUNK) {
+                    for (AuthorRollup r : rollupRepo.findByRepoUrlAndBranchNameAndDiffProfileAndGranularityAndBucketStartIn(
+                            repoUrl, branch, profile, g, starts.subList(from, Math.min(from + LOOKUP_CHUNK, starts.size())))) {
+                        existing.put(new BucketKey(r.getAuthorId(), r.getBucketStart()), r);
+                    }
+                }
+            }
+            for (Map.Entry<BucketKey, long[]> d : byGranularity.getValue().entrySet()) {
+                AuthorRollup row = existing.get(d.getKey());
+                if (row == null) {
+                    row = new AuthorRollup(repoUrl, branch, profile, g, d.getKey().start(), d.getKey().authorId());
+                }
+                row.add(d.getValue()[0], d.getValue()[1], d.getValue()[2]);
+                changed.add(row);
+            }
+        }
+        rollupRepo.saveAll(changed);
+    }
+
+    private static String truncate(String s) {
+        return s != null && s.length() > 255 ? s.substring(0, 255) : s;
+    }
+}
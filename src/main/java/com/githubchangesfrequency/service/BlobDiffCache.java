@@ -0,0 +1,134 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Cache of file-level diff counts keyed by {@link BlobPair}. The same pair of blobs always yields
+ * the same edit list, so cherry-picks, backports and shared history across branches only need
+ * to be diffed once.
+ *
+ * The memory tier is an LRU bounded by entry count, split into segments so the diff workers do
+ * not all contend on one lock. If {@code git.diffcache.disk.path} is set, a memory-mapped
+ * {@link DiskBlobDiffStore} backs it and keeps entries across restarts; if another process holds
+ * that file, this one runs on the memory tier alone.
+ */
+@Service
+public class BlobDiffCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobDiffCache.class);
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final DiskBlobDiffStore disk;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BlobDiffCache(@Value("${git.diffcache.maxEntries:200000}") int maxEntries,
+                         @Value("${git.diffcache.disk.path:}") String diskPath,
+                         @Value("${git.diffcache.disk.maxEntries:4000000}") int diskEntries) throws IOException {
+        int perSegment = Math.max(1, maxEntries / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(perSegment);
+        this.disk = diskPath.isBlank() ? null : openDisk(Path.of(diskPath), diskEntries);
+    }
+
+    private static DiskBlobDiffStore openDisk(Path path, int entries) throws IOException {
+        try {
+            return new DiskBlobDiffStore(path, entries);
+        } catch (DiskBlobDiffStore.InUseException e) {
+            log.warn("Disk diff cache disabled: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cached counts for the pair, or null if it has to be diffed.
+     */
+    public DiffTotals get(BlobPair key) {
+        Segment segment = segmentFor(key);
+        DiffTotals counts;
+        synchronized (segment) {
+            counts = segment.get(key);
+        }
+        if (counts != null) {
+            hits.increment();
+            return counts;
+        }
+        if (disk != null) {
+            counts = disk.get(key);
+            if (counts != null) {
+                diskHits.increment();
+                synchronized (segment) {
+                    segment.put(key, counts);
+                }
+                return counts;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(BlobPair key, DiffTotals counts) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, counts);
+        }
+        if (disk != null) disk.put(key, counts);
+    }
+
+    public Map<String, Long> stats() {
+        long size = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+        return Map.of(
+                "hits", hits.sum(),
+                "diskHits", diskHits.sum(),
+                "misses", misses.sum(),
+                "evictions", evictions.sum(),
+                "entries", size);
+    }
+
+    private Segment segmentFor(BlobPair key) {
+        return segments[Math.floorMod(key.hashCode() >>> 8, SEGMENTS)];
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (disk != null) disk.close();
+    }
+
+    private final class Segment extends LinkedHashMap<BlobPair, DiffTotals> {
+        private final int maxEntries;
+
+        Segment(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BlobPair, DiffTotals> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
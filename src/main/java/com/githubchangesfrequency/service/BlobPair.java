@@ -0,0 +1,21 @@
+package com.githubchangesfrequency.service;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Key of a file-level diff: the old and new blob ids. An added file has the zero id on the
+ * old side, a deleted file on the new side.
+ */
+public record BlobPair(ObjectId oldId, ObjectId newId) {
+
+    public static BlobPair of(DiffEntry entry) {
+        return new BlobPair(entry.getOldId().toObjectId(), entry.getNewId().toObjectId());
+    }
+
+    @Override
+    public int hashCode() {
+        // ObjectId.hashCode() is already a slice of the SHA-1, so this spreads well
+        return oldId.hashCode() * 31 + newId.hashCode();
+    }
+}
@@ -0,0 +1,83 @@
+package com.githubchangesfrequency.service;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+/**
+ * A running bulk scan. Results are handed out in completion order by {@link #next()}; once
+ * all items are done, {@link #report()} has the totals.
+ */
+public class BulkScan {
+
+    private final int repos;
+    private final int items;
+    private final long startedAt = System.nanoTime();
+    private final BlockingQueue<BulkScanResult> results = new LinkedBlockingQueue<>();
+
+    private volatile boolean cancelled;
+    private int taken;
+    private int succeeded;
+    private int failed;
+    private int rejected;
+    private int cancelledItems;
+    private long linesAdded;
+    private long linesDeleted;
+    private long finishedAt;
+
+    BulkScan(int repos, int items) {
+        this.repos = repos;
+        this.items = items;
+    }
+
+    /**
+     * The next finished item, waiting for one if needed; null once every item has been returned.
+     */
+    public BulkScanResult next() throws InterruptedException {
+        synchronized (this) {
+            if (taken == items) return null;
+            taken++;
+        }
+        return results.take();
+    }
+
+    /** Stop starting items of this batch; items already fetching or scanning still finish. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public synchronized BulkScanReport report() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        return new BulkScanReport(repos, items, succeeded, failed, rejected, cancelledItems,
+                linesAdded, linesDeleted, (end - startedAt) / 1_000_000);
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    long startedAt() {
+        return startedAt;
+    }
+
+    void complete(BulkScanResult result) {
+        synchronized (this) {
+            switch (result.status()) {
+                case SUCCEEDED -> {
+                    succeeded++;
+                    RepositoryChange change = result.change();
+                    linesAdded += change.getLinesAdded();
+                    linesDeleted += change.getLinesDeleted();
+                }
+                case FAILED -> failed++;
+                case REJECTED -> rejected++;
+                case CANCELLED -> cancelledItems++;
+            }
+            if (succeeded + failed + rejected + cancelledItems == items) {
+                finishedAt = System.nanoTime();
+            }
+        }
+        results.add(result);
+    }
+}
@@ -0,0 +1,7 @@
+package com.githubchangesfrequency.service;
+
+/**
+ * One repo/branch pair of a bulk scan request.
+ */
+public record BulkScanItem(String repoUrl, String branch) {
+}
@@ -0,0 +1,8 @@
+package com.githubchangesfrequency.service;
+
+/**
+ * Totals of a finished (or cancelled) bulk scan; line counts are summed over the succeeded items.
+ */
+public record BulkScanReport(int repos, int items, int succeeded, int failed, int rejected, int cancelled,
+                             long linesAdded, long linesDeleted, long elapsedMillis) {
+}
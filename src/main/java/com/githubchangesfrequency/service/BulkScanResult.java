@@ -0,0 +1,22 @@
+package com.githubchangesfrequency.service;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+/**
+ * Outcome of one item of a bulk scan. {@code queuedMillis} is the time spent waiting for a
+ * fetch or scan slot, {@code fetchMillis} the clone/fetch of the repo (shared by all its
+ * branches in the batch) and {@code scanMillis} the incremental scan itself. A succeeded item
+ * has an {@code error} only if the fetch failed and the mirror was scanned as it was.
+ */
+public record BulkScanResult(String repoUrl, String branch, Status status, String error, RepositoryChange change,
+                             long queuedMillis, long fetchMillis, long scanMillis) {
+
+    public enum Status {
+        SUCCEEDED,
+        FAILED,
+        /** not admitted: not enough free disk space for the clone */
+        REJECTED,
+        /** not started because the client went away */
+        CANCELLED
+    }
+}
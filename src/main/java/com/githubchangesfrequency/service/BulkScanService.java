@@ -0,0 +1,227 @@
+package com.githubchangesfrequency.service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Incremental scans of many repo/branch pairs at once. Each repo goes through two stages with
+ * their own limits: the clone/fetch (network and disk bound, {@code git.bulk.fetchConcurrency}
+ * at a time, fetched once for all its branches in the batch) and then one scan per branch (CPU
+ * bound, {@code git.bulk.scanConcurrency} at a time). A clone is only started if the disk under
+ * {@code git.local.cloneBase} keeps {@code git.bulk.minFreeDisk} free after reserving
+ * {@code git.bulk.cloneReserve} for it (see {@link DiskAdmission}). The pools are shared by all
+ * batches, so concurrent batches queue behind each other instead of multiplying the load.
+ */
+@Service
+public class BulkScanService {
+
+    private final GitChangeScannerServiceIncr scanner;
+    private final MirrorCloneManager cloneManager;
+    private final DiskAdmission disk;
+    private final long cloneReserve;
+    private final long fetchReserve;
+    private final int maxItems;
+    private final int maxPending;
+    private final ThreadPoolExecutor fetchPool;
+    private final ThreadPoolExecutor scanPool;
+
+    // items accepted and not finished yet, over all batches
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @Autowired
+    public BulkScanService(GitChangeScannerServiceIncr scanner,
+                           MirrorCloneManager cloneManager,
+                           @Value("${git.local.cloneBase:${java.io.tmpdir}/git-clones}") String cloneBase,
+                           @Value("${git.bulk.fetchConcurrency:4}") int fetchConcurrency,
+                           @Value("${git.bulk.scanConcurrency:2}") int scanConcurrency,
+                           @Value("${git.bulk.maxItems:5000}") int maxItems,
+                           @Value("${git.bulk.maxPending:20000}") int maxPending,
+                           @Value("${git.bulk.minFreeDisk:5GB}") DataSize minFreeDisk,
+                           @Value("${git.bulk.cloneReserve:1GB}") DataSize cloneReserve,
+                           @Value("${git.bulk.fetchReserve:64MB}") DataSize fetchReserve) {
+        this(scanner, cloneManager, new DiskAdmission(new File(cloneBase), minFreeDisk.toBytes()),
+                fetchConcurrency, scanConcurrency, maxItems, maxPending, cloneReserve.toBytes(), fetchReserve.toBytes());
+    }
+
+    BulkScanService(GitChangeScannerServiceIncr scanner, MirrorCloneManager cloneManager, DiskAdmission disk,
+                    int fetchConcurrency, int scanConcurrency, int maxItems, int maxPending,
+                    long cloneReserve, long fetchReserve) {
+        this.scanner = scanner;
+        this.cloneManager = cloneManager;
+        this.disk = disk;
+        this.cloneReserve = cloneReserve;
+        this.fetchReserve = fetchReserve;
+        this.maxItems = maxItems;
+        this.maxPending = maxPending;
+        this.fetchPool = pool(Math.max(1, fetchConcurrency), "bulk-fetch-");
+        this.scanPool = pool(Math.max(1, scanConcurrency), "bulk-scan-");
+    }
+
+    /**
+     * Queue the items (duplicates are scanned once) and return the batch to read results from.
+     * {@code optionsFor} gives the scan options of each repo and is called before anything is
+     * queued, so an invalid repo setting fails the whole request.
+     *
+     * @throws RejectedExecutionException if too many items are already pending
+     */
+    public BulkScan submit(List<BulkScanItem> items, Function<String, ScanOptions> optionsFor) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Give at least one repoUrl/branch item");
+        }
+        Map<String, List<String>> branchesByRepo = new LinkedHashMap<>();
+        int count = 0;
+        for (BulkScanItem item : new LinkedHashSet<>(items)) {
+            if (item == null || isBlank(item.repoUrl()) || isBlank(item.branch())) {
+                throw new IllegalArgumentException("Every item needs a repoUrl and a branch");
+            }
+            branchesByRepo.computeIfAbsent(item.repoUrl(), k -> new ArrayList<>()).add(item.branch());
+            count++;
+        }
+        if (count > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " items per request");
+        }
+        Map<String, ScanOptions> options = new LinkedHashMap<>();
+        for (String repoUrl : branchesByRepo.keySet()) {
+            options.put(repoUrl, optionsFor.apply(repoUrl));
+        }
+
+        if (pending.addAndGet(count) > maxPending) {
+            pending.addAndGet(-count);
+            throw new RejectedExecutionException("Too many bulk scan items pending");
+        }
+        BulkScan batch = new BulkScan(branchesByRepo.size(), count);
+        for (Map.Entry<String, List<String>> e : branchesByRepo.entrySet()) {
+            fetchPool.execute(() -> fetchStage(batch, e.getKey(), e.getValue(), options.get(e.getKey())));
+        }
+        return batch;
+    }
+
+    private void fetchStage(BulkScan batch, String repoUrl, List<String> branches, ScanOptions options) {
+        long fetchStart = System.nanoTime();
+        long queued = millis(batch.startedAt(), fetchStart);
+        if (batch.isCancelled()) {
+            for (String branch : branches) {
+                finish(batch, new BulkScanResult(repoUrl, branch, BulkScanResult.Status.CANCELLED, null, null, queued, 0, 0));
+            }
+            return;
+        }
+
+        boolean clone = !new File(cloneManager.mirrorDir(repoUrl), "HEAD").exists();
+        long reserve = clone ? cloneReserve : fetchReserve;
+        String error = null;
+        String fetchError = null;
+        BulkScanResult.Status status = BulkScanResult.Status.FAILED;
+        try {
+            if (!disk.acquire(reserve)) {
+                error = "Not enough free disk space under the clone directory";
+                status = BulkScanResult.Status.REJECTED;
+            } else {
+                try (MirrorClone mirror = cloneManager.open(repoUrl, ScanProgressListener.NONE)) {
+                    // cloned or fetched (unless fresh); the scans below reuse it
+                    fetchError = mirror.getFetchError();
+                } finally {
+                    disk.release(reserve);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Interrupted";
+        } catch (Exception e) {
+            error = (clone ? "Clone failed: " : "Fetch failed: ") + message(e);
+        }
+        long fetchEnd = System.nanoTime();
+        long fetchMillis = millis(fetchStart, fetchEnd);
+        if (error != null) {
+            for (String branch : branches) {
+                finish(batch, new BulkScanResult(repoUrl, branch, status, error, null, queued, fetchMillis, 0));
+            }
+            return;
+        }
+
+        // keep the mirror from being fetched again by scans that wait for a slot past the freshness window
+        MirrorCloneManager.Pin pin = cloneManager.pinFresh(repoUrl);
+        AtomicInteger remaining = new AtomicInteger(branches.size());
+        String stale = fetchError != null ? "Fetch failed, scanned the mirror as of its last fetch: " + fetchError : null;
+        for (String branch : branches) {
+            scanPool.execute(() -> {
+                try {
+                    scanStage(batch, repoUrl, branch, options, stale, queued, fetchEnd, fetchMillis);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) pin.close();
+                }
+            });
+        }
+    }
+
+    private void scanStage(BulkScan batch, String repoUrl, String branch, ScanOptions options, String stale,
+                           long queuedBeforeFetch, long fetchEnd, long fetchMillis) {
+        long scanStart = System.nanoTime();
+        long queued = queuedBeforeFetch + millis(fetchEnd, scanStart);
+        if (batch.isCancelled()) {
+            finish(batch, new BulkScanResult(repoUrl, branch, BulkScanResult.Status.CANCELLED, null, null,
+                    queued, fetchMillis, 0));
+            return;
+        }
+        try {
+            RepositoryChange change = scanner.scanRepositoryIncremental(repoUrl, branch, options, ScanProgressListener.NONE);
+            finish(batch, new BulkScanResult(repoUrl, branch, BulkScanResult.Status.SUCCEEDED, stale, change,
+                    queued, fetchMillis, millis(scanStart, System.nanoTime())));
+        } catch (Exception e) {
+            finish(batch, new BulkScanResult(repoUrl, branch, BulkScanResult.Status.FAILED, "Scan failed: " + message(e), null,
+                    queued, fetchMillis, millis(scanStart, System.nanoTime())));
+        }
+    }
+
+    private void finish(BulkScan batch, BulkScanResult result) {
+        pending.decrementAndGet();
+        batch.complete(result);
+    }
+
+    private static ThreadPoolExecutor pool(int threads, String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, prefix + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    private static long millis(long fromNanos, long toNanos) {
+        return (toNanos - fromNanos) / 1_000_000;
+    }
+
+    private static String message(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchPool.shutdownNow();
+        scanPool.shutdownNow();
+    }
+}
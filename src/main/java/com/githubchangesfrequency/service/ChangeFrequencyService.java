@@ -0,0 +1,61 @@
+package com.githubchangesfrequency.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.githubchangesfrequency.domain.ChangeRollup;
+import com.githubchangesfrequency.domain.RollupGranularity;
+import com.githubchangesfrequency.repository.ChangeRollupRepository;
+
+/**
+ * Change frequency of a repository over time, read from the change_rollup buckets maintained by
+ * {@link ChangeHistoryRecorder}. Covers every commit any scan of the repo has recorded.
+ */
+@Service
+public class ChangeFrequencyService {
+
+    private final ChangeRollupRepository rollupRepo;
+
+    public ChangeFrequencyService(ChangeRollupRepository rollupRepo) {
+        this.rollupRepo = rollupRepo;
+    }
+
+    /**
+     * One bucket per day/week/month overlapping [from, to] (UTC dates), oldest first; buckets
+     * without commits are included with zero counts.
+     */
+    public List<FrequencyBucket> frequency(String repoUrl, ScanOptions options, RollupGranularity granularity,
+                                           LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        LocalDate first = granularity.bucketStart(from);
+        LocalDate last = granularity.bucketStart(to);
+        Map<LocalDate, ChangeRollup> rows = new HashMap<>();
+        for (ChangeRollup r : rollupRepo.findByRepoUrlAndDiffProfileAndGranularityAndBucketStartBetweenOrderByBucketStart(
+                repoUrl, ChangeHistoryRecorder.profileKey(options.profile()), granularity, first, last)) {
+            rows.put(r.getBucketStart(), r);
+        }
+
+        List<FrequencyBucket> buckets = new ArrayList<>();
+        for (LocalDate start = first; !start.isAfter(last); start = next(granularity, start)) {
+            ChangeRollup r = rows.get(start);
+            buckets.add(r == null ? new FrequencyBucket(start, 0, 0, 0)
+                    : new FrequencyBucket(start, r.getCommitCount(), r.getLinesAdded(), r.getLinesDeleted()));
+        }
+        return buckets;
+    }
+
+    private static LocalDate next(RollupGranularity granularity, LocalDate start) {
+        return switch (granularity) {
+            case DAY -> start.plusDays(1);
+            case WEEK -> start.plusWeeks(1);
+            case MONTH -> start.plusMonths(1);
+        };
+    }
+}
@@ -0,0 +1,321 @@
+package com.githubchangesfrequency.service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.githubchangesfrequency.domain.RollupGranularity;
+
+/**
+ * Records the commits seen by a scan as commit_change rows (and file_change rows when
+ * git.history.fileRows is on) and folds them into the change_rollup buckets. Commits already
+ * recorded for the repo and profile are skipped, so every commit counts once in the rollups no
+ * matter how many scans or branches reach it. A scan {@link #begin begins} a recording before
+ * its diff pass and hands {@link Recording#files()} to that pass, so file rows come from the
+ * same diff as the commit totals. Raw rows go through plain JDBC batches, which keeps millions
+ * of rows out of the persistence context. Rollup buckets are created if missing and then bumped
+ * with {@code col = col + ?}, so a recorder on another node cannot overwrite this one's counts.
+ * Rows and rollup updates share one transaction, so a failed or conflicting batch leaves both
+ * untouched; a batch that conflicts with another node's is retried without the commits that
+ * node recorded, so rollups are bumped only for the rows this recorder inserted.
+ */
+@Service
+public class ChangeHistoryRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeHistoryRecorder.class);
+
+    private static final int LOOKUP_CHUNK = 1000;
+    private static final int LOCK_STRIPES = 64;
+    // a conflict costs one lookup and one more transaction; more than a few means something else is wrong
+    private static final int STORE_ATTEMPTS = 3;
+
+    private static final String INSERT_COMMIT = "INSERT INTO commit_change "
+            + "(repo_url, diff_profile, commit_sha, commit_time, author_name, author_email, lines_added, lines_deleted) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_FILE = "INSERT INTO file_change "
+            + "(repo_url, diff_profile, commit_sha, commit_time, path, old_path, change_type, lines_added, lines_deleted) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ROLLUP = "INSERT INTO change_rollup "
+            + "(repo_url, diff_profile, granularity, bucket_start, commit_count, lines_added, lines_deleted) "
+            + "VALUES (?, ?, ?, ?, 0, 0, 0)";
+    private static final String BUMP_ROLLUP = "UPDATE change_rollup SET commit_count = commit_count + ?, "
+            + "lines_added = lines_added + ?, lines_deleted = lines_deleted + ? "
+            + "WHERE repo_url = ? AND diff_profile = ? AND granularity = ? AND bucket_start = ?";
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    private final TransactionTemplate writeTx;
+    private final boolean enabled;
+    private final boolean fileRows;
+    private final int batchSize;
+
+    // the recorded-commit check and the inserts must not interleave for one repo within this JVM
+    private final ReentrantLock[] repoLocks = new ReentrantLock[LOCK_STRIPES];
+
+    private record Bucket(RollupGranularity granularity, LocalDate start) {}
+
+    public ChangeHistoryRecorder(JdbcTemplate jdbc,
+                                 PlatformTransactionManager txManager,
+                                 @Value("${git.history.enabled:true}") boolean enabled,
+                                 @Value("${git.history.fileRows:false}") boolean fileRows,
+                                 @Value("${git.history.batchSize:1000}") int batchSize) {
+        this.jdbc = jdbc;
+        this.namedJdbc = new NamedParameterJdbcTemplate(jdbc);
+        this.writeTx = new TransactionTemplate(txManager);
+        this.writeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.fileRows = fileRows;
+        this.batchSize = batchSize;
+        for (int i = 0; i < LOCK_STRIPES; i++) repoLocks[i] = new ReentrantLock();
+    }
+
+    /** The profile column value: empty for default options. */
+    public static String profileKey(String profile) {
+        return profile == null ? "" : profile;
+    }
+
+    /**
+     * Start recording {@code commits}; pass {@link Recording#files()} to the scan's diff pass,
+     * then {@link Recording#finish} the recording with the commits' stats.
+     */
+    public Recording begin(String repoUrl, List<RevCommit> commits, ScanOptions options) {
+        return new Recording(repoUrl, profileKey(options.profile()), commits);
+    }
+
+    /**
+     * The commits of one scan, and their file results while its diff pass runs.
+     */
+    public final class Recording {
+
+        private final String repoUrl;
+        private final String profile;
+        private final List<RevCommit> commits;
+        // commits whose file rows are kept: those not yet recorded when the recording began
+        private final Set<ObjectId> fileCommits = new HashSet<>();
+        private final Map<ObjectId, List<FileChangeStat>> files = new ConcurrentHashMap<>();
+
+        private Recording(String repoUrl, String profile, List<RevCommit> commits) {
+            this.repoUrl = repoUrl;
+            this.profile = profile;
+            this.commits = commits;
+            if (enabled && fileRows && !commits.isEmpty()) {
+                Set<String> recorded = recordedShas(repoUrl, profile, commits);
+                for (RevCommit c : commits) {
+                    if (!recorded.contains(c.getName())) fileCommits.add(c.copy());
+                }
+            }
+        }
+
+        /** Sink for the scan's diff pass; {@link FileStatSink#NONE} when no file rows are wanted. */
+        public FileStatSink files() {
+            if (fileCommits.isEmpty()) return FileStatSink.NONE;
+            return new FileStatSink() {
+                @Override
+                public void accept(ObjectId commit, List<FileChangeStat> commitFiles) {
+                    if (fileCommits.contains(commit)) files.put(commit, commitFiles);
+                }
+
+                @Override
+                public boolean needs(ObjectId commit) {
+                    return fileCommits.contains(commit);
+                }
+            };
+        }
+
+        /**
+         * Record the commits, whose stats are {@code stats} in the same order. Returns the number
+         * of commits that were new to the history.
+         */
+        public int finish(List<CommitStats> stats) {
+            return record(this, stats);
+        }
+    }
+
+    private int record(Recording recording, List<CommitStats> stats) {
+        List<RevCommit> commits = recording.commits;
+        if (!enabled || commits.isEmpty()) {
+            return 0;
+        }
+        String repoUrl = recording.repoUrl;
+        String profile = recording.profile;
+        ReentrantLock lock = repoLocks[Math.floorMod(repoUrl.hashCode(), LOCK_STRIPES)];
+        lock.lock();
+        try {
+            List<RevCommit> newCommits = new ArrayList<>(commits);
+            List<CommitStats> newStats = new ArrayList<>(stats);
+            for (int attempt = 1; ; attempt++) {
+                Set<String> recorded = recordedShas(repoUrl, profile, newCommits);
+                List<RevCommit> pendingCommits = new ArrayList<>();
+                List<CommitStats> pendingStats = new ArrayList<>();
+                for (int i = 0; i < newCommits.size(); i++) {
+                    if (!recorded.contains(newCommits.get(i).getName())) {
+                        pendingCommits.add(newCommits.get(i));
+                        pendingStats.add(newStats.get(i));
+                    }
+                }
+                newCommits = pendingCommits;
+                newStats = pendingStats;
+                if (newCommits.isEmpty()) {
+                    return 0;
+                }
+                try {
+                    insert(recording, newCommits, newStats);
+                    return newCommits.size();
+                } catch (DataIntegrityViolationException e) {
+                    if (attempt == STORE_ATTEMPTS) {
+                        log.warn("Giving up on recording {} commits of {} after {} conflicts: {}",
+                                newCommits.size(), repoUrl, attempt, e.getMessage());
+                        return 0;
+                    }
+                    // another node recorded some of these commits first and the batch rolled back: retry without them
+                    log.debug("Change history for {} recorded concurrently, retrying: {}", repoUrl, e.getMessage());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // rows and rollup bumps of exactly these commits, or nothing
+    private void insert(Recording recording, List<RevCommit> commits, List<CommitStats> stats) {
+        Map<String, Timestamp> commitTimes = new HashMap<>();
+        List<FileChangeStat> files = new ArrayList<>();
+        for (RevCommit c : commits) {
+            commitTimes.put(c.getName(), Timestamp.from(Instant.ofEpochSecond(c.getCommitTime())));
+            files.addAll(recording.files.getOrDefault(c, List.of()));
+        }
+        writeTx.executeWithoutResult(status -> {
+            insertCommits(recording.repoUrl, recording.profile, commits, stats, commitTimes);
+            insertFiles(recording.repoUrl, recording.profile, files, commitTimes);
+            updateRollups(recording.repoUrl, recording.profile, commits, stats);
+        });
+    }
+
+    private Set<String> recordedShas(String repoUrl, String profile, List<RevCommit> commits) {
+        Set<String> recorded = new HashSet<>();
+        for (int from = 0; from < commits.size(); from += LOOKUP_CHUNK) {
+            List<String> shas = new ArrayList<>(LOOKUP_CHUNK);
+            for (RevCommit c : commits.subList(from, Math.min(from + LOOKUP_CHUNK, commits.size()))) {
+                shas.add(c.getName());
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("repoUrl", repoUrl)
+                    .addValue("profile", profile)
+                    .addValue("shas", shas);
+            recorded.addAll(namedJdbc.queryForList(
+                    "SELECT commit_sha FROM commit_change WHERE repo_url = :repoUrl AND diff_profile = :profile "
+                            + "AND commit_sha IN (:shas)", params, String.class));
+        }
+        return recorded;
+    }
+
+    private void insertCommits(String repoUrl, String profile, List<RevCommit> commits, List<CommitStats> stats,
+                               Map<String, Timestamp> commitTimes) {
+        List<Object[]> rows = new ArrayList<>(commits.size());
+        for (int i = 0; i < commits.size(); i++) {
+            RevCommit c = commits.get(i);
+            PersonIdent author = c.getAuthorIdent();
+            rows.add(new Object[] {repoUrl, profile, c.getName(), commitTimes.get(c.getName()),
+                    truncate(author.getName()), truncate(author.getEmailAddress()),
+                    stats.get(i).linesAdded(), stats.get(i).linesDeleted()});
+        }
+        batchUpdate(INSERT_COMMIT, rows);
+    }
+
+    private void insertFiles(String repoUrl, String profile, List<FileChangeStat> files,
+                             Map<String, Timestamp> commitTimes) {
+        if (files.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>(Math.min(files.size(), batchSize));
+        for (FileChangeStat f : files) {
+            rows.add(new Object[] {repoUrl, profile, f.commitId().getName(), commitTimes.get(f.commitId().getName()),
+                    f.path(), f.oldPath(), f.changeType().name(), f.linesAdded(), f.linesDeleted()});
+            if (rows.size() == batchSize) {
+                batchUpdate(INSERT_FILE, rows);
+                rows.clear();
+            }
+        }
+        batchUpdate(INSERT_FILE, rows);
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            jdbc.batchUpdate(sql, rows.subList(from, Math.min(from + batchSize, rows.size())));
+        }
+    }
+
+    private void updateRollups(String repoUrl, String profile, List<RevCommit> commits, List<CommitStats> stats) {
+        Map<Bucket, long[]> deltas = new LinkedHashMap<>();
+        for (int i = 0; i < commits.size(); i++) {
+            Instant time = Instant.ofEpochSecond(commits.get(i).getCommitTime());
+            for (RollupGranularity g : RollupGranularity.values()) {
+                long[] d = deltas.computeIfAbsent(new Bucket(g, g.bucketStart(time)), k -> new long[3]);
+                d[0]++;
+                d[1] += stats.get(i).linesAdded();
+                d[2] += stats.get(i).linesDeleted();
+            }
+        }
+
+        // create missing buckets empty, then add to every bucket in place
+        List<Object[]> missing = new ArrayList<>();
+        for (RollupGranularity g : RollupGranularity.values()) {
+            List<LocalDate> starts = new ArrayList<>();
+            for (Bucket b : deltas.keySet()) {
+                if (b.granularity() == g) starts.add(b.start());
+            }
+            Set<LocalDate> existing = new HashSet<>();
+            for (int from = 0; from < starts.size(); from += LOOKUP_CHUNK) {
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                        .addValue("repoUrl", repoUrl)
+                        .addValue("profile", profile)
+                        .addValue("granularity", g.name())
+                        .addValue("starts", starts.subList(from, Math.min(from + LOOKUP_CHUNK, starts.size())));
+                for (Date start : namedJdbc.queryForList("SELECT bucket_start FROM change_rollup WHERE repo_url = :repoUrl "
+                        + "AND diff_profile = :profile AND granularity = :granularity AND bucket_start IN (:starts)",
+                        params, Date.class)) {
+                    existing.add(start.toLocalDate());
+                }
+            }
+            for (LocalDate start : starts) {
+                if (!existing.contains(start)) missing.add(new Object[] {repoUrl, profile, g.name(), Date.valueOf(start)});
+            }
+        }
+        batchUpdate(INSERT_ROLLUP, missing);
+
+        List<Object[]> bumps = new ArrayList<>(deltas.size());
+        for (Map.Entry<Bucket, long[]> e : deltas.entrySet()) {
+            long[] d = e.getValue();
+            bumps.add(new Object[] {d[0], d[1], d[2], repoUrl, profile, e.getKey().granularity().name(),
+                    Date.valueOf(e.getKey().start())});
+        }
+        batchUpdate(BUMP_ROLLUP, bumps);
+    }
+
+    private static String truncate(String s) {
+        return s != null && s.length() > 255 ? s.substring(0, 255) : s;
+    }
+}
@@ -0,0 +1,15 @@
+package com.githubchangesfrequency.service;
+
+/**
+ * Churn of one file or directory: commits that changed it and lines added/deleted in them.
+ */
+public record ChurnEntry(String path, boolean directory, long changes, long linesAdded, long linesDeleted) {
+
+    public enum Kind { FILE, DIRECTORY }
+
+    public enum Order { CHANGES, LINES }
+
+    public long getTotalChanges() {
+        return linesAdded + linesDeleted;
+    }
+}
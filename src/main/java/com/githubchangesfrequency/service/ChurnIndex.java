@@ -0,0 +1,191 @@
+package com.githubchangesfrequency.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Churn counters of every path a branch's history has touched. Paths are interned into one
+ * table (each entry also knows its parent directory's index) and counters live
+ * in parallel primitive arrays, so a repo with 100k paths costs a few MB. A file's change count
+ * is the number of commits touching it; a directory's is the number of commits touching
+ * anything below it. Not thread-safe: instances are filled once and then only read.
+ */
+final class ChurnIndex {
+
+    private static final int MAGIC = 0x43484931; // "CHI1"
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] paths = new String[256];
+    private int[] parent = new int[256];
+    private final BitSet dirs = new BitSet();
+    private int[] changes = new int[256];
+    private long[] added = new long[256];
+    private long[] deleted = new long[256];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add per-file stats, which must be grouped by commit (as {@link CommitDiffEngine#diffFiles}
+     * returns them).
+     */
+    public void apply(List<FileChangeStat> files) {
+        apply(files, 1);
+    }
+
+    /**
+     * Take back per-file stats applied before, grouped by commit as for {@link #apply}: the
+     * commits a rewritten history dropped. Paths left with no changes are not listed or stored.
+     */
+    public void remove(List<FileChangeStat> files) {
+        apply(files, -1);
+    }
+
+    private void apply(List<FileChangeStat> files, int sign) {
+        // last commit that bumped a directory, so each commit counts once per directory
+        int[] stamp = new int[size + 64];
+        Arrays.fill(stamp, -1);
+        int commitNo = -1;
+        ObjectId current = null;
+        for (FileChangeStat f : files) {
+            if (!f.commitId().equals(current)) {
+                current = f.commitId();
+                commitNo++;
+            }
+            int id = intern(f.path(), false);
+            if (stamp.length < size) {
+                int old = stamp.length;
+                stamp = Arrays.copyOf(stamp, Math.max(size, old * 2));
+                Arrays.fill(stamp, old, stamp.length, -1);
+            }
+            changes[id] += sign;
+            added[id] += sign * f.linesAdded();
+            deleted[id] += sign * f.linesDeleted();
+            for (int d = parent[id]; d >= 0; d = parent[d]) {
+                if (stamp[d] != commitNo) {
+                    stamp[d] = commitNo;
+                    changes[d] += sign;
+                }
+                added[d] += sign * f.linesAdded();
+                deleted[d] += sign * f.linesDeleted();
+            }
+        }
+    }
+
+    /**
+     * The {@code limit} files or directories with the most changes (or changed lines), hottest first.
+     */
+    public List<ChurnEntry> top(ChurnEntry.Kind kind, ChurnEntry.Order order, int limit) {
+        Comparator<Integer> heat = order == ChurnEntry.Order.CHANGES
+                ? Comparator.<Integer>comparingInt(i -> changes[i]).thenComparingLong(i -> added[i] + deleted[i])
+                : Comparator.<Integer>comparingLong(i -> added[i] + deleted[i]).thenComparingInt(i -> changes[i]);
+        // min-heap of the best `limit` seen so far
+        PriorityQueue<Integer> best = new PriorityQueue<>(heat);
+        boolean wantDirs = kind == ChurnEntry.Kind.DIRECTORY;
+        for (int i = 0; i < size; i++) {
+            if (dirs.get(i) != wantDirs || changes[i] == 0 || limit <= 0) continue;
+            if (best.size() < limit) {
+                best.add(i);
+            } else if (heat.compare(i, best.peek()) > 0) {
+                best.poll();
+                best.add(i);
+            }
+        }
+        List<ChurnEntry> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            int i = best.poll();
+            result.add(new ChurnEntry(paths[i], wantDirs, changes[i], added[i], deleted[i]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private int intern(String path, boolean dir) {
+        Integer id = ids.get(path);
+        if (id != null) return id;
+        int slash = path.lastIndexOf('/');
+        int parentId = slash < 0 ? -1 : intern(path.substring(0, slash), true);
+        return add(path, parentId, dir);
+    }
+
+    private int add(String path, int parentId, boolean dir) {
+        if (size == paths.length) {
+            int n = size * 2;
+            paths = Arrays.copyOf(paths, n);
+            parent = Arrays.copyOf(parent, n);
+            changes = Arrays.copyOf(changes, n);
+            added = Arrays.copyOf(added, n);
+            deleted = Arrays.copyOf(deleted, n);
+        }
+        int id = size++;
+        paths[id] = path;
+        parent[id] = parentId;
+        if (dir) dirs.set(id);
+        ids.put(path, id);
+        return id;
+    }
+
+    // parents always precede their children, so entries can be re-added in index order; paths
+    // without changes are left out (a directory has at least as many as anything below it)
+    public byte[] toBytes() throws IOException {
+        int[] stored = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            stored[i] = changes[i] != 0 ? count++ : -1;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            for (int i = 0; i < size; i++) {
+                if (stored[i] < 0) continue;
+                out.writeInt(parent[i] < 0 ? -1 : stored[parent[i]]);
+                out.writeBoolean(dirs.get(i));
+                out.writeUTF(paths[i].substring(paths[i].lastIndexOf('/') + 1));
+                out.writeInt(changes[i]);
+                out.writeLong(added[i]);
+                out.writeLong(deleted[i]);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ChurnIndex fromBytes(byte[] data) throws IOException {
+        ChurnIndex index = new ChurnIndex();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a churn index");
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                int parentId = in.readInt();
+                boolean dir = in.readBoolean();
+                String name = in.readUTF();
+                String path = parentId < 0 ? name : index.paths[parentId] + "/" + name;
+                int id = index.add(path, parentId, dir);
+                index.changes[id] = in.readInt();
+                index.added[id] = in.readLong();
+                index.deleted[id] = in.readLong();
+            }
+        }
+        return index;
+    }
+}
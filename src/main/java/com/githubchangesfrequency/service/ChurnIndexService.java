@@ -0,0 +1,254 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.githubchangesfrequency.domain.ChurnIndexSnapshot;
+import com.githubchangesfrequency.repository.ChurnIndexSnapshotRepository;
+
+/**
+ * Per-branch churn hotspots. Incremental scans {@link #begin} an update before their diff pass
+ * and feed it the per-file results of the commits between the checkpoint and the new tip; if
+ * the stored index was built up to that checkpoint those results are all it needs. After a
+ * force-push the scan also feeds it the commits only the old tip had, which are taken back out.
+ * Otherwise (first run, a stored index at a commit the scan does not know or that was pruned)
+ * the index is rebuilt from the branch's whole history, diffing only the commits the scan did
+ * not. Top-N queries are answered from a small
+ * cache of deserialized indexes and never open the repository.
+ */
+@Service
+public class ChurnIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChurnIndexService.class);
+
+    // another node may have advanced the stored index; re-read it after this long
+    private static final Duration CACHE_TTL = Duration.ofSeconds(30);
+    // file results buffered before they are folded into the index
+    private static final int APPLY_CHUNK = 50_000;
+
+    private record CachedIndex(Instant loadedAt, String commitSha, ChurnIndex index) {}
+
+    private final ChurnIndexSnapshotRepository snapshotRepo;
+    private final CommitDiffEngine diffEngine;
+    private final TransactionTemplate writeTx;
+    private final boolean enabled;
+    private final Map<String, CachedIndex> cache;
+
+    public ChurnIndexService(ChurnIndexSnapshotRepository snapshotRepo,
+                             CommitDiffEngine diffEngine,
+                             PlatformTransactionManager txManager,
+                             @Value("${git.churn.enabled:true}") boolean enabled,
+                             @Value("${git.churn.cacheSize:32}") int cacheSize) {
+        this.snapshotRepo = snapshotRepo;
+        this.diffEngine = diffEngine;
+        this.writeTx = new TransactionTemplate(txManager);
+        this.writeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedIndex> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * Start bringing the branch's index up to {@code tip}. {@code newCommits} are the commits
+     * after {@code baseSha} (the whole history when {@code baseSha} is null) that the scan is
+     * about to diff; pass {@link Update#files()} to that diff pass, then {@link Update#finish}.
+     * {@code previousSha} is the checkpoint the scan moves on from, if it is still in the
+     * repository; when history was rewritten it is not {@code baseSha}, and the scan passes
+     * {@link Update#droppedFiles()} to its diff of the commits only {@code previousSha} reached.
+     */
+    public Update begin(String repoUrl, String branch, ScanOptions options, String previousSha, String baseSha,
+                        ObjectId tip, List<RevCommit> newCommits) throws IOException {
+        if (!enabled) {
+            return new Update(repoUrl, branch, null, tip, Optional.empty(), null, false, null, options);
+        }
+        String profile = ChangeHistoryRecorder.profileKey(options.profile());
+        Optional<ChurnIndexSnapshot> stored = snapshotRepo.findByRepoUrlAndBranchNameAndDiffProfile(repoUrl, branch, profile);
+        String storedSha = stored.map(ChurnIndexSnapshot::getCommitSha).orElse(null);
+        if (tip.getName().equals(storedSha)) {
+            return new Update(repoUrl, branch, profile, tip, stored, null, false, null, options);
+        }
+        if (baseSha != null && baseSha.equals(storedSha)) {
+            return new Update(repoUrl, branch, profile, tip, stored, ChurnIndex.fromBytes(stored.get().getData()),
+                    false, null, options);
+        }
+        if (previousSha != null && previousSha.equals(storedSha)) {
+            // rewritten history: take out what only the old tip had, add what only the new one has
+            return new Update(repoUrl, branch, profile, tip, stored, ChurnIndex.fromBytes(stored.get().getData()),
+                    true, null, options);
+        }
+        // first run, or the stored index is at a commit the scan does not know: rebuild from the whole history
+        return new Update(repoUrl, branch, profile, tip, stored, new ChurnIndex(), false,
+                baseSha == null ? null : newCommits, options);
+    }
+
+    /**
+     * One scan's update of a branch's index. File results are applied in chunks as the scan's
+     * diff pass produces them, so neither pass ever holds the whole history's files.
+     */
+    public final class Update {
+
+        private final String repoUrl;
+        private final String branch;
+        private final String profile;
+        private final ObjectId tip;
+        private final Optional<ChurnIndexSnapshot> stored;
+        // null when there is nothing to do
+        private final ChurnIndex index;
+        // whether the stored index is at a tip that history rewrote, whose dropped commits come out
+        private final boolean rewritten;
+        // commits the scan diffs when the rest of the history has to be diffed by finish(); else null
+        private final List<RevCommit> scanned;
+        private final ScanOptions options;
+        private final List<FileChangeStat> pending = new ArrayList<>();
+        private final List<FileChangeStat> pendingDropped = new ArrayList<>();
+
+        private Update(String repoUrl, String branch, String profile, ObjectId tip, Optional<ChurnIndexSnapshot> stored,
+                       ChurnIndex index, boolean rewritten, List<RevCommit> scanned, ScanOptions options) {
+            this.repoUrl = repoUrl;
+            this.branch = branch;
+            this.profile = profile;
+            this.tip = tip;
+            this.stored = stored;
+            this.index = index;
+            this.rewritten = rewritten;
+            this.scanned = scanned;
+            this.options = options;
+        }
+
+        /** Sink for the scan's diff pass; {@link FileStatSink#NONE} when the index is current. */
+        public FileStatSink files() {
+            return index == null ? FileStatSink.NONE : (commit, files) -> add(files);
+        }
+
+        /**
+         * Sink for the diff of the commits a rewritten history dropped; {@link FileStatSink#NONE}
+         * unless the stored index still counts them.
+         */
+        public FileStatSink droppedFiles() {
+            return rewritten ? (commit, files) -> drop(files) : FileStatSink.NONE;
+        }
+
+        // whole commits only: ChurnIndex.apply counts a directory once per commit within a chunk
+        private synchronized void add(List<FileChangeStat> files) {
+            pending.addAll(files);
+            if (pending.size() >= APPLY_CHUNK) {
+                index.apply(pending);
+                pending.clear();
+            }
+        }
+
+        private synchronized void drop(List<FileChangeStat> files) {
+            pendingDropped.addAll(files);
+            if (pendingDropped.size() >= APPLY_CHUNK) {
+                index.remove(pendingDropped);
+                pendingDropped.clear();
+            }
+        }
+
+        /**
+         * Apply the rest, diffing the history the scan did not cover on a rebuild, and store the
+         * index at the tip.
+         */
+        public void finish(Repository repository) throws IOException {
+            if (index == null) {
+                return;
+            }
+            if (scanned != null) {
+                Set<ObjectId> done = new HashSet<>(scanned);
+                List<RevCommit> rest = new ArrayList<>();
+                for (RevCommit c : history(repository, tip)) {
+                    if (!done.contains(c)) rest.add(c);
+                }
+                diffEngine.diffCommits(repository, rest, options, ScanProgressListener.NONE, files());
+            }
+            synchronized (this) {
+                index.apply(pending);
+                pending.clear();
+                index.remove(pendingDropped);
+                pendingDropped.clear();
+            }
+            save();
+        }
+
+        private void save() throws IOException {
+            byte[] data = index.toBytes();
+            try {
+                writeTx.executeWithoutResult(status -> {
+                    ChurnIndexSnapshot snapshot = stored.orElseGet(() -> new ChurnIndexSnapshot(repoUrl, branch, profile));
+                    snapshot.setCommitSha(tip.getName());
+                    snapshot.setPathCount(index.size());
+                    snapshot.setData(data);
+                    snapshot.setUpdatedAt(Instant.now());
+                    snapshotRepo.save(snapshot);
+                });
+            } catch (DataIntegrityViolationException | OptimisticLockingFailureException e) {
+                // a concurrent scan stored its index first; ours is rebuilt next time if it is behind
+                log.debug("Churn index for {} {} updated concurrently: {}", repoUrl, branch, e.getMessage());
+                cache.remove(cacheKey(repoUrl, branch, profile));
+                return;
+            }
+            cache.put(cacheKey(repoUrl, branch, profile), new CachedIndex(Instant.now(), tip.getName(), index));
+        }
+    }
+
+    /**
+     * Hottest files or directories of the branch, or empty if no index has been built yet.
+     */
+    public Optional<List<ChurnEntry>> top(String repoUrl, String branch, ScanOptions options,
+                                          ChurnEntry.Kind kind, ChurnEntry.Order order, int limit) throws IOException {
+        String profile = ChangeHistoryRecorder.profileKey(options.profile());
+        String key = cacheKey(repoUrl, branch, profile);
+        CachedIndex cached = cache.get(key);
+        if (cached == null || cached.loadedAt().plus(CACHE_TTL).isBefore(Instant.now())) {
+            Optional<ChurnIndexSnapshot> stored = snapshotRepo.findByRepoUrlAndBranchNameAndDiffProfile(repoUrl, branch, profile);
+            if (stored.isEmpty()) {
+                return Optional.empty();
+            }
+            cached = new CachedIndex(Instant.now(), stored.get().getCommitSha(), ChurnIndex.fromBytes(stored.get().getData()));
+            cache.put(key, cached);
+        }
+        return Optional.of(cached.index().top(kind, order, limit));
+    }
+
+    private static List<RevCommit> history(Repository repository, ObjectId tip) throws IOException {
+        List<RevCommit> commits = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.markStart(revWalk.parseCommit(tip));
+            for (RevCommit commit : revWalk) {
+                commits.add(commit);
+            }
+        }
+        return commits;
+    }
+
+    private static String cacheKey(String repoUrl, String branch, String profile) {
+        return repoUrl + "|" + branch + "|" + profile;
+    }
+}
@@ -0,0 +1,10 @@
+package com.githubchangesfrequency.service;
+
+import java.time.Instant;
+
+/**
+ * One local mirror as measured by the last clone cache sweep; a working-tree clone from before
+ * mirrors that could not be deleted yet is listed without access or gc times.
+ */
+public record CloneCacheEntry(String repoKey, long sizeBytes, Instant lastAccess, Instant lastGc) {
+}
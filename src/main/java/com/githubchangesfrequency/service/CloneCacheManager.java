@@ -0,0 +1,333 @@
+package com.githubchangesfrequency.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Housekeeping of the mirrors under {@code git.local.cloneBase}. After a clone or fetch, and
+ * every {@code git.clones.sweepInterval} for each mirror used since its last gc, a mirror that
+ * lacks its commit-graph or bitmaps or has piled up packs or loose objects (one pack per fetch)
+ * is repacked by {@link JGitStorageTuning#repack} on the maintenance thread. While the mirrors take more than
+ * {@code git.clones.maxDiskUsage} the least recently opened ones are deleted, to be cloned
+ * again on next use. Working-tree clones left from before mirrors are deleted by the sweep,
+ * and counted against the budget until they are. All of these take the repo's write lock but
+ * never wait for it: a mirror in use is left for the next sweep.
+ */
+@Service
+public class CloneCacheManager {
+
+    private static final Logger log = LoggerFactory.getLogger(CloneCacheManager.class);
+
+    private static final String GC_MARKER = "last-gc";
+    // a mirror just fetched is usually being scanned: retry the repack a few times, then leave it to the sweep
+    private static final int REPACK_ATTEMPTS = 10;
+    private static final Duration REPACK_RETRY = Duration.ofSeconds(30);
+
+    private final MirrorCloneManager cloneManager;
+    private final RepositoryLockManager repoLocks;
+    private final JGitStorageTuning storage;
+    private final long maxDiskUsage;
+    private final Duration evictMinIdle;
+    private final boolean gcEnabled;
+    private final int gcMaxPacks;
+    private final int gcMaxLooseObjects;
+    private final ScheduledExecutorService maintenance;
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong gcRuns = new AtomicLong();
+    private final Set<String> repacksQueued = ConcurrentHashMap.newKeySet();
+    private volatile List<CloneCacheEntry> lastSweep = List.of();
+
+    public CloneCacheManager(MirrorCloneManager cloneManager,
+                             RepositoryLockManager repoLocks,
+                             JGitStorageTuning storage,
+                             @Value("${git.clones.maxDiskUsage:50GB}") DataSize maxDiskUsage,
+                             @Value("${git.clones.evictMinIdle:PT10M}") Duration evictMinIdle,
+                             @Value("${git.clones.gc.enabled:true}") boolean gcEnabled,
+                             @Value("${git.clones.gc.maxPacks:4}") int gcMaxPacks,
+                             @Value("${git.clones.gc.maxLooseObjects:5000}") int gcMaxLooseObjects) {
+        this.cloneManager = cloneManager;
+        this.repoLocks = repoLocks;
+        this.storage = storage;
+        this.maxDiskUsage = maxDiskUsage.toBytes();
+        this.evictMinIdle = evictMinIdle;
+        this.gcEnabled = gcEnabled;
+        this.gcMaxPacks = gcMaxPacks;
+        this.gcMaxLooseObjects = gcMaxLooseObjects;
+        // gc of a large repo takes minutes; keep it off the shared scheduler thread
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "clone-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        if (gcEnabled) {
+            cloneManager.onUpdate(this::requestRepack);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${git.clones.sweepInterval:PT10M}", initialDelayString = "${git.clones.sweepInterval:PT10M}")
+    public void scheduledSweep() {
+        requestSweep();
+    }
+
+    /**
+     * Start a sweep in the background; false if one is already running.
+     */
+    public boolean requestSweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return false;
+        }
+        maintenance.execute(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                log.warn("Clone cache sweep failed: {}", e.getMessage(), e);
+            } finally {
+                sweeping.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Repack the mirror in the background if it needs it. A mirror in use is retried a few
+     * times, then left for the sweep.
+     */
+    void requestRepack(String key) {
+        if (repacksQueued.add(key)) {
+            maintenance.execute(() -> repack(key, 1));
+        }
+    }
+
+    private void repack(String key, int attempt) {
+        File dir = new File(cloneManager.cloneBase(), key + ".git");
+        if (!dir.isDirectory() || !needsGc(dir) || gc(key, dir) || attempt == REPACK_ATTEMPTS) {
+            repacksQueued.remove(key);
+            return;
+        }
+        maintenance.schedule(() -> repack(key, attempt + 1), REPACK_RETRY.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // waits for the work queued so far; for tests
+    void awaitMaintenance() throws InterruptedException, ExecutionException {
+        maintenance.submit(() -> {}).get();
+    }
+
+    public CloneCacheStatus status() {
+        List<CloneCacheEntry> entries = lastSweep;
+        long total = 0;
+        for (CloneCacheEntry e : entries) total += e.sizeBytes();
+        return new CloneCacheStatus(total, maxDiskUsage, evictions.get(), gcRuns.get(), sweeping.get(), entries);
+    }
+
+    /**
+     * One pass over all mirrors: gc the hot ones, then evict cold ones down to the budget.
+     */
+    void sweep() {
+        File[] dirs = cloneManager.cloneBase().listFiles(f -> f.isDirectory()
+                && (f.getName().endsWith(".git") || isLegacyClone(f)));
+        if (dirs == null) {
+            lastSweep = List.of();
+            return;
+        }
+        List<CloneCacheEntry> entries = new ArrayList<>(dirs.length);
+        List<CloneCacheEntry> legacy = new ArrayList<>();
+        long total = 0;
+        for (File dir : dirs) {
+            if (isLegacyClone(dir)) {
+                if (!deleteLegacyClone(dir.getName(), dir)) {
+                    CloneCacheEntry entry = new CloneCacheEntry(dir.getName(), sizeOf(dir.toPath()), null, null);
+                    legacy.add(entry);
+                    total += entry.sizeBytes();
+                }
+                continue;
+            }
+            String key = dir.getName().substring(0, dir.getName().length() - ".git".length());
+            Instant lastAccess = MirrorCloneManager.lastAccess(dir);
+            Instant lastGc = lastGc(dir);
+            if (gcEnabled && lastAccess != null && (lastGc == null || lastAccess.isAfter(lastGc)) && needsGc(dir)) {
+                if (gc(key, dir)) lastGc = lastGc(dir);
+            }
+            CloneCacheEntry entry = new CloneCacheEntry(key, sizeOf(dir.toPath()), lastAccess, lastGc);
+            entries.add(entry);
+            total += entry.sizeBytes();
+        }
+
+        if (maxDiskUsage > 0 && total > maxDiskUsage) {
+            Instant idleBefore = Instant.now().minus(evictMinIdle);
+            List<CloneCacheEntry> byAge = new ArrayList<>(entries);
+            byAge.sort(Comparator.comparing(CloneCacheEntry::lastAccess, Comparator.nullsFirst(Comparator.naturalOrder())));
+            for (CloneCacheEntry e : byAge) {
+                if (total <= maxDiskUsage) break;
+                if (e.lastAccess() != null && e.lastAccess().isAfter(idleBefore)) break;
+                if (evict(e.repoKey(), idleBefore)) {
+                    total -= e.sizeBytes();
+                    entries.remove(e);
+                }
+            }
+            if (total > maxDiskUsage) {
+                log.warn("Clone cache holds {} bytes over its {} byte budget; the remaining mirrors are in use or used recently",
+                        total - maxDiskUsage, maxDiskUsage);
+            }
+        }
+        entries.sort(Comparator.comparing(CloneCacheEntry::lastAccess, Comparator.nullsLast(Comparator.reverseOrder())));
+        entries.addAll(legacy);
+        lastSweep = List.copyOf(entries);
+    }
+
+    private boolean needsGc(File dir) {
+        if (storage.missingIndex(dir)) {
+            return true;
+        }
+        try (Git git = Git.open(dir)) {
+            Properties stats = git.gc().getStatistics();
+            return number(stats, "numberOfPackFiles") > gcMaxPacks
+                    || number(stats, "numberOfLooseObjects") > gcMaxLooseObjects;
+        } catch (Exception e) {
+            log.debug("Cannot read gc statistics of {}: {}", dir, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean gc(String key, File dir) {
+        try (RepositoryLockManager.Lease lease = repoLocks.tryWriteLock(key)) {
+            if (lease == null) {
+                return false;
+            }
+            long start = System.nanoTime();
+            try (Git git = Git.open(dir)) {
+                storage.repack(git.getRepository());
+            }
+            markGc(dir);
+            gcRuns.incrementAndGet();
+            log.info("Repacked {} in {} ms", key, (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (Exception e) {
+            log.warn("gc of {} failed: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean evict(String key, Instant idleBefore) {
+        if (cloneManager.isPinned(key)) {
+            return false;
+        }
+        try (RepositoryLockManager.Lease lease = repoLocks.tryWriteLock(key)) {
+            if (lease == null) {
+                return false;
+            }
+            File dir = new File(cloneManager.cloneBase(), key + ".git");
+            // opened since it was measured
+            Instant lastAccess = MirrorCloneManager.lastAccess(dir);
+            if (lastAccess != null && lastAccess.isAfter(idleBefore)) {
+                return false;
+            }
+            FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+            evictions.incrementAndGet();
+            log.info("Evicted mirror {} (last used {})", key, lastAccess);
+            return true;
+        } catch (IOException e) {
+            log.warn("Evicting {} failed: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    // the working-tree clone kept at <cloneBase>/<repoKey> before mirrors; nothing opens it any more
+    private static boolean isLegacyClone(File dir) {
+        return !dir.getName().endsWith(".git") && new File(dir, Constants.DOT_GIT).isDirectory();
+    }
+
+    private boolean deleteLegacyClone(String key, File dir) {
+        try (RepositoryLockManager.Lease lease = repoLocks.tryWriteLock(key)) {
+            if (lease == null) {
+                return false;
+            }
+            FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+            evictions.incrementAndGet();
+            log.info("Deleted pre-mirror clone {}", dir);
+            return true;
+        } catch (IOException e) {
+            log.warn("Cannot delete pre-mirror clone {}: {}", dir, e.getMessage());
+            return false;
+        }
+    }
+
+    private static long number(Properties stats, String key) {
+        Object value = stats.get(key);
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static Instant lastGc(File dir) {
+        try {
+            return Files.getLastModifiedTime(dir.toPath().resolve(GC_MARKER)).toInstant();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void markGc(File dir) throws IOException {
+        Path marker = dir.toPath().resolve(GC_MARKER);
+        if (!Files.exists(marker)) Files.createFile(marker);
+        Files.setLastModifiedTime(marker, FileTime.from(Instant.now()));
+    }
+
+    // files may be replaced by a concurrent fetch or gc while we walk; skip what vanished
+    static long sizeOf(Path dir) {
+        long[] total = new long[1];
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    total[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.debug("Cannot size {}: {}", dir, e.getMessage());
+        }
+        return total[0];
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+    }
+}
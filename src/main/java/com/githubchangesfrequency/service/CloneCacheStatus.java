@@ -0,0 +1,11 @@
+package com.githubchangesfrequency.service;
+
+import java.util.List;
+
+/**
+ * Disk use of the local mirrors as of the last sweep (most recently used first), the budget,
+ * and eviction/gc counts since startup.
+ */
+public record CloneCacheStatus(long totalBytes, long budgetBytes, long evictions, long gcRuns, boolean sweeping,
+                               List<CloneCacheEntry> repos) {
+}
@@ -0,0 +1,288 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ObjectStream;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Shared diff engine for the scanner services. Each commit is diffed against its first parent
+ * (or the empty tree for a root commit) and the added/deleted line counts are summed.
+ *
+ * The commit list is cut into contiguous slices which run on a fork-join pool; every slice
+ * opens one ObjectReader, RevWalk and DiffFormatter and reuses them for all of its commits.
+ * File-level results are looked up in {@link BlobDiffCache} before any blob is diffed.
+ * {@link ScanOptions} can prune paths and switch on fast-mode shortcuts (binary skipping,
+ * a blob size cap, rename limits, Myers diff); shortcuts taken are reported per commit.
+ * {@link #diffFiles} runs the same diff but keeps one result per changed file; a
+ * {@link FileStatSink} gets both from one pass.
+ * Results come back in input order, so the outcome does not depend on how the list was split.
+ */
+@Service
+public class CommitDiffEngine {
+
+    // below this many commits the pool hand-off costs more than it saves
+    private static final int MIN_PARALLEL_COMMITS = 64;
+    // more slices than workers so one slow slice (huge commit) does not stall the whole scan
+    private static final int SLICES_PER_WORKER = 4;
+
+    private final BlobDiffCache diffCache;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    public CommitDiffEngine(BlobDiffCache diffCache,
+                            @Value("${git.scan.parallelism:0}") int parallelism) {
+        this.diffCache = diffCache;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Diff the given commits and return one {@link CommitStats} per commit, in input order.
+     */
+    public List<CommitStats> diffCommits(Repository repository, List<? extends AnyObjectId> commits) throws IOException {
+        return diffCommits(repository, commits, ScanOptions.DEFAULT, ScanProgressListener.NONE);
+    }
+
+    public List<CommitStats> diffCommits(Repository repository, List<? extends AnyObjectId> commits,
+                                         ScanOptions options, ScanProgressListener listener) throws IOException {
+        return diffCommits(repository, commits, options, listener, FileStatSink.NONE);
+    }
+
+    /**
+     * As {@link #diffCommits(Repository, List, ScanOptions, ScanProgressListener)}, also handing
+     * each commit's per-file results to {@code files} as soon as the commit is diffed.
+     */
+    public List<CommitStats> diffCommits(Repository repository, List<? extends AnyObjectId> commits,
+                                         ScanOptions options, ScanProgressListener listener,
+                                         FileStatSink files) throws IOException {
+        return inSlices(commits, slice -> {
+            List<CommitStats> stats = new ArrayList<>(slice.size());
+            diffSlice(repository, slice, options, listener, stats, files);
+            return stats;
+        });
+    }
+
+    /**
+     * Per-file counts of the given commits, grouped by commit in input order. Uses the same
+     * options and shortcuts as {@link #diffCommits}; binary files skipped in fast mode are
+     * reported with zero lines.
+     */
+    public List<FileChangeStat> diffFiles(Repository repository, List<? extends AnyObjectId> commits,
+                                          ScanOptions options) throws IOException {
+        return inSlices(commits, slice -> {
+            List<FileChangeStat> files = new ArrayList<>();
+            // a slice runs on one thread, in order
+            diffSlice(repository, slice, options, ScanProgressListener.NONE, null, (commit, commitFiles) -> files.addAll(commitFiles));
+            return files;
+        });
+    }
+
+    @FunctionalInterface
+    private interface SliceTask<T> {
+        List<T> run(List<? extends AnyObjectId> slice) throws IOException;
+    }
+
+    private <T> List<T> inSlices(List<? extends AnyObjectId> commits, SliceTask<T> sliceTask) throws IOException {
+        if (commits.isEmpty()) {
+            return List.of();
+        }
+        if (parallelism == 1 || commits.size() < MIN_PARALLEL_COMMITS) {
+            return sliceTask.run(commits);
+        }
+
+        int sliceCount = Math.min(commits.size(), parallelism * SLICES_PER_WORKER);
+        int sliceSize = (commits.size() + sliceCount - 1) / sliceCount;
+        List<ForkJoinTask<List<T>>> tasks = new ArrayList<>(sliceCount);
+        for (int from = 0; from < commits.size(); from += sliceSize) {
+            List<? extends AnyObjectId> slice = commits.subList(from, Math.min(from + sliceSize, commits.size()));
+            tasks.add(pool.submit(() -> sliceTask.run(slice)));
+        }
+
+        List<T> results = new ArrayList<>(commits.size());
+        try {
+            for (ForkJoinTask<List<T>> task : tasks) {
+                results.addAll(task.get());
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(t -> t.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Diff interrupted", e);
+        } catch (ExecutionException e) {
+            tasks.forEach(t -> t.cancel(true));
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Diff failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return results;
+    }
+
+    // fills stats unless null, and feeds files unless NONE
+    private void diffSlice(Repository repository, List<? extends AnyObjectId> commits, ScanOptions options,
+                           ScanProgressListener listener, List<CommitStats> stats,
+                           FileStatSink fileSink) throws IOException {
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader);
+             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            diffFormatter.setReader(reader, repository.getConfig());
+            diffFormatter.setDiffAlgorithm(DiffAlgorithm.getAlgorithm(options.diffAlgorithm()));
+            diffFormatter.setDetectRenames(options.detectRenames());
+            if (options.detectRenames() && options.renameLimit() > 0) {
+                diffFormatter.getRenameDetector().setRenameLimit(options.renameLimit());
+            }
+            // only plain histogram line diffs are shared through the blob cache
+            boolean useCache = options.diffAlgorithm() == DiffAlgorithm.SupportedAlgorithm.HISTOGRAM;
+            // excluded subtrees are pruned by the tree walk itself, never read or diffed
+            diffFormatter.setPathFilter(options.treeFilter());
+
+            for (AnyObjectId id : commits) {
+                RevCommit commit = revWalk.parseCommit(id);
+
+                AbstractTreeIterator oldTreeIter;
+                RevCommit parent = null;
+                if (commit.getParentCount() == 0) {
+                    // root commit: diff against empty tree
+                    oldTreeIter = new EmptyTreeIterator();
+                } else {
+                    parent = revWalk.parseCommit(commit.getParent(0));
+                    CanonicalTreeParser parentTreeIter = new CanonicalTreeParser();
+                    parentTreeIter.reset(reader, parent.getTree());
+                    oldTreeIter = parentTreeIter;
+                }
+                CanonicalTreeParser commitTreeIter = new CanonicalTreeParser();
+                commitTreeIter.reset(reader, commit.getTree());
+
+                long added = 0;
+                long deleted = 0;
+                int binaryFiles = 0;
+                int oversizedFiles = 0;
+                long scanStart = System.nanoTime();
+                List<DiffEntry> entries = diffFormatter.scan(oldTreeIter, commitTreeIter);
+                boolean renameLimitExceeded = options.detectRenames()
+                        && diffFormatter.getRenameDetector().isOverRenameLimit();
+                listener.onDiffEntries(entries.size(), System.nanoTime() - scanStart);
+                List<FileChangeStat> files = fileSink.needs(commit) ? new ArrayList<>(entries.size()) : null;
+                for (DiffEntry entry : entries) {
+                    DiffTotals counts;
+                    if (options.skipBinary() && isBinary(reader, entry)) {
+                        binaryFiles++;
+                        if (files != null) files.add(FileChangeStat.of(commit, entry, DiffTotals.ZERO));
+                        continue;
+                    } else if (isOversized(reader, entry, options.maxBlobSize())) {
+                        // whole-file add/remove: count lines, skip the line diff
+                        oversizedFiles++;
+                        counts = isBinary(reader, entry) ? DiffTotals.ZERO
+                                : new DiffTotals(lineCount(reader, entry.getNewMode(), entry.getNewId()),
+                                                 lineCount(reader, entry.getOldMode(), entry.getOldId()));
+                    } else {
+                        BlobPair key = BlobPair.of(entry);
+                        counts = useCache ? diffCache.get(key) : null;
+                        if (counts == null) {
+                            counts = countEdits(diffFormatter.toFileHeader(entry).toEditList());
+                            if (useCache) diffCache.put(key, counts);
+                        }
+                    }
+                    added += counts.linesAdded();
+                    deleted += counts.linesDeleted();
+                    if (files != null) files.add(FileChangeStat.of(commit, entry, counts));
+                }
+                if (files != null) fileSink.accept(commit.copy(), files);
+                if (stats != null) {
+                    stats.add(new CommitStats(commit.copy(), parent != null ? parent.copy() : null, added, deleted,
+                            binaryFiles, oversizedFiles, renameLimitExceeded));
+                }
+                listener.onCommitsDiffed(1, added, deleted);
+            }
+        }
+    }
+
+    private static boolean isBlob(FileMode mode, AbbreviatedObjectId id) {
+        return mode.getObjectType() == Constants.OBJ_BLOB && !ObjectId.zeroId().equals(id.toObjectId());
+    }
+
+    private static boolean isBinary(ObjectReader reader, DiffEntry entry) throws IOException {
+        return isBinary(reader, entry.getOldMode(), entry.getOldId())
+                || isBinary(reader, entry.getNewMode(), entry.getNewId());
+    }
+
+    private static boolean isBinary(ObjectReader reader, FileMode mode, AbbreviatedObjectId id) throws IOException {
+        if (!isBlob(mode, id)) return false;
+        // RawText only looks at the first few KB
+        try (ObjectStream in = reader.open(id.toObjectId(), Constants.OBJ_BLOB).openStream()) {
+            return RawText.isBinary(in);
+        }
+    }
+
+    private static boolean isOversized(ObjectReader reader, DiffEntry entry, long maxBlobSize) throws IOException {
+        if (maxBlobSize <= 0) return false;
+        return size(reader, entry.getOldMode(), entry.getOldId()) > maxBlobSize
+                || size(reader, entry.getNewMode(), entry.getNewId()) > maxBlobSize;
+    }
+
+    private static long size(ObjectReader reader, FileMode mode, AbbreviatedObjectId id) throws IOException {
+        return isBlob(mode, id) ? reader.getObjectSize(id.toObjectId(), Constants.OBJ_BLOB) : 0;
+    }
+
+    // same line count RawText would give: newlines, plus one for an unterminated last line
+    private static long lineCount(ObjectReader reader, FileMode mode, AbbreviatedObjectId id) throws IOException {
+        if (!isBlob(mode, id)) return 0;
+        long lines = 0;
+        int last = '\n';
+        byte[] buf = new byte[64 * 1024];
+        try (ObjectStream in = reader.open(id.toObjectId(), Constants.OBJ_BLOB).openStream()) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == '\n') lines++;
+                }
+                last = buf[n - 1];
+            }
+        }
+        return last == '\n' ? lines : lines + 1;
+    }
+
+    private static DiffTotals countEdits(EditList edits) {
+        long added = 0;
+        long deleted = 0;
+        for (Edit e : edits) {
+            added += Math.max(0, e.getEndB() - e.getBeginB());
+            deleted += Math.max(0, e.getEndA() - e.getBeginA());
+        }
+        return new DiffTotals(added, deleted);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,173 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.githubchangesfrequency.domain.CommitDiffStat;
+import com.githubchangesfrequency.repository.CommitDiffStatRepository;
+
+/**
+ * Persistent per-commit diff stats in front of {@link CommitDiffEngine}. Commits already in the
+ * commit_diff_stat table are read back instead of diffed; only unseen commits reach the engine,
+ * and their results are stored for the next scan of any branch or repo that contains them.
+ * Rows are kept per {@link ScanOptions#profile()}, since path filters change the counts.
+ */
+@Service
+public class CommitStatIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CommitStatIndex.class);
+
+    // keep IN lists well below driver/database parameter limits
+    private static final int LOOKUP_CHUNK = 1000;
+    // a conflict costs one lookup and one more insert; more than a few means something else is wrong
+    private static final int STORE_ATTEMPTS = 3;
+
+    private final CommitDiffStatRepository statRepo;
+    private final CommitDiffEngine diffEngine;
+    private final TransactionTemplate writeTx;
+
+    public CommitStatIndex(CommitDiffStatRepository statRepo,
+                           CommitDiffEngine diffEngine,
+                           PlatformTransactionManager txManager) {
+        this.statRepo = statRepo;
+        this.diffEngine = diffEngine;
+        this.writeTx = new TransactionTemplate(txManager);
+        this.writeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Return stats for every commit, in input order, diffing only the ones not yet indexed.
+     */
+    public List<CommitStats> statsFor(Repository repository, List<RevCommit> commits) throws IOException {
+        return statsFor(repository, commits, ScanOptions.DEFAULT, ScanProgressListener.NONE);
+    }
+
+    public List<CommitStats> statsFor(Repository repository, List<RevCommit> commits,
+                                      ScanOptions options, ScanProgressListener listener) throws IOException {
+        return statsFor(repository, commits, options, listener, FileStatSink.NONE);
+    }
+
+    /**
+     * As above, also feeding per-file results to {@code files}. Per-file results are not indexed,
+     * so indexed commits that {@code files} {@link FileStatSink#needs needs} are diffed again, in
+     * the same pass as the unseen ones; all other indexed commits are read back.
+     */
+    public List<CommitStats> statsFor(Repository repository, List<RevCommit> commits, ScanOptions options,
+                                      ScanProgressListener listener, FileStatSink files) throws IOException {
+        String profile = options.profile();
+        Map<String, CommitDiffStat> known = lookup(commits, profile);
+
+        List<RevCommit> toDiff = new ArrayList<>();
+        int readCount = 0;
+        long added = 0;
+        long deleted = 0;
+        for (RevCommit commit : commits) {
+            CommitDiffStat row = known.get(commit.getName());
+            if (row == null || files.needs(commit)) {
+                toDiff.add(commit);
+            } else {
+                readCount++;
+                added += row.getLinesAdded();
+                deleted += row.getLinesDeleted();
+            }
+        }
+        if (readCount > 0) {
+            listener.onCommitsDiffed(readCount, added, deleted);
+        }
+
+        Map<ObjectId, CommitStats> diffed = new HashMap<>();
+        if (!toDiff.isEmpty()) {
+            List<CommitStats> fresh = new ArrayList<>();
+            for (CommitStats s : diffEngine.diffCommits(repository, toDiff, options, listener, files)) {
+                diffed.put(s.commitId(), s);
+                if (!known.containsKey(s.commitId().getName())) fresh.add(s);
+            }
+            if (!fresh.isEmpty()) store(fresh, profile);
+        }
+
+        List<CommitStats> result = new ArrayList<>(commits.size());
+        for (RevCommit commit : commits) {
+            CommitStats s = diffed.get(commit);
+            if (s != null) {
+                result.add(s);
+                continue;
+            }
+            CommitDiffStat row = known.get(commit.getName());
+            ObjectId parentId = row.getParentSha() != null ? ObjectId.fromString(row.getParentSha()) : null;
+            result.add(new CommitStats(commit.copy(), parentId, row.getLinesAdded(), row.getLinesDeleted(),
+                    row.getBinaryFiles(), row.getOversizedFiles(), row.isRenameLimitExceeded()));
+        }
+        return result;
+    }
+
+    private Map<String, CommitDiffStat> lookup(List<? extends AnyObjectId> commits, String profile) {
+        Map<String, CommitDiffStat> known = new HashMap<>();
+        for (int from = 0; from < commits.size(); from += LOOKUP_CHUNK) {
+            List<String> keys = new ArrayList<>(LOOKUP_CHUNK);
+            for (AnyObjectId c : commits.subList(from, Math.min(from + LOOKUP_CHUNK, commits.size()))) {
+                keys.add(CommitDiffStat.key(c.getName(), profile));
+            }
+            for (CommitDiffStat row : statRepo.findAllById(keys)) {
+                known.put(row.getCommitSha(), row);
+            }
+        }
+        return known;
+    }
+
+    private void store(List<CommitStats> stats, String profile) {
+        List<CommitStats> pending = stats;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            List<CommitDiffStat> rows = rows(pending, profile);
+            try {
+                // own transaction so a concurrent scan inserting the same commits cannot fail the caller's scan
+                writeTx.executeWithoutResult(status -> statRepo.saveAll(rows));
+                return;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == STORE_ATTEMPTS) {
+                    log.debug("Giving up on indexing {} commit stats after {} conflicts: {}", pending.size(), attempt, e.getMessage());
+                    return;
+                }
+                // a concurrent scan indexed some of these commits and rolled back the whole batch: retry without them
+                List<ObjectId> ids = new ArrayList<>(pending.size());
+                for (CommitStats s : pending) ids.add(s.commitId());
+                Map<String, CommitDiffStat> taken = lookup(ids, profile);
+                List<CommitStats> rest = new ArrayList<>(pending.size());
+                for (CommitStats s : pending) {
+                    if (!taken.containsKey(s.commitId().getName())) rest.add(s);
+                }
+                log.debug("{} of {} commit stats already indexed by a concurrent scan", pending.size() - rest.size(), pending.size());
+                pending = rest;
+            }
+        }
+    }
+
+    // new entities every attempt: a rolled-back persist leaves the old ones marked as stored
+    private static List<CommitDiffStat> rows(List<CommitStats> stats, String profile) {
+        List<CommitDiffStat> rows = new ArrayList<>(stats.size());
+        for (CommitStats s : stats) {
+            CommitDiffStat row = new CommitDiffStat(s.commitId().getName(), profile,
+                    s.parentId() != null ? s.parentId().getName() : null,
+                    s.linesAdded(), s.linesDeleted());
+            row.setBinaryFiles(s.binaryFiles());
+            row.setOversizedFiles(s.oversizedFiles());
+            row.setRenameLimitExceeded(s.renameLimitExceeded());
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,16 @@
+package com.githubchangesfrequency.service;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Added/deleted line counts of one commit against its first parent.
+ * {@code parentId} is null for a root commit. The remaining fields record fast-mode shortcuts
+ * taken for the commit (see {@link ScanOptions}); they are zero in exact mode.
+ */
+public record CommitStats(ObjectId commitId, ObjectId parentId, long linesAdded, long linesDeleted,
+                          int binaryFiles, int oversizedFiles, boolean renameLimitExceeded) {
+
+    public CommitStats(ObjectId commitId, ObjectId parentId, long linesAdded, long linesDeleted) {
+        this(commitId, parentId, linesAdded, linesDeleted, 0, 0, false);
+    }
+}
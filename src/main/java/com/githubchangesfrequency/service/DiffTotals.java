@@ -0,0 +1,29 @@
+package com.githubchangesfrequency.service;
+
+import java.util.Collection;
+
+/**
+ * Summed added/deleted line counts for a set of commits.
+ */
+public record DiffTotals(long linesAdded, long linesDeleted) {
+
+    public static final DiffTotals ZERO = new DiffTotals(0, 0);
+
+    public DiffTotals plus(DiffTotals other) {
+        return new DiffTotals(linesAdded + other.linesAdded, linesDeleted + other.linesDeleted);
+    }
+
+    public DiffTotals minus(DiffTotals other) {
+        return new DiffTotals(linesAdded - other.linesAdded, linesDeleted - other.linesDeleted);
+    }
+
+    public static DiffTotals sum(Collection<CommitStats> stats) {
+        long added = 0;
+        long deleted = 0;
+        for (CommitStats s : stats) {
+            added += s.linesAdded();
+            deleted += s.linesDeleted();
+        }
+        return new DiffTotals(added, deleted);
+    }
+}
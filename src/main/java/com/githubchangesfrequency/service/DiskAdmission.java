@@ -0,0 +1,63 @@
+package com.githubchangesfrequency.service;
+
+import java.io.File;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission by free disk space. Each clone or fetch reserves an estimate of what it will write
+ * and is let in only if the usable space, minus what running clones have reserved but may not
+ * have written yet, still leaves {@code minFree}. Callers that do not fit wait for running ones
+ * to finish; if nothing else is running and it still does not fit, they are refused.
+ */
+final class DiskAdmission {
+
+    private final LongSupplier usableSpace;
+    private final long minFree;
+    private long reserved;
+    private int holders;
+
+    DiskAdmission(File dir, long minFree) {
+        this(() -> usableSpace(dir), minFree);
+    }
+
+    DiskAdmission(LongSupplier usableSpace, long minFree) {
+        this.usableSpace = usableSpace;
+        this.minFree = minFree;
+    }
+
+    /**
+     * Reserve {@code bytes}; false if they cannot fit even with no other reservation held.
+     */
+    synchronized boolean acquire(long bytes) throws InterruptedException {
+        while (true) {
+            if (usableSpace.getAsLong() - reserved - bytes >= minFree) {
+                reserved += bytes;
+                holders++;
+                return true;
+            }
+            if (holders == 0) {
+                return false;
+            }
+            wait();
+        }
+    }
+
+    synchronized void release(long bytes) {
+        reserved -= bytes;
+        holders--;
+        notifyAll();
+    }
+
+    synchronized long reserved() {
+        return reserved;
+    }
+
+    // the clone base may not exist yet: ask the nearest existing parent
+    private static long usableSpace(File dir) {
+        File d = dir.getAbsoluteFile();
+        while (d != null && !d.exists()) {
+            d = d.getParentFile();
+        }
+        return d != null ? d.getUsableSpace() : 0L;
+    }
+}
@@ -0,0 +1,182 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32C;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Fixed-size, memory-mapped hash table of blob-pair diff counts. The file is split into buckets
+ * of a few slots; a slot holds the two raw object ids, the two counts and a checksum of all
+ * four. A full bucket overwrites a random slot, so the file never grows. An all-zero slot is
+ * empty (no pair has two zero ids).
+ *
+ * A slot is written counts and checksum first and ids last, and a slot whose checksum does not
+ * match is read as a miss, so a write torn by a crash never returns another pair's counts. The
+ * file is locked while open: a second process sharing the path cannot open it.
+ */
+class DiskBlobDiffStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x42444332; // "BDC2"
+    private static final int HEADER = 16;
+    private static final int ID = Constants.OBJECT_ID_LENGTH;
+    private static final int COUNTS = 2 * ID;
+    private static final int CHECKSUM = COUNTS + 16;
+    private static final int SLOT = CHECKSUM + 8;
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int LOCK_STRIPES = 64;
+
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer buffer;
+    private final int buckets;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    DiskBlobDiffStore(Path file, int capacity) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        this.buckets = Math.max(1, capacity / SLOTS_PER_BUCKET);
+        long size = HEADER + (long) SLOT * SLOTS_PER_BUCKET * buckets;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Disk diff cache too large: " + capacity + " entries");
+        }
+
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.fileLock = lock(file);
+            if (!hasHeader(size)) {
+                // new file, or written with another layout: start empty (mapping zero-fills the extension)
+                channel.truncate(0);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, buckets);
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+    }
+
+    private FileLock lock(Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            throw new InUseException(file);
+        }
+        return lock;
+    }
+
+    private boolean hasHeader(long size) throws IOException {
+        if (channel.size() != size) return false;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == buckets;
+    }
+
+    DiffTotals get(BlobPair key) {
+        int bucket = bucket(key);
+        synchronized (locks[bucket % LOCK_STRIPES]) {
+            for (int s = 0; s < SLOTS_PER_BUCKET; s++) {
+                int pos = offset(bucket, s);
+                if (isEmpty(pos)) return null;
+                if (matches(pos, key)) {
+                    return isIntact(pos)
+                            ? new DiffTotals(buffer.getLong(pos + COUNTS), buffer.getLong(pos + COUNTS + 8))
+                            : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    void put(BlobPair key, DiffTotals counts) {
+        int bucket = bucket(key);
+        byte[] raw = new byte[2 * ID];
+        key.oldId().copyRawTo(raw, 0);
+        key.newId().copyRawTo(raw, ID);
+        long checksum = checksum(raw, counts.linesAdded(), counts.linesDeleted());
+        synchronized (locks[bucket % LOCK_STRIPES]) {
+            int target = -1;
+            int damaged = -1;
+            for (int s = 0; s < SLOTS_PER_BUCKET; s++) {
+                int pos = offset(bucket, s);
+                if (isEmpty(pos) || matches(pos, key)) {
+                    target = pos;
+                    break;
+                }
+                if (damaged < 0 && !isIntact(pos)) damaged = pos;
+            }
+            if (target < 0) {
+                target = damaged >= 0 ? damaged : offset(bucket, ThreadLocalRandom.current().nextInt(SLOTS_PER_BUCKET));
+            }
+            buffer.putLong(target + COUNTS, counts.linesAdded());
+            buffer.putLong(target + COUNTS + 8, counts.linesDeleted());
+            buffer.putLong(target + CHECKSUM, checksum);
+            buffer.put(target, raw);
+        }
+    }
+
+    private int bucket(BlobPair key) {
+        return Math.floorMod(key.hashCode(), buckets);
+    }
+
+    private static int offset(int bucket, int slot) {
+        return HEADER + (bucket * SLOTS_PER_BUCKET + slot) * SLOT;
+    }
+
+    private boolean isEmpty(int pos) {
+        for (int i = 0; i < 2 * ID; i += 4) {
+            if (buffer.getInt(pos + i) != 0) return false;
+        }
+        return true;
+    }
+
+    private boolean matches(int pos, BlobPair key) {
+        byte[] raw = new byte[2 * ID];
+        buffer.get(pos, raw);
+        return key.oldId().equals(ObjectId.fromRaw(raw, 0)) && key.newId().equals(ObjectId.fromRaw(raw, ID));
+    }
+
+    private boolean isIntact(int pos) {
+        byte[] raw = new byte[2 * ID];
+        buffer.get(pos, raw);
+        return buffer.getLong(pos + CHECKSUM)
+                == checksum(raw, buffer.getLong(pos + COUNTS), buffer.getLong(pos + COUNTS + 8));
+    }
+
+    private static long checksum(byte[] ids, long linesAdded, long linesDeleted) {
+        CRC32C crc = new CRC32C();
+        crc.update(ids);
+        crc.update(ByteBuffer.allocate(16).putLong(linesAdded).putLong(linesDeleted).flip());
+        return crc.getValue();
+    }
+
+    /** Another process, or another store in this one, has the file open. */
+    static final class InUseException extends IOException {
+        InUseException(Path file) {
+            super("Disk diff cache " + file + " is in use by another process");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        fileLock.release();
+        channel.close();
+    }
+}
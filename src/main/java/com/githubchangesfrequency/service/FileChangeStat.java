@@ -0,0 +1,20 @@
+package com.githubchangesfrequency.service;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Added/deleted line counts of one file in one commit. {@code path} is the new path, or the
+ * old one for a deletion; {@code oldPath} is only set for renames and copies.
+ */
+public record FileChangeStat(ObjectId commitId, String path, String oldPath, ChangeType changeType,
+                             long linesAdded, long linesDeleted) {
+
+    static FileChangeStat of(ObjectId commitId, DiffEntry entry, DiffTotals counts) {
+        ChangeType type = entry.getChangeType();
+        String path = type == ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
+        String oldPath = type == ChangeType.RENAME || type == ChangeType.COPY ? entry.getOldPath() : null;
+        return new FileChangeStat(commitId.copy(), path, oldPath, type, counts.linesAdded(), counts.linesDeleted());
+    }
+}
@@ -0,0 +1,53 @@
+package com.githubchangesfrequency.service;
+
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Receives the per-file results of each commit while {@link CommitDiffEngine} diffs it, so
+ * file-level consumers share the pass that computes the commit totals instead of diffing the
+ * commits again. Called from the diff workers, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface FileStatSink {
+
+    FileStatSink NONE = new FileStatSink() {
+        @Override
+        public void accept(ObjectId commit, List<FileChangeStat> files) {}
+
+        @Override
+        public boolean needs(ObjectId commit) {
+            return false;
+        }
+    };
+
+    /** All changed files of one commit, in diff order; empty if the commit changed nothing counted. */
+    void accept(ObjectId commit, List<FileChangeStat> files);
+
+    /**
+     * Whether this sink wants {@code commit}'s files. A commit whose stats are already indexed is
+     * only diffed again if some sink needs it; the others are not passed to {@link #accept}.
+     */
+    default boolean needs(ObjectId commit) {
+        return true;
+    }
+
+    default FileStatSink andThen(FileStatSink next) {
+        if (this == NONE) return next;
+        if (next == NONE) return this;
+        FileStatSink first = this;
+        return new FileStatSink() {
+            @Override
+            public void accept(ObjectId commit, List<FileChangeStat> files) {
+                if (first.needs(commit)) first.accept(commit, files);
+                if (next.needs(commit)) next.accept(commit, files);
+            }
+
+            @Override
+            public boolean needs(ObjectId commit) {
+                return first.needs(commit) || next.needs(commit);
+            }
+        };
+    }
+}
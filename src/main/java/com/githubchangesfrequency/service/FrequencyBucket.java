@@ -0,0 +1,13 @@
+package com.githubchangesfrequency.service;
+
+import java.time.LocalDate;
+
+/**
+ * Commit and line totals of one time bucket, identified by its first day.
+ */
+public record FrequencyBucket(LocalDate bucketStart, long commits, long linesAdded, long linesDeleted) {
+
+    public long getTotalChanges() {
+        return linesAdded + linesDeleted;
+    }
+}
@@ -1,28 +1,18 @@
 package com.githubchangesfrequency.service;
 
 
-import java.io.File;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.diff.EditList;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
-import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.patch.FileHeader;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.eclipse.jgit.treewalk.AbstractTreeIterator;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.treewalk.EmptyTreeIterator;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.githubchangesfrequency.domain.RepositoryChange;
 import com.githubchangesfrequency.repository.RepositoryChangeRepository;
@@ -31,49 +21,53 @@ import com.githubchangesfrequency.repository.RepositoryChangeRepository;
 public class GitChangeScannerService {
 
     private final RepositoryChangeRepository changeRepo;
-    private final String cloneBase;
+    private final CommitStatIndex statIndex;
+    private final MirrorCloneManager cloneManager;
+    private final ChangeHistoryRecorder historyRecorder;
+    private final AuthorStatsService authorStats;
+    private final ScanMetrics metrics;
+    private final WorkLeaseManager leases;
+    private final TransactionTemplate saveTx;
 
     public GitChangeScannerService(RepositoryChangeRepository changeRepo,
-                                   @Value("${git.local.cloneBase:${java.io.tmpdir}/git-clones}") String cloneBase) {
+                                   CommitStatIndex statIndex,
+                                   MirrorCloneManager cloneManager,
+                                   ChangeHistoryRecorder historyRecorder,
+                                   AuthorStatsService authorStats,
+                                   ScanMetrics metrics,
+                                   WorkLeaseManager leases,
+                                   PlatformTransactionManager txManager) {
         this.changeRepo = changeRepo;
-        this.cloneBase = cloneBase;
+        this.statIndex = statIndex;
+        this.cloneManager = cloneManager;
+        this.historyRecorder = historyRecorder;
+        this.authorStats = authorStats;
+        this.metrics = metrics;
+        this.leases = leases;
+        this.saveTx = new TransactionTemplate(txManager);
     }
 
     /**
      * Clone or fetch repo and compute lines added/deleted on the given branch.
-     * Returns saved RepositoryChange entity.
+     * Returns saved RepositoryChange entity, or the stored one if the branch tip has not moved
+     * since it was computed. Phase timings go to {@link ScanMetrics} and onto the saved entity.
+     * The repo's {@link WorkLeaseManager} lease is held throughout, so no other node scans it meanwhile;
+     * if it was taken over anyway (this node stalled past its ttl) the scan fails before writing.
      */
     public RepositoryChange scanRepository(String repoUrl, String branch) throws Exception {
-        // compute local path
-        String dirName = repoUrl.replaceAll("[^a-zA-Z0-9._-]", "_");
-        File repoDir = new File(cloneBase, dirName);
-
-        Git git;
-        if (repoDir.exists() && new File(repoDir, ".git").exists()) {
-        	// open existing repo and fetch
-        	
-        	String username = System.getenv("GITHUB_USER");
-			String passwordOrToken = System.getenv("GITHUB_TOKEN");
-			Git.cloneRepository().setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, passwordOrToken));
-            git = Git.open(repoDir);
-            try {
-                git.fetch().setRemote("origin").call();
-            } catch (Exception e) {
-                // fetch may fail for public readonly or different remote; ignore or log
-            }
-        } else {
-            // clone
-            repoDir.mkdirs();
-            git = Git.cloneRepository()
-                     .setURI(repoUrl)
-                     .setDirectory(repoDir)
-                     .setCloneAllBranches(true)
-                     .call();
-        }
+        return scanRepository(repoUrl, branch, ScanOptions.DEFAULT, ScanProgressListener.NONE);
+    }
 
-        try (Repository repository = git.getRepository()) {
+    public RepositoryChange scanRepository(String repoUrl, String branch, ScanOptions options,
+                                           ScanProgressListener listener) throws Exception {
+        ScanTimer timer = metrics.start("full", repoUrl, listener);
+        String outcome = "failed";
+        try (WorkLeaseManager.Lease lease = leases.acquire(repoUrl);
+             MirrorClone clone = cloneManager.open(repoUrl, timer)) {
+            Repository repository = clone.getRepository();
+            timer.onPhase("resolve");
             // try to resolve branch ref. Prefer remote branch if local absent.
-            String fullRef = resolveBranchRef(repository, branch);
+            String fullRef = clone.resolveBranchRef(branch);
 
             if (fullRef == null) {
                 throw new IllegalArgumentException("Branch not found: " + branch);
@@ -84,85 +78,52 @@ public class GitChangeScannerService {
                 throw new IllegalArgumentException("Cannot resolve branch object id for: " + fullRef);
             }
 
-            long totalAdded = 0;
-            long totalDeleted = 0;
+            // unchanged tip: the history, and so the totals, are the same as last time
+            Optional<RepositoryChange> cached = changeRepo
+                    .findFirstByRepoUrlAndBranchNameAndTipCommitAndDiffProfileAndBaseCommitIsNullOrderByScannedAtDesc(
+                            repoUrl, branch, branchObjectId.getName(), options.profile());
+            if (cached.isPresent()) {
+                outcome = "unchanged";
+                return cached.get();
+            }
 
+            timer.onPhase("walk");
+            List<RevCommit> commits = new ArrayList<>();
             try (RevWalk revWalk = new RevWalk(repository)) {
                 RevCommit start = revWalk.parseCommit(branchObjectId);
                 revWalk.markStart(start);
-
                 for (RevCommit commit : revWalk) {
-                    if (commit.getParentCount() == 0) {
-                        // root commit: diff against empty tree
-                        try (ObjectReader reader = repository.newObjectReader();
-                             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-                            diffFormatter.setRepository(repository);
-                            diffFormatter.setDetectRenames(true);
-                            AbstractTreeIterator oldTreeIter = new EmptyTreeIterator();
-                            CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
-                            newTreeIter.reset(reader, commit.getTree());
-                            // produce file diffs
-                            for (DiffEntry entry : diffFormatter.scan(oldTreeIter, newTreeIter)) {
-                                EditList edits = diffFormatter.toFileHeader(entry).toEditList();
-                                for (Edit e : edits) {
-                                    totalAdded += e.getEndB() - e.getBeginB();
-                                    totalDeleted += e.getEndA() - e.getBeginA();
-                                }
-                            }
-                        }
-                    } else {
-                        RevCommit parent = revWalk.parseCommit(commit.getParent(0).getId());
-                        try (ObjectReader reader = repository.newObjectReader();
-                             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-                            diffFormatter.setRepository(repository);
-                            diffFormatter.setDetectRenames(true);
-
-                            CanonicalTreeParser parentTreeIter = new CanonicalTreeParser();
-                            parentTreeIter.reset(reader, parent.getTree());
-
-                            CanonicalTreeParser commitTreeIter = new CanonicalTreeParser();
-                            commitTreeIter.reset(reader, commit.getTree());
-
-                            for (DiffEntry entry : diffFormatter.scan(parentTreeIter, commitTreeIter)) {
-                                FileHeader fh = diffFormatter.toFileHeader(entry);
-                                EditList edits = fh.toEditList();
-                                for (Edit e : edits) {
-                                    totalAdded += Math.max(0, e.getEndB() - e.getBeginB());
-                                    totalDeleted += Math.max(0, e.getEndA() - e.getBeginA());
-                                }
-                            }
-                        }
-                    }
+                    commits.add(commit);
                 }
             }
 
-            RepositoryChange saved = new RepositoryChange(repoUrl, branch, totalAdded, totalDeleted, Instant.now());
-            return changeRepo.save(saved);
+            timer.onCommitsFound(commits.size());
+            timer.onPhase("diff");
+            ChangeHistoryRecorder.Recording history = historyRecorder.begin(repoUrl, commits, options);
+            List<CommitStats> stats = statIndex.statsFor(repository, commits, options, timer, history.files());
+            // a run that lost its lease writes nothing
+            lease.fence();
+            timer.onPhase("history");
+            history.finish(stats);
+            timer.onPhase("authors");
+            authorStats.update(repository, repoUrl, branch, options, branchObjectId, stats);
+            DiffTotals totals = DiffTotals.sum(stats);
+
+            timer.onPhase("save");
+            RepositoryChange saved = new RepositoryChange(repoUrl, branch, totals.linesAdded(), totals.linesDeleted(), Instant.now());
+            saved.setTipCommit(branchObjectId.getName());
+            saved.setDiffProfile(options.profile());
+            saved.setFetchError(clone.getFetchError());
+            ScanShortcuts.sum(stats).applyTo(saved);
+            timer.applyTo(saved);
+            RepositoryChange persisted = saveTx.execute(status -> {
+                lease.fence();
+                return changeRepo.save(saved);
+            });
+            outcome = "saved";
+            return persisted;
         } finally {
-            git.close();
-        }
-    }
-
-    private String resolveBranchRef(Repository repository, String branch) {
-        try {
-            // check local refs/heads/{branch}
-            String local = "refs/heads/" + branch;
-            if (repository.findRef(local) != null) return local;
-
-            // check remote origin
-            String remote = "refs/remotes/origin/" + branch;
-            if (repository.findRef(remote) != null) return remote;
-
-            // try branch as provided (maybe already a ref)
-            if (repository.findRef(branch) != null) return branch;
-
-            // as fallback, try to resolve to any ref that ends with branch
-            for (Ref ref : repository.getRefDatabase().getRefs()) {
-                if (ref.getName().endsWith("/" + branch)) return ref.getName();
-            }
-        } catch (Exception e) {
-            // ignore
+            timer.finish(outcome);
         }
-        return null;
     }
-}
\ No newline at end of file
+}
@@ -1,24 +1,23 @@
 package com.githubchangesfrequency.service;
 
 import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.domain.RetainedCheckpoint;
 import com.githubchangesfrequency.domain.ScanCheckpoint;
 import com.githubchangesfrequency.repository.RepositoryChangeRepository;
+import com.githubchangesfrequency.repository.RetainedCheckpointRepository;
 import com.githubchangesfrequency.repository.ScanCheckpointRepository;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.diff.*;
 import org.eclipse.jgit.lib.*;
-import org.eclipse.jgit.patch.FileHeader;
 import org.eclipse.jgit.revwalk.*;
-import org.eclipse.jgit.treewalk.AbstractTreeIterator;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.treewalk.EmptyTreeIterator;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.File;
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -26,43 +25,80 @@ public class GitChangeScannerServiceIncr {
 
     private final RepositoryChangeRepository changeRepo;
     private final ScanCheckpointRepository checkpointRepo;
-    private final String cloneBase;
+    private final RetainedCheckpointRepository retainedRepo;
+    private final CommitStatIndex statIndex;
+    private final MirrorCloneManager cloneManager;
+    private final ChangeHistoryRecorder historyRecorder;
+    private final AuthorStatsService authorStats;
+    private final ChurnIndexService churnIndex;
+    private final ScanMetrics metrics;
+    private final WorkLeaseManager leases;
+    private final TransactionTemplate saveTx;
+    private final int retainCheckpoints;
 
     public GitChangeScannerServiceIncr(RepositoryChangeRepository changeRepo,
                                    ScanCheckpointRepository checkpointRepo,
-                                   @Value("${git.local.cloneBase:${java.io.tmpdir}/git-clones}") String cloneBase) {
+                                   RetainedCheckpointRepository retainedRepo,
+                                   CommitStatIndex statIndex,
+                                   MirrorCloneManager cloneManager,
+                                   ChangeHistoryRecorder historyRecorder,
+                                   ChurnIndexService churnIndex,
+                                   AuthorStatsService authorStats,
+                                   ScanMetrics metrics,
+                                   WorkLeaseManager leases,
+                                   PlatformTransactionManager txManager,
+                                   @Value("${git.checkpoints.retain:20}") int retainCheckpoints) {
         this.changeRepo = changeRepo;
         this.checkpointRepo = checkpointRepo;
-        this.cloneBase = cloneBase;
+        this.retainedRepo = retainedRepo;
+        this.statIndex = statIndex;
+        this.cloneManager = cloneManager;
+        this.historyRecorder = historyRecorder;
+        this.authorStats = authorStats;
+        this.churnIndex = churnIndex;
+        this.metrics = metrics;
+        this.leases = leases;
+        this.saveTx = new TransactionTemplate(txManager);
+        this.retainCheckpoints = Math.max(1, retainCheckpoints);
     }
 
+    // where the walk starts from: the branch totals at `commit`, or null if not known yet
+    private record Base(RevCommit commit, DiffTotals totals) {}
+
     /**
      * Incremental scan: compute added/deleted lines for commits on branch that are newer than
      * checkpoint.lastProcessedCommit. If no checkpoint exists, performs a full scan.
      *
-     * Returns saved RepositoryChange for this run (added/deleted/total for only the scanned commits).
+     * Returns saved RepositoryChange for this run (added/deleted/total for only the scanned commits,
+     * plus the branch's cumulative totals). If the tip is still the checkpoint, nothing is walked
+     * or saved and the run that reached this tip is returned again.
+     *
+     * If the branch was rewritten (force-push), the old checkpoint is no longer an ancestor of the
+     * tip. While its objects are still in the mirror, the walk stops at the merge-base: commits
+     * only the old checkpoint had are subtracted (their stats are normally indexed already) and
+     * only commits only the new tip has are diffed. Once the old objects are pruned, the newest
+     * retained earlier checkpoint still in the new history is used instead, and only if there
+     * is none does the scan fall back to the whole history.
+     *
+     * Phase timings go to {@link ScanMetrics} and onto the saved run. The repo's
+     * {@link WorkLeaseManager} lease is taken before anything is read and held until the run,
+     * checkpoint and retained totals are committed together; that transaction is fenced on the
+     * lease, so a run whose lease was taken over meanwhile fails instead of moving the
+     * checkpoint under the new holder.
      */
-    @Transactional
     public RepositoryChange scanRepositoryIncremental(String repoUrl, String branch) throws Exception {
-        // prepare local clone/fetch
-        String dirName = repoUrl.replaceAll("[^a-zA-Z0-9._-]", "_");
-        File repoDir = new File(cloneBase, dirName);
-
-        Git git;
-        if (repoDir.exists() && new File(repoDir, ".git").exists()) {
-            git = Git.open(repoDir);
-            try { git.fetch().setRemote("origin").call(); } catch (Exception ignored) {}
-        } else {
-            repoDir.mkdirs();
-            git = Git.cloneRepository()
-                     .setURI(repoUrl)
-                     .setDirectory(repoDir)
-                     .setCloneAllBranches(true)
-                     .call();
-        }
+        return scanRepositoryIncremental(repoUrl, branch, ScanOptions.DEFAULT, ScanProgressListener.NONE);
+    }
 
-        try (Repository repository = git.getRepository()) {
-            String resolvedRef = resolveBranchRef(repository, branch);
+    public RepositoryChange scanRepositoryIncremental(String repoUrl, String branch, ScanOptions options,
+                                                      ScanProgressListener listener) throws Exception {
+        ScanTimer timer = metrics.start("incremental", repoUrl, listener);
+        String outcome = "failed";
+        try (WorkLeaseManager.Lease lease = leases.acquire(repoUrl);
+             MirrorClone clone = cloneManager.open(repoUrl, timer)) {
+            Repository repository = clone.getRepository();
+            timer.onPhase("resolve");
+            String resolvedRef = clone.resolveBranchRef(branch);
             if (resolvedRef == null) {
                 throw new IllegalArgumentException("Branch not found: " + branch);
             }
@@ -72,129 +108,198 @@ public class GitChangeScannerServiceIncr {
                 throw new IllegalArgumentException("Cannot resolve branch ref: " + resolvedRef);
             }
 
-            // load checkpoint (if any)
-            Optional<ScanCheckpoint> optCheckpoint = checkpointRepo.findByRepoUrlAndBranchName(repoUrl, branch);
+            // load checkpoint (if any); each profile advances its own
+            String profile = ChangeHistoryRecorder.profileKey(options.profile());
+            Optional<ScanCheckpoint> optCheckpoint = checkpointRepo.findByRepoUrlAndBranchNameAndDiffProfile(repoUrl, branch, profile);
             String lastProcessedSha = optCheckpoint.map(ScanCheckpoint::getLastProcessedCommit).orElse(null);
 
-            long totalAdded = 0;
-            long totalDeleted = 0;
+            // tip has not moved since the last run: no new commits to walk
+            if (tipId.getName().equals(lastProcessedSha)) {
+                Optional<RepositoryChange> last = changeRepo
+                        .findFirstByRepoUrlAndBranchNameAndTipCommitAndDiffProfileOrderByScannedAtDesc(
+                                repoUrl, branch, tipId.getName(), options.profile());
+                if (last.isPresent()) {
+                    outcome = "unchanged";
+                    return last.get();
+                }
+            }
+
+            List<RetainedCheckpoint> retained =
+                    retainedRepo.findByRepoUrlAndBranchNameAndDiffProfileOrderByCreatedAtDesc(repoUrl, branch, profile);
+
+            List<RevCommit> newCommits = new ArrayList<>();
+            List<RevCommit> droppedCommits = new ArrayList<>();
             String newCheckpointSha = tipId.getName(); // update checkpoint to tip at end
 
+            Base base = null;
+            String baseSha = null;
+            String previousSha = null;
+            timer.onPhase("walk");
             try (RevWalk revWalk = new RevWalk(repository)) {
                 RevCommit tipCommit = revWalk.parseCommit(tipId);
-                revWalk.markStart(tipCommit);
-
-                RevCommit lastProcessed = null;
-                if (lastProcessedSha != null) {
-                    try {
-                        ObjectId lastId = repository.resolve(lastProcessedSha);
-                        if (lastId != null) {
-                            lastProcessed = revWalk.parseCommit(lastId);
-                            // mark uninteresting will exclude that commit and its ancestors
-                            revWalk.markUninteresting(lastProcessed);
-                        } else {
-                            // If the saved SHA cannot be resolved (e.g., remote history rewritten),
-                            // treat as full scan. Optionally, you could reset checkpoint to null.
-                            lastProcessed = null;
-                        }
-                    } catch (Exception e) {
-                        // If parsing fails, treat as full scan
-                        lastProcessed = null;
-                    }
-                }
+                RevCommit lastProcessed = lastProcessedSha != null ? parseIfPresent(revWalk, lastProcessedSha) : null;
 
-                // If revWalk had no start marks due to unresolved tip, we already handled above.
-                // Iterate new commits (commits reachable from tip but not reachable from lastProcessed)
-                for (RevCommit commit : revWalk) {
-                    // For safety: if commit equals lastProcessed (shouldn't happen because marked uninteresting),
-                    // break. But revWalk.markUninteresting excludes it, so this loop contains only new commits.
-                    if (lastProcessed != null && commit.equals(lastProcessed)) break;
-
-                    // compute diff between parent(0) and commit (or empty tree for root)
-                    if (commit.getParentCount() == 0) {
-                        // root commit: diff against empty tree
-                        try (ObjectReader reader = repository.newObjectReader();
-                             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-                            diffFormatter.setRepository(repository);
-                            diffFormatter.setDetectRenames(true);
-
-                            AbstractTreeIterator emptyIter = new EmptyTreeIterator();
-                            CanonicalTreeParser newTreeIter = new CanonicalTreeParser();
-                            newTreeIter.reset(reader, commit.getTree());
-
-                            for (DiffEntry entry : diffFormatter.scan(emptyIter, newTreeIter)) {
-                                FileHeader fh = diffFormatter.toFileHeader(entry);
-                                EditList edits = fh.toEditList();
-                                for (Edit e : edits) {
-                                    totalAdded += Math.max(0, e.getEndB() - e.getBeginB());
-                                    totalDeleted += Math.max(0, e.getEndA() - e.getBeginA());
-                                }
-                            }
-                        }
+                if (lastProcessed != null) {
+                    previousSha = lastProcessed.getName();
+                    base = new Base(lastProcessed, totalsAt(retained, lastProcessedSha));
+                    if (revWalk.isMergedInto(lastProcessed, tipCommit)) {
+                        baseSha = lastProcessed.getName();
                     } else {
-                        RevCommit parent = revWalk.parseCommit(commit.getParent(0).getId());
-                        try (ObjectReader reader = repository.newObjectReader();
-                             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-
-                            diffFormatter.setRepository(repository);
-                            diffFormatter.setDetectRenames(true);
-
-                            CanonicalTreeParser parentTreeIter = new CanonicalTreeParser();
-                            parentTreeIter.reset(reader, parent.getTree());
-
-                            CanonicalTreeParser commitTreeIter = new CanonicalTreeParser();
-                            commitTreeIter.reset(reader, commit.getTree());
-
-                            for (DiffEntry entry : diffFormatter.scan(parentTreeIter, commitTreeIter)) {
-                                FileHeader fh = diffFormatter.toFileHeader(entry);
-                                EditList edits = fh.toEditList();
-                                for (Edit e : edits) {
-                                    totalAdded += Math.max(0, e.getEndB() - e.getBeginB());
-                                    totalDeleted += Math.max(0, e.getEndA() - e.getBeginA());
-                                }
-                            }
+                        // history rewritten: count from the merge-base, dropping what only the old tip had
+                        RevCommit mergeBase = mergeBase(revWalk, lastProcessed, tipCommit);
+                        baseSha = mergeBase != null ? mergeBase.getName() : null;
+                        collect(revWalk, lastProcessed, tipCommit, droppedCommits);
+                    }
+                } else if (lastProcessedSha != null) {
+                    // old checkpoint pruned from the mirror: newest retained one still on the branch
+                    for (RetainedCheckpoint r : retained) {
+                        RevCommit c = parseIfPresent(revWalk, r.getCommitSha());
+                        if (c != null && revWalk.isMergedInto(c, tipCommit)) {
+                            base = new Base(c, new DiffTotals(r.getBranchLinesAdded(), r.getBranchLinesDeleted()));
+                            baseSha = c.getName();
+                            break;
                         }
                     }
                 }
+
+                // Collect new commits (reachable from tip but not reachable from the base)
+                collect(revWalk, tipCommit, base != null ? base.commit() : null, newCommits);
             }
 
+            timer.onCommitsFound(newCommits.size());
+            timer.onPhase("diff");
+            // history file rows and the hotspot index are fed from this one diff pass
+            ChangeHistoryRecorder.Recording history = historyRecorder.begin(repoUrl, newCommits, options);
+            ChurnIndexService.Update churn = churnIndex.begin(repoUrl, branch, options, previousSha, baseSha, tipId, newCommits);
+            List<CommitStats> stats = statIndex.statsFor(repository, newCommits, options, timer,
+                    history.files().andThen(churn.files()));
+            DiffTotals totals = DiffTotals.sum(stats);
+            long totalAdded = totals.linesAdded();
+            long totalDeleted = totals.linesDeleted();
+
+            DiffTotals dropped = droppedCommits.isEmpty() ? DiffTotals.ZERO
+                    : DiffTotals.sum(statIndex.statsFor(repository, droppedCommits, options, ScanProgressListener.NONE,
+                            churn.droppedFiles()));
+            DiffTotals baseTotals = DiffTotals.ZERO;
+            if (base != null) {
+                baseTotals = base.totals() != null ? base.totals() : historyTotals(repository, base.commit(), options);
+            }
+            DiffTotals branchTotals = baseTotals.minus(dropped).plus(totals);
+
+            // a run that lost its lease writes nothing
+            lease.fence();
+            timer.onPhase("history");
+            history.finish(stats);
+            // hotspot index moves with the checkpoint
+            timer.onPhase("churn");
+            churn.finish(repository);
+            timer.onPhase("authors");
+            authorStats.update(repository, repoUrl, branch, options, tipId, stats);
+
             // Save a RepositoryChange record with the run totals
+            timer.onPhase("save");
             RepositoryChange saved = new RepositoryChange(repoUrl, branch, totalAdded, totalDeleted, Instant.now());
-            RepositoryChange persisted = changeRepo.save(saved);
-
-            // Update or create checkpoint with tip commit
-            Instant now = Instant.now();
-            if (optCheckpoint.isPresent()) {
-                ScanCheckpoint cp = optCheckpoint.get();
-                cp.setLastProcessedCommit(newCheckpointSha);
-                cp.setUpdatedAt(now);
-                checkpointRepo.save(cp);
-            } else {
-                ScanCheckpoint cp = new ScanCheckpoint(repoUrl, branch, newCheckpointSha, now);
-                checkpointRepo.save(cp);
+            saved.setTipCommit(newCheckpointSha);
+            saved.setBaseCommit(baseSha);
+            saved.setDiffProfile(options.profile());
+            saved.setBranchLinesAdded(branchTotals.linesAdded());
+            saved.setBranchLinesDeleted(branchTotals.linesDeleted());
+            if (!droppedCommits.isEmpty()) {
+                saved.setDroppedCommits((long) droppedCommits.size());
+                saved.setDroppedLinesAdded(dropped.linesAdded());
+                saved.setDroppedLinesDeleted(dropped.linesDeleted());
             }
+            saved.setFetchError(clone.getFetchError());
+            ScanShortcuts.sum(stats).applyTo(saved);
+            timer.applyTo(saved);
+            RepositoryChange persisted = saveTx.execute(status -> {
+                lease.fence();
+                RepositoryChange run = changeRepo.save(saved);
 
+                // Update or create checkpoint with tip commit
+                Instant now = Instant.now();
+                if (optCheckpoint.isPresent()) {
+                    ScanCheckpoint cp = optCheckpoint.get();
+                    cp.setLastProcessedCommit(newCheckpointSha);
+                    cp.setUpdatedAt(now);
+                    checkpointRepo.save(cp);
+                } else {
+                    ScanCheckpoint cp = new ScanCheckpoint(repoUrl, branch, profile, newCheckpointSha, now);
+                    checkpointRepo.save(cp);
+                }
+                retain(repoUrl, branch, profile, newCheckpointSha, branchTotals, now, retained);
+                return run;
+            });
+
+            outcome = "saved";
             return persisted;
         } finally {
-            git.close();
+            timer.finish(outcome);
         }
     }
 
-    // resolveBranchRef() as in previous code sample (search local heads and remotes)
-    private String resolveBranchRef(Repository repository, String branch) {
+    private static RevCommit parseIfPresent(RevWalk revWalk, String sha) {
         try {
-            String local = "refs/heads/" + branch;
-            if (repository.findRef(local) != null) return local;
+            return revWalk.parseCommit(ObjectId.fromString(sha));
+        } catch (IOException | IllegalArgumentException e) {
+            // pruned after a force-push, or not a commit id
+            return null;
+        }
+    }
 
-            String remote = "refs/remotes/origin/" + branch;
-            if (repository.findRef(remote) != null) return remote;
+    private static RevCommit mergeBase(RevWalk revWalk, RevCommit a, RevCommit b) throws IOException {
+        revWalk.reset();
+        revWalk.setRevFilter(RevFilter.MERGE_BASE);
+        try {
+            revWalk.markStart(a);
+            revWalk.markStart(b);
+            return revWalk.next();
+        } finally {
+            // the filter can only be swapped on a walk that has not started
+            revWalk.reset();
+            revWalk.setRevFilter(RevFilter.ALL);
+        }
+    }
 
-            if (repository.findRef(branch) != null) return branch;
+    // commits reachable from `from` but not from `exclude` (everything when exclude is null)
+    private static void collect(RevWalk revWalk, RevCommit from, RevCommit exclude, List<RevCommit> out) throws IOException {
+        revWalk.reset();
+        revWalk.markStart(from);
+        if (exclude != null) revWalk.markUninteresting(exclude);
+        for (RevCommit commit : revWalk) {
+            out.add(commit);
+        }
+        revWalk.reset();
+    }
 
-            for (Ref ref : repository.getRefDatabase().getRefs()) {
-                if (ref.getName().endsWith("/" + branch)) return ref.getName();
+    private static DiffTotals totalsAt(List<RetainedCheckpoint> retained, String sha) {
+        for (RetainedCheckpoint r : retained) {
+            if (r.getCommitSha().equals(sha)) {
+                return new DiffTotals(r.getBranchLinesAdded(), r.getBranchLinesDeleted());
             }
-        } catch (Exception ignored) {}
+        }
         return null;
     }
+
+    // checkpoints from before totals were retained (or another profile): sum the whole history once
+    private DiffTotals historyTotals(Repository repository, RevCommit commit, ScanOptions options) throws IOException {
+        List<RevCommit> history = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.markStart(revWalk.parseCommit(commit));
+            for (RevCommit c : revWalk) {
+                history.add(c);
+            }
+        }
+        return DiffTotals.sum(statIndex.statsFor(repository, history, options, ScanProgressListener.NONE));
+    }
+
+    private void retain(String repoUrl, String branch, String profile, String sha, DiffTotals branchTotals,
+                        Instant now, List<RetainedCheckpoint> retained) {
+        retainedRepo.save(new RetainedCheckpoint(repoUrl, branch, profile, sha,
+                branchTotals.linesAdded(), branchTotals.linesDeleted(), now));
+        // `retained` is newest first and does not include the row just added
+        if (retained.size() >= retainCheckpoints) {
+            retainedRepo.deleteAll(retained.subList(retainCheckpoints - 1, retained.size()));
+        }
+    }
 }
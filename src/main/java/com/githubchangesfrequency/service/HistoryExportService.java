@@ -0,0 +1,250 @@
+package com.githubchangesfrequency.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Streams scan results (repository_change) and change history (commit_change, file_change) as
+ * NDJSON or CSV. Rows are streamed from the database and written as they arrive, so memory stays
+ * flat however many rows are exported. On MySQL the export's statements ask Connector/J to stream
+ * the result row by row (fetch size {@code Integer.MIN_VALUE}); other databases fetch
+ * {@code git.export.fetchSize} rows per round trip. Only the export's own statements are set up
+ * this way; the rest of the application shares the pool with the driver's defaults.
+ *
+ * Rows come in id order: a pull that broke off can resume with {@code afterId} set to the last
+ * id it received.
+ */
+@Service
+public class HistoryExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    public enum Dataset {
+        SCANS("repository_change", "scanned_at", "branch_name",
+                "id:long", "repo_url", "branch_name", "tip_commit", "base_commit", "diff_profile",
+                "lines_added:long", "lines_deleted:long", "total_changes:long",
+                "branch_lines_added:long", "branch_lines_deleted:long",
+                "dropped_commits:long", "dropped_lines_added:long", "dropped_lines_deleted:long",
+                "binary_files:long", "oversized_files:long", "rename_limit_commits:long",
+                "scanned_at:time", "scan_millis:long", "phase_millis", "fetch_error"),
+        COMMITS("commit_change", "commit_time", null,
+                "id:long", "repo_url", "diff_profile", "commit_sha", "commit_time:time",
+                "author_name", "author_email", "lines_added:long", "lines_deleted:long"),
+        FILES("file_change", "commit_time", null,
+                "id:long", "repo_url", "diff_profile", "commit_sha", "commit_time:time",
+                "path", "old_path", "change_type", "lines_added:long", "lines_deleted:long");
+
+        private final String table;
+        private final String timeColumn;
+        private final String branchColumn;
+        private final List<Column> columns = new ArrayList<>();
+
+        Dataset(String table, String timeColumn, String branchColumn, String... columns) {
+            this.table = table;
+            this.timeColumn = timeColumn;
+            this.branchColumn = branchColumn;
+            for (String c : columns) this.columns.add(Column.parse(c));
+        }
+    }
+
+    /**
+     * Rows to export: repos (all when empty), branch (scans only), [from, to) on the scan or
+     * commit time, and ids after {@code afterId}. Null means unrestricted.
+     */
+    public record Filter(List<String> repoUrls, String branch, Instant from, Instant to, Long afterId) {}
+
+    private enum Kind { TEXT, LONG, TIME }
+
+    // "lines_added:long" -> sql column lines_added, field linesAdded
+    private record Column(String sql, String name, Kind kind) {
+        static Column parse(String spec) {
+            int colon = spec.indexOf(':');
+            String sql = colon < 0 ? spec : spec.substring(0, colon);
+            Kind kind = colon < 0 ? Kind.TEXT : Kind.valueOf(spec.substring(colon + 1).toUpperCase());
+            StringBuilder name = new StringBuilder();
+            for (String part : sql.split("_")) {
+                name.append(name.isEmpty() ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+            }
+            return new Column(sql, name.toString(), kind);
+        }
+    }
+
+    private static final String MYSQL = "MySQL";
+
+    private final NamedParameterJdbcTemplate cursorJdbc;
+    private final JsonMapper jsonMapper;
+
+    public HistoryExportService(JdbcTemplate jdbc,
+                                JsonMapper jsonMapper,
+                                @Value("${git.export.fetchSize:1000}") int fetchSize) {
+        // own template: the fetch size must not apply to the ordinary queries sharing the data source
+        JdbcTemplate cursor = new JdbcTemplate(jdbc.getDataSource()) {
+            @Override
+            protected void applyStatementSettings(Statement stmt) throws SQLException {
+                super.applyStatementSettings(stmt);
+                // Connector/J ignores a positive fetch size unless useCursorFetch=true is on the url, which
+                // would make every statement of the pool a server-side prepared one; this value streams instead
+                if (MYSQL.equals(stmt.getConnection().getMetaData().getDatabaseProductName())) {
+                    stmt.setFetchSize(Integer.MIN_VALUE);
+                }
+            }
+        };
+        cursor.setFetchSize(fetchSize);
+        this.cursorJdbc = new NamedParameterJdbcTemplate(cursor);
+        this.jsonMapper = jsonMapper;
+    }
+
+    /** Check a filter before the response is committed; export() would fail the same way mid-stream. */
+    public void validate(Dataset dataset, Filter filter) {
+        if (filter.branch() != null && dataset.branchColumn == null) {
+            throw new IllegalArgumentException("branch only applies to the scans dataset");
+        }
+        if (filter.from() != null && filter.to() != null && !filter.from().isBefore(filter.to())) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+    }
+
+    /**
+     * Write the matching rows of {@code dataset} to {@code out} and return how many were
+     * written. {@code out} is flushed but not closed.
+     */
+    public long export(Dataset dataset, Filter filter, Format format, OutputStream out) throws IOException {
+        validate(dataset, filter);
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < dataset.columns.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(dataset.columns.get(i).sql());
+        }
+        sql.append(" FROM ").append(dataset.table).append(" WHERE 1 = 1");
+        if (filter.repoUrls() != null && !filter.repoUrls().isEmpty()) {
+            sql.append(" AND repo_url IN (:repoUrls)");
+            params.addValue("repoUrls", filter.repoUrls());
+        }
+        if (filter.branch() != null) {
+            sql.append(" AND ").append(dataset.branchColumn).append(" = :branch");
+            params.addValue("branch", filter.branch());
+        }
+        if (filter.from() != null) {
+            sql.append(" AND ").append(dataset.timeColumn).append(" >= :from");
+            params.addValue("from", Timestamp.from(filter.from()));
+        }
+        if (filter.to() != null) {
+            sql.append(" AND ").append(dataset.timeColumn).append(" < :to");
+            params.addValue("to", Timestamp.from(filter.to()));
+        }
+        if (filter.afterId() != null) {
+            sql.append(" AND id > :afterId");
+            params.addValue("afterId", filter.afterId());
+        }
+        sql.append(" ORDER BY id");
+
+        RowMapper<Object[]> mapper = (rs, rowNum) -> readRow(rs, dataset.columns);
+        try (Stream<Object[]> rows = cursorJdbc.queryForStream(sql.toString(), params, mapper)) {
+            return format == Format.CSV
+                    ? writeCsv(dataset.columns, rows.iterator(), out)
+                    : writeNdjson(dataset.columns, rows.iterator(), out);
+        }
+    }
+
+    private static Object[] readRow(ResultSet rs, List<Column> columns) throws SQLException {
+        Object[] row = new Object[columns.size()];
+        for (int i = 0; i < row.length; i++) {
+            switch (columns.get(i).kind()) {
+                case LONG -> {
+                    long v = rs.getLong(i + 1);
+                    row[i] = rs.wasNull() ? null : v;
+                }
+                case TIME -> {
+                    Timestamp t = rs.getTimestamp(i + 1);
+                    row[i] = t == null ? null : t.toInstant().toString();
+                }
+                default -> row[i] = rs.getString(i + 1);
+            }
+        }
+        return row;
+    }
+
+    private long writeNdjson(List<Column> columns, Iterator<Object[]> rows, OutputStream out) {
+        long count = 0;
+        // every line ends in a newline, so no separator between root values; the response stream is the caller's
+        ObjectWriter writer = jsonMapper.writer().withRootValueSeparator("").without(StreamWriteFeature.AUTO_CLOSE_TARGET);
+        try (JsonGenerator gen = writer.createGenerator(out)) {
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                gen.writeStartObject();
+                for (int i = 0; i < row.length; i++) {
+                    gen.writeName(columns.get(i).name());
+                    if (row[i] == null) gen.writeNull();
+                    else if (row[i] instanceof Long v) gen.writeNumber(v);
+                    else gen.writeString((String) row[i]);
+                }
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long writeCsv(List<Column> columns, Iterator<Object[]> rows, OutputStream out) throws IOException {
+        long count = 0;
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) w.write(',');
+            w.write(columns.get(i).name());
+        }
+        w.write("\r\n");
+        while (rows.hasNext()) {
+            Object[] row = rows.next();
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) w.write(',');
+                if (row[i] != null) writeCsvField(w, row[i].toString());
+            }
+            w.write("\r\n");
+            count++;
+        }
+        w.flush();
+        return count;
+    }
+
+    // RFC 4180: quote fields holding a separator, quote or line break, doubling the quotes
+    private static void writeCsvField(Writer w, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+}
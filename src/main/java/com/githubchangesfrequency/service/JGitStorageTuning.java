@@ -0,0 +1,117 @@
+package com.githubchangesfrequency.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * JGit storage settings. At startup the process-wide pack window cache is configured from
+ * {@code git.jgit.*} (the delta base cache limit applies per open reader, i.e. per diff worker).
+ * Mirrors are set up to read and write a commit-graph ({@code core.commitGraph},
+ * {@code gc.writeCommitGraph}) and pack bitmaps, so commit parsing in the walks comes from the
+ * graph instead of inflating each commit. JGit only writes both during gc, which
+ * {@link CloneCacheManager} runs in the background after a clone, and after fetches (whose
+ * commits the graph does not cover yet) once they have piled up {@code git.clones.gc.maxPacks}
+ * packs.
+ */
+@Service
+public class JGitStorageTuning {
+
+    private static final Logger log = LoggerFactory.getLogger(JGitStorageTuning.class);
+
+    private final boolean commitGraph;
+    private final boolean bitmaps;
+
+    @Autowired
+    public JGitStorageTuning(@Value("${git.jgit.packedGitLimit:256MB}") DataSize packedGitLimit,
+                             @Value("${git.jgit.packedGitWindowSize:64KB}") DataSize packedGitWindowSize,
+                             @Value("${git.jgit.packedGitMmap:false}") boolean packedGitMmap,
+                             @Value("${git.jgit.packedGitOpenFiles:256}") int packedGitOpenFiles,
+                             @Value("${git.jgit.deltaBaseCacheLimit:64MB}") DataSize deltaBaseCacheLimit,
+                             @Value("${git.jgit.streamFileThreshold:50MB}") DataSize streamFileThreshold,
+                             @Value("${git.storage.commitGraph:true}") boolean commitGraph,
+                             @Value("${git.storage.bitmaps:true}") boolean bitmaps) {
+        this(commitGraph, bitmaps);
+        int windowSize = Math.toIntExact(packedGitWindowSize.toBytes());
+        if (Integer.bitCount(windowSize) != 1 || windowSize < 4096) {
+            throw new IllegalArgumentException("git.jgit.packedGitWindowSize must be a power of 2 of at least 4KB");
+        }
+        WindowCacheConfig cfg = new WindowCacheConfig();
+        cfg.setPackedGitLimit(packedGitLimit.toBytes());
+        cfg.setPackedGitWindowSize(windowSize);
+        cfg.setPackedGitMMAP(packedGitMmap);
+        cfg.setPackedGitOpenFiles(packedGitOpenFiles);
+        cfg.setDeltaBaseCacheLimit(Math.toIntExact(deltaBaseCacheLimit.toBytes()));
+        cfg.setStreamFileThreshold(Math.toIntExact(streamFileThreshold.toBytes()));
+        cfg.install();
+        log.info("JGit window cache: limit={} window={} mmap={} openFiles={} deltaBaseCache={} streamThreshold={}",
+                packedGitLimit, packedGitWindowSize, packedGitMmap, packedGitOpenFiles, deltaBaseCacheLimit,
+                streamFileThreshold);
+    }
+
+    /** Mirror settings only; leaves the process-wide cache as it is. */
+    JGitStorageTuning(boolean commitGraph, boolean bitmaps) {
+        this.commitGraph = commitGraph;
+        this.bitmaps = bitmaps;
+    }
+
+    /**
+     * Whether the mirror lacks the commit-graph or bitmaps it is configured to have, as after a
+     * clone; only a repack writes them.
+     */
+    boolean missingIndex(File gitDir) {
+        File objects = new File(gitDir, "objects");
+        return (commitGraph && !new File(objects, "info/commit-graph").exists())
+                || (bitmaps && count(new File(objects, "pack"), ".bitmap") == 0);
+    }
+
+    /**
+     * gc into one pack, writing the commit-graph and bitmaps as configured. The caller holds the
+     * write lock, so no reader can still use unreachable objects or replaced packs: both are
+     * dropped right away.
+     */
+    void repack(Repository repository) throws IOException, GitAPIException {
+        configure(repository);
+        repository.getConfig().setString(ConfigConstants.CONFIG_GC_SECTION, null,
+                ConfigConstants.CONFIG_KEY_PRUNEPACKEXPIRE, "now");
+        Git.wrap(repository).gc().setExpire(new Date()).call();
+    }
+
+    /** Keep the mirror's config in line with the settings; called after every clone or fetch. */
+    void configure(Repository repository) throws IOException {
+        StoredConfig config = repository.getConfig();
+        boolean changed = set(config, ConfigConstants.CONFIG_CORE_SECTION, ConfigConstants.CONFIG_COMMIT_GRAPH, commitGraph);
+        changed |= set(config, ConfigConstants.CONFIG_GC_SECTION, ConfigConstants.CONFIG_KEY_WRITE_COMMIT_GRAPH, commitGraph);
+        changed |= set(config, ConfigConstants.CONFIG_PACK_SECTION, ConfigConstants.CONFIG_KEY_BUILD_BITMAPS, bitmaps);
+        if (changed) {
+            config.save();
+        }
+    }
+
+    private static boolean set(StoredConfig config, String section, String key, boolean value) {
+        String current = config.getString(section, null, key);
+        if (current != null && config.getBoolean(section, key, !value) == value) {
+            return false;
+        }
+        config.setBoolean(section, null, key, value);
+        return true;
+    }
+
+    private static int count(File dir, String suffix) {
+        File[] files = dir.listFiles(f -> f.getName().endsWith(suffix));
+        return files != null ? files.length : 0;
+    }
+}
@@ -0,0 +1,86 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * An opened local mirror, held under the repository's shared read lock. Closing it closes the
+ * repository and releases the lock.
+ */
+public class MirrorClone implements AutoCloseable {
+
+    private final String repoKey;
+    private final Repository repository;
+    private final RepositoryLockManager.Lease readLease;
+    private final String fetchError;
+
+    MirrorClone(String repoKey, Repository repository, RepositoryLockManager.Lease readLease, String fetchError) {
+        this.repoKey = repoKey;
+        this.repository = repository;
+        this.readLease = readLease;
+        this.fetchError = fetchError;
+    }
+
+    public String getRepoKey() {
+        return repoKey;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Why the fetch made while opening failed, or null if it succeeded or was not needed. When
+     * set, the mirror holds the remote as of its last successful fetch.
+     */
+    public String getFetchError() {
+        return fetchError;
+    }
+
+    /**
+     * Full ref name for a branch: refs/heads/{branch} first, then the legacy remote-tracking
+     * ref, the name as given, and finally any ref ending in /{branch}. Null if nothing matches.
+     * "HEAD" is the repository's own HEAD: the checked-out commit of a local checkout, the
+     * remote's default branch in a mirror.
+     */
+    public String resolveBranchRef(String branch) {
+        try {
+            // never refs/remotes/origin/HEAD, which a checkout on another branch also has
+            if (Constants.HEAD.equals(branch)) {
+                Ref head = repository.exactRef(Constants.HEAD);
+                return head != null && head.getObjectId() != null ? Constants.HEAD : null;
+            }
+
+            // check local refs/heads/{branch} (mirrors keep remote branches here)
+            String local = "refs/heads/" + branch;
+            if (repository.findRef(local) != null) return local;
+
+            // check remote origin
+            String remote = "refs/remotes/origin/" + branch;
+            if (repository.findRef(remote) != null) return remote;
+
+            // try branch as provided (maybe already a ref)
+            if (repository.findRef(branch) != null) return branch;
+
+            // as fallback, try to resolve to any ref that ends with branch
+            for (Ref ref : repository.getRefDatabase().getRefs()) {
+                if (ref.getName().endsWith("/" + branch)) return ref.getName();
+            }
+        } catch (Exception e) {
+            // ignore
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            repository.close();
+        } finally {
+            readLease.close();
+        }
+    }
+}
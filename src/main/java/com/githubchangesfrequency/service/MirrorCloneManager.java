@@ -0,0 +1,380 @@
+package com.githubchangesfrequency.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Local clone layer shared by the scanner services. Repositories are kept as bare mirrors
+ * ({@code <cloneBase>/<repo>.git}) since the scanners only read objects and refs, never a
+ * working tree. A mirror fetched less than {@code git.fetch.freshness} ago is used as is; the
+ * last successful fetch is recorded as the mtime of a marker file so the window holds across
+ * restarts and across JVMs sharing the clone directory.
+ *
+ * A failed fetch does not fail {@link #open}: the mirror is scanned as of its last successful
+ * fetch and the error is handed on through {@link MirrorClone#getFetchError()}.
+ * {@link #refresh}, whose callers need the remote's current state, throws it instead.
+ * Creating a mirror deletes the repo's working-tree clone from before mirrors, if there is one.
+ * Once a clone or a fetch that moved refs has released the write lock, the {@link #onUpdate}
+ * listener is told, so the mirror's indexes can be rebuilt off the scan's path.
+ *
+ * With {@code git.local.openInPlace} (the headless CLI mode) a repoUrl naming a repository on
+ * local disk, such as a CI checkout, is opened where it is: no mirror, no fetch. It stays off
+ * for the server, where it would let API callers read any repository on the host.
+ */
+@Service
+public class MirrorCloneManager {
+
+    private static final Logger log = LoggerFactory.getLogger(MirrorCloneManager.class);
+
+    private static final String FETCH_MARKER = "last-fetch";
+    private static final String ACCESS_MARKER = "last-access";
+    // the access marker is rewritten at most this often per mirror
+    private static final Duration ACCESS_RESOLUTION = Duration.ofMinutes(1);
+
+    private final RepositoryLockManager repoLocks;
+    private final JGitStorageTuning storage;
+    private final ScanMetrics metrics;
+    private final File cloneBase;
+    private final Duration freshness;
+    private final boolean openInPlace;
+
+    // branch tips as of a given fetch, keyed by "<repoKey>|<branch>"
+    private final Map<String, ResolvedTip> tips = new ConcurrentHashMap<>();
+
+    // mirrors treated as fresh regardless of age while pinned, keyed by repoKey
+    private final Map<String, Integer> pins = new ConcurrentHashMap<>();
+
+    // when this JVM last wrote each mirror's access marker
+    private final Map<String, Instant> accessWritten = new ConcurrentHashMap<>();
+
+    private volatile Consumer<String> updateListener = key -> {};
+
+    private record ResolvedTip(Instant fetchedAt, ObjectId tip) {}
+
+    public MirrorCloneManager(RepositoryLockManager repoLocks,
+                              JGitStorageTuning storage,
+                              ScanMetrics metrics,
+                              @Value("${git.local.cloneBase:${java.io.tmpdir}/git-clones}") String cloneBase,
+                              @Value("${git.fetch.freshness:PT30S}") Duration freshness,
+                              @Value("${git.local.openInPlace:false}") boolean openInPlace) {
+        this.repoLocks = repoLocks;
+        this.storage = storage;
+        this.metrics = metrics;
+        this.cloneBase = new File(cloneBase);
+        this.freshness = freshness;
+        this.openInPlace = openInPlace;
+    }
+
+    /**
+     * Called with the repo key after a clone, or a fetch that moved refs, once the write lock is
+     * released. Runs on the updating thread, so it must only hand the work off.
+     */
+    public void onUpdate(Consumer<String> listener) {
+        this.updateListener = listener;
+    }
+
+    public static String repoKey(String repoUrl) {
+        return repoUrl.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+    public File mirrorDir(String repoUrl) {
+        return new File(cloneBase, repoKey(repoUrl) + ".git");
+    }
+
+    /**
+     * Clone or fetch the mirror unless it is within the freshness window, then open it under
+     * the shared read lock. A failed clone throws; a failed fetch leaves the mirror as it was.
+     */
+    public MirrorClone open(String repoUrl, ScanProgressListener listener) throws IOException, GitAPIException {
+        String key = repoKey(repoUrl);
+        File local = localGitDir(repoUrl);
+        if (local != null) {
+            return openAt(key, local, null);
+        }
+        File dir = mirrorDir(repoUrl);
+
+        String fetchError = null;
+        boolean updated = false;
+        if (!isFresh(key, dir)) {
+            try (RepositoryLockManager.Lease writeLease = repoLocks.writeLock(key)) {
+                // another scan may have fetched while we waited for the lock
+                if (!isFresh(key, dir)) {
+                    updated = update(repoUrl, dir, listener);
+                }
+            } catch (FetchFailedException e) {
+                // public read-only or moved remote: scan what we have
+                fetchError = abbreviate(e.getMessage());
+            }
+        }
+
+        MirrorClone clone = openAt(key, dir, fetchError);
+        markAccessed(key, dir);
+        if (updated) {
+            updateListener.accept(key);
+        }
+        return clone;
+    }
+
+    private MirrorClone openAt(String key, File gitDir, String fetchError) throws IOException {
+        RepositoryLockManager.Lease readLease = repoLocks.readLock(key);
+        try {
+            Repository repository = new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true).build();
+            return new MirrorClone(key, repository, readLease, fetchError);
+        } catch (IOException | RuntimeException e) {
+            readLease.close();
+            throw e;
+        }
+    }
+
+    // the git dir of a local repository (work tree or bare) when opening in place, else null
+    private File localGitDir(String repoUrl) {
+        if (!openInPlace) return null;
+        File file = new File(repoUrl);
+        return file.isDirectory() ? RepositoryCache.FileKey.resolve(file, FS.DETECTED) : null;
+    }
+
+    /**
+     * Clone or fetch now, ignoring the freshness window; for callers that know the remote has
+     * moved. Skipped if another fetch completed while waiting for the lock, and for a repository
+     * opened in place. A failed fetch throws {@link FetchFailedException}.
+     */
+    public void refresh(String repoUrl, ScanProgressListener listener) throws IOException, GitAPIException {
+        if (localGitDir(repoUrl) != null) {
+            return;
+        }
+        File dir = mirrorDir(repoUrl);
+        Instant requestedAt = Instant.now();
+        boolean updated = false;
+        try (RepositoryLockManager.Lease writeLease = repoLocks.writeLock(repoKey(repoUrl))) {
+            Instant last = lastFetch(dir);
+            if (last == null || last.isBefore(requestedAt)) {
+                updated = update(repoUrl, dir, listener);
+            }
+        }
+        if (updated) {
+            updateListener.accept(repoKey(repoUrl));
+        }
+    }
+
+    /**
+     * Treat the mirror as fresh until the returned pin is closed, so a caller that fetched it
+     * can queue work on it without that work fetching again once the window has passed.
+     */
+    public Pin pinFresh(String repoUrl) {
+        String key = repoKey(repoUrl);
+        pins.merge(key, 1, Integer::sum);
+        return () -> pins.computeIfPresent(key, (k, n) -> n > 1 ? n - 1 : null);
+    }
+
+    @FunctionalInterface
+    public interface Pin extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * A fetch into an existing mirror failed; the mirror is unchanged.
+     */
+    public static class FetchFailedException extends IOException {
+        FetchFailedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    // true if refs changed, i.e. the mirror has objects its indexes do not cover
+    private boolean update(String repoUrl, File dir, ScanProgressListener listener) throws IOException, GitAPIException {
+        long start = System.nanoTime();
+        if (new File(dir, "HEAD").exists()) {
+            listener.onPhase("fetch");
+            boolean refsChanged;
+            try (Git git = Git.open(dir)) {
+                FetchResult result = git.fetch()
+                   .setRemote("origin")
+                   .setRemoveDeletedRefs(true)
+                   .setCredentialsProvider(credentials())
+                   .call();
+                markFetched(dir);
+                refsChanged = !result.getTrackingRefUpdates().isEmpty();
+            } catch (Exception e) {
+                metrics.mirrorUpdated(repoUrl, "fetch", System.nanoTime() - start, true);
+                log.warn("Fetch failed for {}: {}", repoUrl, e.getMessage());
+                throw new FetchFailedException(e.getMessage(), e);
+            }
+            metrics.mirrorUpdated(repoUrl, "fetch", System.nanoTime() - start, false);
+            configure(repoUrl, dir);
+            return refsChanged;
+        } else {
+            listener.onPhase("clone");
+            if (dir.exists()) {
+                // leftovers of an interrupted clone
+                FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+            }
+            try (Git git = Git.cloneRepository()
+                              .setURI(repoUrl)
+                              .setDirectory(dir)
+                              .setMirror(true)
+                              .setCredentialsProvider(credentials())
+                              .call()) {
+                markFetched(dir);
+            } catch (GitAPIException | RuntimeException e) {
+                metrics.mirrorUpdated(repoUrl, "clone", System.nanoTime() - start, true);
+                FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+                throw e;
+            }
+            metrics.mirrorUpdated(repoUrl, "clone", System.nanoTime() - start, false);
+            configure(repoUrl, dir);
+            deleteLegacyClone(repoUrl);
+            return true;
+        }
+    }
+
+    // the working-tree clone kept at <cloneBase>/<repoKey> before mirrors; nothing opens it any more
+    private void deleteLegacyClone(String repoUrl) {
+        File legacy = new File(cloneBase, repoKey(repoUrl));
+        if (!new File(legacy, Constants.DOT_GIT).isDirectory()) {
+            return;
+        }
+        try {
+            FileUtils.delete(legacy, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+            log.info("Deleted pre-mirror clone {}", legacy);
+        } catch (IOException e) {
+            log.warn("Cannot delete pre-mirror clone {}: {}", legacy, e.getMessage());
+        }
+    }
+
+    // commit-graph and bitmaps only speed up reads: a failure leaves the mirror usable as is
+    private void configure(String repoUrl, File dir) {
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(dir).setMustExist(true).build()) {
+            storage.configure(repository);
+        } catch (Exception e) {
+            log.warn("Configuring {} failed: {}", repoUrl, e.getMessage());
+        }
+    }
+
+    /**
+     * Current tip of a branch, or null if the branch does not exist. While the mirror is fresh
+     * and has not been fetched since the last lookup, the answer comes from memory without
+     * opening the repository.
+     */
+    public ObjectId resolveTip(String repoUrl, String branch) throws IOException, GitAPIException {
+        File dir = mirrorDir(repoUrl);
+        String tipKey = repoKey(repoUrl) + "|" + branch;
+        Instant fetchedAt = lastFetch(dir);
+        if (isFresh(fetchedAt)) {
+            ResolvedTip known = tips.get(tipKey);
+            if (known != null && known.fetchedAt().equals(fetchedAt)) {
+                return known.tip();
+            }
+        }
+
+        try (MirrorClone clone = open(repoUrl, ScanProgressListener.NONE)) {
+            String ref = clone.resolveBranchRef(branch);
+            ObjectId tip = ref != null ? clone.getRepository().resolve(ref) : null;
+            Instant after = lastFetch(dir);
+            if (tip != null && after != null) {
+                tips.put(tipKey, new ResolvedTip(after, tip));
+            }
+            return tip;
+        }
+    }
+
+    File cloneBase() {
+        return cloneBase;
+    }
+
+    boolean isPinned(String repoKey) {
+        return pins.containsKey(repoKey);
+    }
+
+    /**
+     * When the mirror was last opened (to within a minute), or last fetched if never opened
+     * since access tracking began; null if there is no mirror.
+     */
+    static Instant lastAccess(File dir) {
+        try {
+            return Files.getLastModifiedTime(dir.toPath().resolve(ACCESS_MARKER)).toInstant();
+        } catch (IOException e) {
+            return lastFetch(dir);
+        }
+    }
+
+    private void markAccessed(String key, File dir) {
+        Instant now = Instant.now();
+        Instant written = accessWritten.get(key);
+        if (written != null && written.plus(ACCESS_RESOLUTION).isAfter(now)) {
+            return;
+        }
+        try {
+            Path marker = dir.toPath().resolve(ACCESS_MARKER);
+            if (!Files.exists(marker)) Files.createFile(marker);
+            Files.setLastModifiedTime(marker, FileTime.from(now));
+            accessWritten.put(key, now);
+        } catch (IOException e) {
+            // only feeds cache eviction; the mirror then looks as old as its last fetch
+            log.debug("Cannot mark {} accessed: {}", key, e.getMessage());
+        }
+    }
+
+    private boolean isFresh(String key, File dir) {
+        if (pins.containsKey(key) && new File(dir, "HEAD").exists()) {
+            return true;
+        }
+        return isFresh(lastFetch(dir));
+    }
+
+    private boolean isFresh(Instant lastFetch) {
+        return lastFetch != null && lastFetch.plus(freshness).isAfter(Instant.now());
+    }
+
+    private static Instant lastFetch(File dir) {
+        try {
+            return Files.getLastModifiedTime(dir.toPath().resolve(FETCH_MARKER)).toInstant();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void markFetched(File dir) throws IOException {
+        Path marker = dir.toPath().resolve(FETCH_MARKER);
+        if (!Files.exists(marker)) Files.createFile(marker);
+        Files.setLastModifiedTime(marker, FileTime.from(Instant.now()));
+    }
+
+    // fits the fetch_error column of repository_change
+    private static String abbreviate(String message) {
+        if (message == null) return "fetch failed";
+        return message.length() <= 512 ? message : message.substring(0, 509) + "...";
+    }
+
+    static CredentialsProvider credentials() {
+        String username = System.getenv("GITHUB_USER");
+        String passwordOrToken = System.getenv("GITHUB_TOKEN");
+        if (passwordOrToken == null || passwordOrToken.isEmpty()) return null;
+        return new UsernamePasswordCredentialsProvider(username != null ? username : "", passwordOrToken);
+    }
+}
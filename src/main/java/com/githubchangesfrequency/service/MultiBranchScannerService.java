@@ -0,0 +1,182 @@
+package com.githubchangesfrequency.service;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.repository.RepositoryChangeRepository;
+
+/**
+ * Whole-history totals for many branches of one repo in a single pass. All tips are start
+ * points of one topologically sorted RevWalk, so every commit is walked and diffed once. The
+ * set of branches that reach a commit is carried from children to parents as a bit set, and
+ * each commit's stats are then added to every branch in its set.
+ */
+@Service
+public class MultiBranchScannerService {
+
+    private final RepositoryChangeRepository changeRepo;
+    private final CommitStatIndex statIndex;
+    private final MirrorCloneManager cloneManager;
+    private final ChangeHistoryRecorder historyRecorder;
+    private final WorkLeaseManager leases;
+    private final TransactionTemplate saveTx;
+
+    public MultiBranchScannerService(RepositoryChangeRepository changeRepo,
+                                     CommitStatIndex statIndex,
+                                     MirrorCloneManager cloneManager,
+                                     ChangeHistoryRecorder historyRecorder,
+                                     WorkLeaseManager leases,
+                                     PlatformTransactionManager txManager) {
+        this.changeRepo = changeRepo;
+        this.statIndex = statIndex;
+        this.cloneManager = cloneManager;
+        this.historyRecorder = historyRecorder;
+        this.leases = leases;
+        this.saveTx = new TransactionTemplate(txManager);
+    }
+
+    public List<RepositoryChange> scanBranches(String repoUrl, List<String> branches, String refGlob) throws Exception {
+        return scanBranches(repoUrl, branches, refGlob, ScanOptions.DEFAULT, ScanProgressListener.NONE);
+    }
+
+    /**
+     * Scan the named branches plus every branch whose name matches {@code refGlob} (either may
+     * be empty). Returns one saved or previously stored RepositoryChange per branch. Fails
+     * without writing if the repo's {@link WorkLeaseManager} lease was taken over meanwhile.
+     */
+    public List<RepositoryChange> scanBranches(String repoUrl, List<String> branches, String refGlob,
+                                               ScanOptions options, ScanProgressListener listener) throws Exception {
+        try (WorkLeaseManager.Lease lease = leases.acquire(repoUrl);
+             MirrorClone clone = cloneManager.open(repoUrl, listener)) {
+            Repository repository = clone.getRepository();
+            Map<String, ObjectId> tips = resolveTips(clone, branches, refGlob);
+            if (tips.isEmpty()) {
+                throw new IllegalArgumentException("No branches matched");
+            }
+
+            // branches whose tip has not moved keep their stored result
+            Map<String, RepositoryChange> results = new LinkedHashMap<>();
+            List<String> toScan = new ArrayList<>();
+            for (Map.Entry<String, ObjectId> tip : tips.entrySet()) {
+                Optional<RepositoryChange> cached = changeRepo
+                        .findFirstByRepoUrlAndBranchNameAndTipCommitAndDiffProfileAndBaseCommitIsNullOrderByScannedAtDesc(
+                                repoUrl, tip.getKey(), tip.getValue().getName(), options.profile());
+                results.put(tip.getKey(), cached.orElse(null));
+                if (cached.isEmpty()) toScan.add(tip.getKey());
+            }
+            if (toScan.isEmpty()) {
+                return new ArrayList<>(results.values());
+            }
+
+            listener.onPhase("walk");
+            List<RevCommit> commits = new ArrayList<>();
+            List<BitSet> reachedBy = new ArrayList<>();
+            try (RevWalk revWalk = new RevWalk(repository)) {
+                revWalk.sort(RevSort.TOPO);
+                // bits of branches whose tips or descendants reach a commit not yet emitted
+                Map<ObjectId, BitSet> pending = new HashMap<>();
+                for (int i = 0; i < toScan.size(); i++) {
+                    RevCommit tip = revWalk.parseCommit(tips.get(toScan.get(i)));
+                    revWalk.markStart(tip);
+                    pending.computeIfAbsent(tip.copy(), k -> new BitSet()).set(i);
+                }
+                // TOPO emits every child before its parents, so a commit's set is complete when it comes out
+                for (RevCommit commit : revWalk) {
+                    BitSet bits = pending.remove(commit);
+                    for (RevCommit parent : commit.getParents()) {
+                        pending.computeIfAbsent(parent.copy(), k -> new BitSet()).or(bits);
+                    }
+                    commits.add(commit);
+                    reachedBy.add(bits);
+                }
+            }
+
+            listener.onCommitsFound(commits.size());
+            listener.onPhase("diff");
+            ChangeHistoryRecorder.Recording history = historyRecorder.begin(repoUrl, commits, options);
+            List<CommitStats> stats = statIndex.statsFor(repository, commits, options, listener, history.files());
+            // a run that lost its lease writes nothing
+            lease.fence();
+            listener.onPhase("history");
+            history.finish(stats);
+
+            long[] added = new long[toScan.size()];
+            long[] deleted = new long[toScan.size()];
+            long[] binaryFiles = new long[toScan.size()];
+            long[] oversizedFiles = new long[toScan.size()];
+            long[] renameLimitCommits = new long[toScan.size()];
+            for (int c = 0; c < stats.size(); c++) {
+                CommitStats s = stats.get(c);
+                BitSet bits = reachedBy.get(c);
+                for (int b = bits.nextSetBit(0); b >= 0; b = bits.nextSetBit(b + 1)) {
+                    added[b] += s.linesAdded();
+                    deleted[b] += s.linesDeleted();
+                    binaryFiles[b] += s.binaryFiles();
+                    oversizedFiles[b] += s.oversizedFiles();
+                    if (s.renameLimitExceeded()) renameLimitCommits[b]++;
+                }
+            }
+
+            listener.onPhase("save");
+            Instant now = Instant.now();
+            saveTx.executeWithoutResult(status -> {
+                lease.fence();
+                for (int b = 0; b < toScan.size(); b++) {
+                    String branch = toScan.get(b);
+                    RepositoryChange change = new RepositoryChange(repoUrl, branch, added[b], deleted[b], now);
+                    change.setTipCommit(tips.get(branch).getName());
+                    change.setDiffProfile(options.profile());
+                    new ScanShortcuts(binaryFiles[b], oversizedFiles[b], renameLimitCommits[b]).applyTo(change);
+                    results.put(branch, changeRepo.save(change));
+                }
+            });
+            return new ArrayList<>(results.values());
+        }
+    }
+
+    private static Map<String, ObjectId> resolveTips(MirrorClone clone, List<String> branches, String refGlob) throws Exception {
+        Map<String, ObjectId> tips = new LinkedHashMap<>();
+        Repository repository = clone.getRepository();
+        if (branches != null) {
+            for (String branch : branches) {
+                String ref = clone.resolveBranchRef(branch);
+                ObjectId tip = ref != null ? repository.resolve(ref) : null;
+                if (tip == null) {
+                    throw new IllegalArgumentException("Branch not found: " + branch);
+                }
+                tips.put(branch, tip);
+            }
+        }
+        if (refGlob != null && !refGlob.isBlank()) {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + refGlob);
+            for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+                String branch = ref.getName().substring(Constants.R_HEADS.length());
+                if (matcher.matches(Path.of(branch)) && ref.getObjectId() != null) {
+                    tips.putIfAbsent(branch, ref.getObjectId());
+                }
+            }
+        }
+        return tips;
+    }
+}
@@ -0,0 +1,66 @@
+package com.githubchangesfrequency.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Tree filter built from gitignore-style globs ({@code vendor/}, {@code *.lock},
+ * {@code /generated}, {@code src/**}). An excluded directory is rejected as a subtree, so the
+ * walk never descends into it. With include globs, files must match one of them (directly or
+ * through a parent directory); directories are always entered.
+ */
+class PathGlobFilter extends TreeFilter {
+
+    private final List<FastIgnoreRule> includes;
+    private final List<FastIgnoreRule> excludes;
+
+    PathGlobFilter(List<String> includeGlobs, List<String> excludeGlobs) {
+        this.includes = rules(includeGlobs);
+        this.excludes = rules(excludeGlobs);
+    }
+
+    private static List<FastIgnoreRule> rules(List<String> globs) {
+        List<FastIgnoreRule> rules = new ArrayList<>(globs.size());
+        for (String glob : globs) {
+            FastIgnoreRule rule = new FastIgnoreRule(glob);
+            if (!rule.isEmpty()) rules.add(rule);
+        }
+        return rules;
+    }
+
+    @Override
+    public boolean include(TreeWalk walker) {
+        String path = walker.getPathString();
+        boolean directory = walker.isSubtree();
+        for (FastIgnoreRule rule : excludes) {
+            if (rule.isMatch(path, directory, false)) return false;
+        }
+        if (includes.isEmpty() || directory) {
+            return true;
+        }
+        for (FastIgnoreRule rule : includes) {
+            if (rule.isMatch(path, false, false)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean shouldBeRecursive() {
+        return true;
+    }
+
+    @Override
+    public TreeFilter clone() {
+        // immutable: the rules carry no per-walk state
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "PathGlobFilter[include=" + includes + ", exclude=" + excludes + "]";
+    }
+}
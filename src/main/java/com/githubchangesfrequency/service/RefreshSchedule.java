@@ -0,0 +1,48 @@
+package com.githubchangesfrequency.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.random.RandomGenerator;
+
+/**
+ * When a tracked branch is checked next. Checks repeat every {@code interval}; after failures
+ * the delay doubles from {@code backoffBase} up to {@code backoffMax}. Every delay is spread by
+ * +/- {@code jitter} (a fraction), and newly registered branches start at a random point of the
+ * first interval, so a large registry does not hit its remotes in lockstep.
+ */
+final class RefreshSchedule {
+
+    private final Duration interval;
+    private final Duration backoffBase;
+    private final Duration backoffMax;
+    private final double jitter;
+
+    RefreshSchedule(Duration interval, Duration backoffBase, Duration backoffMax, double jitter) {
+        this.interval = interval;
+        this.backoffBase = backoffBase;
+        this.backoffMax = backoffMax;
+        this.jitter = Math.max(0, Math.min(1, jitter));
+    }
+
+    Instant first(Instant now, RandomGenerator random) {
+        return now.plusMillis((long) (interval.toMillis() * random.nextDouble()));
+    }
+
+    Instant afterSuccess(Instant now, RandomGenerator random) {
+        return now.plusMillis(jittered(interval.toMillis(), random));
+    }
+
+    Instant afterFailure(Instant now, int consecutiveFailures, RandomGenerator random) {
+        return now.plusMillis(jittered(backoff(consecutiveFailures).toMillis(), random));
+    }
+
+    Duration backoff(int consecutiveFailures) {
+        int doublings = Math.min(Math.max(consecutiveFailures, 1) - 1, 30);
+        long millis = backoffBase.toMillis() << doublings;
+        return millis <= 0 || millis > backoffMax.toMillis() ? backoffMax : Duration.ofMillis(millis);
+    }
+
+    private long jittered(long millis, RandomGenerator random) {
+        return (long) (millis * (1 + jitter * (2 * random.nextDouble() - 1)));
+    }
+}
@@ -0,0 +1,36 @@
+package com.githubchangesfrequency.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.springframework.stereotype.Service;
+
+/**
+ * Reads a remote's branch tips from its ref advertisement alone (like {@code git ls-remote
+ * --heads}): no objects are transferred and no local clone is needed.
+ */
+@Service
+public class RemoteRefProbe {
+
+    /**
+     * Branch name to tip for every branch the remote advertises.
+     */
+    public Map<String, ObjectId> branchTips(String repoUrl) throws GitAPIException {
+        Map<String, ObjectId> tips = new HashMap<>();
+        for (Ref ref : Git.lsRemoteRepository()
+                          .setRemote(repoUrl)
+                          .setHeads(true)
+                          .setCredentialsProvider(MirrorCloneManager.credentials())
+                          .call()) {
+            if (ref.getName().startsWith(Constants.R_HEADS) && ref.getObjectId() != null) {
+                tips.put(ref.getName().substring(Constants.R_HEADS.length()), ref.getObjectId());
+            }
+        }
+        return tips;
+    }
+}
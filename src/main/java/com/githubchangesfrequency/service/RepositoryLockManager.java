@@ -0,0 +1,184 @@
+package com.githubchangesfrequency.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Read/write locks on local clone directories, one lock per repository so scans of different
+ * repos never wait on each other. Clone and fetch take the write lock; walking and diffing an
+ * already-fetched clone take the read lock and share it.
+ *
+ * Each lock is backed by an in-process {@link ReentrantReadWriteLock} and a {@link FileLock} on
+ * {@code <cloneBase>/.locks/<repo>.lock}, so several JVMs on one clone directory coordinate too.
+ * Java file locks belong to the whole JVM, so the shared file lock is taken by the first local
+ * reader and released by the last one.
+ */
+@Service
+public class RepositoryLockManager {
+
+    private final Path lockDir;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public RepositoryLockManager(@Value("${git.local.cloneBase:${java.io.tmpdir}/git-clones}") String cloneBase) {
+        this.lockDir = Path.of(cloneBase, ".locks");
+    }
+
+    /**
+     * Shared access to the clone: many readers at once, no concurrent fetch.
+     */
+    public Lease readLock(String repoKey) throws IOException {
+        Entry entry = retain(repoKey);
+        entry.rw.readLock().lock();
+        try {
+            entry.lockShared();
+        } catch (IOException | RuntimeException e) {
+            entry.rw.readLock().unlock();
+            release(entry);
+            throw e;
+        }
+        return () -> {
+            try {
+                entry.unlockShared();
+            } finally {
+                entry.rw.readLock().unlock();
+                release(entry);
+            }
+        };
+    }
+
+    /**
+     * Exclusive access to the clone, for clone, fetch and maintenance.
+     */
+    public Lease writeLock(String repoKey) throws IOException {
+        Entry entry = retain(repoKey);
+        entry.rw.writeLock().lock();
+        FileLock fileLock;
+        try {
+            fileLock = entry.channel().lock(0, Long.MAX_VALUE, false);
+        } catch (IOException | RuntimeException e) {
+            entry.rw.writeLock().unlock();
+            release(entry);
+            throw e;
+        }
+        return writeLease(entry, fileLock);
+    }
+
+    /**
+     * Exclusive access if no one (in this or another JVM) holds the clone right now, otherwise
+     * null; for background maintenance that should not queue behind scans.
+     */
+    public Lease tryWriteLock(String repoKey) throws IOException {
+        Entry entry = retain(repoKey);
+        if (!entry.rw.writeLock().tryLock()) {
+            release(entry);
+            return null;
+        }
+        FileLock fileLock;
+        try {
+            fileLock = entry.channel().tryLock(0, Long.MAX_VALUE, false);
+        } catch (IOException | RuntimeException e) {
+            entry.rw.writeLock().unlock();
+            release(entry);
+            throw e;
+        }
+        if (fileLock == null) {
+            entry.rw.writeLock().unlock();
+            release(entry);
+            return null;
+        }
+        return writeLease(entry, fileLock);
+    }
+
+    private Lease writeLease(Entry entry, FileLock fileLock) {
+        return () -> {
+            try {
+                fileLock.release();
+            } finally {
+                entry.rw.writeLock().unlock();
+                release(entry);
+            }
+        };
+    }
+
+    private Entry retain(String key) {
+        return entries.compute(key, (k, e) -> {
+            if (e == null) e = new Entry(k);
+            e.refs++;
+            return e;
+        });
+    }
+
+    private void release(Entry entry) {
+        entries.computeIfPresent(entry.key, (k, e) -> {
+            if (--e.refs > 0) return e;
+            e.closeChannel();
+            return null;
+        });
+    }
+
+    /**
+     * A held lock; closing it releases the lock.
+     */
+    @FunctionalInterface
+    public interface Lease extends AutoCloseable {
+        @Override
+        void close() throws IOException;
+    }
+
+    private final class Entry {
+        final String key;
+        final ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+        int refs; // guarded by entries.compute
+
+        private FileChannel channel;
+        private FileLock shared;
+        private int sharedHolders;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        synchronized FileChannel channel() throws IOException {
+            if (channel == null) {
+                Files.createDirectories(lockDir);
+                channel = FileChannel.open(lockDir.resolve(key + ".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        synchronized void lockShared() throws IOException {
+            if (sharedHolders == 0) {
+                shared = channel().lock(0, Long.MAX_VALUE, true);
+            }
+            sharedHolders++;
+        }
+
+        synchronized void unlockShared() throws IOException {
+            if (--sharedHolders == 0) {
+                shared.release();
+                shared = null;
+            }
+        }
+
+        synchronized void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // lock file handle only; nothing to recover
+                }
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.githubchangesfrequency.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.domain.TrackedBranch;
+import com.githubchangesfrequency.repository.TrackedBranchRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Registry of tracked repo/branch pairs plus the scheduler that keeps them scanned. Every
+ * {@code git.refresh.tick} the due branches are grouped by repo; each repo gets one ref
+ * advertisement ({@link RemoteRefProbe}), and only if a tracked tip moved is the mirror
+ * fetched and the moved branches scanned incrementally. At most {@code git.refresh.concurrency}
+ * repos are handled at once; failures back off per branch (see {@link RefreshSchedule}).
+ *
+ * With several instances on one database, a repo is only refreshed by the node that claims its
+ * {@link WorkLeaseManager} lease. Each node claims due repos until its own slots are full,
+ * skipping the ones other nodes hold, so adding nodes adds refresh capacity.
+ */
+@Service
+public class RepositoryRefreshService {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryRefreshService.class);
+
+    private final TrackedBranchRepository trackedRepo;
+    private final RemoteRefProbe refProbe;
+    private final MirrorCloneManager cloneManager;
+    private final GitChangeScannerServiceIncr scanner;
+    private final ScanOptionsResolver optionsResolver;
+    private final WorkLeaseManager leases;
+    private final RefreshSchedule schedule;
+    private final boolean enabled;
+    private final int concurrency;
+    private final ThreadPoolExecutor executor;
+
+    // repos being refreshed right now; a repo is never picked up twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public RepositoryRefreshService(TrackedBranchRepository trackedRepo,
+                                    RemoteRefProbe refProbe,
+                                    MirrorCloneManager cloneManager,
+                                    GitChangeScannerServiceIncr scanner,
+                                    ScanOptionsResolver optionsResolver,
+                                    WorkLeaseManager leases,
+                                    @Value("${git.refresh.enabled:true}") boolean enabled,
+                                    @Value("${git.refresh.concurrency:4}") int concurrency,
+                                    @Value("${git.refresh.interval:PT15M}") Duration interval,
+                                    @Value("${git.refresh.backoffBase:PT1M}") Duration backoffBase,
+                                    @Value("${git.refresh.backoffMax:PT6H}") Duration backoffMax,
+                                    @Value("${git.refresh.jitter:0.1}") double jitter) {
+        this.trackedRepo = trackedRepo;
+        this.refProbe = refProbe;
+        this.cloneManager = cloneManager;
+        this.scanner = scanner;
+        this.optionsResolver = optionsResolver;
+        this.leases = leases;
+        this.schedule = new RefreshSchedule(interval, backoffBase, backoffMax, jitter);
+        this.enabled = enabled;
+        this.concurrency = Math.max(1, concurrency);
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.concurrency, this.concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "repo-refresh-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Start tracking a branch (or re-enable it). The first check is spread over one interval.
+     */
+    @Transactional
+    public TrackedBranch track(String repoUrl, String branch) {
+        TrackedBranch tracked = trackedRepo.findByRepoUrlAndBranchName(repoUrl, branch)
+                .orElseGet(() -> new TrackedBranch(repoUrl, branch, schedule.first(Instant.now(), ThreadLocalRandom.current())));
+        tracked.setEnabled(true);
+        return trackedRepo.save(tracked);
+    }
+
+    @Transactional
+    public boolean untrack(String repoUrl, String branch) {
+        return trackedRepo.findByRepoUrlAndBranchName(repoUrl, branch).map(t -> {
+            trackedRepo.delete(t);
+            return true;
+        }).orElse(false);
+    }
+
+    public List<TrackedBranch> tracked(String repoUrl) {
+        return repoUrl != null ? trackedRepo.findByRepoUrlOrderByBranchName(repoUrl) : trackedRepo.findAll();
+    }
+
+    @Scheduled(fixedDelayString = "${git.refresh.tick:PT10S}", initialDelayString = "${git.refresh.tick:PT10S}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        int free = concurrency - inFlight.size();
+        if (free <= 0) {
+            return;
+        }
+        Map<String, List<TrackedBranch>> dueByRepo = new LinkedHashMap<>();
+        for (TrackedBranch t : trackedRepo.findTop500ByEnabledTrueAndNextCheckAtLessThanEqualOrderByNextCheckAt(Instant.now())) {
+            if (inFlight.contains(t.getRepoUrl())) continue;
+            dueByRepo.computeIfAbsent(t.getRepoUrl(), k -> new ArrayList<>()).add(t);
+        }
+        int started = 0;
+        for (Map.Entry<String, List<TrackedBranch>> e : dueByRepo.entrySet()) {
+            if (started == free) break;
+            String repoUrl = e.getKey();
+            // another node has it (or had it last and keeps it for a while)
+            WorkLeaseManager.Lease lease = leases.tryClaim(repoUrl);
+            if (lease == null) continue;
+            if (!inFlight.add(repoUrl)) {
+                lease.close();
+                continue;
+            }
+            started++;
+            List<Long> ids = e.getValue().stream().map(TrackedBranch::getId).toList();
+            executor.execute(() -> {
+                try (lease) {
+                    // the list may predate a refresh another node just finished
+                    List<TrackedBranch> due = stillDue(ids);
+                    if (!due.isEmpty()) refresh(repoUrl, due);
+                } finally {
+                    inFlight.remove(repoUrl);
+                }
+            });
+        }
+    }
+
+    private List<TrackedBranch> stillDue(List<Long> ids) {
+        Instant now = Instant.now();
+        List<TrackedBranch> due = new ArrayList<>();
+        for (TrackedBranch t : trackedRepo.findAllById(ids)) {
+            if (t.isEnabled() && !t.getNextCheckAt().isAfter(now)) due.add(t);
+        }
+        return due;
+    }
+
+    /**
+     * Check one repo's tracked branches against the remote and scan the ones whose tip moved.
+     */
+    public void refresh(String repoUrl, List<TrackedBranch> branches) {
+        Instant now = Instant.now();
+        Map<String, ObjectId> remoteTips;
+        try {
+            remoteTips = refProbe.branchTips(repoUrl);
+        } catch (Exception e) {
+            log.warn("Ref check failed for {}: {}", repoUrl, e.getMessage());
+            for (TrackedBranch t : branches) failed(t, now, "ref check failed: " + e.getMessage());
+            return;
+        }
+
+        List<TrackedBranch> moved = new ArrayList<>();
+        for (TrackedBranch t : branches) {
+            ObjectId tip = remoteTips.get(t.getBranchName());
+            if (tip == null) {
+                failed(t, now, "branch not on remote");
+            } else if (tip.getName().equals(t.getLastSeenTip())) {
+                succeeded(t, now, null);
+            } else {
+                moved.add(t);
+            }
+        }
+        if (moved.isEmpty()) {
+            return;
+        }
+
+        try {
+            cloneManager.refresh(repoUrl, ScanProgressListener.NONE);
+        } catch (Exception e) {
+            log.warn("Fetch failed for {}: {}", repoUrl, e.getMessage());
+            for (TrackedBranch t : moved) failed(t, now, "fetch failed: " + e.getMessage());
+            return;
+        }
+        ScanOptions options = optionsResolver.resolve(repoUrl, ScanOptions.DEFAULT);
+        for (TrackedBranch t : moved) {
+            String advertised = remoteTips.get(t.getBranchName()).getName();
+            try {
+                RepositoryChange result = scanner.scanRepositoryIncremental(repoUrl, t.getBranchName(), options,
+                        ScanProgressListener.NONE);
+                if (advertised.equals(result.getTipCommit())) {
+                    succeeded(t, now, advertised);
+                } else {
+                    // the fetch did not bring the advertised tip (or the branch moved again): retry
+                    failed(t, now, "scanned " + result.getTipCommit() + " but remote advertised " + advertised);
+                }
+            } catch (Exception e) {
+                log.warn("Scheduled scan failed for {} {}: {}", repoUrl, t.getBranchName(), e.getMessage());
+                failed(t, now, "scan failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void succeeded(TrackedBranch t, Instant now, String scannedTip) {
+        t.setLastCheckedAt(now);
+        if (scannedTip != null) {
+            t.setLastSeenTip(scannedTip);
+            t.setLastScannedAt(Instant.now());
+        }
+        t.setConsecutiveFailures(0);
+        t.setLastError(null);
+        t.setNextCheckAt(schedule.afterSuccess(Instant.now(), ThreadLocalRandom.current()));
+        save(t);
+    }
+
+    private void failed(TrackedBranch t, Instant now, String error) {
+        t.setLastCheckedAt(now);
+        t.setConsecutiveFailures(t.getConsecutiveFailures() + 1);
+        t.setLastError(error != null && error.length() > 1024 ? error.substring(0, 1024) : error);
+        t.setNextCheckAt(schedule.afterFailure(Instant.now(), t.getConsecutiveFailures(), ThreadLocalRandom.current()));
+        save(t);
+    }
+
+    private void save(TrackedBranch t) {
+        try {
+            trackedRepo.save(t);
+        } catch (OptimisticLockingFailureException e) {
+            // edited or removed through the API meanwhile; that change wins
+            log.debug("Tracked branch {} {} changed during refresh", t.getRepoUrl(), t.getBranchName());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,78 @@
+package com.githubchangesfrequency.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Moves scan_checkpoint from one row per (repo, branch) to one per (repo, branch, profile). The
+ * schema update adds diff_profile, defaulting existing rows to the default profile, and the
+ * new unique key, but leaves the old (repo_url, branch_name) key in place, which would still
+ * refuse a second profile's checkpoint; it is dropped here, before any scan runs.
+ */
+@Component
+@Profile("!cli")
+@DependsOn("entityManagerFactory")
+public class ScanCheckpointMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ScanCheckpointMigration.class);
+
+    private static final Set<String> LEGACY_KEY = Set.of("REPO_URL", "BRANCH_NAME");
+
+    private static final String UNIQUE_KEYS = "SELECT tc.constraint_name, kcu.column_name "
+            + "FROM information_schema.table_constraints tc JOIN information_schema.key_column_usage kcu "
+            + "ON kcu.constraint_name = tc.constraint_name AND kcu.table_schema = tc.table_schema "
+            + "AND kcu.table_name = tc.table_name "
+            + "WHERE LOWER(tc.table_name) = 'scan_checkpoint' AND tc.constraint_type = 'UNIQUE' "
+            + "AND tc.table_schema IN (?, ?)";
+
+    private final JdbcTemplate jdbc;
+
+    public ScanCheckpointMigration(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        for (String name : legacyKeys()) {
+            jdbc.execute("ALTER TABLE scan_checkpoint DROP CONSTRAINT " + name);
+            log.info("Dropped unique key {} on scan_checkpoint (repo_url, branch_name): checkpoints are per profile now", name);
+        }
+    }
+
+    private List<String> legacyKeys() {
+        return jdbc.execute((ConnectionCallback<List<String>>) con -> {
+            Map<String, Set<String>> columns = new TreeMap<>();
+            try (PreparedStatement ps = con.prepareStatement(UNIQUE_KEYS)) {
+                // MySQL names the database as catalog, H2 and others as schema
+                ps.setString(1, con.getCatalog());
+                ps.setString(2, con.getSchema());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        columns.computeIfAbsent(rs.getString(1), k -> new TreeSet<>()).add(rs.getString(2).toUpperCase());
+                    }
+                }
+            }
+            List<String> legacy = new ArrayList<>();
+            columns.forEach((name, cols) -> {
+                if (cols.equals(LEGACY_KEY)) legacy.add(name);
+            });
+            return legacy;
+        });
+    }
+}
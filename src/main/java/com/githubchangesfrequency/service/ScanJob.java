@@ -0,0 +1,147 @@
+package com.githubchangesfrequency.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+/**
+ * One asynchronous scan submitted through {@link ScanJobService}. The job is its own progress
+ * listener, so GET on the job shows the live phase and counters while the scan runs.
+ */
+public class ScanJob implements ScanProgressListener {
+
+    public enum Kind { FULL, INCREMENTAL }
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id;
+    private final Kind kind;
+    private final String repoUrl;
+    private final String branch;
+    private final ScanOptions options;
+    private final Instant submittedAt;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String phase;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile RepositoryChange result;
+    private volatile String error;
+
+    private volatile int commitsTotal = -1;
+    private final AtomicLong commitsProcessed = new AtomicLong();
+    private final AtomicLong linesAdded = new AtomicLong();
+    private final AtomicLong linesDeleted = new AtomicLong();
+
+    ScanJob(String id, Kind kind, String repoUrl, String branch, ScanOptions options) {
+        this.id = id;
+        this.kind = kind;
+        this.repoUrl = repoUrl;
+        this.branch = branch;
+        this.options = options;
+        this.submittedAt = Instant.now();
+    }
+
+    void markRunning() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void markSucceeded(RepositoryChange change) {
+        result = change;
+        finishedAt = Instant.now();
+        status = Status.SUCCEEDED;
+    }
+
+    void markFailed(String message) {
+        error = message;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    @Override
+    public void onPhase(String phase) {
+        this.phase = phase;
+    }
+
+    @Override
+    public void onCommitsFound(int commits) {
+        this.commitsTotal = commits;
+    }
+
+    @Override
+    public void onCommitsDiffed(int commits, long added, long deleted) {
+        commitsProcessed.addAndGet(commits);
+        linesAdded.addAndGet(added);
+        linesDeleted.addAndGet(deleted);
+    }
+
+	public String getId() {
+		return id;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getRepoUrl() {
+		return repoUrl;
+	}
+
+	public String getBranch() {
+		return branch;
+	}
+
+	public ScanOptions getOptions() {
+		return options;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public String getPhase() {
+		return phase;
+	}
+
+	public Instant getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public Instant getStartedAt() {
+		return startedAt;
+	}
+
+	public Instant getFinishedAt() {
+		return finishedAt;
+	}
+
+	public int getCommitsTotal() {
+		return commitsTotal;
+	}
+
+	public long getCommitsProcessed() {
+		return commitsProcessed.get();
+	}
+
+	public long getLinesAdded() {
+		return linesAdded.get();
+	}
+
+	public long getLinesDeleted() {
+		return linesDeleted.get();
+	}
+
+	public RepositoryChange getResult() {
+		return result;
+	}
+
+	public String getError() {
+		return error;
+	}
+}
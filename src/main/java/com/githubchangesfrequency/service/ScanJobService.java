@@ -0,0 +1,114 @@
+package com.githubchangesfrequency.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs scans off the request thread on a bounded pool. A submit for a repo/branch/kind (and
+ * scan options) that already has a queued or running job returns that job instead of starting a second clone
+ * and walk. Finished jobs stay queryable for {@code git.jobs.retention}.
+ */
+@Service
+public class ScanJobService {
+
+    private final GitChangeScannerService fullScanner;
+    private final GitChangeScannerServiceIncr incrementalScanner;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+
+    private final Map<String, ScanJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ScanJob> active = new ConcurrentHashMap<>();
+
+    public ScanJobService(GitChangeScannerService fullScanner,
+                          GitChangeScannerServiceIncr incrementalScanner,
+                          @Value("${git.jobs.threads:4}") int threads,
+                          @Value("${git.jobs.queueCapacity:100}") int queueCapacity,
+                          @Value("${git.jobs.retention:PT1H}") Duration retention) {
+        this.fullScanner = fullScanner;
+        this.incrementalScanner = incrementalScanner;
+        this.retention = retention;
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "scan-job-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Queue a scan, or return the queued/running job for the same repo, branch and kind.
+     *
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public ScanJob submit(ScanJob.Kind kind, String repoUrl, String branch, ScanOptions options) {
+        purgeFinished();
+        String key = kind + "|" + repoUrl + "|" + branch + "|" + options.profile();
+        boolean[] created = new boolean[1];
+        // a job that has just finished is still mapped until its worker removes it: start a new one
+        ScanJob job = active.compute(key, (k, existing) -> {
+            if (existing != null && !existing.isFinished()) return existing;
+            created[0] = true;
+            ScanJob j = new ScanJob(UUID.randomUUID().toString(), kind, repoUrl, branch, options);
+            jobs.put(j.getId(), j);
+            return j;
+        });
+        if (!created[0]) {
+            return job;
+        }
+
+        try {
+            executor.execute(() -> run(key, job));
+        } catch (RejectedExecutionException e) {
+            active.remove(key, job);
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<ScanJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(String key, ScanJob job) {
+        job.markRunning();
+        try {
+            RepositoryChange change = job.getKind() == ScanJob.Kind.FULL
+                    ? fullScanner.scanRepository(job.getRepoUrl(), job.getBranch(), job.getOptions(), job)
+                    : incrementalScanner.scanRepositoryIncremental(job.getRepoUrl(), job.getBranch(), job.getOptions(), job);
+            job.markSucceeded(change);
+        } catch (Exception e) {
+            job.markFailed(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            active.remove(key, job);
+        }
+    }
+
+    private void purgeFinished() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(j -> j.isFinished() && j.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
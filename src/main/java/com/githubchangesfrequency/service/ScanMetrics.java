@@ -0,0 +1,118 @@
+package com.githubchangesfrequency.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters of the scan hot path, exposed through Actuator ({@code /actuator/metrics},
+ * {@code /actuator/prometheus}):
+ * <ul>
+ * <li>{@code gcf.scan} and {@code gcf.scan.phase}: scan and per-phase durations, by kind
+ * (full/incremental), outcome and repo; see {@link ScanTimer}</li>
+ * <li>{@code gcf.scan.commits}, {@code gcf.scan.diff.entries}: commits counted and changed files
+ * found, whose rates are commits/s and diff entries/s; {@code gcf.scan.tree.diff} the time spent
+ * in tree diffs and rename detection, summed over the diff workers</li>
+ * <li>{@code gcf.mirror.update}: clones and fetches by outcome, {@code gcf.mirror.fetch.failures}
+ * fetches that failed (the scan then used the mirror as of its last fetch)</li>
+ * <li>{@code gcf.diffcache.requests} and {@code gcf.jgit.window.requests}: blob diff cache and
+ * pack window cache lookups by result, for hit rates; {@code gcf.jgit.pack.read} bytes read from
+ * pack files (window loads times the window size, so an upper bound)</li>
+ * </ul>
+ * With {@code git.metrics.repoTag=false} the per-repo meters drop the {@code repo} tag, for
+ * deployments scanning too many repos to keep one series each.
+ */
+@Service
+public class ScanMetrics {
+
+    private final MeterRegistry registry;
+    private final boolean repoTag;
+
+    @Autowired
+    public ScanMetrics(MeterRegistry registry,
+                       BlobDiffCache diffCache,
+                       @Value("${git.metrics.repoTag:true}") boolean repoTag,
+                       @Value("${git.jgit.packedGitWindowSize:64KB}") DataSize packedGitWindowSize) {
+        this(registry, repoTag);
+        cacheCounter("gcf.diffcache.requests", "hit", diffCache, c -> c.stats().get("hits"));
+        cacheCounter("gcf.diffcache.requests", "diskHit", diffCache, c -> c.stats().get("diskHits"));
+        cacheCounter("gcf.diffcache.requests", "miss", diffCache, c -> c.stats().get("misses"));
+        Gauge.builder("gcf.diffcache.entries", diffCache, c -> c.stats().get("entries"))
+                .description("Blob pairs held in the in-memory diff cache")
+                .register(registry);
+
+        // the window cache is replaced when JGitStorageTuning installs its config: always read the current one
+        cacheCounter("gcf.jgit.window.requests", "hit", this, m -> WindowCacheStats.getStats().getHitCount());
+        cacheCounter("gcf.jgit.window.requests", "miss", this, m -> WindowCacheStats.getStats().getMissCount());
+        long windowSize = packedGitWindowSize.toBytes();
+        FunctionCounter.builder("gcf.jgit.pack.read", this, m -> WindowCacheStats.getStats().getLoadSuccessCount() * (double) windowSize)
+                .description("Bytes read from pack files into the window cache (upper bound: loads times window size)")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("gcf.jgit.window.open", this, m -> WindowCacheStats.getStats().getOpenByteCount())
+                .description("Pack bytes held in the window cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /** Per-scan and mirror meters only, without the process-wide cache meters. */
+    ScanMetrics(MeterRegistry registry, boolean repoTag) {
+        this.registry = registry;
+        this.repoTag = repoTag;
+    }
+
+    /**
+     * Start timing a scan of the given kind. The returned timer forwards every callback to
+     * {@code listener}; pass it to the scan in its place and {@link ScanTimer#finish} it once
+     * the scan is over.
+     */
+    public ScanTimer start(String kind, String repoUrl, ScanProgressListener listener) {
+        return new ScanTimer(this, tags(repoUrl).and("kind", kind), listener);
+    }
+
+    void mirrorUpdated(String repoUrl, String operation, long nanos, boolean failed) {
+        Tags tags = tags(repoUrl);
+        Timer.builder("gcf.mirror.update")
+                .description("Clones and fetches of local mirrors")
+                .tags(tags.and("operation", operation, "outcome", failed ? "failure" : "success"))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (failed && "fetch".equals(operation)) {
+            Counter.builder("gcf.mirror.fetch.failures")
+                    .description("Fetches that failed; the mirror was used as of its last fetch")
+                    .tags(tags)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name).description(description).tags(tags).register(registry);
+    }
+
+    Counter counter(String name, String description, Tags tags) {
+        return Counter.builder(name).description(description).tags(tags).register(registry);
+    }
+
+    private Tags tags(String repoUrl) {
+        return repoTag ? Tags.of("repo", repoUrl) : Tags.empty();
+    }
+
+    private <T> void cacheCounter(String name, String result, T source, ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, source, count)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,92 @@
+package com.githubchangesfrequency.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Settings that change what a scan counts. Results computed with non-default options are
+ * stored under a {@link #profile()} so they never mix with default-option results.
+ *
+ * The defaults give exact line counts: every file is line-diffed with histogram diff and
+ * renames are detected with JGit's default limit. The fast-mode settings trade exactness for
+ * speed on pathological commits.
+ *
+ * @param includePaths  gitignore-style globs; when non-empty only matching files are counted
+ * @param excludePaths  gitignore-style globs; matching files and directories are never walked
+ * @param skipBinary    detect binary blobs up front and count them as files instead of diffing
+ * @param maxBlobSize   blobs larger than this many bytes count as whole-file added/removed
+ *                      without a line diff; 0 for no cap
+ * @param detectRenames pair deleted and added files into renames
+ * @param renameLimit   rename detection gives up above this many candidate pairs; 0 for JGit's default
+ * @param diffAlgorithm line diff algorithm
+ */
+public record ScanOptions(List<String> includePaths, List<String> excludePaths,
+                          boolean skipBinary, long maxBlobSize,
+                          boolean detectRenames, int renameLimit,
+                          SupportedAlgorithm diffAlgorithm) {
+
+    public static final ScanOptions DEFAULT = paths(List.of(), List.of());
+
+    public ScanOptions {
+        includePaths = includePaths == null ? List.of() : List.copyOf(includePaths);
+        excludePaths = excludePaths == null ? List.of() : List.copyOf(excludePaths);
+        maxBlobSize = Math.max(0, maxBlobSize);
+        renameLimit = Math.max(0, renameLimit);
+        diffAlgorithm = diffAlgorithm == null ? SupportedAlgorithm.HISTOGRAM : diffAlgorithm;
+    }
+
+    /**
+     * Exact-mode options with the given path globs.
+     */
+    public static ScanOptions paths(List<String> includePaths, List<String> excludePaths) {
+        return new ScanOptions(includePaths, excludePaths, false, 0, true, 0, SupportedAlgorithm.HISTOGRAM);
+    }
+
+    public ScanOptions withPaths(List<String> includes, List<String> excludes) {
+        return new ScanOptions(includes, excludes, skipBinary, maxBlobSize, detectRenames, renameLimit, diffAlgorithm);
+    }
+
+    public boolean isDefault() {
+        return includePaths.isEmpty() && excludePaths.isEmpty() && isExactDiff()
+                && detectRenames && renameLimit == 0;
+    }
+
+    /**
+     * True when file diffs are the plain histogram line diffs, which is what {@link BlobDiffCache} holds.
+     */
+    public boolean isExactDiff() {
+        return !skipBinary && maxBlobSize == 0 && diffAlgorithm == SupportedAlgorithm.HISTOGRAM;
+    }
+
+    /**
+     * Tree filter for DiffFormatter, or {@link TreeFilter#ALL} without path globs.
+     */
+    public TreeFilter treeFilter() {
+        if (includePaths.isEmpty() && excludePaths.isEmpty()) return TreeFilter.ALL;
+        return new PathGlobFilter(includePaths, excludePaths);
+    }
+
+    /**
+     * Short stable id of these options; null for the defaults so existing rows stay valid.
+     */
+    public String profile() {
+        if (isDefault()) return null;
+        String canonical = "include=" + String.join("\n", includePaths)
+                + "\u0000exclude=" + String.join("\n", excludePaths)
+                + (isExactDiff() && detectRenames && renameLimit == 0 ? ""
+                        : "\u0000skipBinary=" + skipBinary + "\u0000maxBlobSize=" + maxBlobSize
+                        + "\u0000renames=" + detectRenames + "/" + renameLimit + "\u0000algorithm=" + diffAlgorithm);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
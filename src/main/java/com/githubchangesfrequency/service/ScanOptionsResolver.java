@@ -0,0 +1,88 @@
+package com.githubchangesfrequency.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.githubchangesfrequency.domain.RepoScanDefaults;
+import com.githubchangesfrequency.repository.RepoScanDefaultsRepository;
+
+/**
+ * Builds the effective {@link ScanOptions} of a request from its own settings and the repo's
+ * stored default globs. Request includes replace the default includes; excludes from both are
+ * combined. Fast-mode settings always come from the request.
+ */
+@Service
+public class ScanOptionsResolver {
+
+    // defaults are read on every (polling) request; keep them briefly so a poll stays off the database
+    private static final Duration DEFAULTS_TTL = Duration.ofSeconds(30);
+
+    private record CachedDefaults(Instant loadedAt, Optional<RepoScanDefaults> defaults) {}
+
+    private final RepoScanDefaultsRepository defaultsRepo;
+    private final Map<String, CachedDefaults> cache = new ConcurrentHashMap<>();
+
+    public ScanOptionsResolver(RepoScanDefaultsRepository defaultsRepo) {
+        this.defaultsRepo = defaultsRepo;
+    }
+
+    public ScanOptions resolve(String repoUrl, ScanOptions requested) {
+        Optional<RepoScanDefaults> defaults = cachedDefaults(repoUrl);
+        List<String> includes = clean(requested.includePaths());
+        if (includes.isEmpty()) {
+            includes = defaults.map(d -> split(d.getIncludePaths())).orElse(List.of());
+        }
+        Set<String> excludes = new LinkedHashSet<>(defaults.map(d -> split(d.getExcludePaths())).orElse(List.of()));
+        excludes.addAll(clean(requested.excludePaths()));
+        return requested.withPaths(includes, new ArrayList<>(excludes));
+    }
+
+    public Optional<RepoScanDefaults> findDefaults(String repoUrl) {
+        return defaultsRepo.findByRepoUrl(repoUrl);
+    }
+
+    @Transactional
+    public RepoScanDefaults saveDefaults(String repoUrl, List<String> include, List<String> exclude) {
+        RepoScanDefaults defaults = defaultsRepo.findByRepoUrl(repoUrl).orElseGet(() -> new RepoScanDefaults(repoUrl));
+        defaults.setIncludePaths(String.join("\n", clean(include)));
+        defaults.setExcludePaths(String.join("\n", clean(exclude)));
+        defaults.setUpdatedAt(Instant.now());
+        RepoScanDefaults saved = defaultsRepo.save(defaults);
+        cache.remove(repoUrl);
+        return saved;
+    }
+
+    private Optional<RepoScanDefaults> cachedDefaults(String repoUrl) {
+        Instant now = Instant.now();
+        CachedDefaults cached = cache.get(repoUrl);
+        if (cached == null || cached.loadedAt().plus(DEFAULTS_TTL).isBefore(now)) {
+            cached = new CachedDefaults(now, defaultsRepo.findByRepoUrl(repoUrl));
+            cache.put(repoUrl, cached);
+        }
+        return cached.defaults();
+    }
+
+    private static List<String> split(String stored) {
+        return stored == null ? List.of() : clean(Arrays.asList(stored.split("\n")));
+    }
+
+    private static List<String> clean(List<String> globs) {
+        if (globs == null) return List.of();
+        List<String> out = new ArrayList<>(globs.size());
+        for (String g : globs) {
+            if (g != null && !g.isBlank()) out.add(g.trim());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,25 @@
+package com.githubchangesfrequency.service;
+
+/**
+ * Callbacks fired while a scan runs. {@link #onCommitsDiffed} and {@link #onDiffEntries} are
+ * called from the diff workers, so implementations must be thread-safe and cheap.
+ */
+public interface ScanProgressListener {
+
+    ScanProgressListener NONE = new ScanProgressListener() {};
+
+    /** The scan entered a new phase (clone, fetch, resolve, walk, diff, save). */
+    default void onPhase(String phase) {}
+
+    /** The walk finished and this many commits will be counted. */
+    default void onCommitsFound(int commits) {}
+
+    /** Some commits were counted, either diffed or read back from the commit stat index. */
+    default void onCommitsDiffed(int commits, long linesAdded, long linesDeleted) {}
+
+    /**
+     * One commit's tree diff found this many changed files, taking {@code treeDiffNanos}
+     * (tree walk plus rename detection, before any file content is diffed).
+     */
+    default void onDiffEntries(int entries, long treeDiffNanos) {}
+}
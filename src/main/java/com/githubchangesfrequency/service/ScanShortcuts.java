@@ -0,0 +1,30 @@
+package com.githubchangesfrequency.service;
+
+import java.util.Collection;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+/**
+ * Which fast-mode shortcuts a scan took: binary files not diffed, oversized files counted
+ * whole, and commits where rename detection hit its limit and fell back to add/delete pairs.
+ */
+public record ScanShortcuts(long binaryFiles, long oversizedFiles, long renameLimitCommits) {
+
+    public static ScanShortcuts sum(Collection<CommitStats> stats) {
+        long binary = 0;
+        long oversized = 0;
+        long renameLimit = 0;
+        for (CommitStats s : stats) {
+            binary += s.binaryFiles();
+            oversized += s.oversizedFiles();
+            if (s.renameLimitExceeded()) renameLimit++;
+        }
+        return new ScanShortcuts(binary, oversized, renameLimit);
+    }
+
+    public void applyTo(RepositoryChange change) {
+        change.setBinaryFiles(binaryFiles);
+        change.setOversizedFiles(oversizedFiles);
+        change.setRenameLimitCommits(renameLimitCommits);
+    }
+}
@@ -0,0 +1,122 @@
+package com.githubchangesfrequency.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Phase timings of one scan, taken from the phase callbacks the scan already makes. The time
+ * before the first callback (lease and lock waits, freshness check) is the "open" phase; each
+ * phase runs until the next one starts. Every phase is recorded to {@code gcf.scan.phase} as it
+ * ends and kept for {@link #applyTo}, which stores the breakdown on the scan's result.
+ *
+ * Phase callbacks come from the scanning thread only; the diff callbacks may come from any
+ * diff worker and go straight to thread-safe counters.
+ */
+public class ScanTimer implements ScanProgressListener {
+
+    private final ScanMetrics metrics;
+    private final Tags tags;
+    private final ScanProgressListener delegate;
+    private final Counter commits;
+    private final Counter diffEntries;
+    private final Timer treeDiff;
+
+    private final long start = System.nanoTime();
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+    private String phase = "open";
+    private long phaseStart = start;
+    private boolean finished;
+
+    ScanTimer(ScanMetrics metrics, Tags tags, ScanProgressListener delegate) {
+        this.metrics = metrics;
+        this.tags = tags;
+        this.delegate = delegate;
+        this.commits = metrics.counter("gcf.scan.commits", "Commits counted by scans, diffed or read from the index", tags);
+        this.diffEntries = metrics.counter("gcf.scan.diff.entries", "Changed files found by tree diffs", tags);
+        this.treeDiff = metrics.timer("gcf.scan.tree.diff", "Tree diff and rename detection, summed over diff workers", tags);
+    }
+
+    @Override
+    public void onPhase(String next) {
+        endPhase(System.nanoTime());
+        phase = next;
+        delegate.onPhase(next);
+    }
+
+    @Override
+    public void onCommitsFound(int count) {
+        delegate.onCommitsFound(count);
+    }
+
+    @Override
+    public void onCommitsDiffed(int count, long linesAdded, long linesDeleted) {
+        commits.increment(count);
+        delegate.onCommitsDiffed(count, linesAdded, linesDeleted);
+    }
+
+    @Override
+    public void onDiffEntries(int entries, long treeDiffNanos) {
+        diffEntries.increment(entries);
+        treeDiff.record(treeDiffNanos, TimeUnit.NANOSECONDS);
+        delegate.onDiffEntries(entries, treeDiffNanos);
+    }
+
+    /**
+     * Milliseconds per phase so far, in the order the phases ran; the current phase counts up
+     * to now.
+     */
+    public Map<String, Long> phaseMillis() {
+        long now = System.nanoTime();
+        Map<String, Long> millis = new LinkedHashMap<>();
+        phaseNanos.forEach((p, nanos) -> millis.put(p, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        if (!finished) {
+            millis.merge(phase, TimeUnit.NANOSECONDS.toMillis(now - phaseStart), Long::sum);
+        }
+        return millis;
+    }
+
+    /**
+     * Store the breakdown so far on the result about to be saved: the save itself is only in
+     * the metrics.
+     */
+    public void applyTo(RepositoryChange change) {
+        StringJoiner joined = new StringJoiner(",");
+        phaseMillis().forEach((p, ms) -> joined.add(p + "=" + ms));
+        change.setPhaseMillis(joined.toString());
+        change.setScanMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * End the last phase and record the whole scan with its outcome (e.g. saved, unchanged,
+     * failed). Later calls are ignored.
+     */
+    public void finish(String outcome) {
+        if (finished) {
+            return;
+        }
+        long now = System.nanoTime();
+        endPhase(now);
+        finished = true;
+        metrics.timer("gcf.scan", "Scan duration", tags.and("outcome", outcome))
+                .record(now - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void endPhase(long now) {
+        if (finished) {
+            return;
+        }
+        long nanos = now - phaseStart;
+        phaseNanos.merge(phase, nanos, Long::sum);
+        metrics.timer("gcf.scan.phase", "Scan phase duration", tags.and("phase", phase))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        phaseStart = now;
+    }
+}
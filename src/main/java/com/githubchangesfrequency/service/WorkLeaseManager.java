@@ -0,0 +1,372 @@
+package com.githubchangesfrequency.service;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.githubchangesfrequency.domain.WorkLease;
+
+/**
+ * Leases in the work_lease table, so that several instances sharing the database scan each repo
+ * on one node at a time. A node claims a repo with a conditional update that only matches an
+ * expired row (or inserts the first row), renews what it holds every {@code git.lease.heartbeat}
+ * and releases when done; a node that dies loses its leases after {@code git.lease.ttl}, and the
+ * next claim takes them over. Every claim bumps the row's fencing token, and renew/release only
+ * match the token they claimed, so a node that lost a lease cannot touch its successor's.
+ *
+ * Within one node leases are shared: a repo held for a background refresh can still be scanned
+ * by an API request on the same node (the clone locks order the two locally).
+ *
+ * {@link #tryClaim} is for background work: it never waits, and for {@code git.lease.affinity}
+ * after a release it leaves the repo to the node that had it, which has the mirror on disk.
+ * {@link #acquire} is for requested scans: it ignores affinity and waits up to
+ * {@code git.lease.waitTimeout} for the holder to finish.
+ *
+ * Expiry is compared against each node's clock, so the ttl must be well above clock skew.
+ * Every statement runs in its own transaction, never in the caller's: a lease has to be
+ * visible to the other nodes as soon as it is taken. The one exception is
+ * {@link Lease#fence}, which locks the holder's row inside the caller's write transaction so
+ * that no other node can take the lease over before those writes commit.
+ */
+@Service
+public class WorkLeaseManager {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkLeaseManager.class);
+
+    private static final int LOCK_STRIPES = 64;
+    private static final long MAX_POLL_MILLIS = 2000;
+
+    private static final String CLAIM = "UPDATE work_lease SET owner = ?, fencing_token = fencing_token + 1, "
+            + "acquired_at = ?, heartbeat_at = ?, expires_at = ? "
+            + "WHERE lease_key = ? AND expires_at <= ? AND (owner = ? OR expires_at <= ?)";
+    private static final String INSERT = "INSERT INTO work_lease "
+            + "(lease_key, repo_url, owner, fencing_token, acquired_at, heartbeat_at, expires_at) "
+            + "VALUES (?, ?, ?, 1, ?, ?, ?)";
+    private static final String TOKEN = "SELECT fencing_token FROM work_lease WHERE lease_key = ? AND owner = ?";
+    private static final String FENCE = "SELECT fencing_token FROM work_lease "
+            + "WHERE lease_key = ? AND owner = ? AND fencing_token = ? FOR UPDATE";
+    private static final String RENEW = "UPDATE work_lease SET heartbeat_at = ?, expires_at = ? "
+            + "WHERE lease_key = ? AND owner = ? AND fencing_token = ?";
+    private static final String RELEASE = "UPDATE work_lease SET expires_at = ? "
+            + "WHERE lease_key = ? AND owner = ? AND fencing_token = ?";
+    private static final String OWNER = "SELECT owner FROM work_lease WHERE lease_key = ?";
+    private static final String LIST = "SELECT lease_key, repo_url, owner, fencing_token, acquired_at, heartbeat_at, "
+            + "expires_at FROM work_lease WHERE expires_at > ? ORDER BY repo_url";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate leaseTx;
+    private final boolean enabled;
+    private final String nodeId;
+    private final Duration ttl;
+    private final Duration affinity;
+    private final Duration waitTimeout;
+
+    // leases this node holds, by lease key
+    private final Map<String, Held> held = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+
+    public WorkLeaseManager(JdbcTemplate jdbc,
+                            PlatformTransactionManager txManager,
+                            @Value("${git.lease.enabled:true}") boolean enabled,
+                            @Value("${git.lease.nodeId:}") String nodeId,
+                            @Value("${git.lease.ttl:PT2M}") Duration ttl,
+                            @Value("${git.lease.affinity:PT30M}") Duration affinity,
+                            @Value("${git.lease.waitTimeout:PT15M}") Duration waitTimeout) {
+        this.jdbc = jdbc;
+        this.enabled = enabled;
+        if (enabled) {
+            this.leaseTx = new TransactionTemplate(txManager);
+            this.leaseTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        } else {
+            this.leaseTx = null;
+        }
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.ttl = ttl;
+        this.affinity = affinity;
+        this.waitTimeout = waitTimeout;
+        for (int i = 0; i < LOCK_STRIPES; i++) stripes[i] = new Object();
+    }
+
+    /**
+     * Leasing switched off: every claim succeeds at once. For a single instance, and for
+     * callers wired up outside Spring.
+     */
+    public static WorkLeaseManager disabled() {
+        return new WorkLeaseManager(null, null, false, "local", Duration.ZERO, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * Hold on a repo; closing it releases the lease once no one on this node holds it. Closed
+     * inside a transaction, the release waits until that transaction has completed.
+     */
+    public interface Lease extends AutoCloseable {
+        /** True once a heartbeat found the lease taken over (it expired first). */
+        boolean isLost();
+
+        /**
+         * Check that this node still holds the lease with the token it claimed, before writing
+         * results. Inside a transaction the lease row stays locked until it completes, so a
+         * takeover waits for those writes to commit.
+         *
+         * @throws IllegalStateException if the lease was taken over by another node
+         */
+        void fence();
+
+        @Override
+        void close();
+    }
+
+    private static final Lease UNLEASED = new Lease() {
+        @Override
+        public boolean isLost() {
+            return false;
+        }
+
+        @Override
+        public void fence() {}
+
+        @Override
+        public void close() {}
+    };
+
+    private static final class Held {
+        final String key;
+        final String repoUrl;
+        final long token;
+        int holders = 1;
+        volatile boolean lost;
+
+        Held(String key, String repoUrl, long token) {
+            this.key = key;
+            this.repoUrl = repoUrl;
+            this.token = token;
+        }
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Claim the repo for background work if no other node holds it (or had it within the
+     * affinity window); null otherwise.
+     */
+    public Lease tryClaim(String repoUrl) {
+        return claim(repoUrl, affinity);
+    }
+
+    /**
+     * Claim the repo for a requested scan, waiting while another node holds it.
+     *
+     * @throws IllegalStateException if it is still held after {@code git.lease.waitTimeout}
+     */
+    public Lease acquire(String repoUrl) throws InterruptedException {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        long pause = 100;
+        while (true) {
+            Lease lease = claim(repoUrl, Duration.ZERO);
+            if (lease != null) {
+                return lease;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                throw new IllegalStateException("Repository is being scanned by node " + owner(key(repoUrl))
+                        + ", still busy after " + waitTimeout);
+            }
+            Thread.sleep(pause);
+            pause = Math.min(pause * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    private Lease claim(String repoUrl, Duration affinityWindow) {
+        if (!enabled) {
+            return UNLEASED;
+        }
+        String key = key(repoUrl);
+        synchronized (stripe(key)) {
+            Held h = held.get(key);
+            if (h != null && !h.lost) {
+                h.holders++;
+                return lease(h);
+            }
+            Long token = claimRow(key, repoUrl, affinityWindow);
+            if (token == null) {
+                return null;
+            }
+            h = new Held(key, repoUrl, token);
+            held.put(key, h);
+            return lease(h);
+        }
+    }
+
+    private Long claimRow(String key, String repoUrl, Duration affinityWindow) {
+        Instant now = Instant.now();
+        Timestamp nowTs = Timestamp.from(now);
+        Timestamp expires = Timestamp.from(now.plus(ttl));
+        try {
+            return leaseTx.execute(status -> {
+                int updated = jdbc.update(CLAIM, nodeId, nowTs, nowTs, expires, key, nowTs, nodeId,
+                        Timestamp.from(now.minus(affinityWindow)));
+                if (updated == 0) {
+                    jdbc.update(INSERT, key, repoUrl, nodeId, nowTs, nowTs, expires);
+                }
+                return jdbc.queryForObject(TOKEN, Long.class, key, nodeId);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // the row exists and is held (or was inserted by another node just now)
+            return null;
+        }
+    }
+
+    private Lease lease(Held h) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return new Lease() {
+            @Override
+            public boolean isLost() {
+                return h.lost;
+            }
+
+            @Override
+            public void fence() {
+                if (!h.lost && jdbc.queryForList(FENCE, Long.class, h.key, nodeId, h.token).isEmpty()) {
+                    h.lost = true;
+                    held.remove(h.key, h);
+                }
+                if (h.lost) {
+                    throw new IllegalStateException("Lease on " + h.repoUrl + " was taken over by node "
+                            + owner(h.key) + " after it expired");
+                }
+            }
+
+            @Override
+            public void close() {
+                if (!closed.compareAndSet(false, true)) {
+                    return;
+                }
+                if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                    // the next holder must see what this one wrote: release once it is committed
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(int status) {
+                            release(h);
+                        }
+                    });
+                } else {
+                    release(h);
+                }
+            }
+        };
+    }
+
+    private void release(Held h) {
+        synchronized (stripe(h.key)) {
+            if (--h.holders > 0) {
+                return;
+            }
+            held.remove(h.key, h);
+            if (h.lost) {
+                return;
+            }
+            try {
+                leaseTx.executeWithoutResult(status ->
+                        jdbc.update(RELEASE, Timestamp.from(Instant.now()), h.key, nodeId, h.token));
+            } catch (DataAccessException e) {
+                // the lease then runs out after the ttl
+                log.warn("Releasing the lease on {} failed: {}", h.repoUrl, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Extend every lease this node holds. A lease that no longer matches was taken over after
+     * it expired; it is dropped and marked lost.
+     */
+    @Scheduled(fixedDelayString = "${git.lease.heartbeat:PT20S}", initialDelayString = "${git.lease.heartbeat:PT20S}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        for (Held h : List.copyOf(held.values())) {
+            Instant now = Instant.now();
+            try {
+                Integer renewed = leaseTx.execute(status -> jdbc.update(RENEW, Timestamp.from(now),
+                        Timestamp.from(now.plus(ttl)), h.key, nodeId, h.token));
+                if (renewed != null && renewed == 0) {
+                    h.lost = true;
+                    held.remove(h.key, h);
+                    log.warn("Lease on {} was taken over by another node after it expired", h.repoUrl);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Renewing the lease on {} failed: {}", h.repoUrl, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Leases currently held by any node.
+     */
+    public List<WorkLease> activeLeases() {
+        if (!enabled) {
+            return List.of();
+        }
+        return jdbc.query(LIST, (rs, i) -> new WorkLease(rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getLong(4), instant(rs.getTimestamp(5)), instant(rs.getTimestamp(6)), instant(rs.getTimestamp(7))),
+                Timestamp.from(Instant.now()));
+    }
+
+    private String owner(String key) {
+        List<String> owners = jdbc.queryForList(OWNER, String.class, key);
+        return owners.isEmpty() ? "?" : owners.get(0);
+    }
+
+    private Object stripe(String key) {
+        return stripes[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+
+    static String key(String repoUrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(repoUrl.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Instant instant(Timestamp ts) {
+        return ts != null ? ts.toInstant() : null;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        // a restarted node must not inherit the leases of its previous run
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
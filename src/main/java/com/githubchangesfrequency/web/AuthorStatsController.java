@@ -0,0 +1,49 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.domain.RollupGranularity;
+import com.githubchangesfrequency.service.AuthorStatsService;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+@RestController
+@RequestMapping("/api/authors")
+public class AuthorStatsController {
+
+    private final AuthorStatsService authorStats;
+    private final ScanOptionsResolver optionsResolver;
+
+    public AuthorStatsController(AuthorStatsService authorStats, ScanOptionsResolver optionsResolver) {
+        this.authorStats = authorStats;
+        this.optionsResolver = optionsResolver;
+    }
+
+    /**
+     * e.g. GET /api/authors/activity?repoUrl=...&branch=main&granularity=MONTH&from=2022-01-01&limit=50
+     * The range defaults to the last year.
+     */
+    @GetMapping("/activity")
+    public ResponseEntity<?> activity(@RequestParam String repoUrl, @RequestParam String branch,
+            @RequestParam(defaultValue = "MONTH") RollupGranularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "100") int limit,
+            ScanParams params) {
+        try {
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be positive");
+            }
+            ScanOptions options = optionsResolver.resolve(repoUrl, params.toOptions());
+            LocalDate end = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+            LocalDate start = from != null ? from : end.minusYears(1);
+            return ResponseEntity.ok(authorStats.activity(repoUrl, branch, options, granularity, start, end, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.BulkScan;
+import com.githubchangesfrequency.service.BulkScanItem;
+import com.githubchangesfrequency.service.BulkScanResult;
+import com.githubchangesfrequency.service.BulkScanService;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/scan")
+public class BulkScanController {
+
+    private final BulkScanService bulkScanner;
+    private final ScanOptionsResolver optionsResolver;
+    private final JsonMapper jsonMapper;
+
+    public BulkScanController(BulkScanService bulkScanner, ScanOptionsResolver optionsResolver, JsonMapper jsonMapper) {
+        this.bulkScanner = bulkScanner;
+        this.optionsResolver = optionsResolver;
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * e.g. POST /api/scan/bulk with [{"repoUrl": "...", "branch": "main"}, ...]. Streams one
+     * NDJSON line per item as it finishes, then a last line with the batch report. If the client
+     * disconnects, items not started yet are cancelled.
+     */
+    @PostMapping(value = "/bulk", produces = ScanStreamController.NDJSON)
+    public ResponseEntity<?> bulkScan(@RequestBody List<BulkScanItem> items, ScanParams params) {
+        BulkScan batch;
+        try {
+            batch = bulkScanner.submit(items, repoUrl -> optionsResolver.resolve(repoUrl, params.toOptions()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Bulk scan queue is full, retry later");
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                BulkScanResult result;
+                while ((result = batch.next()) != null) {
+                    writeLine(out, result);
+                }
+                writeLine(out, batch.report());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.cancel();
+            } catch (IOException e) {
+                batch.cancel();
+                throw e;
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(ScanStreamController.NDJSON)).body(body);
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(jsonMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
+}
@@ -0,0 +1,46 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.domain.RollupGranularity;
+import com.githubchangesfrequency.service.ChangeFrequencyService;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+@RestController
+@RequestMapping("/api/changes")
+public class ChangeFrequencyController {
+
+    private final ChangeFrequencyService frequencyService;
+    private final ScanOptionsResolver optionsResolver;
+
+    public ChangeFrequencyController(ChangeFrequencyService frequencyService, ScanOptionsResolver optionsResolver) {
+        this.frequencyService = frequencyService;
+        this.optionsResolver = optionsResolver;
+    }
+
+    /**
+     * e.g. GET /api/changes/frequency?repoUrl=...&granularity=WEEK&from=2024-01-01&to=2024-06-30
+     * Scan parameters select the same diff profile the commits were scanned with; the range
+     * defaults to the last year.
+     */
+    @GetMapping("/frequency")
+    public ResponseEntity<?> frequency(@RequestParam String repoUrl,
+            @RequestParam(defaultValue = "DAY") RollupGranularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            ScanParams params) {
+        try {
+            ScanOptions options = optionsResolver.resolve(repoUrl, params.toOptions());
+            LocalDate end = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+            LocalDate start = from != null ? from : end.minusYears(1);
+            return ResponseEntity.ok(frequencyService.frequency(repoUrl, options, granularity, start, end));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.ChurnEntry;
+import com.githubchangesfrequency.service.ChurnIndexService;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/churn")
+public class ChurnController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final ChurnIndexService churnIndex;
+    private final ScanOptionsResolver optionsResolver;
+
+    public ChurnController(ChurnIndexService churnIndex, ScanOptionsResolver optionsResolver) {
+        this.churnIndex = churnIndex;
+        this.optionsResolver = optionsResolver;
+    }
+
+    /**
+     * e.g. GET /api/churn/top?repoUrl=...&branch=main&kind=DIRECTORY&order=LINES&limit=20
+     * Served from the index kept by incremental scans; 404 until the branch has been scanned.
+     */
+    @GetMapping("/top")
+    public ResponseEntity<?> top(@RequestParam String repoUrl, @RequestParam String branch,
+            @RequestParam(defaultValue = "FILE") ChurnEntry.Kind kind,
+            @RequestParam(defaultValue = "CHANGES") ChurnEntry.Order order,
+            @RequestParam(defaultValue = "20") int limit,
+            ScanParams params) {
+        try {
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+            }
+            ScanOptions options = optionsResolver.resolve(repoUrl, params.toOptions());
+            return churnIndex.top(repoUrl, branch, options, kind, order, limit)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                            .body("No churn index yet for " + branch + "; run an incremental scan first"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Churn lookup failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.CloneCacheManager;
+import com.githubchangesfrequency.service.CloneCacheStatus;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/clones")
+public class CloneCacheController {
+
+    private final CloneCacheManager cacheManager;
+
+    public CloneCacheController(CloneCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @GetMapping
+    public ResponseEntity<CloneCacheStatus> status() {
+        return ResponseEntity.ok(cacheManager.status());
+    }
+
+    /**
+     * Run a sweep (gc, then eviction) now instead of waiting for the schedule.
+     */
+    @PostMapping("/sweep")
+    public ResponseEntity<?> sweep() {
+        if (!cacheManager.requestSweep()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A sweep is already running");
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
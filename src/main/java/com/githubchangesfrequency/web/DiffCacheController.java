@@ -0,0 +1,23 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.BlobDiffCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/diff-cache")
+public class DiffCacheController {
+
+    private final BlobDiffCache diffCache;
+
+    public DiffCacheController(BlobDiffCache diffCache) {
+        this.diffCache = diffCache;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Long>> stats() {
+        return ResponseEntity.ok(diffCache.stats());
+    }
+}
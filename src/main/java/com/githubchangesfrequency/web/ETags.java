@@ -0,0 +1,28 @@
+package com.githubchangesfrequency.web;
+
+/**
+ * Strong ETags derived from a branch tip SHA and, for filtered scans, the options profile.
+ */
+final class ETags {
+
+    private ETags() {}
+
+    static String forTip(String tipSha, String profile) {
+        if (tipSha == null) return null;
+        return "\"" + (profile == null ? tipSha : tipSha + "-" + profile) + "\"";
+    }
+
+    /**
+     * True if an If-None-Match header value (a list of tags, possibly weak, or *) matches.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.HistoryExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bulk export of scan results and change history for offline processing. The response is
+ * written while the rows are read, so there is no size limit and no Content-Length. Each export
+ * holds a database connection until its last row is written, so at most
+ * {@code git.export.maxConcurrent} run at a time; another one is refused with 503.
+ */
+@RestController
+@RequestMapping("/api/export")
+public class HistoryExportController {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryExportController.class);
+
+    private final HistoryExportService exportService;
+    private final Semaphore exports;
+
+    public HistoryExportController(HistoryExportService exportService,
+                                   @Value("${git.export.maxConcurrent:4}") int maxConcurrent) {
+        this.exportService = exportService;
+        this.exports = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * e.g. GET /api/export/history?dataset=COMMITS&format=CSV&repoUrl=...&repoUrl=...&from=2024-01-01
+     * No repoUrl exports every repo; from/to are UTC days (both inclusive) on the scan or commit
+     * time. Rows are in id order, so an interrupted export resumes with afterId = the last id read.
+     */
+    @GetMapping("/history")
+    public ResponseEntity<?> history(@RequestParam(defaultValue = "SCANS") HistoryExportService.Dataset dataset,
+            @RequestParam(defaultValue = "NDJSON") HistoryExportService.Format format,
+            @RequestParam(required = false) List<String> repoUrl,
+            @RequestParam(required = false) String branch,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long afterId) {
+        HistoryExportService.Filter filter = new HistoryExportService.Filter(repoUrl, branch,
+                from == null ? null : from.atStartOfDay(ZoneOffset.UTC).toInstant(),
+                to == null ? null : to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant(),
+                afterId);
+        try {
+            exportService.validate(dataset, filter);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        if (!exports.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many exports running, retry later");
+        }
+        // held until the body has been written, on the MVC async thread
+        StreamingResponseBody body = out -> {
+            try {
+                long rows = exportService.export(dataset, filter, format, out);
+                log.debug("Exported {} {} rows", rows, dataset);
+            } finally {
+                exports.release();
+            }
+        };
+        boolean csv = format == HistoryExportService.Format.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType(ScanStreamController.NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + dataset.name().toLowerCase()
+                        + (csv ? ".csv" : ".ndjson") + "\"")
+                .body(body);
+    }
+}
@@ -0,0 +1,46 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.service.MultiBranchScannerService;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import com.githubchangesfrequency.service.ScanProgressListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/scan")
+public class MultiBranchScanController {
+
+    private final MultiBranchScannerService scanner;
+    private final ScanOptionsResolver optionsResolver;
+
+    public MultiBranchScanController(MultiBranchScannerService scanner, ScanOptionsResolver optionsResolver) {
+        this.scanner = scanner;
+        this.optionsResolver = optionsResolver;
+    }
+
+    /**
+     * e.g. POST /api/scan/branches?repoUrl=...&branch=main&branch=develop&refGlob=release/*
+     */
+    @PostMapping("/branches")
+    public ResponseEntity<?> scanBranches(@RequestParam String repoUrl,
+                                          @RequestParam(required = false) List<String> branch,
+                                          @RequestParam(required = false) String refGlob,
+                                          ScanParams params) {
+        if ((branch == null || branch.isEmpty()) && (refGlob == null || refGlob.isBlank())) {
+            return ResponseEntity.badRequest().body("Give at least one branch or a refGlob");
+        }
+        try {
+            ScanOptions options = optionsResolver.resolve(repoUrl, params.toOptions());
+            List<RepositoryChange> result = scanner.scanBranches(repoUrl, branch, refGlob, options, ScanProgressListener.NONE);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Scan failed: " + e.getMessage());
+        }
+    }
+}
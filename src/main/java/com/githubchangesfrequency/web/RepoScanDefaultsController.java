@@ -0,0 +1,35 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/repos/scan-defaults")
+public class RepoScanDefaultsController {
+
+    private final ScanOptionsResolver optionsResolver;
+
+    public RepoScanDefaultsController(ScanOptionsResolver optionsResolver) {
+        this.optionsResolver = optionsResolver;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> get(@RequestParam String repoUrl) {
+        return optionsResolver.findDefaults(repoUrl)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * e.g. PUT /api/repos/scan-defaults?repoUrl=...&exclude=vendor/&exclude=*.lock
+     */
+    @PutMapping
+    public ResponseEntity<?> put(@RequestParam String repoUrl,
+                                 @RequestParam(required = false) List<String> include,
+                                 @RequestParam(required = false) List<String> exclude) {
+        return ResponseEntity.ok(optionsResolver.saveDefaults(repoUrl, include, exclude));
+    }
+}
@@ -3,7 +3,14 @@ package com.githubchangesfrequency.web;
 import com.githubchangesfrequency.domain.RepositoryChange;
 import com.githubchangesfrequency.service.GitChangeScannerService;
 import com.githubchangesfrequency.service.GitChangeScannerServiceIncr;
+import com.githubchangesfrequency.service.MirrorCloneManager;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import com.githubchangesfrequency.service.ScanProgressListener;
 
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -12,16 +19,32 @@ import org.springframework.web.bind.annotation.*;
 public class ScanControllerIncr {
 
     private final GitChangeScannerServiceIncr scanner;
+    private final MirrorCloneManager cloneManager;
+    private final ScanOptionsResolver optionsResolver;
 
-    public ScanControllerIncr(GitChangeScannerServiceIncr scanner) {
+    public ScanControllerIncr(GitChangeScannerServiceIncr scanner, MirrorCloneManager cloneManager,
+            ScanOptionsResolver optionsResolver) {
         this.scanner = scanner;
+        this.cloneManager = cloneManager;
+        this.optionsResolver = optionsResolver;
     }
 
     @PostMapping("/incremental")
-    public ResponseEntity<?> incrementalScan(@RequestParam String repoUrl, @RequestParam String branch) {
+    public ResponseEntity<?> incrementalScan(@RequestParam String repoUrl, @RequestParam String branch,
+            ScanParams params,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            RepositoryChange result = scanner.scanRepositoryIncremental(repoUrl, branch);
-            return ResponseEntity.ok(result);
+            ScanOptions options = optionsResolver.resolve(repoUrl, params.toOptions());
+            // polling clients: answer from the tip alone when it has not moved
+            if (ifNoneMatch != null) {
+                ObjectId tip = cloneManager.resolveTip(repoUrl, branch);
+                String etag = tip != null ? ETags.forTip(tip.getName(), options.profile()) : null;
+                if (ETags.matches(ifNoneMatch, etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                }
+            }
+            RepositoryChange result = scanner.scanRepositoryIncremental(repoUrl, branch, options, ScanProgressListener.NONE);
+            return ResponseEntity.ok().eTag(ETags.forTip(result.getTipCommit(), result.getDiffProfile())).body(result);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
@@ -0,0 +1,45 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.ScanJob;
+import com.githubchangesfrequency.service.ScanJobService;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/scan/jobs")
+public class ScanJobController {
+
+    private final ScanJobService jobService;
+    private final ScanOptionsResolver optionsResolver;
+
+    public ScanJobController(ScanJobService jobService, ScanOptionsResolver optionsResolver) {
+        this.jobService = jobService;
+        this.optionsResolver = optionsResolver;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestParam String repoUrl, @RequestParam String branch,
+                                    @RequestParam(defaultValue = "false") boolean incremental,
+                                    ScanParams params) {
+        try {
+            ScanOptions options = optionsResolver.resolve(repoUrl, params.toOptions());
+            ScanJob job = jobService.submit(incremental ? ScanJob.Kind.INCREMENTAL : ScanJob.Kind.FULL, repoUrl, branch, options);
+            return ResponseEntity.accepted().location(URI.create("/api/scan/jobs/" + job.getId())).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Scan queue is full, retry later");
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> status(@PathVariable String id) {
+        return jobService.find(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,82 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.ScanOptions;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+
+import java.util.List;
+
+/**
+ * Optional scan settings shared by the scan endpoints, bound from request parameters:
+ * {@code include}/{@code exclude} (repeatable globs), {@code skipBinary}, {@code maxBlobSize},
+ * {@code detectRenames}, {@code renameLimit} and {@code diffAlgorithm} (HISTOGRAM or MYERS).
+ */
+public class ScanParams {
+
+    private List<String> include;
+    private List<String> exclude;
+    private boolean skipBinary;
+    private long maxBlobSize;
+    private boolean detectRenames = true;
+    private int renameLimit;
+    private SupportedAlgorithm diffAlgorithm = SupportedAlgorithm.HISTOGRAM;
+
+    public ScanOptions toOptions() {
+        return new ScanOptions(include, exclude, skipBinary, maxBlobSize, detectRenames, renameLimit, diffAlgorithm);
+    }
+
+	public List<String> getInclude() {
+		return include;
+	}
+
+	public void setInclude(List<String> include) {
+		this.include = include;
+	}
+
+	public List<String> getExclude() {
+		return exclude;
+	}
+
+	public void setExclude(List<String> exclude) {
+		this.exclude = exclude;
+	}
+
+	public boolean isSkipBinary() {
+		return skipBinary;
+	}
+
+	public void setSkipBinary(boolean skipBinary) {
+		this.skipBinary = skipBinary;
+	}
+
+	public long getMaxBlobSize() {
+		return maxBlobSize;
+	}
+
+	public void setMaxBlobSize(long maxBlobSize) {
+		this.maxBlobSize = maxBlobSize;
+	}
+
+	public boolean isDetectRenames() {
+		return detectRenames;
+	}
+
+	public void setDetectRenames(boolean detectRenames) {
+		this.detectRenames = detectRenames;
+	}
+
+	public int getRenameLimit() {
+		return renameLimit;
+	}
+
+	public void setRenameLimit(int renameLimit) {
+		this.renameLimit = renameLimit;
+	}
+
+	public SupportedAlgorithm getDiffAlgorithm() {
+		return diffAlgorithm;
+	}
+
+	public void setDiffAlgorithm(SupportedAlgorithm diffAlgorithm) {
+		this.diffAlgorithm = diffAlgorithm;
+	}
+}
@@ -0,0 +1,19 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.ScanJob;
+
+/**
+ * One sample of a running scan as streamed by {@link ScanStreamController}.
+ * {@code commitsPerSec} is the rate over the last sampling interval.
+ */
+public record ScanProgressEvent(String jobId, ScanJob.Status status, String phase,
+                                int commitsTotal, long commitsProcessed,
+                                long linesAdded, long linesDeleted, double commitsPerSec) {
+
+    static ScanProgressEvent sample(ScanJob job, long previousProcessed, long intervalMillis) {
+        long processed = job.getCommitsProcessed();
+        double rate = intervalMillis > 0 ? (processed - previousProcessed) * 1000.0 / intervalMillis : 0;
+        return new ScanProgressEvent(job.getId(), job.getStatus(), job.getPhase(),
+                job.getCommitsTotal(), processed, job.getLinesAdded(), job.getLinesDeleted(), rate);
+    }
+}
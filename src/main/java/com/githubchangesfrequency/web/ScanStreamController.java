@@ -0,0 +1,167 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.ScanJob;
+import com.githubchangesfrequency.service.ScanJobService;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a scan's progress while it runs. The scan itself is an ordinary {@link ScanJob}, so a
+ * stream for a repo/branch that is already being scanned follows the existing job. A progress
+ * event is sent every {@code git.stream.interval}, then one final "summary" event with the job.
+ */
+@RestController
+@RequestMapping("/api/scan")
+public class ScanStreamController {
+
+    public static final String NDJSON = "application/x-ndjson";
+    private static final MediaType NDJSON_TYPE = MediaType.parseMediaType(NDJSON);
+
+    private final ScanJobService jobService;
+    private final ScanOptionsResolver optionsResolver;
+    private final JsonMapper jsonMapper;
+    private final Duration interval;
+    private final ThreadPoolExecutor streamSenders;
+
+    public ScanStreamController(ScanJobService jobService,
+                                ScanOptionsResolver optionsResolver,
+                                JsonMapper jsonMapper,
+                                @Value("${git.stream.interval:PT1S}") Duration interval,
+                                @Value("${git.stream.maxStreams:64}") int maxStreams) {
+        this.jobService = jobService;
+        this.optionsResolver = optionsResolver;
+        this.jsonMapper = jsonMapper;
+        this.interval = interval;
+        // one sampling thread per open SSE or NDJSON stream; no queue, so an over-limit stream is refused
+        this.streamSenders = new ThreadPoolExecutor(0, maxStreams, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "scan-stream");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamEvents(@RequestParam String repoUrl, @RequestParam String branch,
+                                          @RequestParam(defaultValue = "false") boolean incremental,
+                                          ScanParams params) {
+        ScanJob job;
+        try {
+            job = submit(repoUrl, branch, incremental, params);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Scan queue is full, retry later");
+        }
+
+        SseEmitter emitter = new SseEmitter(0L);
+        try {
+            Future<?> sender = streamSenders.submit(() -> {
+                try {
+                    follow(job, event -> emitter.send(SseEmitter.event().name("progress").data(event, MediaType.APPLICATION_JSON)));
+                    emitter.send(SseEmitter.event().name("summary").data(job, MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (IOException | RuntimeException e) {
+                    // client went away (IllegalStateException once the container has completed the emitter);
+                    // the job keeps running and stays queryable
+                    emitter.completeWithError(e);
+                } catch (InterruptedException e) {
+                    // cancelled: the stream has already ended, or the application is shutting down
+                    Thread.currentThread().interrupt();
+                }
+            });
+            stopOnCompletion(emitter, sender);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many open streams, poll /api/scan/jobs/" + job.getId());
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @PostMapping(value = "/stream", produces = NDJSON)
+    public ResponseEntity<?> streamNdjson(@RequestParam String repoUrl, @RequestParam String branch,
+                                          @RequestParam(defaultValue = "false") boolean incremental,
+                                          ScanParams params) {
+        ScanJob job;
+        try {
+            job = submit(repoUrl, branch, incremental, params);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Scan queue is full, retry later");
+        }
+
+        // same sender pool and limit as SSE; the MVC async executor is not bounded by maxStreams
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+        try {
+            Future<?> sender = streamSenders.submit(() -> {
+                try {
+                    follow(job, event -> emitter.send(line(event), NDJSON_TYPE));
+                    emitter.send(line(job), NDJSON_TYPE);
+                    emitter.complete();
+                } catch (IOException | RuntimeException e) {
+                    emitter.completeWithError(e);
+                } catch (InterruptedException e) {
+                    // cancelled: the stream has already ended, or the application is shutting down
+                    Thread.currentThread().interrupt();
+                }
+            });
+            stopOnCompletion(emitter, sender);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many open streams, poll /api/scan/jobs/" + job.getId());
+        }
+        return ResponseEntity.ok().contentType(NDJSON_TYPE).body(emitter);
+    }
+
+    private ScanJob submit(String repoUrl, String branch, boolean incremental, ScanParams params) {
+        return jobService.submit(incremental ? ScanJob.Kind.INCREMENTAL : ScanJob.Kind.FULL, repoUrl, branch,
+                optionsResolver.resolve(repoUrl, params.toOptions()));
+    }
+
+    // a stream the container ended (client gone, request failed) frees its sender thread right away
+    // instead of sampling until the next send fails; after our own complete() this is a no-op
+    private static void stopOnCompletion(ResponseBodyEmitter emitter, Future<?> sender) {
+        emitter.onError(e -> sender.cancel(true));
+        emitter.onCompletion(() -> sender.cancel(true));
+    }
+
+    private void follow(ScanJob job, ProgressSink sink) throws IOException, InterruptedException {
+        long intervalMillis = interval.toMillis();
+        long previous = job.getCommitsProcessed();
+        while (!job.isFinished()) {
+            Thread.sleep(intervalMillis);
+            ScanProgressEvent event = ScanProgressEvent.sample(job, previous, intervalMillis);
+            previous = event.commitsProcessed();
+            sink.send(event);
+        }
+    }
+
+    // written as is by the byte array converter, so every event is one line
+    private byte[] line(Object value) {
+        byte[] json = jsonMapper.writeValueAsBytes(value);
+        byte[] line = Arrays.copyOf(json, json.length + 1);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    @FunctionalInterface
+    private interface ProgressSink {
+        void send(ScanProgressEvent event) throws IOException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamSenders.shutdownNow();
+    }
+}
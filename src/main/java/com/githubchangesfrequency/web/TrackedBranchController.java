@@ -0,0 +1,37 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.service.RepositoryRefreshService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/tracked-branches")
+public class TrackedBranchController {
+
+    private final RepositoryRefreshService refreshService;
+
+    public TrackedBranchController(RepositoryRefreshService refreshService) {
+        this.refreshService = refreshService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> list(@RequestParam(required = false) String repoUrl) {
+        return ResponseEntity.ok(refreshService.tracked(repoUrl));
+    }
+
+    /**
+     * e.g. PUT /api/tracked-branches?repoUrl=...&branch=main
+     * The branch is then fetched and scanned in the background whenever its remote tip moves.
+     */
+    @PutMapping
+    public ResponseEntity<?> track(@RequestParam String repoUrl, @RequestParam String branch) {
+        return ResponseEntity.ok(refreshService.track(repoUrl, branch));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<?> untrack(@RequestParam String repoUrl, @RequestParam String branch) {
+        return refreshService.untrack(repoUrl, branch)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.githubchangesfrequency.web;
+
+import com.githubchangesfrequency.domain.WorkLease;
+import com.githubchangesfrequency.service.WorkLeaseManager;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/leases")
+public class WorkLeaseController {
+
+    private final WorkLeaseManager leases;
+
+    public WorkLeaseController(WorkLeaseManager leases) {
+        this.leases = leases;
+    }
+
+    /**
+     * Repos being scanned or refreshed right now, and by which node (see X-Node for this one).
+     */
+    @GetMapping
+    public ResponseEntity<?> active() {
+        try {
+            List<WorkLease> active = leases.activeLeases();
+            return ResponseEntity.ok().header("X-Node", leases.nodeId()).body(active);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Listing leases failed: " + e.getMessage());
+        }
+    }
+}
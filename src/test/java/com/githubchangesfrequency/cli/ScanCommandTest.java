@@ -0,0 +1,139 @@
+package com.githubchangesfrequency.cli;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import tools.jackson.databind.json.JsonMapper;
+
+import com.githubchangesfrequency.GithubchangesfrequencyApplication;
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.service.GitChangeScannerService;
+import com.githubchangesfrequency.service.ScanOptions;
+
+class ScanCommandTest {
+
+    @TempDir
+    Path tmp;
+
+    private final PrintStream stdout = System.out;
+    private final PrintStream stderr = System.err;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private GitChangeScannerService scanner;
+    private ScanCommand command;
+
+    @BeforeEach
+    void setUp() {
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        scanner = mock(GitChangeScannerService.class);
+        command = new ScanCommand(scanner, JsonMapper.builder().build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.setOut(stdout);
+        System.setErr(stderr);
+    }
+
+    private int run(String... args) {
+        command.run(new DefaultApplicationArguments(args));
+        return command.getExitCode();
+    }
+
+    @Test
+    void scansTheCheckedOutHeadWithTheGivenOptionsAndPrintsTheResult() throws Exception {
+        RepositoryChange change = new RepositoryChange(tmp.toString(), "HEAD", 12, 3, Instant.parse("2024-03-01T00:00:00Z"));
+        when(scanner.scanRepository(anyString(), anyString(), any(), any())).thenReturn(change);
+
+        int exit = run("scan", tmp + "/./", "--include=src/**", "--include=*.java", "--exclude=docs/**", "--skipBinary",
+                "--maxBlobSize=1024", "--detectRenames=false", "--renameLimit=5", "--diffAlgorithm=myers");
+
+        assertThat(exit).isZero();
+        ScanOptions options = new ScanOptions(List.of("src/**", "*.java"), List.of("docs/**"), true, 1024, false, 5,
+                SupportedAlgorithm.MYERS);
+        verify(scanner).scanRepository(eq(tmp.toString()), eq("HEAD"), eq(options), any());
+        assertThat(out.toString(StandardCharsets.UTF_8)).startsWith("{").contains("\"linesAdded\":12").endsWith("}\n");
+    }
+
+    @Test
+    void branchAndDefaultsAreTakenFromTheArguments() throws Exception {
+        when(scanner.scanRepository(anyString(), anyString(), any(), any())).thenReturn(new RepositoryChange());
+
+        assertThat(run("scan", "https://example.com/a.git", "--branch=dev")).isZero();
+
+        verify(scanner).scanRepository(eq("https://example.com/a.git"), eq("dev"), eq(ScanOptions.DEFAULT), any());
+    }
+
+    @Test
+    void badArgumentsExitWithTwoWithoutScanning() throws Exception {
+        assertThat(run("scan")).isEqualTo(2);
+        assertThat(run("status", tmp.toString())).isEqualTo(2);
+        assertThat(run("scan", tmp.toString(), "--renameLimit=many")).isEqualTo(2);
+        assertThat(run("scan", tmp.toString(), "--diffAlgorithm=patience")).isEqualTo(2);
+
+        verify(scanner, never()).scanRepository(anyString(), anyString(), any(), any());
+        assertThat(err.toString(StandardCharsets.UTF_8)).contains("Usage: scan").contains("Not a number");
+        assertThat(out.size()).isZero();
+    }
+
+    @Test
+    void failedScanExitsWithOne() throws Exception {
+        when(scanner.scanRepository(anyString(), anyString(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Branch not found: HEAD"));
+
+        assertThat(run("scan", tmp.toString())).isEqualTo(1);
+
+        assertThat(err.toString(StandardCharsets.UTF_8)).contains("Scan failed: Branch not found: HEAD");
+        assertThat(out.size()).isZero();
+    }
+
+    @Test
+    void scansACheckoutWithoutADatabase() throws Exception {
+        Path checkout = tmp.resolve("checkout");
+        try (Git git = Git.init().setDirectory(checkout.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(checkout.resolve("a.txt"), "one\ntwo\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("first").setAuthor("Dev", "dev@example.com").setCommitter("Dev", "dev@example.com").call();
+            Files.writeString(checkout.resolve("a.txt"), "one\n2\nthree\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("second").setAuthor("Dev", "dev@example.com").setCommitter("Dev", "dev@example.com").call();
+        }
+
+        // as main() runs it; no MySQL, no H2 url, and nothing in the context that needs one
+        SpringApplication app = new SpringApplication(GithubchangesfrequencyApplication.class);
+        app.setAdditionalProfiles(ScanCommand.PROFILE);
+        ConfigurableApplicationContext context = app.run("scan", checkout.toString(),
+                "--git.local.cloneBase=" + tmp.resolve("clones"));
+        assertThat(context.getBeanNamesForType(DataSource.class)).isEmpty();
+        assertThat(SpringApplication.exit(context)).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8)).contains("\"linesAdded\":4").contains("\"linesDeleted\":1");
+    }
+}
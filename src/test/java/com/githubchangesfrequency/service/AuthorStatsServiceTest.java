@@ -0,0 +1,225 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.githubchangesfrequency.domain.AuthorIdentity;
+import com.githubchangesfrequency.domain.AuthorRollup;
+import com.githubchangesfrequency.domain.AuthorRollupState;
+import com.githubchangesfrequency.domain.RollupGranularity;
+import com.githubchangesfrequency.repository.AuthorIdentityRepository;
+import com.githubchangesfrequency.repository.AuthorRollupRepository;
+import com.githubchangesfrequency.repository.AuthorRollupStateRepository;
+import com.githubchangesfrequency.repository.CommitDiffStatRepository;
+
+class AuthorStatsServiceTest {
+
+    private static final String REPO = "https://example.com/repo.git";
+    private static final LocalDate JAN = LocalDate.of(2024, 1, 1); // a Monday
+    private static final LocalDate FEB = LocalDate.of(2024, 2, 1);
+
+    @TempDir
+    Path tmp;
+
+    // the three tables, in memory
+    private final List<AuthorRollup> rollups = new ArrayList<>();
+    private final Map<String, AuthorRollupState> states = new HashMap<>();
+    private final Map<String, AuthorIdentity> identities = new HashMap<>();
+
+    private final AuthorRollupRepository rollupRepo = mock(AuthorRollupRepository.class);
+    private final AuthorRollupStateRepository stateRepo = mock(AuthorRollupStateRepository.class);
+    private final AuthorIdentityRepository authorRepo = mock(AuthorIdentityRepository.class);
+    private final CommitDiffStatRepository statRepo = mock(CommitDiffStatRepository.class);
+
+    private CommitDiffEngine engine;
+    private AuthorStatsService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(rollupRepo.findByRepoUrlAndBranchNameAndDiffProfileAndGranularityAndBucketStartIn(
+                anyString(), anyString(), any(), any(), any())).thenAnswer(inv -> rollups.stream()
+                        .filter(r -> isOf(r, inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)))
+                        .filter(r -> r.getGranularity() == inv.getArgument(3)
+                                && inv.<Collection<LocalDate>>getArgument(4).contains(r.getBucketStart()))
+                        .toList());
+        when(rollupRepo.findByRepoUrlAndBranchNameAndDiffProfileAndGranularityAndBucketStartBetween(
+                anyString(), anyString(), any(), any(), any(), any())).thenAnswer(inv -> rollups.stream()
+                        .filter(r -> isOf(r, inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)))
+                        .filter(r -> r.getGranularity() == inv.getArgument(3)
+                                && !r.getBucketStart().isBefore(inv.getArgument(4))
+                                && !r.getBucketStart().isAfter(inv.getArgument(5)))
+                        .toList());
+        when(rollupRepo.saveAll(anyIterable())).thenAnswer(inv -> {
+            for (AuthorRollup r : inv.<Iterable<AuthorRollup>>getArgument(0)) {
+                if (rollups.stream().noneMatch(existing -> existing == r)) rollups.add(r);
+            }
+            return null;
+        });
+        when(rollupRepo.deleteBranch(anyString(), anyString(), any())).thenAnswer(inv -> {
+            int before = rollups.size();
+            rollups.removeIf(r -> isOf(r, inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)));
+            return before - rollups.size();
+        });
+
+        when(stateRepo.findByRepoUrlAndBranchNameAndDiffProfile(anyString(), anyString(), any()))
+                .thenAnswer(inv -> Optional.ofNullable(states.get(stateKey(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)))));
+        when(stateRepo.save(any())).thenAnswer(inv -> {
+            AuthorRollupState s = inv.getArgument(0);
+            states.put(stateKey(s.getRepoUrl(), s.getBranchName(), s.getDiffProfile()), s);
+            return s;
+        });
+
+        when(authorRepo.findByEmailIn(any())).thenAnswer(inv -> inv.<Collection<String>>getArgument(0).stream()
+                .filter(identities::containsKey).map(identities::get).toList());
+        when(authorRepo.saveAll(anyIterable())).thenAnswer(inv -> {
+            List<AuthorIdentity> saved = new ArrayList<>();
+            for (AuthorIdentity a : inv.<Iterable<AuthorIdentity>>getArgument(0)) {
+                ReflectionTestUtils.setField(a, "id", identities.size() + 1L);
+                identities.put(a.getEmail(), a);
+                saved.add(a);
+            }
+            return saved;
+        });
+        when(authorRepo.findAllById(anyIterable())).thenAnswer(inv -> {
+            List<AuthorIdentity> found = new ArrayList<>();
+            for (Long id : inv.<Iterable<Long>>getArgument(0)) {
+                identities.values().stream().filter(a -> a.getId().equals(id)).forEach(found::add);
+            }
+            return found;
+        });
+
+        when(statRepo.findAllById(anyIterable())).thenReturn(List.of());
+        engine = new CommitDiffEngine(new BlobDiffCache(1000, "", 0), 1);
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        service = new AuthorStatsService(rollupRepo, stateRepo, authorRepo,
+                new CommitStatIndex(statRepo, engine, txManager), txManager, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void rollupsFollowTheBranchByDayWeekAndMonth() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            commit(git, "a.txt", "1\n2\n3\n", "Alice", "alice@example.com", JAN);
+            commit(git, "b.txt", "1\n2\n", "Bob", "bob@example.com", JAN.plusDays(1));
+            // same author under another spelling of the address
+            RevCommit third = commit(git, "a.txt", "1\ntwo\n3\n", "Alice L.", "Alice@Example.COM", JAN.plusDays(7));
+            service.update(git.getRepository(), REPO, "main", ScanOptions.DEFAULT, third, List.of());
+
+            List<AuthorActivity> month = activity(RollupGranularity.MONTH, JAN, FEB);
+            assertThat(month).extracting(AuthorActivity::email).containsExactly("alice@example.com", "bob@example.com");
+            assertThat(month.get(0)).extracting(AuthorActivity::commits, AuthorActivity::linesAdded, AuthorActivity::linesDeleted)
+                    .containsExactly(2L, 4L, 1L);
+            assertThat(month.get(1).buckets()).containsExactly(new FrequencyBucket(JAN, 1, 2, 0));
+            assertThat(activity(RollupGranularity.WEEK, JAN, FEB).get(0).buckets()).containsExactly(
+                    new FrequencyBucket(JAN, 1, 3, 0), new FrequencyBucket(JAN.plusDays(7), 1, 1, 1));
+            assertThat(activity(RollupGranularity.DAY, JAN.plusDays(1), JAN.plusDays(1)))
+                    .extracting(AuthorActivity::email).containsExactly("bob@example.com");
+            assertThat(service.activity(REPO, "main", ScanOptions.DEFAULT, RollupGranularity.MONTH, JAN, FEB, 1)).hasSize(1);
+            assertThat(identities).hasSize(2);
+
+            // the next scan's own stats are reused, and only the new commit is added
+            RevCommit fourth = commit(git, "b.txt", "1\n2\n3\n", "Bob", "bob@example.com", FEB.plusDays(4));
+            List<CommitStats> known = engine.diffCommits(git.getRepository(), List.of(fourth));
+            clearInvocations(statRepo);
+            service.update(git.getRepository(), REPO, "main", ScanOptions.DEFAULT, fourth, known);
+            verify(statRepo, never()).findAllById(any());
+
+            month = activity(RollupGranularity.MONTH, JAN, FEB);
+            assertThat(month.get(0).commits()).isEqualTo(2);
+            assertThat(month.get(1).buckets()).containsExactly(
+                    new FrequencyBucket(JAN, 1, 2, 0), new FrequencyBucket(FEB, 1, 1, 0));
+
+            // same tip again: nothing to merge
+            clearInvocations(rollupRepo);
+            service.update(git.getRepository(), REPO, "main", ScanOptions.DEFAULT, fourth, known);
+            verify(rollupRepo, never()).saveAll(any());
+            verify(rollupRepo, never()).deleteBranch(anyString(), anyString(), any());
+        }
+    }
+
+    @Test
+    void rewrittenHistoryRebuildsTheBranch() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            commit(git, "a.txt", "1\n", "Alice", "alice@example.com", JAN);
+            RevCommit kept = commit(git, "b.txt", "1\n2\n", "Bob", "bob@example.com", JAN.plusDays(1));
+            RevCommit dropped = commit(git, "a.txt", "1\n2\n", "Alice", "alice@example.com", JAN.plusDays(2));
+            service.update(git.getRepository(), REPO, "main", ScanOptions.DEFAULT, dropped, List.of());
+            // another profile's rollups are not touched by the rebuild
+            ScanOptions vendorless = ScanOptions.paths(List.of(), List.of("vendor/"));
+            service.update(git.getRepository(), REPO, "main", vendorless, dropped, List.of());
+
+            clearInvocations(rollupRepo);
+            git.reset().setMode(ResetType.HARD).setRef(kept.getName()).call();
+            RevCommit rewritten = commit(git, "c.txt", "1\n2\n3\n", "Carol", "carol@example.com", JAN.plusDays(2));
+            service.update(git.getRepository(), REPO, "main", ScanOptions.DEFAULT, rewritten, List.of());
+
+            verify(rollupRepo).deleteBranch(REPO, "main", ChangeHistoryRecorder.profileKey(null));
+            List<AuthorActivity> month = activity(RollupGranularity.MONTH, JAN, JAN);
+            // one commit each: most changed lines first
+            assertThat(month).extracting(AuthorActivity::email, AuthorActivity::commits, AuthorActivity::linesAdded)
+                    .containsExactly(
+                            tuple("carol@example.com", 1L, 3L),
+                            tuple("bob@example.com", 1L, 2L),
+                            tuple("alice@example.com", 1L, 1L));
+            assertThat(service.activity(REPO, "main", vendorless, RollupGranularity.MONTH, JAN, JAN, 10))
+                    .extracting(AuthorActivity::email).containsExactly("alice@example.com", "bob@example.com");
+
+            assertThatThrownBy(() -> activity(RollupGranularity.DAY, FEB, JAN)).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private List<AuthorActivity> activity(RollupGranularity granularity, LocalDate from, LocalDate to) {
+        return service.activity(REPO, "main", ScanOptions.DEFAULT, granularity, from, to, 10);
+    }
+
+    private RevCommit commit(Git git, String file, String content, String name, String email, LocalDate day) throws Exception {
+        Files.writeString(tmp.resolve(file), content);
+        git.add().addFilepattern(file).call();
+        PersonIdent ident = new PersonIdent(name, email, day.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        return git.commit().setMessage(file).setAuthor(ident).setCommitter(ident).call();
+    }
+
+    private static boolean isOf(AuthorRollup r, String repoUrl, String branch, String profile) {
+        return r.getRepoUrl().equals(repoUrl) && r.getBranchName().equals(branch) && Objects.equals(r.getDiffProfile(), profile);
+    }
+
+    private static String stateKey(String repoUrl, String branch, String profile) {
+        return repoUrl + "|" + branch + "|" + profile;
+    }
+}
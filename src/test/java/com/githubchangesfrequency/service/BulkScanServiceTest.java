@@ -0,0 +1,124 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+class BulkScanServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private GitChangeScannerServiceIncr scanner;
+    private MirrorCloneManager cloneManager;
+    private BulkScanService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        scanner = mock(GitChangeScannerServiceIncr.class);
+        when(scanner.scanRepositoryIncremental(anyString(), anyString(), any(), any())).thenAnswer(inv -> {
+            String branch = inv.getArgument(1);
+            if (branch.equals("missing")) throw new IllegalArgumentException("Branch not found: missing");
+            return new RepositoryChange(inv.getArgument(0), branch, 3, 1, Instant.now());
+        });
+        String cloneBase = tmp.resolve("clones").toString();
+        // zero freshness: anything that opens the mirror outside a pin would fetch again
+        cloneManager = new MirrorCloneManager(new RepositoryLockManager(cloneBase), new JGitStorageTuning(true, true),
+                new ScanMetrics(new SimpleMeterRegistry(), true), cloneBase, Duration.ZERO, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void scansEveryItemAndReportsTotals() throws Exception {
+        service = new BulkScanService(scanner, cloneManager, new DiskAdmission(() -> Long.MAX_VALUE, 0),
+                2, 2, 100, 100, 1, 1);
+        try (TestRemote a = new TestRemote(tmp.resolve("a")); TestRemote b = new TestRemote(tmp.resolve("b"))) {
+            a.push("main", "x.txt");
+            a.push("dev", "y.txt");
+            b.push("main", "z.txt");
+
+            BulkScan batch = service.submit(List.of(
+                    new BulkScanItem(a.url(), "main"),
+                    new BulkScanItem(a.url(), "dev"),
+                    new BulkScanItem(a.url(), "main"),
+                    new BulkScanItem(b.url(), "main"),
+                    new BulkScanItem(b.url(), "missing")), url -> ScanOptions.DEFAULT);
+
+            List<BulkScanResult> results = drain(batch);
+            assertThat(results).hasSize(4);
+            assertThat(results).filteredOn(r -> r.status() == BulkScanResult.Status.FAILED)
+                    .singleElement().satisfies(r -> assertThat(r.error()).contains("Branch not found"));
+            assertThat(new File(cloneManager.mirrorDir(a.url()), "HEAD")).exists();
+            assertThat(new File(cloneManager.mirrorDir(b.url()), "HEAD")).exists();
+
+            BulkScanReport report = batch.report();
+            assertThat(report.repos()).isEqualTo(2);
+            assertThat(report.items()).isEqualTo(4);
+            assertThat(report.succeeded()).isEqualTo(3);
+            assertThat(report.failed()).isEqualTo(1);
+            assertThat(report.linesAdded()).isEqualTo(9);
+            assertThat(report.linesDeleted()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void rejectsClonesThatDoNotFitOnDisk() throws Exception {
+        service = new BulkScanService(scanner, cloneManager, new DiskAdmission(() -> 100, 50),
+                2, 2, 100, 100, 1000, 1);
+        try (TestRemote a = new TestRemote(tmp.resolve("a"))) {
+            a.push("main", "x.txt");
+
+            List<BulkScanResult> results = drain(service.submit(List.of(new BulkScanItem(a.url(), "main")),
+                    url -> ScanOptions.DEFAULT));
+
+            assertThat(results).singleElement().satisfies(r -> {
+                assertThat(r.status()).isEqualTo(BulkScanResult.Status.REJECTED);
+                assertThat(r.error()).contains("disk space");
+            });
+            assertThat(cloneManager.mirrorDir(a.url())).doesNotExist();
+        }
+    }
+
+    @Test
+    void validatesRequest() {
+        service = new BulkScanService(scanner, cloneManager, new DiskAdmission(() -> Long.MAX_VALUE, 0),
+                1, 1, 2, 100, 1, 1);
+        assertThatThrownBy(() -> service.submit(List.of(), url -> ScanOptions.DEFAULT))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.submit(List.of(new BulkScanItem("u", " ")), url -> ScanOptions.DEFAULT))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.submit(List.of(new BulkScanItem("u", "a"), new BulkScanItem("u", "b"),
+                new BulkScanItem("u", "c")), url -> ScanOptions.DEFAULT))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<BulkScanResult> drain(BulkScan batch) throws InterruptedException {
+        List<BulkScanResult> results = new ArrayList<>();
+        BulkScanResult r;
+        while ((r = batch.next()) != null) results.add(r);
+        return results;
+    }
+}
@@ -0,0 +1,147 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import com.githubchangesfrequency.domain.RollupGranularity;
+
+class ChangeHistoryRecorderTest {
+
+    private static final String REPO = "https://example.com/a.git";
+
+    @TempDir
+    Path tmp;
+
+    private String url;
+    private JdbcTemplate jdbc;
+    private ChangeHistoryRecorder recorder;
+    private CommitDiffEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        JdbcDataSource dataSource = dataSource();
+        jdbc = new JdbcTemplate(dataSource);
+        // as generated from the entities
+        jdbc.execute("CREATE TABLE commit_change (id BIGINT AUTO_INCREMENT PRIMARY KEY, repo_url VARCHAR(255) NOT NULL, "
+                + "diff_profile VARCHAR(32) NOT NULL, commit_sha VARCHAR(64) NOT NULL, commit_time TIMESTAMP(6) NOT NULL, "
+                + "author_name VARCHAR(255), author_email VARCHAR(255), lines_added BIGINT NOT NULL, lines_deleted BIGINT NOT NULL, "
+                + "CONSTRAINT uk_commit_change UNIQUE (repo_url, commit_sha, diff_profile))");
+        jdbc.execute("CREATE TABLE file_change (id BIGINT AUTO_INCREMENT PRIMARY KEY, repo_url VARCHAR(255) NOT NULL, "
+                + "diff_profile VARCHAR(32) NOT NULL, commit_sha VARCHAR(64) NOT NULL, commit_time TIMESTAMP(6) NOT NULL, "
+                + "path VARCHAR(1024) NOT NULL, old_path VARCHAR(1024), change_type VARCHAR(8) NOT NULL, "
+                + "lines_added BIGINT NOT NULL, lines_deleted BIGINT NOT NULL)");
+        jdbc.execute("CREATE TABLE change_rollup (id BIGINT AUTO_INCREMENT PRIMARY KEY, repo_url VARCHAR(255) NOT NULL, "
+                + "diff_profile VARCHAR(32) NOT NULL, granularity VARCHAR(8) NOT NULL, bucket_start DATE NOT NULL, "
+                + "commit_count BIGINT NOT NULL, lines_added BIGINT NOT NULL, lines_deleted BIGINT NOT NULL, "
+                + "CONSTRAINT uk_change_rollup UNIQUE (repo_url, diff_profile, granularity, bucket_start))");
+        recorder = new ChangeHistoryRecorder(jdbc, new DataSourceTransactionManager(dataSource), true, true, 7);
+        engine = new CommitDiffEngine(new BlobDiffCache(1000, "", 0), 2);
+    }
+
+    private JdbcDataSource dataSource() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        return dataSource;
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void fileRowsComeFromTheScansDiffPassAndRollupsAddUp() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            TestHistory.build(git, 20);
+            List<RevCommit> commits = new ArrayList<>();
+            git.log().call().forEach(commits::add);
+            List<RevCommit> older = commits.subList(5, commits.size());
+            // a bucket this repo's commits fall into, already counted by another node
+            Date bucket = Date.valueOf(RollupGranularity.MONTH.bucketStart(Instant.ofEpochSecond(commits.get(0).getCommitTime())));
+            jdbc.update("INSERT INTO change_rollup (repo_url, diff_profile, granularity, bucket_start, commit_count, "
+                    + "lines_added, lines_deleted) VALUES (?, '', 'MONTH', ?, 100, 1000, 10)", REPO, bucket);
+
+            assertThat(record(older)).isEqualTo(older.size());
+            // the second scan only adds the five newer commits and only keeps their file rows
+            assertThat(record(commits)).isEqualTo(5);
+            assertThat(record(commits)).isZero();
+
+            List<FileChangeStat> files = engine.diffFiles(git.getRepository(), commits, ScanOptions.DEFAULT);
+            DiffTotals totals = DiffTotals.sum(engine.diffCommits(git.getRepository(), commits));
+            assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM file_change", Long.class)).isEqualTo(files.size());
+            assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM commit_change", Long.class)).isEqualTo(commits.size());
+            for (RollupGranularity g : RollupGranularity.values()) {
+                assertThat(jdbc.queryForObject("SELECT SUM(commit_count) FROM change_rollup WHERE granularity = ?",
+                        Long.class, g.name())).isEqualTo(commits.size() + 100L * (g == RollupGranularity.MONTH ? 1 : 0));
+                assertThat(jdbc.queryForObject("SELECT SUM(lines_added) FROM change_rollup WHERE granularity = ?",
+                        Long.class, g.name())).isEqualTo(totals.linesAdded() + (g == RollupGranularity.MONTH ? 1000 : 0));
+            }
+        }
+    }
+
+    @Test
+    void batchConflictingWithAnotherNodeIsRetriedWithoutItsCommits() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            TestHistory.build(git, 12);
+            List<RevCommit> commits = new ArrayList<>();
+            git.log().call().forEach(commits::add);
+            List<RevCommit> concurrent = commits.subList(2, 6);
+
+            // the other node commits its rows on its own connection after our lookup, just before our insert
+            JdbcTemplate otherNode = new JdbcTemplate(dataSource());
+            AtomicBoolean raced = new AtomicBoolean();
+            JdbcTemplate racing = new JdbcTemplate(jdbc.getDataSource()) {
+                @Override
+                public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                    if (sql.startsWith("INSERT INTO commit_change") && raced.compareAndSet(false, true)) {
+                        for (RevCommit c : concurrent) {
+                            otherNode.update("INSERT INTO commit_change (repo_url, diff_profile, commit_sha, commit_time, "
+                                    + "lines_added, lines_deleted) VALUES (?, '', ?, CURRENT_TIMESTAMP, 0, 0)", REPO, c.getName());
+                        }
+                    }
+                    return super.batchUpdate(sql, batchArgs);
+                }
+            };
+            recorder = new ChangeHistoryRecorder(racing, new DataSourceTransactionManager(jdbc.getDataSource()), true, true, 7);
+
+            assertThat(record(commits)).isEqualTo(commits.size() - concurrent.size());
+            assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM commit_change", Long.class)).isEqualTo(commits.size());
+            // rollups count only the commits this recorder inserted; the other node bumps its own
+            for (RollupGranularity g : RollupGranularity.values()) {
+                assertThat(jdbc.queryForObject("SELECT SUM(commit_count) FROM change_rollup WHERE granularity = ?",
+                        Long.class, g.name())).isEqualTo(commits.size() - concurrent.size());
+            }
+            for (RevCommit c : concurrent) {
+                assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM file_change WHERE commit_sha = ?", Long.class,
+                        c.getName())).isZero();
+            }
+        }
+    }
+
+    private int record(List<RevCommit> commits) throws Exception {
+        ChangeHistoryRecorder.Recording recording = recorder.begin(REPO, commits, ScanOptions.DEFAULT);
+        try (Git git = Git.open(tmp.toFile())) {
+            List<CommitStats> stats = engine.diffCommits(git.getRepository(), commits, ScanOptions.DEFAULT,
+                    ScanProgressListener.NONE, recording.files());
+            return recording.finish(stats);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.githubchangesfrequency.domain.ChurnIndexSnapshot;
+import com.githubchangesfrequency.repository.ChurnIndexSnapshotRepository;
+
+class ChurnIndexServiceTest {
+
+    private static final String REPO = "https://example.com/a.git";
+
+    @TempDir
+    Path tmp;
+
+    private CommitDiffEngine engine;
+    private final List<List<RevCommit>> diffed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CommitDiffEngine real = new CommitDiffEngine(new BlobDiffCache(10_000, "", 0), 4);
+        engine = spy(real);
+        when(engine.diffCommits(any(), anyList(), any(), any(), any())).thenAnswer(inv -> {
+            diffed.add(inv.getArgument(1));
+            return inv.callRealMethod();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void indexFedFromTheScansDiffPassMatchesOneBuiltFromTheWholeHistory() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            Repository repository = git.getRepository();
+            ObjectId base = TestHistory.build(git, 24);
+            ChurnIndexService service = service(new HashMap<>());
+            scan(service, repository, null, null, base, history(repository, base, null));
+
+            Files.writeString(tmp.resolve("later.txt"), "a\nb\n");
+            TestHistory.commit(git, "later 1");
+            Files.writeString(tmp.resolve("later.txt"), "a\nB\nc\n");
+            ObjectId tip = TestHistory.commit(git, "later 2");
+            List<RevCommit> newCommits = history(repository, tip, base);
+            diffed.clear();
+
+            // stored index is at the base: the two new commits are all that is diffed
+            scan(service, repository, base.getName(), base.getName(), tip, newCommits);
+            assertThat(diffed).hasSize(1);
+            assertThat(diffed.get(0)).hasSameSizeAs(newCommits);
+            assertSameAsFullBuild(service, repository, tip);
+
+            // nothing stored: the rebuild diffs only what the scan did not
+            ChurnIndexService rebuilt = service(new HashMap<>());
+            diffed.clear();
+            scan(rebuilt, repository, base.getName(), base.getName(), tip, newCommits);
+            assertThat(diffed).hasSize(2);
+            assertThat(diffed.get(1)).hasSize(history(repository, tip, null).size() - newCommits.size())
+                    .doesNotContainAnyElementsOf(newCommits);
+            assertSameAsFullBuild(rebuilt, repository, tip);
+        }
+    }
+
+    @Test
+    void forcePushTakesTheDroppedCommitsBackOutInsteadOfRebuilding() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            Repository repository = git.getRepository();
+            ObjectId base = TestHistory.build(git, 24);
+            Files.writeString(tmp.resolve("gone.txt"), "a\n");
+            TestHistory.commit(git, "gone 1");
+            Files.writeString(tmp.resolve("src/file1.txt"), "rewritten\n");
+            ObjectId oldTip = TestHistory.commit(git, "gone 2");
+            ChurnIndexService service = service(new HashMap<>());
+            scan(service, repository, null, null, oldTip, history(repository, oldTip, null));
+
+            git.reset().setMode(ResetCommand.ResetType.HARD).setRef(base.getName()).call();
+            Files.writeString(tmp.resolve("later.txt"), "a\nb\n");
+            ObjectId tip = TestHistory.commit(git, "later");
+            List<RevCommit> newCommits = history(repository, tip, oldTip);
+            List<RevCommit> dropped = history(repository, oldTip, tip);
+            diffed.clear();
+
+            // what the scanner does after a force-push: diff the new commits and the dropped ones, nothing else
+            ChurnIndexService.Update update = service.begin(REPO, "main", ScanOptions.DEFAULT, oldTip.getName(),
+                    base.getName(), tip, newCommits);
+            engine.diffCommits(repository, newCommits, ScanOptions.DEFAULT, ScanProgressListener.NONE, update.files());
+            engine.diffCommits(repository, dropped, ScanOptions.DEFAULT, ScanProgressListener.NONE, update.droppedFiles());
+            update.finish(repository);
+
+            assertThat(diffed).extracting(List::size).containsExactly(1, 2);
+            assertSameAsFullBuild(service, repository, tip);
+            assertThat(service.top(REPO, "main", ScanOptions.DEFAULT, ChurnEntry.Kind.FILE, ChurnEntry.Order.CHANGES, 1000))
+                    .get().asList().extracting("path").doesNotContain("gone.txt").contains("later.txt");
+        }
+    }
+
+    private ChurnIndexService service(Map<String, ChurnIndexSnapshot> table) {
+        ChurnIndexSnapshotRepository snapshotRepo = mock(ChurnIndexSnapshotRepository.class);
+        when(snapshotRepo.findByRepoUrlAndBranchNameAndDiffProfile(anyString(), anyString(), anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(table.get(inv.getArgument(1))));
+        when(snapshotRepo.save(any())).thenAnswer(inv -> {
+            ChurnIndexSnapshot snapshot = inv.getArgument(0);
+            table.put(snapshot.getBranchName(), snapshot);
+            return snapshot;
+        });
+        return new ChurnIndexService(snapshotRepo, engine, mock(PlatformTransactionManager.class), true, 4);
+    }
+
+    // what GitChangeScannerServiceIncr does around its diff pass
+    private void scan(ChurnIndexService service, Repository repository, String previousSha, String baseSha, ObjectId tip,
+                      List<RevCommit> newCommits) throws Exception {
+        ChurnIndexService.Update update = service.begin(REPO, "main", ScanOptions.DEFAULT, previousSha, baseSha, tip,
+                newCommits);
+        engine.diffCommits(repository, newCommits, ScanOptions.DEFAULT, ScanProgressListener.NONE, update.files());
+        update.finish(repository);
+    }
+
+    private void assertSameAsFullBuild(ChurnIndexService service, Repository repository, ObjectId tip) throws Exception {
+        ChurnIndex expected = new ChurnIndex();
+        expected.apply(engine.diffFiles(repository, history(repository, tip, null), ScanOptions.DEFAULT));
+        for (ChurnEntry.Kind kind : ChurnEntry.Kind.values()) {
+            for (ChurnEntry.Order order : ChurnEntry.Order.values()) {
+                // ties come out in path-interning order, which depends on the order commits were applied
+                assertThat(service.top(REPO, "main", ScanOptions.DEFAULT, kind, order, 1000)).get().asList()
+                        .containsExactlyInAnyOrderElementsOf(expected.top(kind, order, 1000));
+            }
+        }
+    }
+
+    // reachable from `from` but not from `exclude`
+    private static List<RevCommit> history(Repository repository, ObjectId from, ObjectId exclude) throws Exception {
+        List<RevCommit> commits = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.markStart(revWalk.parseCommit(from));
+            if (exclude != null) revWalk.markUninteresting(revWalk.parseCommit(exclude));
+            revWalk.forEach(commits::add);
+        }
+        return commits;
+    }
+}
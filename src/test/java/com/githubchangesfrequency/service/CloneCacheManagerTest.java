@@ -0,0 +1,154 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CloneCacheManagerTest {
+
+    @TempDir
+    Path tmp;
+
+    // no CloneCacheManager while the mirrors are fetched: packs pile up for the sweep
+    private final JGitStorageTuning storage = new JGitStorageTuning(true, true);
+
+    private CloneCacheManager cache;
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) cache.shutdown();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedDownToBudget() throws Exception {
+        String cloneBase = tmp.resolve("clones").toString();
+        RepositoryLockManager locks = new RepositoryLockManager(cloneBase);
+        MirrorCloneManager mirrors = new MirrorCloneManager(locks, storage, new ScanMetrics(new SimpleMeterRegistry(), true),
+                cloneBase, Duration.ofHours(1), false);
+        try (TestRemote a = new TestRemote(tmp.resolve("a"));
+             TestRemote b = new TestRemote(tmp.resolve("b"));
+             TestRemote c = new TestRemote(tmp.resolve("c"))) {
+            for (TestRemote r : List.of(a, b, c)) {
+                r.push("main", "f.txt");
+                mirrors.open(r.url(), ScanProgressListener.NONE).close();
+            }
+            Instant now = Instant.now();
+            setAccess(mirrors.mirrorDir(a.url()), now.minus(Duration.ofHours(3)));
+            setAccess(mirrors.mirrorDir(b.url()), now.minus(Duration.ofHours(2)));
+            setAccess(mirrors.mirrorDir(c.url()), now.minus(Duration.ofHours(1)));
+            long one = CloneCacheManager.sizeOf(mirrors.mirrorDir(c.url()).toPath());
+
+            cache = new CloneCacheManager(mirrors, locks, storage, DataSize.ofBytes(one + one / 2), Duration.ofMinutes(10),
+                    false, 10, 5000);
+
+            // b is being read: it is skipped and the next oldest goes instead
+            try (MirrorClone held = mirrors.open(b.url(), ScanProgressListener.NONE)) {
+                setAccess(mirrors.mirrorDir(b.url()), now.minus(Duration.ofHours(2)));
+                cache.sweep();
+            }
+
+            assertThat(mirrors.mirrorDir(a.url())).doesNotExist();
+            assertThat(mirrors.mirrorDir(b.url())).exists();
+            assertThat(mirrors.mirrorDir(c.url())).doesNotExist();
+            assertThat(cache.status().evictions()).isEqualTo(2);
+            assertThat(cache.status().repos()).singleElement()
+                    .satisfies(e -> assertThat(e.repoKey()).isEqualTo(MirrorCloneManager.repoKey(b.url())));
+
+            // recently used mirrors stay even over budget
+            mirrors.open(a.url(), ScanProgressListener.NONE).close();
+            cache.sweep();
+            assertThat(mirrors.mirrorDir(a.url())).exists();
+        }
+    }
+
+    @Test
+    void repacksUsedMirrorsWithManyPacks() throws Exception {
+        String cloneBase = tmp.resolve("clones").toString();
+        RepositoryLockManager locks = new RepositoryLockManager(cloneBase);
+        MirrorCloneManager mirrors = new MirrorCloneManager(locks, storage, new ScanMetrics(new SimpleMeterRegistry(), true),
+                cloneBase, Duration.ofHours(1), false);
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            remote.push("main", "f.txt");
+            mirrors.open(remote.url(), ScanProgressListener.NONE).close();
+            for (int i = 0; i < 4; i++) {
+                remote.push("main", "f.txt");
+                mirrors.refresh(remote.url(), ScanProgressListener.NONE);
+            }
+            File dir = mirrors.mirrorDir(remote.url());
+            assertThat(packs(dir)).isGreaterThan(2);
+
+            cache = new CloneCacheManager(mirrors, locks, storage, DataSize.ofGigabytes(1), Duration.ofMinutes(10), true, 2, 5000);
+            cache.sweep();
+
+            assertThat(packs(dir)).isEqualTo(1);
+            assertThat(cache.status().gcRuns()).isEqualTo(1);
+            try (Git git = Git.open(dir)) {
+                assertThat(git.log().call()).hasSize(5);
+            }
+
+            // not used since: left alone
+            cache.sweep();
+            assertThat(cache.status().gcRuns()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void sweepDeletesWorkingTreeClonesFromBeforeMirrors() throws Exception {
+        String cloneBase = tmp.resolve("clones").toString();
+        RepositoryLockManager locks = new RepositoryLockManager(cloneBase);
+        MirrorCloneManager mirrors = new MirrorCloneManager(locks, storage, new ScanMetrics(new SimpleMeterRegistry(), true),
+                cloneBase, Duration.ofHours(1), false);
+        try (TestRemote a = new TestRemote(tmp.resolve("a"));
+             TestRemote b = new TestRemote(tmp.resolve("b"))) {
+            a.push("main", "f.txt");
+            b.push("main", "f.txt");
+            // as the scanners left them before mirrors; neither repo has been scanned since
+            File legacyA = new File(cloneBase, MirrorCloneManager.repoKey(a.url()));
+            File legacyB = new File(cloneBase, MirrorCloneManager.repoKey(b.url()));
+            Git.cloneRepository().setURI(a.url()).setDirectory(legacyA).call().close();
+            Git.cloneRepository().setURI(b.url()).setDirectory(legacyB).call().close();
+            cache = new CloneCacheManager(mirrors, locks, storage, DataSize.ofGigabytes(1), Duration.ofMinutes(10),
+                    false, 10, 5000);
+
+            // b is locked by an old node still scanning it: counted, and left for the next sweep
+            try (RepositoryLockManager.Lease held = locks.readLock(MirrorCloneManager.repoKey(b.url()))) {
+                cache.sweep();
+            }
+            assertThat(legacyA).doesNotExist();
+            assertThat(legacyB).exists();
+            assertThat(cache.status().repos()).singleElement()
+                    .satisfies(e -> assertThat(e.repoKey()).isEqualTo(legacyB.getName()));
+            assertThat(cache.status().totalBytes()).isEqualTo(CloneCacheManager.sizeOf(legacyB.toPath()));
+
+            cache.sweep();
+            assertThat(legacyB).doesNotExist();
+            assertThat(cache.status().repos()).isEmpty();
+            assertThat(cache.status().evictions()).isEqualTo(2);
+        }
+    }
+
+    private static void setAccess(File dir, Instant at) throws Exception {
+        Path marker = dir.toPath().resolve("last-access");
+        if (!Files.exists(marker)) Files.createFile(marker);
+        Files.setLastModifiedTime(marker, FileTime.from(at));
+    }
+
+    private static long packs(File dir) {
+        File[] packs = new File(dir, "objects/pack").listFiles(f -> f.getName().endsWith(".pack"));
+        return packs != null ? packs.length : 0;
+    }
+}
@@ -0,0 +1,79 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommitDiffEngineTest {
+
+    @TempDir
+    Path tmp;
+
+    private static CommitDiffEngine engine(int parallelism) throws Exception {
+        // a cache per engine, so no engine is handed counts the other one computed
+        return new CommitDiffEngine(new BlobDiffCache(10_000, "", 0), parallelism);
+    }
+
+    @Test
+    void parallelSlicesGiveExactlyTheSequentialResult() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            TestHistory.build(git, 96);
+            Repository repository = git.getRepository();
+            List<RevCommit> commits = new ArrayList<>();
+            git.log().all().call().forEach(commits::add);
+            assertThat(commits).hasSizeGreaterThan(100);
+            assertThat(commits).anySatisfy(c -> assertThat(c.getParentCount()).isEqualTo(2));
+
+            ScanOptions fast = new ScanOptions(List.of(), List.of(), true, 2048, true, 5, SupportedAlgorithm.MYERS);
+            for (ScanOptions options : List.of(ScanOptions.DEFAULT, fast)) {
+                CommitDiffEngine sequential = engine(1);
+                try {
+                    AtomicLong sequentialAdded = new AtomicLong();
+                    List<CommitStats> expected = sequential.diffCommits(repository, commits, options, counting(sequentialAdded));
+                    List<FileChangeStat> expectedFiles = sequential.diffFiles(repository, commits, options);
+                    assertThat(expectedFiles).anySatisfy(f -> assertThat(f.changeType()).isEqualTo(ChangeType.RENAME));
+                    if (options == fast) {
+                        assertThat(expected).anySatisfy(s -> assertThat(s.binaryFiles()).isPositive());
+                        assertThat(expected).anySatisfy(s -> assertThat(s.oversizedFiles()).isPositive());
+                    }
+
+                    for (int parallelism : new int[] {2, 3, 8}) {
+                        CommitDiffEngine parallel = engine(parallelism);
+                        try {
+                            AtomicLong parallelAdded = new AtomicLong();
+                            List<CommitStats> actual = parallel.diffCommits(repository, commits, options, counting(parallelAdded));
+                            assertThat(actual).isEqualTo(expected);
+                            assertThat(DiffTotals.sum(actual)).isEqualTo(DiffTotals.sum(expected));
+                            assertThat(parallelAdded.get()).isEqualTo(sequentialAdded.get());
+                            assertThat(parallel.diffFiles(repository, commits, options)).isEqualTo(expectedFiles);
+                        } finally {
+                            parallel.shutdown();
+                        }
+                    }
+                } finally {
+                    sequential.shutdown();
+                }
+            }
+        }
+    }
+
+    private static ScanProgressListener counting(AtomicLong added) {
+        return new ScanProgressListener() {
+            @Override
+            public void onCommitsDiffed(int commits, long linesAdded, long linesDeleted) {
+                added.addAndGet(linesAdded);
+            }
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.githubchangesfrequency.domain.CommitDiffStat;
+import com.githubchangesfrequency.repository.CommitDiffStatRepository;
+
+class CommitStatIndexTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void conflictingBatchIsRetriedWithoutTheRowsAnotherScanStored() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            TestHistory.build(git, 12);
+            List<RevCommit> commits = new ArrayList<>();
+            git.log().call().forEach(commits::add);
+
+            // the table: rows of a concurrent scan show up after our lookup, just before our insert
+            Map<String, CommitDiffStat> table = new ConcurrentHashMap<>();
+            List<RevCommit> concurrent = commits.subList(2, 5);
+            CommitDiffStatRepository statRepo = mock(CommitDiffStatRepository.class);
+            when(statRepo.findAllById(anyIterable())).thenAnswer(inv -> {
+                List<CommitDiffStat> found = new ArrayList<>();
+                for (String key : inv.<Iterable<String>>getArgument(0)) {
+                    if (table.containsKey(key)) found.add(table.get(key));
+                }
+                return found;
+            });
+            when(statRepo.saveAll(anyIterable())).thenAnswer(inv -> {
+                for (RevCommit c : concurrent) table.putIfAbsent(c.getName(), new CommitDiffStat(c.getName(), null, null, 1, 1));
+                List<CommitDiffStat> rows = new ArrayList<>();
+                inv.<Iterable<CommitDiffStat>>getArgument(0).forEach(rows::add);
+                if (rows.stream().anyMatch(r -> table.containsKey(r.getId()))) {
+                    throw new DataIntegrityViolationException("Duplicate entry for key 'PRIMARY'");
+                }
+                rows.forEach(r -> table.put(r.getId(), r));
+                return rows;
+            });
+
+            CommitDiffEngine engine = new CommitDiffEngine(new BlobDiffCache(1000, "", 0), 1);
+            try {
+                CommitStatIndex index = new CommitStatIndex(statRepo, engine, mock(PlatformTransactionManager.class));
+                List<CommitStats> stats = index.statsFor(git.getRepository(), commits);
+
+                assertThat(stats).isEqualTo(engine.diffCommits(git.getRepository(), commits));
+                assertThat(table).hasSize(commits.size());
+                assertThat(table.get(commits.get(0).getName()).getLinesAdded()).isEqualTo(stats.get(0).linesAdded());
+                verify(statRepo, times(2)).saveAll(any());
+            } finally {
+                engine.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void onlyUnindexedCommitsAndThoseTheSinkNeedsAreDiffed() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            TestHistory.build(git, 12);
+            List<RevCommit> commits = new ArrayList<>();
+            git.log().call().forEach(commits::add);
+
+            Map<String, CommitDiffStat> table = new ConcurrentHashMap<>();
+            CommitDiffStatRepository statRepo = mock(CommitDiffStatRepository.class);
+            when(statRepo.findAllById(anyIterable())).thenAnswer(inv -> {
+                List<CommitDiffStat> found = new ArrayList<>();
+                for (String key : inv.<Iterable<String>>getArgument(0)) {
+                    if (table.containsKey(key)) found.add(table.get(key));
+                }
+                return found;
+            });
+            when(statRepo.saveAll(anyIterable())).thenAnswer(inv -> {
+                inv.<Iterable<CommitDiffStat>>getArgument(0).forEach(r -> table.put(r.getId(), r));
+                return null;
+            });
+
+            CommitDiffEngine engine = spy(new CommitDiffEngine(new BlobDiffCache(1000, "", 0), 1));
+            List<List<RevCommit>> diffed = new ArrayList<>();
+            when(engine.diffCommits(any(), anyList(), any(), any(), any())).thenAnswer(inv -> {
+                diffed.add(new ArrayList<>(inv.<List<RevCommit>>getArgument(1)));
+                return inv.callRealMethod();
+            });
+            try {
+                CommitStatIndex index = new CommitStatIndex(statRepo, engine, mock(PlatformTransactionManager.class));
+                List<CommitStats> expected = index.statsFor(git.getRepository(), commits.subList(3, commits.size()));
+
+                // three unindexed commits, and two indexed ones the sink still wants files of
+                Set<ObjectId> wanted = Set.of(commits.get(5), commits.get(8));
+                Map<ObjectId, List<FileChangeStat>> received = new ConcurrentHashMap<>();
+                FileStatSink sink = new FileStatSink() {
+                    @Override
+                    public void accept(ObjectId commit, List<FileChangeStat> files) {
+                        received.put(commit, files);
+                    }
+
+                    @Override
+                    public boolean needs(ObjectId commit) {
+                        return wanted.contains(commit);
+                    }
+                };
+                diffed.clear();
+                List<CommitStats> stats = index.statsFor(git.getRepository(), commits, ScanOptions.DEFAULT,
+                        ScanProgressListener.NONE, sink);
+
+                assertThat(diffed).hasSize(1);
+                assertThat(diffed.get(0)).containsExactly(commits.get(0), commits.get(1), commits.get(2),
+                        commits.get(5), commits.get(8));
+                assertThat(received).containsOnlyKeys(wanted);
+                assertThat(stats).isEqualTo(engine.diffCommits(git.getRepository(), commits));
+                assertThat(stats.subList(3, stats.size())).isEqualTo(expected);
+                assertThat(table).hasSize(commits.size());
+            } finally {
+                engine.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class DiskAdmissionTest {
+
+    @Test
+    void admitsWhileFreeSpaceStaysAboveMinimum() throws Exception {
+        DiskAdmission disk = new DiskAdmission(() -> 100, 20);
+
+        assertThat(disk.acquire(50)).isTrue();
+        assertThat(disk.acquire(30)).isTrue();
+        assertThat(disk.reserved()).isEqualTo(80);
+    }
+
+    @Test
+    void refusesWhatCannotFitWhenIdle() throws Exception {
+        DiskAdmission disk = new DiskAdmission(() -> 100, 20);
+
+        assertThat(disk.acquire(81)).isFalse();
+        assertThat(disk.reserved()).isZero();
+    }
+
+    @Test
+    void waitsForRunningReservations() throws Exception {
+        AtomicLong usable = new AtomicLong(100);
+        DiskAdmission disk = new DiskAdmission(usable::get, 20);
+        assertThat(disk.acquire(60)).isTrue();
+
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return disk.acquire(30);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertThat(second).isNotDone();
+
+        // the first clone wrote 10 of its 60 and released the rest
+        usable.set(90);
+        disk.release(60);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,107 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DiskBlobDiffStoreTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void entriesSurviveReopening() throws Exception {
+        Path file = tmp.resolve("cache/diffs.bin");
+        List<BlobPair> keys = keys(50);
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(file, 1000)) {
+            for (int i = 0; i < keys.size(); i++) store.put(keys.get(i), new DiffTotals(i, 2L * i));
+            store.put(keys.get(0), new DiffTotals(7, 8));
+            assertThat(store.get(keys.get(1))).isEqualTo(new DiffTotals(1, 2));
+        }
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(file, 1000)) {
+            assertThat(store.get(keys.get(0))).isEqualTo(new DiffTotals(7, 8));
+            for (int i = 1; i < keys.size(); i++) {
+                assertThat(store.get(keys.get(i))).isEqualTo(new DiffTotals(i, 2L * i));
+            }
+            assertThat(store.get(new BlobPair(id(999), id(1000)))).isNull();
+        }
+        // another capacity is another layout: start empty
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(file, 2000)) {
+            assertThat(store.get(keys.get(1))).isNull();
+        }
+    }
+
+    @Test
+    void fullBucketEvictsOneEntryAndKeepsTheNewest() throws Exception {
+        // capacity 4 is a single bucket of four slots
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(tmp.resolve("diffs.bin"), 4)) {
+            List<BlobPair> keys = keys(5);
+            for (int round = 0; round < 20; round++) {
+                for (int i = 0; i < keys.size(); i++) {
+                    store.put(keys.get(i), new DiffTotals(i, i));
+                    assertThat(store.get(keys.get(i))).isEqualTo(new DiffTotals(i, i));
+                }
+                assertThat(keys.stream().filter(k -> store.get(k) != null)).hasSize(4);
+            }
+        }
+    }
+
+    @Test
+    void slotWithABadChecksumIsAMiss() throws Exception {
+        Path file = tmp.resolve("diffs.bin");
+        BlobPair key = new BlobPair(id(1), id(2));
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(file, 4)) {
+            store.put(key, new DiffTotals(3, 4));
+        }
+        // torn write: the first slot's added count changed without its checksum
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(16 + 40 + 7);
+            raf.write(9);
+        }
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(file, 4)) {
+            assertThat(store.get(key)).isNull();
+            store.put(key, new DiffTotals(3, 4));
+            assertThat(store.get(key)).isEqualTo(new DiffTotals(3, 4));
+        }
+    }
+
+    @Test
+    void fileInUseIsNotOpenedTwice() throws Exception {
+        Path file = tmp.resolve("diffs.bin");
+        BlobPair key = new BlobPair(id(1), id(2));
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(file, 100)) {
+            assertThatThrownBy(() -> new DiskBlobDiffStore(file, 100))
+                    .isInstanceOf(DiskBlobDiffStore.InUseException.class);
+
+            // the cache runs without its disk tier instead
+            BlobDiffCache cache = new BlobDiffCache(100, file.toString(), 100);
+            cache.put(key, new DiffTotals(1, 1));
+            assertThat(store.get(key)).isNull();
+            cache.close();
+        }
+        try (DiskBlobDiffStore store = new DiskBlobDiffStore(file, 100)) {
+            assertThat(store.get(key)).isNull();
+        }
+    }
+
+    private static List<BlobPair> keys(int n) {
+        List<BlobPair> keys = new ArrayList<>();
+        for (int i = 0; i < n; i++) keys.add(new BlobPair(id(2 * i + 1), id(2 * i + 2)));
+        return keys;
+    }
+
+    private static ObjectId id(int n) {
+        return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, Integer.toString(n).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,247 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.domain.RetainedCheckpoint;
+import com.githubchangesfrequency.domain.ScanCheckpoint;
+import com.githubchangesfrequency.repository.RepositoryChangeRepository;
+import com.githubchangesfrequency.repository.RetainedCheckpointRepository;
+import com.githubchangesfrequency.repository.ScanCheckpointRepository;
+
+/**
+ * Incremental scans against a local checkout, with the checkpoint tables kept in memory.
+ */
+class GitChangeScannerServiceIncrTest {
+
+    @TempDir
+    Path tmp;
+
+    private CommitDiffEngine engine;
+    private final List<List<RevCommit>> diffed = new ArrayList<>();
+    // runs inside the diff pass
+    private Runnable duringDiff = () -> {};
+    private CommitStatIndex statIndex;
+    private ScanCheckpointRepository checkpointRepo;
+    private RetainedCheckpointRepository retainedRepo;
+    private RepositoryChangeRepository changeRepo;
+    private GitChangeScannerServiceIncr scanner;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        engine = new CommitDiffEngine(new BlobDiffCache(10_000, "", 0), 4);
+        statIndex = mock(CommitStatIndex.class);
+        Answer<List<CommitStats>> diff = inv -> {
+            List<RevCommit> commits = inv.getArgument(1);
+            diffed.add(commits);
+            duringDiff.run();
+            return engine.diffCommits(inv.getArgument(0), commits, inv.getArgument(2), inv.getArgument(3),
+                    inv.getArguments().length > 4 ? inv.getArgument(4) : FileStatSink.NONE);
+        };
+        when(statIndex.statsFor(any(), anyList(), any(), any())).thenAnswer(diff);
+        when(statIndex.statsFor(any(), anyList(), any(), any(), any())).thenAnswer(diff);
+
+        // one repo and branch: keyed by profile
+        Map<String, ScanCheckpoint> checkpoints = new HashMap<>();
+        checkpointRepo = mock(ScanCheckpointRepository.class);
+        when(checkpointRepo.findByRepoUrlAndBranchNameAndDiffProfile(anyString(), anyString(), anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(checkpoints.get(inv.<String>getArgument(2))));
+        when(checkpointRepo.save(any())).thenAnswer(inv -> {
+            ScanCheckpoint checkpoint = inv.getArgument(0);
+            checkpoints.put(checkpoint.getDiffProfile(), checkpoint);
+            return checkpoint;
+        });
+        List<RetainedCheckpoint> retained = new ArrayList<>();
+        retainedRepo = mock(RetainedCheckpointRepository.class);
+        when(retainedRepo.findByRepoUrlAndBranchNameAndDiffProfileOrderByCreatedAtDesc(anyString(), anyString(), anyString()))
+                .thenAnswer(inv -> retained.stream().filter(r -> r.getDiffProfile().equals(inv.getArgument(2)))
+                        .collect(Collectors.toCollection(ArrayList::new)));
+        when(retainedRepo.save(any())).thenAnswer(inv -> {
+            retained.add(0, inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        changeRepo = mock(RepositoryChangeRepository.class);
+        when(changeRepo.findFirstByRepoUrlAndBranchNameAndTipCommitAndDiffProfileOrderByScannedAtDesc(
+                anyString(), anyString(), anyString(), any())).thenReturn(Optional.empty());
+        when(changeRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        scanner = scanner(WorkLeaseManager.disabled());
+    }
+
+    private GitChangeScannerServiceIncr scanner(WorkLeaseManager leases) {
+        String cloneBase = tmp.resolve("clones").toString();
+        ScanMetrics metrics = new ScanMetrics(new SimpleMeterRegistry(), true);
+        MirrorCloneManager cloneManager = new MirrorCloneManager(new RepositoryLockManager(cloneBase),
+                new JGitStorageTuning(true, true), metrics, cloneBase, Duration.ZERO, true);
+        ChangeHistoryRecorder history = new ChangeHistoryRecorder(new JdbcTemplate(), mock(PlatformTransactionManager.class),
+                false, false, 1000);
+        return new GitChangeScannerServiceIncr(changeRepo, checkpointRepo, retainedRepo, statIndex, cloneManager,
+                history, new ChurnIndexService(null, engine, mock(PlatformTransactionManager.class), false, 1),
+                mock(AuthorStatsService.class), metrics, leases, mock(PlatformTransactionManager.class), 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void forcePushSubtractsTheDroppedCommitsAndDiffsOnlyTheNewOnes() throws Exception {
+        Path checkout = tmp.resolve("repo");
+        try (Git git = Git.init().setDirectory(checkout.toFile()).setInitialBranch("main").call()) {
+            Repository repository = git.getRepository();
+            ObjectId oldTip = TestHistory.build(git, 24);
+            String repoUrl = checkout.toString();
+
+            RepositoryChange first = scanner.scanRepositoryIncremental(repoUrl, "main");
+            assertThat(first.getBaseCommit()).isNull();
+            assertBranchTotals(repository, first);
+
+            // rewrite the last three commits (one of them a merge) with two others
+            ObjectId mergeBase = repository.resolve("main~3");
+            git.reset().setMode(ResetCommand.ResetType.HARD).setRef(mergeBase.getName()).call();
+            Files.writeString(checkout.resolve("rewritten.txt"), "a\nb\nc\n");
+            ObjectId rewritten = TestHistory.commit(git, "rewritten 1");
+            Files.writeString(checkout.resolve("rewritten.txt"), "a\nB\nc\nd\n");
+            ObjectId newTip = TestHistory.commit(git, "rewritten 2");
+            List<RevCommit> dropped = between(repository, oldTip, newTip);
+            diffed.clear();
+
+            RepositoryChange second = scanner.scanRepositoryIncremental(repoUrl, "main");
+
+            assertThat(second.getTipCommit()).isEqualTo(newTip.getName());
+            assertThat(second.getBaseCommit()).isEqualTo(mergeBase.getName());
+            assertThat(second.getDroppedCommits()).isEqualTo((long) dropped.size());
+            DiffTotals droppedTotals = DiffTotals.sum(engine.diffCommits(repository, dropped));
+            assertThat(second.getDroppedLinesAdded()).isEqualTo(droppedTotals.linesAdded());
+            assertThat(second.getDroppedLinesDeleted()).isEqualTo(droppedTotals.linesDeleted());
+            assertBranchTotals(repository, second);
+            // the run itself only counts the two new commits
+            assertThat(diffed.get(0)).extracting(RevCommit::getId).containsExactlyInAnyOrder(newTip, rewritten);
+            DiffTotals run = DiffTotals.sum(engine.diffCommits(repository, List.of(rewritten, newTip)));
+            assertThat(second.getLinesAdded()).isEqualTo(run.linesAdded());
+            assertThat(second.getLinesDeleted()).isEqualTo(run.linesDeleted());
+        }
+    }
+
+    @Test
+    void scanWhoseLeaseWasTakenOverMeanwhileWritesNothing() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE work_lease (lease_key VARCHAR(64) PRIMARY KEY, repo_url VARCHAR(1024) NOT NULL, "
+                + "owner VARCHAR(128), fencing_token BIGINT NOT NULL, acquired_at TIMESTAMP(6), "
+                + "heartbeat_at TIMESTAMP(6), expires_at TIMESTAMP(6) NOT NULL)");
+        DataSourceTransactionManager txManager = new DataSourceTransactionManager(dataSource);
+        WorkLeaseManager stalled = new WorkLeaseManager(jdbc, txManager, true, "a", Duration.ofMillis(200),
+                Duration.ZERO, Duration.ZERO);
+        WorkLeaseManager other = new WorkLeaseManager(jdbc, txManager, true, "b", Duration.ofMinutes(1),
+                Duration.ZERO, Duration.ZERO);
+
+        Path checkout = tmp.resolve("repo");
+        try (Git git = Git.init().setDirectory(checkout.toFile()).setInitialBranch("main").call()) {
+            TestHistory.build(git, 8);
+            String repoUrl = checkout.toString();
+            // the diff pass outlasts the ttl without a heartbeat, and another node takes the repo
+            duringDiff = () -> {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                assertThat(other.tryClaim(repoUrl)).isNotNull();
+            };
+
+            assertThatThrownBy(() -> scanner(stalled).scanRepositoryIncremental(repoUrl, "main"))
+                    .isInstanceOf(IllegalStateException.class).hasMessageContaining("node b");
+            verify(changeRepo, never()).save(any());
+            verify(checkpointRepo, never()).save(any());
+            verify(retainedRepo, never()).save(any());
+        }
+    }
+
+    @Test
+    void filteredAndDefaultScansEachAdvanceTheirOwnCheckpoint() throws Exception {
+        Path checkout = tmp.resolve("repo");
+        try (Git git = Git.init().setDirectory(checkout.toFile()).setInitialBranch("main").call()) {
+            Repository repository = git.getRepository();
+            ObjectId first = TestHistory.build(git, 16);
+            String repoUrl = checkout.toString();
+            ScanOptions filtered = ScanOptions.DEFAULT.withPaths(List.of("src/**"), List.of());
+
+            assertThat(scanner.scanRepositoryIncremental(repoUrl, "main").getBaseCommit()).isNull();
+            Files.writeString(checkout.resolve("later.txt"), "a\nb\n");
+            TestHistory.commit(git, "later 1");
+            Files.writeString(checkout.resolve("src/later.txt"), "a\nb\nc\n");
+            ObjectId tip = TestHistory.commit(git, "later 2");
+
+            // the filtered profile has no checkpoint yet: its whole history, leaving the default one where it was
+            RepositoryChange filteredRun = scanner.scanRepositoryIncremental(repoUrl, "main", filtered, ScanProgressListener.NONE);
+            assertThat(filteredRun.getBaseCommit()).isNull();
+            assertThat(filteredRun.getTipCommit()).isEqualTo(tip.getName());
+            diffed.clear();
+
+            RepositoryChange defaultRun = scanner.scanRepositoryIncremental(repoUrl, "main");
+            assertThat(defaultRun.getBaseCommit()).isEqualTo(first.getName());
+            assertThat(diffed.get(0)).extracting(RevCommit::getId).hasSize(2).contains(tip);
+            assertBranchTotals(repository, defaultRun);
+            verify(checkpointRepo).findByRepoUrlAndBranchNameAndDiffProfile(repoUrl, "main", filtered.profile());
+            assertThat(filteredRun.getLinesAdded()).isLessThan(defaultRun.getBranchLinesAdded());
+        }
+    }
+
+    // branch totals must match a full scan of the current history
+    private void assertBranchTotals(Repository repository, RepositoryChange change) throws Exception {
+        DiffTotals expected = DiffTotals.sum(engine.diffCommits(repository,
+                between(repository, ObjectId.fromString(change.getTipCommit()), null)));
+        assertThat(change.getBranchLinesAdded()).isEqualTo(expected.linesAdded());
+        assertThat(change.getBranchLinesDeleted()).isEqualTo(expected.linesDeleted());
+    }
+
+    // reachable from `from` but not from `exclude`
+    private static List<RevCommit> between(Repository repository, ObjectId from, ObjectId exclude) throws Exception {
+        List<RevCommit> commits = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.markStart(revWalk.parseCommit(from));
+            if (exclude != null) revWalk.markUninteresting(revWalk.parseCommit(exclude));
+            revWalk.forEach(commits::add);
+        }
+        return commits;
+    }
+}
@@ -0,0 +1,154 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import com.githubchangesfrequency.service.HistoryExportService.Dataset;
+import com.githubchangesfrequency.service.HistoryExportService.Filter;
+import com.githubchangesfrequency.service.HistoryExportService.Format;
+
+class HistoryExportServiceTest {
+
+    private static final String A = "https://example.com/a.git";
+    private static final String B = "https://example.com/b.git";
+    private static final Instant T0 = Instant.parse("2024-03-01T00:00:00Z");
+
+    private final JsonMapper json = JsonMapper.builder().build();
+    private JdbcTemplate jdbc;
+    private HistoryExportService export;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(dataSource);
+        // as generated from the entities
+        jdbc.execute("CREATE TABLE commit_change (id BIGINT AUTO_INCREMENT PRIMARY KEY, repo_url VARCHAR(255) NOT NULL, "
+                + "diff_profile VARCHAR(32) NOT NULL, commit_sha VARCHAR(64) NOT NULL, commit_time TIMESTAMP(6) NOT NULL, "
+                + "author_name VARCHAR(255), author_email VARCHAR(255), lines_added BIGINT NOT NULL, lines_deleted BIGINT NOT NULL)");
+        jdbc.execute("CREATE TABLE repository_change (id BIGINT AUTO_INCREMENT PRIMARY KEY, repo_url VARCHAR(255), "
+                + "branch_name VARCHAR(255), lines_added BIGINT NOT NULL, lines_deleted BIGINT NOT NULL, "
+                + "total_changes BIGINT NOT NULL, scanned_at TIMESTAMP(6), tip_commit VARCHAR(64), base_commit VARCHAR(64), "
+                + "diff_profile VARCHAR(32), binary_files BIGINT, oversized_files BIGINT, rename_limit_commits BIGINT, "
+                + "branch_lines_added BIGINT, branch_lines_deleted BIGINT, dropped_commits BIGINT, dropped_lines_added BIGINT, "
+                + "dropped_lines_deleted BIGINT, phase_millis VARCHAR(512), scan_millis BIGINT, fetch_error VARCHAR(512))");
+        export = new HistoryExportService(jdbc, json, 50);
+    }
+
+    private void commit(String repo, int i) {
+        jdbc.update("INSERT INTO commit_change (repo_url, diff_profile, commit_sha, commit_time, author_name, author_email, "
+                + "lines_added, lines_deleted) VALUES (?, '', ?, ?, ?, ?, ?, ?)", repo, "sha" + i,
+                Timestamp.from(T0.plusSeconds(3600L * i)), i % 2 == 0 ? "Dev " + i : null, "dev@example.com", i, 1);
+    }
+
+    private String run(Dataset dataset, Filter filter, Format format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.export(dataset, filter, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void commitsStreamAsNdjsonInIdOrderAndResumeAfterAnId() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            commit(i % 5 == 0 ? B : A, i);
+        }
+
+        String all = run(Dataset.COMMITS, new Filter(List.of(A), null, null, null, null), Format.NDJSON);
+        String[] lines = all.split("\n");
+        assertThat(all).endsWith("\n");
+        assertThat(lines).hasSize(400);
+        List<Long> ids = new ArrayList<>();
+        for (String line : lines) {
+            JsonNode row = json.readTree(line);
+            assertThat(row.get("repoUrl").asString()).isEqualTo(A);
+            ids.add(row.get("id").asLong());
+        }
+        assertThat(ids).isSorted();
+        JsonNode second = json.readTree(lines[1]);
+        assertThat(second.get("commitSha").asString()).isEqualTo("sha2");
+        assertThat(second.get("authorName").asString()).isEqualTo("Dev 2");
+        assertThat(second.get("linesAdded").asLong()).isEqualTo(2);
+        assertThat(second.get("commitTime").asString()).isEqualTo("2024-03-01T02:00:00Z");
+        assertThat(json.readTree(lines[0]).get("authorName").isNull()).isTrue();
+
+        String rest = run(Dataset.COMMITS, new Filter(List.of(A), null, null, null, ids.get(99)), Format.NDJSON);
+        assertThat(rest.split("\n")).hasSize(300);
+        assertThat(json.readTree(rest.split("\n")[0]).get("id").asLong()).isEqualTo(ids.get(100));
+
+        // [from, to) on commit time, over both repos
+        String day = run(Dataset.COMMITS, new Filter(null, null, T0, T0.plusSeconds(86400), null), Format.NDJSON);
+        assertThat(day.split("\n")).hasSize(24);
+    }
+
+    @Test
+    void scansAsCsvQuoteSeparatorsAndLeaveNullsEmpty() throws Exception {
+        jdbc.update("INSERT INTO repository_change (repo_url, branch_name, lines_added, lines_deleted, total_changes, scanned_at, "
+                + "tip_commit, fetch_error) VALUES (?, 'main', 10, 4, 14, ?, 'abc', ?)", A, Timestamp.from(T0),
+                "Fetch failed: \"auth\", retry\nlater");
+        jdbc.update("INSERT INTO repository_change (repo_url, branch_name, lines_added, lines_deleted, total_changes, scanned_at) "
+                + "VALUES (?, 'dev', 1, 1, 2, ?)", A, Timestamp.from(T0));
+
+        String csv = run(Dataset.SCANS, new Filter(List.of(A), "main", null, null, null), Format.CSV);
+
+        assertThat(csv).startsWith("id,repoUrl,branchName,tipCommit,baseCommit,diffProfile,linesAdded,linesDeleted,totalChanges,");
+        assertThat(csv).endsWith(",\"Fetch failed: \"\"auth\"\", retry\nlater\"\r\n");
+        assertThat(csv).contains("1," + A + ",main,abc,,,10,4,14,,,,,,,,,2024-03-01T00:00:00Z,,,");
+        assertThat(csv).doesNotContain("dev");
+    }
+
+    @Test
+    void onMySqlOnlyTheExportStreamsRowByRow() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("MySQL");
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.getConnection()).thenReturn(connection);
+        when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new HistoryExportService(new JdbcTemplate(dataSource), json, 50)
+                .export(Dataset.COMMITS, new Filter(null, null, null, null, null), Format.NDJSON, out);
+
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+        assertThat(out.size()).isZero();
+    }
+
+    @Test
+    void branchOnlyFiltersScans() {
+        Filter filter = new Filter(null, "main", null, null, null);
+        assertThatThrownBy(() -> export.validate(Dataset.COMMITS, filter)).isInstanceOf(IllegalArgumentException.class);
+        export.validate(Dataset.SCANS, filter);
+        assertThatThrownBy(() -> export.validate(Dataset.SCANS, new Filter(null, null, T0, T0, null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,104 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class JGitStorageTuningTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void indexesOnCloneAndRepacksAfterEnoughFetches() throws Exception {
+        String cloneBase = tmp.resolve("clones").toString();
+        RepositoryLockManager locks = new RepositoryLockManager(cloneBase);
+        JGitStorageTuning storage = new JGitStorageTuning(true, true);
+        MirrorCloneManager mirrors = new MirrorCloneManager(locks, storage,
+                new ScanMetrics(new SimpleMeterRegistry(), true), cloneBase, Duration.ofHours(1), false);
+        CloneCacheManager cache = new CloneCacheManager(mirrors, locks, storage, DataSize.ofGigabytes(1),
+                Duration.ofMinutes(10), true, 3, 5000);
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            remote.push("main", "a.txt");
+            remote.push("main", "b.txt");
+
+            // the clone returns before it is indexed, in the background
+            mirrors.refresh(remote.url(), ScanProgressListener.NONE);
+            cache.awaitMaintenance();
+            try (MirrorClone clone = mirrors.open(remote.url(), ScanProgressListener.NONE)) {
+                File objects = new File(clone.getRepository().getDirectory(), "objects");
+                assertThat(new File(objects, "info/commit-graph")).exists();
+                assertThat(count(objects, ".bitmap")).isEqualTo(1);
+                assertThat(clone.getRepository().getConfig().getBoolean("core", "commitGraph", false)).isTrue();
+            }
+
+            // the graph is not rewritten for every fetch, only once packs pile up
+            remote.push("main", "a.txt");
+            mirrors.refresh(remote.url(), ScanProgressListener.NONE);
+            remote.push("main", "a.txt");
+            mirrors.refresh(remote.url(), ScanProgressListener.NONE);
+            cache.awaitMaintenance();
+            File objects = new File(mirrors.mirrorDir(remote.url()), "objects");
+            assertThat(count(objects, ".pack")).isEqualTo(2 + 1);
+
+            ObjectId tip = remote.push("main", "a.txt");
+            mirrors.refresh(remote.url(), ScanProgressListener.NONE);
+            cache.awaitMaintenance();
+            assertThat(count(objects, ".pack")).isEqualTo(1);
+            assertThat(cache.status().gcRuns()).isEqualTo(2);
+
+            try (MirrorClone clone = mirrors.open(remote.url(), ScanProgressListener.NONE);
+                 RevWalk walk = new RevWalk(clone.getRepository())) {
+                walk.markStart(walk.parseCommit(tip));
+                int n = 0;
+                while (walk.next() != null) n++;
+                assertThat(n).isEqualTo(5);
+            }
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void mirrorInUseIsRepackedOnceItIsReleased() throws Exception {
+        String cloneBase = tmp.resolve("clones").toString();
+        RepositoryLockManager locks = new RepositoryLockManager(cloneBase);
+        JGitStorageTuning storage = new JGitStorageTuning(true, true);
+        MirrorCloneManager mirrors = new MirrorCloneManager(locks, storage,
+                new ScanMetrics(new SimpleMeterRegistry(), true), cloneBase, Duration.ofHours(1), false);
+        CloneCacheManager cache = new CloneCacheManager(mirrors, locks, storage, DataSize.ofGigabytes(1),
+                Duration.ofMinutes(10), true, 3, 5000);
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            remote.push("main", "a.txt");
+            File objects;
+            // the scan that cloned it holds the mirror: the clone is not held up by a repack
+            try (MirrorClone clone = mirrors.open(remote.url(), ScanProgressListener.NONE)) {
+                cache.awaitMaintenance();
+                objects = new File(clone.getRepository().getDirectory(), "objects");
+                assertThat(new File(objects, "info/commit-graph")).doesNotExist();
+                assertThat(cache.status().gcRuns()).isZero();
+            }
+            // the next sweep picks it up
+            cache.sweep();
+            assertThat(new File(objects, "info/commit-graph")).exists();
+            assertThat(cache.status().gcRuns()).isEqualTo(1);
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    private static int count(File objects, String suffix) {
+        File[] files = new File(objects, "pack").listFiles(f -> f.getName().endsWith(suffix));
+        return files != null ? files.length : 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MirrorCloneManagerTest {
+
+    @TempDir
+    Path tmp;
+
+    private MirrorCloneManager mirrors(boolean openInPlace) {
+        String cloneBase = tmp.resolve("clones").toString();
+        return new MirrorCloneManager(new RepositoryLockManager(cloneBase), new JGitStorageTuning(true, true),
+                new ScanMetrics(new SimpleMeterRegistry(), true), cloneBase, Duration.ZERO, openInPlace);
+    }
+
+    @Test
+    void localCheckoutIsOpenedInPlaceOnlyWhenEnabled() throws Exception {
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            ObjectId tip = remote.push("main", "a.txt");
+            String checkout = tmp.resolve("r/work").toString();
+
+            MirrorCloneManager inPlace = mirrors(true);
+            try (MirrorClone clone = inPlace.open(checkout, ScanProgressListener.NONE)) {
+                assertThat(clone.getRepository().getDirectory()).isEqualTo(new File(checkout, ".git"));
+                assertThat(clone.getRepository().resolve(clone.resolveBranchRef("main"))).isEqualTo(tip);
+                assertThat(clone.getFetchError()).isNull();
+            }
+            inPlace.refresh(checkout, ScanProgressListener.NONE);
+            assertThat(inPlace.mirrorDir(checkout)).doesNotExist();
+            // urls are still mirrored
+            try (MirrorClone clone = inPlace.open(remote.url(), ScanProgressListener.NONE)) {
+                assertThat(clone.getRepository().getDirectory()).isEqualTo(inPlace.mirrorDir(remote.url()));
+            }
+
+            MirrorCloneManager mirroring = mirrors(false);
+            try (MirrorClone clone = mirroring.open(checkout, ScanProgressListener.NONE)) {
+                assertThat(clone.getRepository().getDirectory()).isEqualTo(mirroring.mirrorDir(checkout));
+                assertThat(clone.getRepository().resolve(clone.resolveBranchRef("main"))).isEqualTo(tip);
+            }
+        }
+    }
+
+    @Test
+    void headIsTheCheckedOutCommitNotTheRemotesDefaultBranch() throws Exception {
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            ObjectId main = remote.push("main", "a.txt");
+            Path checkout = tmp.resolve("r/work");
+            ObjectId feature;
+            try (Git git = Git.open(checkout.toFile())) {
+                git.getRepository().updateRef("refs/remotes/origin/HEAD").link("refs/remotes/origin/main");
+                git.checkout().setCreateBranch(true).setName("feature").call();
+                Files.writeString(checkout.resolve("b.txt"), "b\n");
+                feature = TestHistory.commit(git, "feature");
+            }
+
+            try (MirrorClone clone = mirrors(true).open(checkout.toString(), ScanProgressListener.NONE)) {
+                assertThat(clone.getRepository().resolve("refs/remotes/origin/HEAD")).isEqualTo(main);
+                assertThat(clone.resolveBranchRef("HEAD")).isEqualTo("HEAD");
+                assertThat(clone.getRepository().resolve(clone.resolveBranchRef("HEAD"))).isEqualTo(feature);
+            }
+        }
+    }
+
+    @Test
+    void headOfAMirrorIsTheRemotesDefaultBranch() throws Exception {
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            ObjectId main = remote.push("main", "a.txt");
+            ObjectId feature = remote.push("feature", "b.txt");
+
+            // what the server endpoints do with branch=HEAD: urls are always mirrored, even with openInPlace
+            MirrorCloneManager mirrors = mirrors(true);
+            assertThat(mirrors.resolveTip(remote.url(), "HEAD")).isEqualTo(main);
+            try (MirrorClone clone = mirrors.open(remote.url(), ScanProgressListener.NONE)) {
+                assertThat(clone.resolveBranchRef("HEAD")).isEqualTo("HEAD");
+                assertThat(clone.getRepository().resolve(clone.resolveBranchRef("HEAD"))).isEqualTo(main);
+                assertThat(clone.getRepository().resolve(clone.resolveBranchRef("feature"))).isEqualTo(feature);
+            }
+        }
+    }
+
+    @Test
+    void creatingAMirrorDeletesTheWorkingTreeCloneFromBeforeMirrors() throws Exception {
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            remote.push("main", "a.txt");
+            File clones = tmp.resolve("clones").toFile();
+            File legacy = new File(clones, MirrorCloneManager.repoKey(remote.url()));
+            Git.cloneRepository().setURI(remote.url()).setDirectory(legacy).call().close();
+            File unrelated = new File(clones, "not-a-clone");
+            assertThat(new File(unrelated, "data").mkdirs()).isTrue();
+
+            MirrorCloneManager mirrors = mirrors(false);
+            try (MirrorClone clone = mirrors.open(remote.url(), ScanProgressListener.NONE)) {
+                assertThat(clone.getRepository().getDirectory()).isEqualTo(mirrors.mirrorDir(remote.url()));
+            }
+            assertThat(legacy).doesNotExist();
+            assertThat(unrelated).isDirectory();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.repository.RepositoryChangeRepository;
+
+class MultiBranchScannerServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private CommitDiffEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        engine = new CommitDiffEngine(new BlobDiffCache(10_000, "", 0), 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void eachBranchGetsTheTotalsOfItsOwnHistoryFromOneDiffPass() throws Exception {
+        Path checkout = tmp.resolve("repo");
+        try (Git git = Git.init().setDirectory(checkout.toFile()).setInitialBranch("main").call()) {
+            TestHistory.build(git, 48);
+            // release forks from older history, dev from the current tip and later merges release
+            git.checkout().setCreateBranch(true).setName("release").setStartPoint("main~12").call();
+            Files.writeString(checkout.resolve("release.txt"), "fix\n");
+            TestHistory.commit(git, "release fix");
+            git.checkout().setCreateBranch(true).setName("dev").setStartPoint("main").call();
+            Files.writeString(checkout.resolve("dev.txt"), "one\ntwo\n");
+            TestHistory.commit(git, "dev change");
+            git.merge().include(git.getRepository().resolve("release")).setMessage("merge release").call();
+            git.checkout().setName("main").call();
+            Files.writeString(checkout.resolve("main.txt"), "one\ntwo\nthree\n");
+            TestHistory.commit(git, "main change");
+
+            List<ObjectId> diffed = new ArrayList<>();
+            CommitStatIndex statIndex = mock(CommitStatIndex.class);
+            Answer<List<CommitStats>> diff = inv -> {
+                List<RevCommit> commits = inv.getArgument(1);
+                diffed.addAll(commits);
+                return engine.diffCommits(inv.getArgument(0), commits, inv.getArgument(2), inv.getArgument(3),
+                    inv.getArguments().length > 4 ? inv.getArgument(4) : FileStatSink.NONE);
+            };
+            when(statIndex.statsFor(any(), anyList(), any(), any())).thenAnswer(diff);
+            when(statIndex.statsFor(any(), anyList(), any(), any(), any())).thenAnswer(diff);
+            RepositoryChangeRepository changeRepo = mock(RepositoryChangeRepository.class);
+            when(changeRepo.findFirstByRepoUrlAndBranchNameAndTipCommitAndDiffProfileAndBaseCommitIsNullOrderByScannedAtDesc(
+                    anyString(), anyString(), anyString(), any())).thenReturn(Optional.empty());
+            when(changeRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+            String cloneBase = tmp.resolve("clones").toString();
+            MirrorCloneManager cloneManager = new MirrorCloneManager(new RepositoryLockManager(cloneBase),
+                    new JGitStorageTuning(true, true), new ScanMetrics(new SimpleMeterRegistry(), true),
+                    cloneBase, Duration.ZERO, true);
+            ChangeHistoryRecorder recorder = new ChangeHistoryRecorder(new JdbcTemplate(), mock(PlatformTransactionManager.class),
+                    false, false, 1000);
+            MultiBranchScannerService service = new MultiBranchScannerService(changeRepo, statIndex, cloneManager,
+                    recorder, WorkLeaseManager.disabled(), mock(PlatformTransactionManager.class));
+
+            List<RepositoryChange> results = service.scanBranches(checkout.toString(), List.of("main"), "{dev,rel*}");
+
+            assertThat(results).extracting(RepositoryChange::getBranchName).containsExactly("main", "dev", "release");
+            Repository repository = git.getRepository();
+            HashSet<ObjectId> reachable = new HashSet<>();
+            for (RepositoryChange result : results) {
+                List<RevCommit> history = history(repository, result.getBranchName());
+                reachable.addAll(history);
+                DiffTotals expected = DiffTotals.sum(engine.diffCommits(repository, history));
+                assertThat(result.getTipCommit()).isEqualTo(repository.resolve(result.getBranchName()).getName());
+                assertThat(result.getLinesAdded()).as(result.getBranchName()).isEqualTo(expected.linesAdded());
+                assertThat(result.getLinesDeleted()).as(result.getBranchName()).isEqualTo(expected.linesDeleted());
+            }
+            // every commit of every branch diffed exactly once
+            assertThat(diffed).doesNotHaveDuplicates().hasSameSizeAs(reachable);
+            assertThat(new HashSet<>(diffed)).isEqualTo(reachable);
+        }
+    }
+
+    private static List<RevCommit> history(Repository repository, String branch) throws Exception {
+        List<RevCommit> commits = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.markStart(revWalk.parseCommit(repository.resolve(branch)));
+            revWalk.forEach(commits::add);
+        }
+        return commits;
+    }
+}
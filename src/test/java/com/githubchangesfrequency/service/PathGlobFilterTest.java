@@ -0,0 +1,105 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PathGlobFilterTest {
+
+    private static final List<String> FILES = List.of(
+            "README.md", "yarn.lock", "generated/out.txt", "docs/generated/page.md",
+            "src/Main.java", "src/gen/Parser.java", "vendor/lib/dep.js", "web/vendor/app.js");
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void excludedDirectoriesAreNeverEntered() throws Exception {
+        try (Git git = repo()) {
+            List<String> seen = new ArrayList<>();
+            List<String> files = walk(git, new PathGlobFilter(List.of(), List.of("vendor/", "*.lock", "/generated")) {
+                @Override
+                public boolean include(TreeWalk walker) {
+                    seen.add(walker.getPathString());
+                    return super.include(walker);
+                }
+            });
+
+            // vendor/ at any depth, /generated only at the root
+            assertThat(files).containsExactlyInAnyOrder("README.md", "docs/generated/page.md", "src/Main.java", "src/gen/Parser.java");
+            assertThat(seen).contains("vendor", "web/vendor", "generated")
+                    .doesNotContain("vendor/lib", "vendor/lib/dep.js", "web/vendor/app.js", "generated/out.txt");
+        }
+    }
+
+    @Test
+    void includesKeepMatchingFilesAndExcludesStillWin() throws Exception {
+        try (Git git = repo()) {
+            assertThat(walk(git, new PathGlobFilter(List.of("src/**", "*.md"), List.of())))
+                    .containsExactlyInAnyOrder("README.md", "docs/generated/page.md", "src/Main.java", "src/gen/Parser.java");
+            assertThat(walk(git, new PathGlobFilter(List.of("src/"), List.of("gen/"))))
+                    .containsExactly("src/Main.java");
+            assertThat(walk(git, new PathGlobFilter(List.of("", "#comment"), List.of())))
+                    .hasSameSizeAs(FILES);
+        }
+    }
+
+    @Test
+    void diffCountsOnlyFilteredPaths() throws Exception {
+        try (Git git = repo()) {
+            // every file gains a line
+            for (String file : FILES) Files.writeString(tmp.resolve(file), "one\ntwo\n");
+            git.add().addFilepattern(".").call();
+            RevCommit change = git.commit().setMessage("second").call();
+
+            CommitDiffEngine engine = new CommitDiffEngine(new BlobDiffCache(1000, "", 0), 1);
+            try {
+                ScanOptions options = ScanOptions.paths(List.of("src/**", "*.md"), List.of("gen/"));
+                assertThat(options.treeFilter()).isInstanceOf(PathGlobFilter.class);
+                assertThat(ScanOptions.DEFAULT.treeFilter()).isSameAs(TreeFilter.ALL);
+
+                CommitStats stats = engine.diffCommits(git.getRepository(), List.of(change), options, ScanProgressListener.NONE).get(0);
+                assertThat(stats.linesAdded()).isEqualTo(3);
+                assertThat(engine.diffFiles(git.getRepository(), List.of(change), options))
+                        .extracting(FileChangeStat::path)
+                        .containsExactlyInAnyOrder("README.md", "docs/generated/page.md", "src/Main.java");
+                assertThat(engine.diffCommits(git.getRepository(), List.of(change)).get(0).linesAdded()).isEqualTo(FILES.size());
+            } finally {
+                engine.shutdown();
+            }
+        }
+    }
+
+    private Git repo() throws Exception {
+        Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call();
+        for (String file : FILES) {
+            Path path = tmp.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, "one\n");
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("first").call();
+        return git;
+    }
+
+    private static List<String> walk(Git git, TreeFilter filter) throws Exception {
+        List<String> files = new ArrayList<>();
+        try (TreeWalk walk = new TreeWalk(git.getRepository())) {
+            walk.addTree(git.getRepository().resolve("HEAD^{tree}"));
+            walk.setRecursive(true);
+            walk.setFilter(filter);
+            while (walk.next()) files.add(walk.getPathString());
+        }
+        return files;
+    }
+}
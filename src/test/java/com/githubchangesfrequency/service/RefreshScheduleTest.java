@@ -0,0 +1,41 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RefreshScheduleTest {
+
+    private final RefreshSchedule schedule =
+            new RefreshSchedule(Duration.ofMinutes(15), Duration.ofMinutes(1), Duration.ofHours(6), 0.1);
+
+    @Test
+    void backoffDoublesUpToMax() {
+        assertThat(schedule.backoff(1)).isEqualTo(Duration.ofMinutes(1));
+        assertThat(schedule.backoff(2)).isEqualTo(Duration.ofMinutes(2));
+        assertThat(schedule.backoff(5)).isEqualTo(Duration.ofMinutes(16));
+        assertThat(schedule.backoff(9)).isEqualTo(Duration.ofMinutes(256));
+        assertThat(schedule.backoff(10)).isEqualTo(Duration.ofHours(6));
+        assertThat(schedule.backoff(500)).isEqualTo(Duration.ofHours(6));
+    }
+
+    @Test
+    void delaysStayWithinJitter() {
+        Instant now = Instant.parse("2024-01-01T00:00:00Z");
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            Duration next = Duration.between(now, schedule.afterSuccess(now, random));
+            assertThat(next).isBetween(Duration.ofSeconds(810), Duration.ofSeconds(990));
+
+            Duration first = Duration.between(now, schedule.first(now, random));
+            assertThat(first).isBetween(Duration.ZERO, Duration.ofMinutes(15));
+
+            Duration retry = Duration.between(now, schedule.afterFailure(now, 3, random));
+            assertThat(retry).isBetween(Duration.ofSeconds(216), Duration.ofSeconds(264));
+        }
+    }
+}
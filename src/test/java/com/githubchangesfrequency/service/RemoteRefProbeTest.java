@@ -0,0 +1,39 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RemoteRefProbeTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void readsBranchTipsFromAdvertisement() throws Exception {
+        try (TestRemote remote = new TestRemote(tmp)) {
+            ObjectId main = remote.push("main", "a.txt");
+            ObjectId feature = remote.push("feature", "b.txt");
+
+            Map<String, ObjectId> tips = new RemoteRefProbe().branchTips(remote.url());
+
+            assertThat(tips).containsEntry("main", main).containsEntry("feature", feature).hasSize(2);
+
+            ObjectId moved = remote.push("main", "a.txt");
+            assertThat(new RemoteRefProbe().branchTips(remote.url())).containsEntry("main", moved);
+        }
+    }
+
+    @Test
+    void failsForMissingRemote() {
+        assertThatThrownBy(() -> new RemoteRefProbe().branchTips(tmp.resolve("nope.git").toUri().toString()))
+                .isInstanceOf(GitAPIException.class);
+    }
+}
@@ -0,0 +1,140 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryLockManagerTest {
+
+    private static final String KEY = "github.com_acme_repo";
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void writerInAnotherJvmExcludesEveryone() throws Exception {
+        RepositoryLockManager locks = new RepositoryLockManager(tmp.toString());
+        try (OtherJvm other = OtherJvm.lock(tmp, KEY, "write")) {
+            assertThat(locks.tryWriteLock(KEY)).isNull();
+            CompletableFuture<Void> reader = acquire(() -> locks.readLock(KEY));
+            assertThatThrownBy(() -> reader.get(500, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            // other repos are not held up
+            try (RepositoryLockManager.Lease lease = locks.tryWriteLock("other")) {
+                assertThat(lease).isNotNull();
+            }
+
+            other.release();
+            reader.get(10, TimeUnit.SECONDS);
+        }
+        try (RepositoryLockManager.Lease lease = locks.tryWriteLock(KEY)) {
+            assertThat(lease).isNotNull();
+        }
+    }
+
+    @Test
+    void readersShareAcrossJvmsButKeepWritersOut() throws Exception {
+        RepositoryLockManager locks = new RepositoryLockManager(tmp.toString());
+        try (OtherJvm other = OtherJvm.lock(tmp, KEY, "read")) {
+            try (RepositoryLockManager.Lease first = locks.readLock(KEY);
+                 RepositoryLockManager.Lease second = locks.readLock(KEY)) {
+                assertThat(locks.tryWriteLock(KEY)).isNull();
+            }
+            // our readers are gone, the other JVM's is not
+            assertThat(locks.tryWriteLock(KEY)).isNull();
+            CompletableFuture<Void> writer = acquire(() -> locks.writeLock(KEY));
+            assertThatThrownBy(() -> writer.get(500, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            other.release();
+            writer.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void localWriterAndReadersExcludeEachOther() throws Exception {
+        RepositoryLockManager locks = new RepositoryLockManager(tmp.toString());
+        RepositoryLockManager.Lease reader = locks.readLock(KEY);
+        assertThat(locks.tryWriteLock(KEY)).isNull();
+        reader.close();
+
+        RepositoryLockManager.Lease writer = locks.tryWriteLock(KEY);
+        assertThat(writer).isNotNull();
+        CompletableFuture<Void> blocked = acquire(() -> locks.readLock(KEY));
+        assertThatThrownBy(() -> blocked.get(300, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+        writer.close();
+        blocked.get(10, TimeUnit.SECONDS);
+    }
+
+    @FunctionalInterface
+    private interface Acquire {
+        RepositoryLockManager.Lease call() throws Exception;
+    }
+
+    // completes once the lock was taken; it is released right away, on the thread that holds it
+    private static CompletableFuture<Void> acquire(Acquire acquire) {
+        CompletableFuture<Void> acquired = new CompletableFuture<>();
+        Thread t = new Thread(() -> {
+            try (RepositoryLockManager.Lease lease = acquire.call()) {
+                acquired.complete(null);
+            } catch (Exception e) {
+                acquired.completeExceptionally(e);
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return acquired;
+    }
+
+    /** A second JVM holding a lock of its own RepositoryLockManager on the same clone base. */
+    static final class OtherJvm implements AutoCloseable {
+
+        private final Process process;
+
+        private OtherJvm(Process process) {
+            this.process = process;
+        }
+
+        static OtherJvm lock(Path cloneBase, String key, String mode) throws Exception {
+            Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+            Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                    OtherJvm.class.getName(), cloneBase.toString(), key, mode)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            assertThat(out.readLine()).isEqualTo("locked");
+            return new OtherJvm(process);
+        }
+
+        void release() throws Exception {
+            process.getOutputStream().close();
+            assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+        }
+
+        @Override
+        public void close() {
+            process.destroyForcibly();
+        }
+
+        // holds the lock until stdin is closed
+        public static void main(String[] args) throws Exception {
+            RepositoryLockManager locks = new RepositoryLockManager(args[0]);
+            try (RepositoryLockManager.Lease lease = args[2].equals("write") ? locks.writeLock(args[1]) : locks.readLock(args[1])) {
+                System.out.println("locked");
+                System.out.flush();
+                while (System.in.read() >= 0) {
+                    // wait for the test to let go
+                }
+            }
+        }
+    }
+}
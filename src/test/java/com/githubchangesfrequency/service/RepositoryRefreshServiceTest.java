@@ -0,0 +1,122 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.domain.TrackedBranch;
+import com.githubchangesfrequency.repository.TrackedBranchRepository;
+
+/**
+ * The refresh loop against real file:// remotes and mirrors; only persistence and the scan
+ * itself are stubbed (the stub scan reports the tip the mirror has after the fetch).
+ */
+class RepositoryRefreshServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private TrackedBranchRepository trackedRepo;
+    private GitChangeScannerServiceIncr scanner;
+    private MirrorCloneManager cloneManager;
+    private RepositoryRefreshService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        trackedRepo = mock(TrackedBranchRepository.class);
+        when(trackedRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        scanner = mock(GitChangeScannerServiceIncr.class);
+        ScanOptionsResolver resolver = mock(ScanOptionsResolver.class);
+        when(resolver.resolve(anyString(), any())).thenReturn(ScanOptions.DEFAULT);
+
+        String cloneBase = tmp.resolve("clones").toString();
+        // a long freshness window: only an explicit refresh may fetch
+        cloneManager = new MirrorCloneManager(new RepositoryLockManager(cloneBase), new JGitStorageTuning(true, true),
+                new ScanMetrics(new SimpleMeterRegistry(), true), cloneBase, Duration.ofHours(1), false);
+        service = new RepositoryRefreshService(trackedRepo, new RemoteRefProbe(), cloneManager, scanner, resolver,
+                WorkLeaseManager.disabled(), true, 2, Duration.ofMinutes(15), Duration.ofMinutes(1), Duration.ofHours(6), 0.1);
+
+        when(scanner.scanRepositoryIncremental(anyString(), anyString(), any(), any())).thenAnswer(inv -> {
+            String url = inv.getArgument(0);
+            String branch = inv.getArgument(1);
+            try (MirrorClone clone = cloneManager.open(url, ScanProgressListener.NONE)) {
+                Repository repo = clone.getRepository();
+                RepositoryChange change = new RepositoryChange(url, branch, 0, 0, Instant.now());
+                change.setTipCommit(repo.resolve(clone.resolveBranchRef(branch)).getName());
+                return change;
+            }
+        });
+    }
+
+    @Test
+    void scansOnlyWhenRemoteTipMoves() throws Exception {
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            ObjectId first = remote.push("main", "a.txt");
+            TrackedBranch main = new TrackedBranch(remote.url(), "main", Instant.now());
+
+            service.refresh(remote.url(), List.of(main));
+            assertThat(main.getLastSeenTip()).isEqualTo(first.getName());
+            assertThat(main.getConsecutiveFailures()).isZero();
+            assertThat(main.getNextCheckAt()).isAfter(Instant.now().plus(Duration.ofMinutes(13)));
+
+            // unchanged: advertisement only, no scan
+            service.refresh(remote.url(), List.of(main));
+            verify(scanner, org.mockito.Mockito.times(1)).scanRepositoryIncremental(eq(remote.url()), eq("main"), any(), any());
+
+            // moved: the mirror is still fresh, but the refresh fetches anyway
+            ObjectId second = remote.push("main", "a.txt");
+            service.refresh(remote.url(), List.of(main));
+            assertThat(main.getLastSeenTip()).isEqualTo(second.getName());
+            assertThat(new File(cloneManager.mirrorDir(remote.url()), "HEAD")).exists();
+        }
+    }
+
+    @Test
+    void backsOffWhenRemoteFails() throws Exception {
+        String missing = tmp.resolve("missing.git").toUri().toString();
+        TrackedBranch t = new TrackedBranch(missing, "main", Instant.now());
+
+        service.refresh(missing, List.of(t));
+        service.refresh(missing, List.of(t));
+        service.refresh(missing, List.of(t));
+
+        assertThat(t.getConsecutiveFailures()).isEqualTo(3);
+        assertThat(t.getLastError()).startsWith("ref check failed");
+        // third failure: 4 minutes +/- 10%
+        assertThat(t.getNextCheckAt()).isBetween(Instant.now().plusSeconds(200), Instant.now().plusSeconds(270));
+        verify(scanner, never()).scanRepositoryIncremental(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void branchMissingOnRemoteIsAFailure() throws Exception {
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            remote.push("main", "a.txt");
+            TrackedBranch gone = new TrackedBranch(remote.url(), "gone", Instant.now());
+
+            service.refresh(remote.url(), List.of(gone));
+
+            assertThat(gone.getConsecutiveFailures()).isEqualTo(1);
+            assertThat(gone.getLastError()).isEqualTo("branch not on remote");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.UUID;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class ScanCheckpointMigrationTest {
+
+    @Test
+    void dropsTheRepoAndBranchKeySoEachProfileGetsItsOwnCheckpoint() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        // as generated before profiles, then as the schema update leaves it
+        jdbc.execute("CREATE TABLE scan_checkpoint (id BIGINT AUTO_INCREMENT PRIMARY KEY, repo_url VARCHAR(1024) NOT NULL, "
+                + "branch_name VARCHAR(255) NOT NULL, last_processed_commit VARCHAR(64), updated_at TIMESTAMP(6), "
+                + "CONSTRAINT UK7x2kq9 UNIQUE (repo_url, branch_name))");
+        jdbc.update("INSERT INTO scan_checkpoint (repo_url, branch_name, last_processed_commit) VALUES ('r', 'main', 'a')");
+        jdbc.execute("ALTER TABLE scan_checkpoint ADD COLUMN diff_profile VARCHAR(32) DEFAULT '' NOT NULL");
+        jdbc.execute("ALTER TABLE scan_checkpoint ADD CONSTRAINT uk_scan_checkpoint_profile "
+                + "UNIQUE (repo_url, branch_name, diff_profile)");
+
+        new ScanCheckpointMigration(jdbc).migrate();
+        // nothing left to do the second time
+        new ScanCheckpointMigration(jdbc).migrate();
+
+        jdbc.update("INSERT INTO scan_checkpoint (repo_url, branch_name, diff_profile, last_processed_commit) "
+                + "VALUES ('r', 'main', 'abc123', 'b')");
+        assertThat(jdbc.queryForObject("SELECT diff_profile FROM scan_checkpoint WHERE last_processed_commit = 'a'",
+                String.class)).isEmpty();
+        assertThatThrownBy(() -> jdbc.update("INSERT INTO scan_checkpoint (repo_url, branch_name, diff_profile) "
+                + "VALUES ('r', 'main', '')")).isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
@@ -0,0 +1,127 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+class ScanJobServiceTest {
+
+    private static final String REPO = "https://example.com/repo.git";
+
+    private final GitChangeScannerService fullScanner = mock(GitChangeScannerService.class);
+    private final GitChangeScannerServiceIncr incrementalScanner = mock(GitChangeScannerServiceIncr.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ScanJobService service;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void sameScanWhileQueuedOrRunningIsOneJob() throws Exception {
+        RepositoryChange result = new RepositoryChange();
+        when(fullScanner.scanRepository(anyString(), anyString(), any(), any())).thenAnswer(inv -> {
+            release.await(10, TimeUnit.SECONDS);
+            return result;
+        });
+        service = new ScanJobService(fullScanner, incrementalScanner, 1, 10, Duration.ofHours(1));
+
+        ScanJob job = service.submit(ScanJob.Kind.FULL, REPO, "main", ScanOptions.DEFAULT);
+        assertThat(service.submit(ScanJob.Kind.FULL, REPO, "main", ScanOptions.DEFAULT)).isSameAs(job);
+
+        // another branch, kind or profile is another scan
+        ScanOptions vendorless = ScanOptions.paths(List.of(), List.of("vendor/"));
+        assertThat(List.of(
+                service.submit(ScanJob.Kind.FULL, REPO, "dev", ScanOptions.DEFAULT),
+                service.submit(ScanJob.Kind.INCREMENTAL, REPO, "main", ScanOptions.DEFAULT),
+                service.submit(ScanJob.Kind.FULL, REPO, "main", vendorless)))
+                .doesNotContain(job).doesNotHaveDuplicates();
+        // same globs, same profile
+        assertThat(service.submit(ScanJob.Kind.FULL, REPO, "main", ScanOptions.paths(List.of(), List.of("vendor/"))))
+                .isSameAs(service.submit(ScanJob.Kind.FULL, REPO, "main", vendorless));
+
+        release.countDown();
+        awaitFinished(job);
+        assertThat(job.getStatus()).isEqualTo(ScanJob.Status.SUCCEEDED);
+        assertThat(job.getResult()).isSameAs(result);
+        assertThat(service.find(job.getId())).containsSame(job);
+        verify(fullScanner, times(1)).scanRepository(eq(REPO), eq("main"), eq(ScanOptions.DEFAULT), any());
+
+        // finished: the next submit scans again
+        ScanJob next = service.submit(ScanJob.Kind.FULL, REPO, "main", ScanOptions.DEFAULT);
+        assertThat(next).isNotSameAs(job);
+        awaitFinished(next);
+        verify(fullScanner, times(2)).scanRepository(eq(REPO), eq("main"), eq(ScanOptions.DEFAULT), any());
+    }
+
+    @Test
+    void fullQueueRejectsWithoutKeepingTheJob() throws Exception {
+        when(fullScanner.scanRepository(anyString(), anyString(), any(), any())).thenAnswer(inv -> {
+            release.await(10, TimeUnit.SECONDS);
+            return new RepositoryChange();
+        });
+        service = new ScanJobService(fullScanner, incrementalScanner, 1, 1, Duration.ofHours(1));
+
+        ScanJob running = service.submit(ScanJob.Kind.FULL, REPO, "a", ScanOptions.DEFAULT);
+        awaitRunning(running);
+        ScanJob queued = service.submit(ScanJob.Kind.FULL, REPO, "b", ScanOptions.DEFAULT);
+        assertThat(queued.getStatus()).isEqualTo(ScanJob.Status.QUEUED);
+        assertThatThrownBy(() -> service.submit(ScanJob.Kind.FULL, REPO, "c", ScanOptions.DEFAULT))
+                .isInstanceOf(RejectedExecutionException.class);
+        // a queued job is still shared
+        assertThat(service.submit(ScanJob.Kind.FULL, REPO, "b", ScanOptions.DEFAULT)).isSameAs(queued);
+
+        release.countDown();
+        awaitFinished(running);
+        awaitFinished(queued);
+        // the rejected scan left nothing behind: a retry is a new job that runs
+        ScanJob retried = service.submit(ScanJob.Kind.FULL, REPO, "c", ScanOptions.DEFAULT);
+        awaitFinished(retried);
+        assertThat(retried.getStatus()).isEqualTo(ScanJob.Status.SUCCEEDED);
+    }
+
+    @Test
+    void failedScanIsReportedAndNotShared() throws Exception {
+        when(incrementalScanner.scanRepositoryIncremental(anyString(), anyString(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Branch not found: gone"));
+        service = new ScanJobService(fullScanner, incrementalScanner, 1, 10, Duration.ofHours(1));
+
+        ScanJob job = service.submit(ScanJob.Kind.INCREMENTAL, REPO, "gone", ScanOptions.DEFAULT);
+        awaitFinished(job);
+
+        assertThat(job.getStatus()).isEqualTo(ScanJob.Status.FAILED);
+        assertThat(job.getError()).isEqualTo("Branch not found: gone");
+        assertThat(service.submit(ScanJob.Kind.INCREMENTAL, REPO, "gone", ScanOptions.DEFAULT)).isNotSameAs(job);
+    }
+
+    private static void awaitRunning(ScanJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.getStatus() == ScanJob.Status.QUEUED && System.nanoTime() < deadline) Thread.sleep(5);
+        assertThat(job.getStatus()).isEqualTo(ScanJob.Status.RUNNING);
+    }
+
+    private static void awaitFinished(ScanJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!job.isFinished() && System.nanoTime() < deadline) Thread.sleep(5);
+        assertThat(job.isFinished()).isTrue();
+    }
+}
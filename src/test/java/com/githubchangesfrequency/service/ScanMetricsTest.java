@@ -0,0 +1,95 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+
+class ScanMetricsTest {
+
+    @TempDir
+    Path tmp;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ScanMetrics metrics = new ScanMetrics(registry, true);
+
+    @Test
+    void timesPhasesInOrderAndForwardsCallbacks() throws Exception {
+        List<String> seen = new ArrayList<>();
+        ScanTimer timer = metrics.start("full", "file:///r.git", new ScanProgressListener() {
+            @Override
+            public void onPhase(String phase) {
+                seen.add(phase);
+            }
+
+            @Override
+            public void onCommitsDiffed(int commits, long linesAdded, long linesDeleted) {
+                seen.add("diffed " + commits);
+            }
+        });
+        timer.onPhase("fetch");
+        Thread.sleep(20);
+        timer.onPhase("walk");
+        timer.onPhase("diff");
+        timer.onCommitsDiffed(3, 10, 2);
+        timer.onCommitsDiffed(2, 1, 1);
+        timer.onDiffEntries(7, 1_000_000);
+        timer.onPhase("save");
+
+        RepositoryChange change = new RepositoryChange();
+        timer.applyTo(change);
+        timer.finish("saved");
+        timer.finish("failed");
+
+        assertThat(seen).containsExactly("fetch", "walk", "diff", "diffed 3", "diffed 2", "save");
+        assertThat(change.getPhaseMillis()).matches("open=\\d+,fetch=(\\d+),walk=\\d+,diff=\\d+,save=\\d+");
+        assertThat(Long.parseLong(change.getPhaseMillis().replaceAll(".*fetch=(\\d+).*", "$1"))).isGreaterThanOrEqualTo(20);
+        assertThat(change.getScanMillis()).isGreaterThanOrEqualTo(20);
+
+        assertThat(registry.get("gcf.scan.commits").tag("repo", "file:///r.git").counter().count()).isEqualTo(5);
+        assertThat(registry.get("gcf.scan.diff.entries").counter().count()).isEqualTo(7);
+        assertThat(registry.get("gcf.scan.phase").tag("phase", "fetch").tag("kind", "full").timer().count()).isEqualTo(1);
+        assertThat(registry.get("gcf.scan.phase").tag("phase", "save").timer().count()).isEqualTo(1);
+        assertThat(registry.get("gcf.scan").tag("outcome", "saved").timer().count()).isEqualTo(1);
+        assertThat(registry.find("gcf.scan").tag("outcome", "failed").timer()).isNull();
+    }
+
+    @Test
+    void failedFetchIsReportedNotSwallowed() throws Exception {
+        String cloneBase = tmp.resolve("clones").toString();
+        MirrorCloneManager mirrors = new MirrorCloneManager(new RepositoryLockManager(cloneBase),
+                new JGitStorageTuning(true, true), metrics, cloneBase, Duration.ZERO, false);
+        String url;
+        try (TestRemote remote = new TestRemote(tmp.resolve("r"))) {
+            remote.push("main", "a.txt");
+            url = remote.url();
+            try (MirrorClone clone = mirrors.open(url, ScanProgressListener.NONE)) {
+                assertThat(clone.getFetchError()).isNull();
+            }
+        }
+        FileUtils.delete(tmp.resolve("r/remote.git").toFile(), FileUtils.RECURSIVE);
+
+        // a scan still gets the mirror as last fetched, with the failure attached
+        try (MirrorClone clone = mirrors.open(url, ScanProgressListener.NONE)) {
+            assertThat(clone.getFetchError()).isNotBlank();
+            assertThat(clone.resolveBranchRef("main")).isEqualTo("refs/heads/main");
+        }
+        assertThatThrownBy(() -> mirrors.refresh(url, ScanProgressListener.NONE))
+                .isInstanceOf(MirrorCloneManager.FetchFailedException.class);
+
+        assertThat(registry.get("gcf.mirror.fetch.failures").tag("repo", url).counter().count()).isEqualTo(2);
+        assertThat(registry.get("gcf.mirror.update").tag("operation", "clone").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+}
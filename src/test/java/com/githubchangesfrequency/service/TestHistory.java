@@ -0,0 +1,120 @@
+package com.githubchangesfrequency.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Synthetic history for diff tests: line edits, renames, binary files, a growing large file and
+ * merged side branches, committed on the checked-out branch of a work tree.
+ */
+final class TestHistory {
+
+    private TestHistory() {}
+
+    /**
+     * Commit {@code rounds} changes on the current branch; every eighth one merges a side branch
+     * of two commits. Seeded by {@code rounds}, so the same call gives the same trees.
+     */
+    static ObjectId build(Git git, int rounds) throws Exception {
+        Random random = new Random(rounds);
+        Path root = git.getRepository().getWorkTree().toPath();
+        List<String> texts = new ArrayList<>();
+        for (int f = 0; f < 6; f++) {
+            String path = "src/file" + f + ".txt";
+            write(root.resolve(path), lines(random, 40));
+            texts.add(path);
+        }
+        ObjectId tip = commit(git, "initial");
+        for (int i = 1; i <= rounds; i++) {
+            switch (i % 8) {
+                case 0 -> {
+                    tip = merge(git, random, root, texts, "side" + i);
+                    continue;
+                }
+                case 2 -> {
+                    // a small edit keeps it similar enough to be detected as a rename
+                    int k = random.nextInt(texts.size());
+                    Path from = root.resolve(texts.get(k));
+                    String to = "moved/r" + i + "/" + from.getFileName();
+                    Files.createDirectories(root.resolve(to).getParent());
+                    Files.move(from, root.resolve(to));
+                    edit(random, root.resolve(to));
+                    texts.set(k, to);
+                }
+                case 4 -> {
+                    byte[] blob = new byte[3000];
+                    random.nextBytes(blob);
+                    blob[0] = 0;
+                    Path path = root.resolve("bin/blob" + (i % 3) + ".bin");
+                    Files.createDirectories(path.getParent());
+                    Files.write(path, blob);
+                }
+                case 6 -> {
+                    Path big = root.resolve("big.txt");
+                    List<String> lines = Files.exists(big) ? new ArrayList<>(Files.readAllLines(big)) : new ArrayList<>();
+                    lines.addAll(lines(random, 300));
+                    write(big, lines);
+                }
+                default -> edit(random, root.resolve(texts.get(random.nextInt(texts.size()))));
+            }
+            tip = commit(git, "change " + i);
+        }
+        return tip;
+    }
+
+    /** Replace, insert and delete a few lines of a text file. */
+    static void edit(Random random, Path file) throws Exception {
+        List<String> lines = new ArrayList<>(Files.readAllLines(file));
+        lines.set(random.nextInt(lines.size()), "changed " + random.nextInt());
+        lines.add(random.nextInt(lines.size() + 1), "inserted " + random.nextInt());
+        lines.remove(random.nextInt(lines.size()));
+        write(file, lines);
+    }
+
+    static ObjectId commit(Git git, String message) throws Exception {
+        git.add().addFilepattern(".").call();
+        git.add().setUpdate(true).addFilepattern(".").call();
+        return git.commit().setMessage(message)
+                .setAuthor("Dev", "dev@example.com").setCommitter("Dev", "dev@example.com").call().getId();
+    }
+
+    private static ObjectId merge(Git git, Random random, Path root, List<String> texts, String side) throws Exception {
+        String branch = git.getRepository().getBranch();
+        git.checkout().setCreateBranch(true).setName(side).call();
+        Path file = root.resolve("side/" + side + ".txt");
+        Files.createDirectories(file.getParent());
+        write(file, lines(random, 20));
+        commit(git, side + " add");
+        edit(random, file);
+        commit(git, side + " edit");
+
+        git.checkout().setName(branch).call();
+        edit(random, root.resolve(texts.get(random.nextInt(texts.size()))));
+        commit(git, branch + " before " + side);
+        MergeResult result = git.merge().include(git.getRepository().resolve(side))
+                .setFastForward(MergeCommand.FastForwardMode.NO_FF).setMessage("merge " + side).call();
+        if (!result.getMergeStatus().isSuccessful()) {
+            throw new IllegalStateException("Merge of " + side + " failed: " + result.getMergeStatus());
+        }
+        return result.getNewHead();
+    }
+
+    private static List<String> lines(Random random, int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) lines.add("line " + random.nextInt(1000) + " " + random.nextLong());
+        return lines;
+    }
+
+    private static void write(Path file, List<String> lines) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, lines);
+    }
+}
@@ -0,0 +1,47 @@
+package com.githubchangesfrequency.service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * A bare repository reachable as a file:// remote, plus a working clone to push commits from.
+ */
+final class TestRemote implements AutoCloseable {
+
+    private final File bareDir;
+    private final Git work;
+    private int commits;
+
+    TestRemote(Path root) throws Exception {
+        this.bareDir = root.resolve("remote.git").toFile();
+        Git.init().setBare(true).setDirectory(bareDir).setInitialBranch("main").call().close();
+        this.work = Git.cloneRepository().setURI(url()).setDirectory(root.resolve("work").toFile()).call();
+    }
+
+    String url() {
+        return bareDir.toURI().toString();
+    }
+
+    /** Commit a new line to a file on {@code branch} and push it; returns the new tip. */
+    ObjectId push(String branch, String file) throws Exception {
+        Path path = work.getRepository().getWorkTree().toPath().resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, "line " + (++commits) + "\n",
+                java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.APPEND);
+        work.add().addFilepattern(file).call();
+        RevCommit commit = work.commit().setMessage("commit " + commits)
+                .setAuthor("Dev", "dev@example.com").setCommitter("Dev", "dev@example.com").call();
+        work.push().setRefSpecs(new org.eclipse.jgit.transport.RefSpec("HEAD:refs/heads/" + branch)).call();
+        return commit.getId();
+    }
+
+    @Override
+    public void close() {
+        work.close();
+    }
+}
@@ -0,0 +1,192 @@
+package com.githubchangesfrequency.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Several lease managers ("nodes") on one in-memory H2 database.
+ */
+class WorkLeaseManagerTest {
+
+    private static final String REPO = "https://example.com/a.git";
+
+    private JdbcTemplate jdbc;
+    private DataSourceTransactionManager txManager;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(dataSource);
+        txManager = new DataSourceTransactionManager(dataSource);
+        // as generated from the WorkLease entity
+        jdbc.execute("CREATE TABLE work_lease (lease_key VARCHAR(64) PRIMARY KEY, repo_url VARCHAR(1024) NOT NULL, "
+                + "owner VARCHAR(128), fencing_token BIGINT NOT NULL, acquired_at TIMESTAMP(6), "
+                + "heartbeat_at TIMESTAMP(6), expires_at TIMESTAMP(6) NOT NULL)");
+    }
+
+    private WorkLeaseManager node(String name, Duration ttl, Duration affinity, Duration waitTimeout) {
+        return new WorkLeaseManager(jdbc, txManager, true, name, ttl, affinity, waitTimeout);
+    }
+
+    @Test
+    void oneNodeAtATimeAndTheLastHolderKeepsAffinity() throws Exception {
+        WorkLeaseManager a = node("a", Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofMillis(300));
+        WorkLeaseManager b = node("b", Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofMillis(300));
+
+        WorkLeaseManager.Lease held = a.tryClaim(REPO);
+        assertThat(held).isNotNull();
+        assertThat(b.tryClaim(REPO)).isNull();
+        assertThatThrownBy(() -> b.acquire(REPO)).isInstanceOf(IllegalStateException.class).hasMessageContaining("node a");
+        // shared within a node
+        a.tryClaim(REPO).close();
+        assertThat(a.activeLeases()).singleElement().satisfies(l -> assertThat(l.getOwner()).isEqualTo("a"));
+        held.close();
+        assertThat(a.activeLeases()).isEmpty();
+
+        // background claims leave the repo to its last holder; requested scans do not wait for that
+        assertThat(b.tryClaim(REPO)).isNull();
+        a.tryClaim(REPO).close();
+        try (WorkLeaseManager.Lease lease = b.acquire(REPO)) {
+            assertThat(a.tryClaim(REPO)).isNull();
+        }
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndTheOldHolderCannotRenewIt() throws Exception {
+        WorkLeaseManager a = node("a", Duration.ofMillis(200), Duration.ZERO, Duration.ZERO);
+        WorkLeaseManager b = node("b", Duration.ofMillis(200), Duration.ZERO, Duration.ZERO);
+
+        WorkLeaseManager.Lease stale = a.tryClaim(REPO);
+        assertThat(stale).isNotNull();
+        Thread.sleep(300); // a stalls past its ttl without a heartbeat
+        WorkLeaseManager.Lease taken = b.tryClaim(REPO);
+        assertThat(taken).isNotNull();
+
+        a.heartbeat();
+        assertThat(stale.isLost()).isTrue();
+        stale.close();
+        b.heartbeat();
+        assertThat(taken.isLost()).isFalse();
+        assertThat(a.tryClaim(REPO)).isNull();
+        assertThat(jdbc.queryForObject("SELECT fencing_token FROM work_lease", Long.class)).isEqualTo(2);
+    }
+
+    @Test
+    void fenceFailsOnceTheLeaseWasTakenOverEvenBeforeAHeartbeat() throws Exception {
+        WorkLeaseManager a = node("a", Duration.ofMillis(200), Duration.ZERO, Duration.ZERO);
+        WorkLeaseManager b = node("b", Duration.ofMillis(200), Duration.ZERO, Duration.ZERO);
+
+        try (WorkLeaseManager.Lease stale = a.tryClaim(REPO)) {
+            stale.fence();
+            Thread.sleep(300);
+            // expired but not taken over: the token still matches
+            stale.fence();
+            try (WorkLeaseManager.Lease taken = b.tryClaim(REPO)) {
+                assertThat(taken).isNotNull();
+                assertThatThrownBy(stale::fence).isInstanceOf(IllegalStateException.class).hasMessageContaining("node b");
+                assertThat(stale.isLost()).isTrue();
+                taken.fence();
+            }
+        }
+    }
+
+    @Test
+    void heartbeatKeepsTheLeasePastItsTtl() throws Exception {
+        WorkLeaseManager a = node("a", Duration.ofMillis(400), Duration.ZERO, Duration.ZERO);
+        WorkLeaseManager b = node("b", Duration.ofMillis(400), Duration.ZERO, Duration.ZERO);
+
+        try (WorkLeaseManager.Lease lease = a.tryClaim(REPO)) {
+            for (int i = 0; i < 6; i++) {
+                Thread.sleep(150);
+                a.heartbeat();
+                assertThat(b.tryClaim(REPO)).isNull();
+            }
+            assertThat(lease.isLost()).isFalse();
+        }
+        assertThat(b.tryClaim(REPO)).isNotNull();
+    }
+
+    @Test
+    void releaseInsideATransactionWaitsForItsCommit() {
+        WorkLeaseManager a = node("a", Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+        WorkLeaseManager b = node("b", Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+
+        new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            try {
+                a.acquire(REPO).close();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            assertThat(b.tryClaim(REPO)).isNull();
+        });
+        assertThat(b.tryClaim(REPO)).isNotNull();
+    }
+
+    @Test
+    void nodesSplitTheWorkAndNeverHoldTheSameRepo() throws Exception {
+        List<String> repos = new ArrayList<>();
+        for (int i = 0; i < 60; i++) repos.add("https://example.com/r" + i + ".git");
+        Map<String, String> holder = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> scans = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> byNode = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int n = 0; n < 4; n++) {
+            String name = "node" + n;
+            WorkLeaseManager node = node(name, Duration.ofMinutes(1), Duration.ZERO, Duration.ZERO);
+            Set<String> inFlight = ConcurrentHashMap.newKeySet(); // as RepositoryRefreshService keeps it
+            for (int t = 0; t < 2; t++) {
+                workers.add(threads.submit(() -> {
+                    List<String> order = new ArrayList<>(repos);
+                    Collections.shuffle(order);
+                    while (scans.size() < repos.size()) {
+                        for (String repo : order) {
+                            if (scans.containsKey(repo) || !inFlight.add(repo)) continue;
+                            try (WorkLeaseManager.Lease lease = node.tryClaim(repo)) {
+                                if (lease == null || scans.containsKey(repo)) continue;
+                                if (holder.putIfAbsent(repo, name) != null) overlaps.incrementAndGet();
+                                Thread.sleep(2);
+                                scans.computeIfAbsent(repo, k -> new AtomicInteger()).incrementAndGet();
+                                byNode.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+                                holder.remove(repo, name);
+                            } finally {
+                                inFlight.remove(repo);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> w : workers) w.get();
+        threads.shutdown();
+
+        assertThat(overlaps).hasValue(0);
+        assertThat(scans).hasSize(repos.size());
+        assertThat(scans.values()).allSatisfy(c -> assertThat(c).hasValue(1));
+        assertThat(byNode).hasSize(4);
+    }
+}
@@ -0,0 +1,107 @@
+package com.githubchangesfrequency.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.githubchangesfrequency.domain.RepositoryChange;
+import com.githubchangesfrequency.service.GitChangeScannerService;
+import com.githubchangesfrequency.service.GitChangeScannerServiceIncr;
+import com.githubchangesfrequency.service.MirrorCloneManager;
+import com.githubchangesfrequency.service.ScanOptions;
+import com.githubchangesfrequency.service.ScanOptionsResolver;
+
+class ScanControllerTest {
+
+    private static final String REPO = "https://example.com/repo.git";
+    private static final ObjectId TIP = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+    private static final String TAG = "\"" + TIP.getName() + "\"";
+
+    private final GitChangeScannerService scanner = mock(GitChangeScannerService.class);
+    private final GitChangeScannerServiceIncr incrementalScanner = mock(GitChangeScannerServiceIncr.class);
+    private final MirrorCloneManager cloneManager = mock(MirrorCloneManager.class);
+    private final ScanOptionsResolver optionsResolver = mock(ScanOptionsResolver.class);
+
+    private final ScanController controller = new ScanController(scanner, cloneManager, optionsResolver);
+    private final ScanControllerIncr incrementalController = new ScanControllerIncr(incrementalScanner, cloneManager, optionsResolver);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(optionsResolver.resolve(anyString(), any())).thenAnswer(inv -> inv.getArgument(1));
+        when(cloneManager.resolveTip(REPO, "main")).thenReturn(TIP);
+        when(scanner.scanRepository(anyString(), anyString(), any(), any()))
+                .thenAnswer(inv -> result(inv.<ScanOptions>getArgument(2)));
+        when(incrementalScanner.scanRepositoryIncremental(anyString(), anyString(), any(), any()))
+                .thenAnswer(inv -> result(inv.<ScanOptions>getArgument(2)));
+    }
+
+    @Test
+    void unchangedTipIsNotModifiedWithoutScanning() throws Exception {
+        ResponseEntity<?> first = controller.scanRepo(REPO, "main", new ScanParams(), null);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(first.getHeaders().getETag()).isEqualTo(TAG);
+        verify(cloneManager, never()).resolveTip(anyString(), anyString());
+
+        for (String ifNoneMatch : List.of(TAG, "W/" + TAG, "\"other\", " + TAG, "*")) {
+            ResponseEntity<?> again = controller.scanRepo(REPO, "main", new ScanParams(), ifNoneMatch);
+            assertThat(again.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+            assertThat(again.getHeaders().getETag()).isEqualTo(TAG);
+            assertThat(again.getBody()).isNull();
+        }
+        verify(scanner, times(1)).scanRepository(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void movedTipOrOtherProfileScansAgain() throws Exception {
+        ResponseEntity<?> stale = controller.scanRepo(REPO, "main", new ScanParams(), "\"fedcba9876543210fedcba9876543210fedcba98\"");
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(stale.getHeaders().getETag()).isEqualTo(TAG);
+
+        // a filtered scan has its own tag: the unfiltered one does not answer for it
+        ScanParams filtered = new ScanParams();
+        filtered.setExclude(List.of("vendor/"));
+        String profile = filtered.toOptions().profile();
+        ResponseEntity<?> other = controller.scanRepo(REPO, "main", filtered, TAG);
+        assertThat(other.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(other.getHeaders().getETag()).isEqualTo("\"" + TIP.getName() + "-" + profile + "\"");
+        assertThat(controller.scanRepo(REPO, "main", filtered, other.getHeaders().getETag()).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        // unknown branch: no tag to compare, the scan reports it
+        doThrow(new IllegalArgumentException("Branch not found: gone"))
+                .when(scanner).scanRepository(anyString(), anyString(), any(), any());
+        ResponseEntity<?> gone = controller.scanRepo(REPO, "gone", new ScanParams(), "*");
+        assertThat(gone.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        verify(scanner, times(3)).scanRepository(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void incrementalScanAnswersTheSameWay() throws Exception {
+        ResponseEntity<?> first = incrementalController.incrementalScan(REPO, "main", new ScanParams(), null);
+        assertThat(first.getHeaders().getETag()).isEqualTo(TAG);
+        assertThat(incrementalController.incrementalScan(REPO, "main", new ScanParams(), TAG).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(incrementalScanner, times(1)).scanRepositoryIncremental(anyString(), anyString(), any(), any());
+    }
+
+    private static RepositoryChange result(ScanOptions options) {
+        RepositoryChange change = new RepositoryChange();
+        change.setTipCommit(TIP.getName());
+        change.setDiffProfile(options.profile());
+        return change;
+    }
+}